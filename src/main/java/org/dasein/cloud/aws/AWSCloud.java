@@ -34,6 +34,8 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.TimeZone;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -52,10 +54,12 @@ import org.dasein.cloud.aws.admin.AWSAdminServices;
 import org.dasein.cloud.aws.compute.EC2ComputeServices;
 import org.dasein.cloud.aws.compute.EC2Exception;
 import org.dasein.cloud.aws.compute.EC2Method;
+import org.dasein.cloud.aws.compute.SnapshotScheduler;
 import org.dasein.cloud.aws.identity.AWSIdentityServices;
 import org.dasein.cloud.aws.network.EC2NetworkServices;
 import org.dasein.cloud.aws.platform.AWSPlatformServices;
 import org.dasein.cloud.aws.storage.AWSCloudStorageServices;
+import org.dasein.cloud.aws.storage.TransferManager;
 import org.dasein.cloud.compute.ComputeServices;
 import org.dasein.cloud.compute.VirtualMachineSupport;
 import org.dasein.cloud.storage.BlobStoreSupport;
@@ -192,56 +196,31 @@ public class AWSCloud extends AbstractCloud {
 		return authString.toString();
     }
     
+    /**
+     * Writes tags to a resource through the shared {@link TagWriter} and waits for the result.
+     * @param resourceId the resource to tag
+     * @param keyValuePairs the tags to write
+     * @return true if the tags were written
+     */
     public boolean createTags(String resourceId, Tag ... keyValuePairs) {
         try {
-            Map<String,String> parameters = getStandardParameters(getContext(), "CreateTags");
-            EC2Method method;
-            
-            parameters.put("ResourceId.1", resourceId);
-            for( int i=0; i<keyValuePairs.length; i++ ) {
-                String key = keyValuePairs[i].getKey();
-                String value = keyValuePairs[i].getValue();
-                
-                parameters.put("Tag." + i + ".Key", key);
-                parameters.put("Tag." + i + ".Value", value);
-            }
-            method = new EC2Method(this, getEc2Url(), parameters);
-            try {
-                method.invoke();
-            }
-            catch( EC2Exception e ) {
-                String code = e.getCode();
-                
-                if( code != null && code.equals("InvalidInstanceID.NotFound") ) {
-                    try { Thread.sleep(5000L); }
-                    catch( InterruptedException ignore ) { }
-                    parameters = getStandardParameters(getContext(), "CreateTags");
-                    parameters.put("ResourceId.1", resourceId);
-                    for( int i=0; i<keyValuePairs.length; i++ ) {
-                        String key = keyValuePairs[i].getKey();
-                        String value = keyValuePairs[i].getValue();
-                        
-                        parameters.put("Tag." + i + ".Key", key);
-                        parameters.put("Tag." + i + ".Value", value);
-                    }
-                    method = new EC2Method(this, getEc2Url(), parameters);
-                    try {
-                        method.invoke();
-                        return true;
-                    }
-                    catch( EC2Exception ignore ) {
-                        // ignore me
-                    }
-                }
-                logger.error("EC2 error settings tags for " + resourceId + ": " + e.getSummary());
-                return false;
-            }   
-            return true;
+            return createTagsAsync(resourceId, keyValuePairs).get();
         }
         catch( Throwable ignore ) {
             return false;
         }
     }
+
+    /**
+     * Queues tags for writing to a resource. Writes from many callers are coalesced into shared
+     * <code>CreateTags</code> calls and retried while the resource is not yet visible.
+     * @param resourceId the resource to tag
+     * @param keyValuePairs the tags to write
+     * @return a future that yields true once the tags are written
+     */
+    public @Nonnull Future<Boolean> createTagsAsync(@Nonnull String resourceId, @Nonnull Tag ... keyValuePairs) {
+        return getTagWriter().write(resourceId, keyValuePairs);
+    }
     
     @Override
     public AWSAdminServices getAdminServices() {
@@ -315,9 +294,188 @@ public class AWSCloud extends AbstractCloud {
         return provider;
     }
 
+    private transient volatile TagWriter tagWriter;
+
+    /**
+     * @return the shared writer that coalesces tag writes for resources in this cloud
+     */
+    public @Nonnull TagWriter getTagWriter() {
+        if( tagWriter == null ) {
+            synchronized( this ) {
+                if( tagWriter == null ) {
+                    tagWriter = new TagWriter(this);
+                }
+            }
+        }
+        return tagWriter;
+    }
+
+    private transient final ConcurrentHashMap<String,RequestCoalescer<?>> coalescers = new ConcurrentHashMap<String,RequestCoalescer<?>>();
+
+    /**
+     * Provides the shared coalescer for single-resource lookups of the named type in the targeted region, creating
+     * it with the specified loader if it does not yet exist.
+     * @param name the name of the resource type
+     * @param loader the loader used if the coalescer must be created
+     * @param <T> the type of resource being loaded
+     * @return the shared coalescer
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull <T> RequestCoalescer<T> getCoalescer(@Nonnull String name, @Nonnull RequestCoalescer.BatchLoader<T> loader) {
+        String key = name + "@" + getTargetRegionId();
+        RequestCoalescer<?> coalescer = coalescers.get(key);
+
+        if( coalescer == null ) {
+            coalescers.putIfAbsent(key, new RequestCoalescer<T>(loader, RequestCoalescer.DEFAULT_WINDOW, 100));
+            coalescer = coalescers.get(key);
+        }
+        return (RequestCoalescer<T>)coalescer;
+    }
+
+    private transient volatile ManagedExecutors executors;
+
+    /**
+     * @return the pools that carry out all background work for this cloud
+     */
+    public @Nonnull ManagedExecutors getExecutors() {
+        if( executors == null ) {
+            synchronized( this ) {
+                if( executors == null ) {
+                    executors = new ManagedExecutors();
+                }
+            }
+        }
+        return executors;
+    }
+
+    private transient volatile RegionFanOut fanOut;
+
+    /**
+     * @return the shared facility for running listings against many regions at once
+     */
+    public @Nonnull RegionFanOut getRegionFanOut() {
+        if( fanOut == null ) {
+            synchronized( this ) {
+                if( fanOut == null ) {
+                    fanOut = new RegionFanOut(this, RegionFanOut.DEFAULT_CONCURRENCY, RegionFanOut.DEFAULT_RATE);
+                }
+            }
+        }
+        return fanOut;
+    }
+
+    private transient final ConcurrentHashMap<String,ResourceCache<?>> caches = new ConcurrentHashMap<String,ResourceCache<?>>();
+
+    /**
+     * Provides the shared cache for resources of the named type in the targeted region, creating it if it does not
+     * yet exist.
+     * @param name the name of the resource type
+     * @param <T> the type of resource being cached
+     * @return the shared cache
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull <T> ResourceCache<T> getResourceCache(@Nonnull String name) {
+        String key = name + "@" + getTargetRegionId();
+        ResourceCache<?> cache = caches.get(key);
+
+        if( cache == null ) {
+            caches.putIfAbsent(key, new ResourceCache<T>(ResourceCache.DEFAULT_TTL));
+            cache = caches.get(key);
+        }
+        return (ResourceCache<T>)cache;
+    }
+
+    private transient volatile ResourceWaiter waiter;
+
+    /**
+     * @return the shared waiter that batches state polling for resources in this cloud
+     */
+    public @Nonnull ResourceWaiter getResourceWaiter() {
+        if( waiter == null ) {
+            synchronized( this ) {
+                if( waiter == null ) {
+                    waiter = new ResourceWaiter(this);
+                }
+            }
+        }
+        return waiter;
+    }
+
+    private transient volatile SnapshotScheduler snapshotScheduler;
+
+    /**
+     * @return the shared scheduler that paces snapshot creation and clean-up for this account
+     */
+    public @Nonnull SnapshotScheduler getSnapshotScheduler() {
+        if( snapshotScheduler == null ) {
+            synchronized( this ) {
+                if( snapshotScheduler == null ) {
+                    snapshotScheduler = new SnapshotScheduler(this, SnapshotScheduler.DEFAULT_ACCOUNT_CONCURRENCY, SnapshotScheduler.DEFAULT_VOLUME_CONCURRENCY, SnapshotScheduler.DEFAULT_RATE);
+                }
+            }
+        }
+        return snapshotScheduler;
+    }
+
+    private transient volatile TransferManager transferManager;
+
+    /**
+     * @return the shared manager that queues and paces S3 uploads and downloads for this cloud
+     */
+    public @Nonnull TransferManager getTransferManager() {
+        if( transferManager == null ) {
+            synchronized( this ) {
+                if( transferManager == null ) {
+                    transferManager = new TransferManager(this, TransferManager.DEFAULT_CONCURRENT_TRANSFERS, TransferManager.DEFAULT_CONNECTIONS_PER_HOST, TransferManager.DEFAULT_QUEUE_CAPACITY);
+                }
+            }
+        }
+        return transferManager;
+    }
+
+    /**
+     * The region targeted by EC2 calls made from the current thread when it differs from the context region. It is
+     * inheritable so that populator threads started by a regional listing talk to the same region. Pool threads
+     * do not inherit it, so work handed to a pool must capture the override and set it on the pool thread.
+     */
+    static private final InheritableThreadLocal<String> regionOverride = new InheritableThreadLocal<String>();
+
+    /**
+     * @return the region override in effect for the current thread, if any
+     */
+    static public @Nullable String getRegionOverride() {
+        return regionOverride.get();
+    }
+
+    /**
+     * Directs EC2 calls made from the current thread (and threads it starts) to the specified region.
+     * @param regionId the region to target, or <code>null</code> to return to the context region
+     */
+    static public void setRegionOverride(@Nullable String regionId) {
+        if( regionId == null ) {
+            regionOverride.remove();
+        }
+        else {
+            regionOverride.set(regionId);
+        }
+    }
+
+    /**
+     * @return the region targeted by EC2 calls from the current thread
+     */
+    public @Nullable String getTargetRegionId() {
+        String regionId = regionOverride.get();
+
+        if( regionId == null ) {
+            ProviderContext ctx = getContext();
+
+            regionId = (ctx == null ? null : ctx.getRegionId());
+        }
+        return regionId;
+    }
+
     public @Nullable String getEc2Url() throws InternalException, CloudException {
-        ProviderContext ctx = getContext();
-        String url = getEc2Url(ctx == null ? null : ctx.getRegionId());
+        String url = getEc2Url(getTargetRegionId());
         
         if( getEC2Provider().isEucalyptus() ) {
             return url + "/Eucalyptus";
@@ -678,7 +836,16 @@ public class AWSCloud extends AbstractCloud {
     		toSign.append("/");
     	}
     	if( object != null ) {
-    		toSign.append(object.toLowerCase());
+    	    int idx = object.indexOf('?');
+
+    	    // sub-resources such as upload IDs are case sensitive
+    	    if( idx > -1 ) {
+    	        toSign.append(object.substring(0, idx).toLowerCase());
+    	        toSign.append(object.substring(idx));
+    	    }
+    	    else {
+    	        toSign.append(object.toLowerCase());
+    	    }
     	}
     	String signature = sign(secretKey, toSign.toString(), S3_ALGORITHM);
 
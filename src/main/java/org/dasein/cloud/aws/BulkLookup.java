@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.InternalException;
+
+/**
+ * The result of looking up a known set of resources by ID. Resources that were found are mapped by ID, IDs that do
+ * not exist are listed as missing, and IDs whose lookup failed are mapped to the error, so one bad ID or one failed
+ * chunk does not cost the caller the rest of the results.
+ * @param <T> the type of resource looked up
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class BulkLookup<T> {
+    static private final Logger logger = AWSCloud.getLogger(BulkLookup.class);
+
+    /**
+     * The maximum number of values EC2 accepts for a single describe filter.
+     */
+    static public final int DEFAULT_CHUNK_SIZE = 200;
+
+    /**
+     * Looks up the specified resources, splitting the IDs into chunks that are loaded concurrently.
+     * @param provider the cloud whose executors run the chunks
+     * @param ids the IDs to look up
+     * @param chunkSize the maximum number of IDs per describe call
+     * @param loader the loader that describes one chunk
+     * @param <T> the type of resource looked up
+     * @return the results of the lookup
+     * @throws InternalException the calling thread was interrupted while waiting on the chunks
+     */
+    static public @Nonnull <T> BulkLookup<T> lookup(@Nonnull AWSCloud provider, @Nonnull Collection<String> ids, @Nonnegative int chunkSize, final @Nonnull RequestCoalescer.BatchLoader<T> loader) throws InternalException {
+        ArrayList<String> all = new ArrayList<String>(new LinkedHashSet<String>(ids));
+        BulkLookup<T> result = new BulkLookup<T>();
+
+        if( chunkSize < 1 ) {
+            chunkSize = 1;
+        }
+        ArrayList<List<String>> chunks = new ArrayList<List<String>>();
+
+        for( int i=0; i<all.size(); i += chunkSize ) {
+            chunks.add(all.subList(i, Math.min(all.size(), i + chunkSize)));
+        }
+        ArrayList<Future<Map<String,T>>> futures = new ArrayList<Future<Map<String,T>>>();
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.BULK_LOOKUP);
+        // pool threads do not carry the region of the caller
+        final String regionId = provider.getTargetRegionId();
+
+        for( int i=1; i<chunks.size(); i++ ) {
+            final List<String> chunk = chunks.get(i);
+
+            futures.add(executor.submit(new Callable<Map<String,T>>() {
+                public Map<String,T> call() throws Exception {
+                    String previous = AWSCloud.getRegionOverride();
+
+                    try {
+                        AWSCloud.setRegionOverride(regionId);
+                        return loader.load(chunk);
+                    }
+                    finally {
+                        AWSCloud.setRegionOverride(previous);
+                    }
+                }
+            }));
+        }
+        if( !chunks.isEmpty() ) {
+            try {
+                result.add(chunks.get(0), loader.load(chunks.get(0)), null);
+            }
+            catch( Throwable t ) {
+                result.add(chunks.get(0), null, t);
+            }
+        }
+        for( int i=0; i<futures.size(); i++ ) {
+            try {
+                result.add(chunks.get(i+1), futures.get(i).get(), null);
+            }
+            catch( InterruptedException e ) {
+                for( Future<Map<String,T>> f : futures ) {
+                    f.cancel(true);
+                }
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                result.add(chunks.get(i+1), null, e.getCause());
+            }
+        }
+        return result;
+    }
+
+    private HashMap<String,Throwable> failed  = new HashMap<String,Throwable>();
+    private HashMap<String,T>         found   = new HashMap<String,T>();
+    private TreeSet<String>           missing = new TreeSet<String>();
+
+    private BulkLookup() { }
+
+    private void add(@Nonnull Collection<String> ids, @Nullable Map<String,T> results, @Nullable Throwable error) {
+        if( error != null ) {
+            logger.warn("Unable to look up " + ids.size() + " resources: " + error.getMessage());
+        }
+        for( String id : ids ) {
+            T item = (results == null ? null : results.get(id));
+
+            if( item != null ) {
+                found.put(id, item);
+            }
+            else if( error != null ) {
+                failed.put(id, error);
+            }
+            else {
+                missing.add(id);
+            }
+        }
+    }
+
+    /**
+     * @return the errors for IDs whose lookup failed, keyed by ID
+     */
+    public @Nonnull Map<String,Throwable> getFailed() {
+        return Collections.unmodifiableMap(failed);
+    }
+
+    /**
+     * @return the resources that were found, keyed by ID
+     */
+    public @Nonnull Map<String,T> getFound() {
+        return Collections.unmodifiableMap(found);
+    }
+
+    /**
+     * @return the IDs of resources that do not exist
+     */
+    public @Nonnull Collection<String> getMissing() {
+        return Collections.unmodifiableSet(missing);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A listing merged from several independent listings that are loaded at the same time on the shared listing pool.
+ * Each item is handed to the consumer as soon as its source adds it, so the first items arrive after the fastest
+ * source responds rather than after every source has finished. Items may optionally be de-duplicated by ID, in
+ * which case the first source to report an item wins. If a source fails, the items of the other sources are still
+ * delivered and the failure is raised as a {@link LazyListing.ListingException} at the end of the iteration.
+ * <p>
+ * Sources load one page at a time and each stops requesting pages while a window of its unconsumed items is
+ * waiting, so a consumer that stops early leaves no work running beyond the pages already requested. The sources
+ * are run once, starting when the listing is created, and every iterator draws on that run, so the listing can be
+ * iterated only once.
+ * </p>
+ * @param <T> the type of resource listed
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class ConcurrentListing<T> implements Iterable<T> {
+    static public final int DEFAULT_WINDOW = 5000;
+
+    /**
+     * Identifies items for de-duplication.
+     * @param <T> the type of resource listed
+     */
+    static public interface Identifier<T> {
+        public @Nonnull String getId(@Nonnull T item);
+    }
+
+    private class Run extends PageRunner<T> {
+        private HashSet<String> seen = new HashSet<String>();
+
+        Run(@Nonnull Executor executor, @Nonnull Collection<? extends LazyListing.PageLoader<T>> loaders, @Nonnegative int window) {
+            super(executor, loaders, window);
+        }
+
+        @Override
+        protected boolean accept(@Nonnull T item) {
+            return (identifier == null || seen.add(identifier.getId(item)));
+        }
+    }
+
+    private Identifier<T> identifier;
+    private Run           run;
+
+    /**
+     * Starts loading every source at once.
+     * @param provider the cloud whose listing pool loads the sources
+     * @param sources the listings to merge
+     * @param identifier identifies items for de-duplication, or <code>null</code> to deliver every item
+     */
+    public ConcurrentListing(@Nonnull AWSCloud provider, @Nonnull Collection<? extends LazyListing.PageLoader<T>> sources, @Nullable Identifier<T> identifier) {
+        this(provider, sources, identifier, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Starts loading every source at once.
+     * @param provider the cloud whose listing pool loads the sources
+     * @param sources the listings to merge
+     * @param identifier identifies items for de-duplication, or <code>null</code> to deliver every item
+     * @param window the number of unconsumed items at which a source stops loading further pages
+     */
+    public ConcurrentListing(@Nonnull AWSCloud provider, @Nonnull Collection<? extends LazyListing.PageLoader<T>> sources, @Nullable Identifier<T> identifier, @Nonnegative int window) {
+        this(PageRunner.getListingExecutor(provider), sources, identifier, window);
+    }
+
+    ConcurrentListing(@Nonnull Executor executor, @Nonnull Collection<? extends LazyListing.PageLoader<T>> sources, @Nullable Identifier<T> identifier, @Nonnegative int window) {
+        this.identifier = identifier;
+        this.run = new Run(executor, sources, window);
+        run.start();
+    }
+
+    /**
+     * Every iterator draws on the same run of the sources, so items taken by one are not seen by another.
+     * @return an iterator over the items not yet consumed
+     */
+    public @Nonnull Iterator<T> iterator() {
+        return run;
+    }
+}
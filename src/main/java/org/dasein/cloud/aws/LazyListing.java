@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+
+/**
+ * A listing that is loaded a page at a time on the shared listing pool as it is consumed. The first page is requested
+ * when the listing is created; each further page is requested only once the consumer is within a few items of the end
+ * of the current one, so at most two pages are held in memory and no thread is tied up while the consumer is busy.
+ * <p>
+ * The first iteration streams. The first page is kept, so {@link #isEmpty()} costs at most the pages up to the first
+ * item and each later iteration starts from the kept page and runs the rest of the listing again, except after
+ * {@link #size()} or {@link #contains(Object)}, which load the whole listing once and serve later iterations from
+ * memory. A listing consumed on a thread of the listing pool loads its pages on that thread rather than waiting on
+ * the pool.
+ * </p>
+ * @param <T> the type of resource listed
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class LazyListing<T> extends AbstractCollection<T> {
+    static public final int DEFAULT_PREFETCH = 10;
+
+    /**
+     * Loads one page of a listing.
+     * @param <T> the type of resource listed
+     */
+    static public interface PageLoader<T> {
+        /**
+         * @param marker the marker returned with the previous page, or <code>null</code> for the first page
+         * @param page the collection to which the items on the page are added
+         * @return the marker for the next page, or <code>null</code> if this was the last page
+         * @throws CloudException an error occurred with the cloud provider while loading the page
+         * @throws InternalException an error occurred within Dasein Cloud while loading the page
+         */
+        public @Nullable String load(@Nullable String marker, @Nonnull Collection<T> page) throws CloudException, InternalException;
+    }
+
+    /**
+     * Thrown during iteration when a page could not be loaded. The cause is the original
+     * {@link CloudException} or {@link InternalException}.
+     */
+    static public class ListingException extends RuntimeException {
+        private static final long serialVersionUID = -2710734461361958233L;
+
+        public ListingException(@Nonnull Throwable cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Loads every page of a listing on the calling thread.
+     * @param loader the page loader
+     * @param <T> the type of resource listed
+     * @return every item in the listing
+     * @throws CloudException an error occurred with the cloud provider while loading a page
+     * @throws InternalException an error occurred within Dasein Cloud while loading a page
+     */
+    static public @Nonnull <T> List<T> loadAll(@Nonnull PageLoader<T> loader) throws CloudException, InternalException {
+        ArrayList<T> list = new ArrayList<T>();
+        String marker = null;
+
+        do {
+            marker = loader.load(marker, list);
+        } while( marker != null );
+        return list;
+    }
+
+    static private class Page<T> {
+        ArrayList<T> items = new ArrayList<T>();
+        String       marker;
+    }
+
+    private class Cursor implements Iterator<T> {
+        private ArrayDeque<T>   buffer = new ArrayDeque<T>();
+        private String          marker = null;
+        private Future<Page<T>> pending;
+
+        Cursor() {
+            pending = getHead();
+        }
+
+        private void prefetch() {
+            if( pending == null && marker != null && buffer.size() <= prefetch ) {
+                pending = fetch(marker);
+                marker = null;
+            }
+        }
+
+        public boolean hasNext() {
+            while( buffer.isEmpty() ) {
+                prefetch();
+                if( pending == null ) {
+                    return false;
+                }
+                Page<T> page;
+
+                try {
+                    page = pending.get();
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new ListingException(e);
+                }
+                catch( ExecutionException e ) {
+                    dropHead(pending);
+                    pending = null;
+                    throw new ListingException(e.getCause());
+                }
+                pending = null;
+                buffer.addAll(page.items);
+                marker = page.marker;
+            }
+            return true;
+        }
+
+        public T next() {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            T item = buffer.poll();
+
+            prefetch();
+            return item;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private Cursor          first;
+    private Future<Page<T>> head = null;
+    private PageLoader<T>   loader;
+    private List<T>         materialized = null;
+    private int             prefetch;
+    private AWSCloud        provider;
+    private String          regionId;
+
+    /**
+     * Starts a listing, requesting the first page right away.
+     * @param provider the cloud whose listing pool loads the pages
+     * @param loader the page loader
+     */
+    public LazyListing(@Nonnull AWSCloud provider, @Nonnull PageLoader<T> loader) {
+        this(provider, loader, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Starts a listing, requesting the first page right away.
+     * @param provider the cloud whose listing pool loads the pages
+     * @param loader the page loader
+     * @param prefetch the number of unconsumed items at which the next page is requested
+     */
+    public LazyListing(@Nonnull AWSCloud provider, @Nonnull PageLoader<T> loader, @Nonnegative int prefetch) {
+        this.provider = provider;
+        this.loader = loader;
+        this.prefetch = prefetch;
+        this.regionId = AWSCloud.getRegionOverride();
+        this.first = new Cursor();
+    }
+
+    private @Nonnull Future<Page<T>> fetch(final @Nullable String marker) {
+        provider.hold();
+        Callable<Page<T>> load = new Callable<Page<T>>() {
+            public Page<T> call() throws CloudException, InternalException {
+                String previous = AWSCloud.getRegionOverride();
+
+                try {
+                    Page<T> page = new Page<T>();
+
+                    // pool threads do not inherit the region of a regional listing
+                    AWSCloud.setRegionOverride(regionId);
+                    page.marker = loader.load(marker, page.items);
+                    return page;
+                }
+                finally {
+                    AWSCloud.setRegionOverride(previous);
+                    provider.release();
+                }
+            }
+        };
+
+        if( ManagedExecutors.isPoolThread(ManagedExecutors.LISTING) ) {
+            FutureTask<Page<T>> task = new FutureTask<Page<T>>(load);
+
+            task.run();
+            return task;
+        }
+        return provider.getExecutors().getPool(ManagedExecutors.LISTING).submit(load);
+    }
+
+    private synchronized @Nonnull Future<Page<T>> getHead() {
+        if( head == null ) {
+            head = fetch(null);
+        }
+        return head;
+    }
+
+    // a failed first page is requested again by the next iteration
+    private synchronized void dropHead(@Nonnull Future<Page<T>> failed) {
+        if( head == failed ) {
+            head = null;
+        }
+    }
+
+    public synchronized boolean contains(@Nullable Object o) {
+        size();
+        return materialized.contains(o);
+    }
+
+    public synchronized boolean isEmpty() {
+        if( materialized != null ) {
+            return materialized.isEmpty();
+        }
+        if( first == null ) {
+            first = new Cursor();
+        }
+        // the cursor buffers the items it finds, so the next iteration still begins with them
+        return !first.hasNext();
+    }
+
+    public synchronized @Nonnull Iterator<T> iterator() {
+        if( materialized != null ) {
+            return materialized.iterator();
+        }
+        if( first != null ) {
+            Cursor c = first;
+
+            first = null;
+            return c;
+        }
+        return new Cursor();
+    }
+
+    public synchronized int size() {
+        if( materialized == null ) {
+            ArrayList<T> list = new ArrayList<T>();
+            Iterator<T> it = iterator();
+
+            while( it.hasNext() ) {
+                list.add(it.next());
+            }
+            materialized = list;
+        }
+        return materialized.size();
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The thread pools that carry out all background work for a single {@link AWSCloud}. Each concern gets its own named
+ * pool with a fixed number of threads and, for work pools, a bounded queue; when a work queue is full the submitting
+ * thread runs the task itself, which pushes back on callers instead of piling up threads. Pools are created on first
+ * use, their threads expire when idle, and all pools are shut down when the JVM exits.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class ManagedExecutors {
+    static private final Logger logger = AWSCloud.getLogger(ManagedExecutors.class);
+
+    static public final String BULK_LOOKUP    = "Bulk Lookup";
+    static public final String COPIES         = "Object Copies";
+    static public final String FAN_OUT        = "Region Fan-Out";
+    static public final String IMAGING        = "Imaging";
+    static public final String LAUNCH         = "Launch Pipeline";
+    static public final String LISTING        = "Listing";
+    static public final String PURGE          = "Bucket Purge";
+    static public final String SNAPSHOTS      = "Snapshot Scheduler";
+    static public final String STATISTICS     = "Fleet Statistics";
+    static public final String TAGS           = "Tag Writer";
+    static public final String TRANSFERS      = "Transfers";
+    static public final String TRANSFER_QUEUE = "Transfer Queue";
+    static public final String WAITER         = "Resource Waiter";
+
+    static private final int  DEFAULT_THREADS  = 4;
+    static private final int  DEFAULT_QUEUE    = 1000;
+    static private final long KEEP_ALIVE       = 60L;
+
+    static private final HashMap<String,int[]> sizes = new HashMap<String,int[]>();
+
+    static {
+        // { threads, queue capacity }; scheduled pools have no queue limit
+        sizes.put(BULK_LOOKUP, new int[] { 8, 1000 });
+        sizes.put(COPIES, new int[] { 32, 100 });
+        sizes.put(FAN_OUT, new int[] { 8, 100 });
+        sizes.put(IMAGING, new int[] { 4, 100 });
+        sizes.put(LAUNCH, new int[] { 4, 0 });
+        sizes.put(LISTING, new int[] { 16, 1000 });
+        sizes.put(PURGE, new int[] { 2, 100 });
+        sizes.put(SNAPSHOTS, new int[] { 4, 0 });
+        sizes.put(STATISTICS, new int[] { 16, 10000 });
+        sizes.put(TAGS, new int[] { 2, 0 });
+        sizes.put(TRANSFERS, new int[] { 16, 1000 });
+        sizes.put(TRANSFER_QUEUE, new int[] { 8, 100 });
+        sizes.put(WAITER, new int[] { 1, 0 });
+    }
+
+    static private final Set<ManagedExecutors> live = Collections.newSetFromMap(new WeakHashMap<ManagedExecutors,Boolean>());
+
+    static private final ThreadLocal<String> poolName = new ThreadLocal<String>();
+
+    static {
+        Thread hook = new Thread() {
+            public void run() {
+                ArrayList<ManagedExecutors> all;
+
+                synchronized( live ) {
+                    all = new ArrayList<ManagedExecutors>(live);
+                }
+                for( ManagedExecutors executors : all ) {
+                    executors.shutdown();
+                }
+            }
+        };
+
+        hook.setName("AWS Executor Shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+    }
+
+    /**
+     * A snapshot of the state of one pool.
+     */
+    static public class PoolMetrics {
+        private int     activeCount;
+        private long    completedTaskCount;
+        private int     largestPoolSize;
+        private int     maximumPoolSize;
+        private String  name;
+        private int     poolSize;
+        private int     queueCapacity;
+        private int     queueDepth;
+        private boolean scheduled;
+
+        PoolMetrics(@Nonnull String name, @Nonnull ThreadPoolExecutor pool) {
+            this.name = name;
+            this.activeCount = pool.getActiveCount();
+            this.completedTaskCount = pool.getCompletedTaskCount();
+            this.largestPoolSize = pool.getLargestPoolSize();
+            this.maximumPoolSize = pool.getMaximumPoolSize();
+            this.poolSize = pool.getPoolSize();
+            this.queueDepth = pool.getQueue().size();
+            this.scheduled = (pool instanceof ScheduledThreadPoolExecutor);
+            this.queueCapacity = (scheduled ? 0 : queueDepth + pool.getQueue().remainingCapacity());
+        }
+
+        /**
+         * @return the number of threads currently running tasks
+         */
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public long getCompletedTaskCount() {
+            return completedTaskCount;
+        }
+
+        public int getLargestPoolSize() {
+            return largestPoolSize;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public @Nonnull String getName() {
+            return name;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * @return the maximum number of queued tasks, or 0 if the queue is unbounded
+         */
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /**
+         * @return the number of tasks waiting for a thread (for scheduled pools, including delayed tasks)
+         */
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public boolean isScheduled() {
+            return scheduled;
+        }
+
+        public @Nonnull String toString() {
+            return name + " [active=" + activeCount + ", pool=" + poolSize + "/" + maximumPoolSize + ", queued=" + queueDepth + (queueCapacity > 0 ? "/" + queueCapacity : "") + ", completed=" + completedTaskCount + "]";
+        }
+    }
+
+    static private @Nonnull ThreadFactory newThreadFactory(final @Nonnull String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+
+            public Thread newThread(final Runnable r) {
+                Thread t = new Thread(new Runnable() {
+                    public void run() {
+                        // a pool thread created from a regional listing must not keep that region forever
+                        AWSCloud.setRegionOverride(null);
+                        poolName.set(name);
+                        r.run();
+                    }
+                });
+
+                t.setName(name + " " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    static private @Nonnull int[] getSize(@Nonnull String name) {
+        int[] size = sizes.get(name);
+
+        return (size == null ? new int[] { DEFAULT_THREADS, DEFAULT_QUEUE } : size);
+    }
+
+    /**
+     * @param name the name of a pool
+     * @return the number of threads with which the pool is created by {@link #getPool(String)}
+     */
+    static public int getThreadCount(@Nonnull String name) {
+        return getSize(name)[0];
+    }
+
+    /**
+     * A task running on a pool thread must not wait on further tasks of the same pool, since every thread of the
+     * pool may be waiting in the same way; it should do the work itself instead.
+     * @param name the name of a pool
+     * @return true if the calling thread is a thread of the named pool
+     */
+    static public boolean isPoolThread(@Nonnull String name) {
+        return name.equals(poolName.get());
+    }
+
+    private final HashMap<String,ThreadPoolExecutor>          pools      = new HashMap<String,ThreadPoolExecutor>();
+    private final HashMap<String,ScheduledThreadPoolExecutor> schedulers = new HashMap<String,ScheduledThreadPoolExecutor>();
+
+    ManagedExecutors() {
+        synchronized( live ) {
+            live.add(this);
+        }
+    }
+
+    /**
+     * Provides the named work pool, creating it with its default size if necessary.
+     * @param name the concern served by the pool, such as {@link #BULK_LOOKUP}
+     * @return the pool
+     */
+    public @Nonnull ExecutorService getPool(@Nonnull String name) {
+        int[] size = getSize(name);
+
+        return getPool(name, size[0], size[1]);
+    }
+
+    /**
+     * Provides the named work pool, creating it with the specified size if it does not yet exist.
+     * @param name the concern served by the pool
+     * @param threads the maximum number of threads
+     * @param queueCapacity the maximum number of tasks waiting for a thread
+     * @return the pool
+     */
+    public synchronized @Nonnull ExecutorService getPool(@Nonnull String name, @Nonnegative int threads, @Nonnegative int queueCapacity) {
+        ThreadPoolExecutor pool = pools.get(name);
+
+        if( pool == null ) {
+            threads = Math.max(1, threads);
+            pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(Math.max(1, queueCapacity)), newThreadFactory(name), new ThreadPoolExecutor.CallerRunsPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            pools.put(name, pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Provides the named scheduling pool, creating it with its default size if necessary.
+     * @param name the concern served by the pool, such as {@link #WAITER}
+     * @return the pool
+     */
+    public synchronized @Nonnull ScheduledExecutorService getScheduler(@Nonnull String name) {
+        ScheduledThreadPoolExecutor scheduler = schedulers.get(name);
+
+        if( scheduler == null ) {
+            scheduler = new ScheduledThreadPoolExecutor(Math.max(1, getSize(name)[0]), newThreadFactory(name));
+            scheduler.setKeepAliveTime(KEEP_ALIVE, TimeUnit.SECONDS);
+            scheduler.allowCoreThreadTimeOut(true);
+            schedulers.put(name, scheduler);
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return the current state of every pool created so far, keyed by pool name
+     */
+    public synchronized @Nonnull Map<String,PoolMetrics> getMetrics() {
+        TreeMap<String,PoolMetrics> metrics = new TreeMap<String,PoolMetrics>();
+
+        for( Map.Entry<String,ThreadPoolExecutor> entry : pools.entrySet() ) {
+            metrics.put(entry.getKey(), new PoolMetrics(entry.getKey(), entry.getValue()));
+        }
+        for( Map.Entry<String,ScheduledThreadPoolExecutor> entry : schedulers.entrySet() ) {
+            metrics.put(entry.getKey(), new PoolMetrics(entry.getKey(), entry.getValue()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Shuts down every pool, letting queued work finish. Pools requested afterwards are created afresh.
+     */
+    public synchronized void shutdown() {
+        for( ThreadPoolExecutor pool : pools.values() ) {
+            pool.shutdown();
+        }
+        for( ScheduledThreadPoolExecutor scheduler : schedulers.values() ) {
+            scheduler.shutdown();
+        }
+        if( logger.isDebugEnabled() && !(pools.isEmpty() && schedulers.isEmpty()) ) {
+            logger.debug("Shut down " + (pools.size() + schedulers.size()) + " executor pools");
+        }
+        pools.clear();
+        schedulers.clear();
+    }
+}
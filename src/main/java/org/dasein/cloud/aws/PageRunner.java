@@ -0,0 +1,286 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Runs several paged sources at once and hands their items to a single consumer. Each source loads one page at a
+ * time into its own buffer and stops requesting pages while a window of its items is waiting, so a consumer that
+ * stops early leaves no work running beyond the pages already requested. Items are added to a buffer as the source
+ * produces them. By default the sources take turns delivering whichever items they have; subclasses may instead
+ * decide which source delivers the next item, and which items are kept at all.
+ * <p>
+ * Pages are loaded in the region the runner was created in. If a source fails, the items of the other sources are
+ * still delivered and the failure is raised as a {@link LazyListing.ListingException} once they are exhausted.
+ * </p>
+ * @param <T> the type of resource listed
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+class PageRunner<T> implements Iterator<T> {
+    /**
+     * Creates an executor that loads pages on the listing pool of the specified cloud, holding the cloud open while
+     * each page loads.
+     * @param provider the cloud whose listing pool loads the pages
+     * @return an executor for page loads
+     */
+    static @Nonnull Executor getListingExecutor(@Nonnull final AWSCloud provider) {
+        return new Executor() {
+            public void execute(@Nonnull final Runnable task) {
+                provider.hold();
+                provider.getExecutors().getPool(ManagedExecutors.LISTING).execute(new Runnable() {
+                    public void run() {
+                        try {
+                            task.run();
+                        }
+                        finally {
+                            provider.release();
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    protected class Source {
+        ArrayDeque<T>             buffer  = new ArrayDeque<T>();
+        boolean                   done    = false;
+        LazyListing.PageLoader<T> loader;
+        boolean                   loading = false;
+        String                    marker  = null;
+
+        // the sink only ever receives items, which go straight to the buffer
+        Collection<T> sink = new AbstractCollection<T>() {
+            public boolean add(T item) {
+                if( item == null ) {
+                    return false;
+                }
+                synchronized( PageRunner.this ) {
+                    if( !accept(item) ) {
+                        return false;
+                    }
+                    buffer.add(item);
+                    PageRunner.this.notifyAll();
+                }
+                return true;
+            }
+
+            public @Nonnull Iterator<T> iterator() {
+                return Collections.<T>emptyList().iterator();
+            }
+
+            public int size() {
+                return 0;
+            }
+        };
+
+        Source(@Nonnull LazyListing.PageLoader<T> loader) {
+            this.loader = loader;
+        }
+    }
+
+    private   Throwable         error    = null;
+    private   Executor          executor;
+    private   int               next     = 0;
+    private   String            regionId;
+    private   Source            selected = null;
+    protected ArrayList<Source> sources  = new ArrayList<Source>();
+    private   int               window;
+
+    /**
+     * Prepares the sources without loading anything; {@link #start()} requests the first pages.
+     * @param executor runs each page load
+     * @param loaders the page loaders of the sources
+     * @param window the number of unconsumed items at which a source stops loading further pages
+     */
+    protected PageRunner(@Nonnull Executor executor, @Nonnull Collection<? extends LazyListing.PageLoader<T>> loaders, @Nonnegative int window) {
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.regionId = AWSCloud.getRegionOverride();
+        for( LazyListing.PageLoader<T> loader : loaders ) {
+            sources.add(new Source(loader));
+        }
+    }
+
+    /**
+     * Decides whether an item from a source is delivered. Called with the lock on the runner held.
+     * @param item the item
+     * @return true if the item is to be delivered
+     */
+    protected boolean accept(@Nonnull T item) {
+        return true;
+    }
+
+    /**
+     * Picks the source that delivers the next item, by default the next source in turn that has an item waiting.
+     * Called with the lock on the runner held.
+     * @return the source whose buffer holds the next item, or <code>null</code> if it is not yet known
+     */
+    protected @Nullable Source select() {
+        for( int i=0; i<sources.size(); i++ ) {
+            Source source = sources.get((next + i) % sources.size());
+
+            if( !source.buffer.isEmpty() ) {
+                next = (next + i + 1) % sources.size();
+                return source;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Requests the first page of every source. Kept out of the constructor because, with a caller-runs pool, pages
+     * may load before the constructor of a subclass has run.
+     */
+    void start() {
+        ArrayList<Source> ready = new ArrayList<Source>();
+
+        synchronized( this ) {
+            for( Source source : sources ) {
+                schedule(source, ready);
+            }
+        }
+        submit(ready);
+    }
+
+    // must hold the lock on the runner; the sources are submitted once the lock is released
+    private void schedule(@Nonnull Source source, @Nonnull List<Source> ready) {
+        if( !source.loading && !source.done && source.buffer.size() < window ) {
+            source.loading = true;
+            ready.add(source);
+        }
+    }
+
+    private void submit(@Nonnull List<Source> ready) {
+        for( final Source source : ready ) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    load(source);
+                }
+            });
+        }
+    }
+
+    private void load(@Nonnull Source source) {
+        ArrayList<Source> ready = new ArrayList<Source>();
+        String previous = AWSCloud.getRegionOverride();
+        Throwable failure = null;
+        String marker;
+
+        synchronized( this ) {
+            marker = source.marker;
+        }
+        try {
+            // pool threads do not inherit the region of a regional listing
+            AWSCloud.setRegionOverride(regionId);
+            marker = source.loader.load(marker, source.sink);
+        }
+        catch( Throwable t ) {
+            failure = t;
+        }
+        finally {
+            AWSCloud.setRegionOverride(previous);
+        }
+        synchronized( this ) {
+            source.loading = false;
+            if( failure != null ) {
+                if( error == null ) {
+                    error = failure;
+                }
+                source.done = true;
+            }
+            else {
+                source.marker = marker;
+                source.done = (marker == null);
+                schedule(source, ready);
+            }
+            notifyAll();
+        }
+        submit(ready);
+    }
+
+    private synchronized boolean isFinished() {
+        for( Source source : sources ) {
+            if( !source.done || !source.buffer.isEmpty() ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean hasNext() {
+        if( selected != null ) {
+            return true;
+        }
+        while( (selected = select()) == null ) {
+            if( isFinished() ) {
+                if( error != null ) {
+                    Throwable t = error;
+
+                    error = null;
+                    throw new LazyListing.ListingException(t);
+                }
+                return false;
+            }
+            try {
+                wait();
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new LazyListing.ListingException(e);
+            }
+        }
+        return true;
+    }
+
+    public T next() {
+        ArrayList<Source> ready = new ArrayList<Source>();
+        T item;
+
+        synchronized( this ) {
+            if( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            Source source = selected;
+
+            selected = null;
+            item = source.buffer.poll();
+            schedule(source, ready);
+        }
+        submit(ready);
+        return item;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
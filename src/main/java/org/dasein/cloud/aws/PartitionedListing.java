@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A listing split into partitions that are each paged independently and loaded at the same time on the shared
+ * listing pool. Each partition keeps loading pages in the background until it holds a window of unconsumed items,
+ * so the listing runs as many requests in parallel as the pool allows while holding a bounded number of items in
+ * memory, and a consumer that stops early leaves no work running beyond the pages already requested.
+ * <p>
+ * Without an order, items are delivered as soon as any partition has them. With an order, each partition must
+ * itself be sorted and the partitions are merged so that the items are delivered in that order; partitions that
+ * cover disjoint, consecutive ranges are then simply delivered one after another while the later ones load ahead.
+ * If a partition fails, the items of the other partitions are still delivered and the failure is raised as a
+ * {@link LazyListing.ListingException} at the end of the iteration. The partitions are run once, starting when the
+ * listing is created, and every iterator draws on that run, so the listing can be iterated only once.
+ * </p>
+ * @param <T> the type of resource listed
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class PartitionedListing<T> implements Iterable<T> {
+    static public final int DEFAULT_WINDOW = 5000;
+
+    private class Run extends PageRunner<T> {
+        Run(@Nonnull Executor executor, @Nonnull Collection<? extends LazyListing.PageLoader<T>> loaders, @Nonnegative int window) {
+            super(executor, loaders, window);
+        }
+
+        @Override
+        protected @Nullable Source select() {
+            if( order == null ) {
+                return super.select();
+            }
+            Source least = null;
+
+            for( Source p : sources ) {
+                if( p.buffer.isEmpty() ) {
+                    if( !p.done ) {
+                        // the next item may yet come from this partition
+                        return null;
+                    }
+                }
+                else if( least == null || order.compare(p.buffer.peek(), least.buffer.peek()) < 0 ) {
+                    least = p;
+                }
+            }
+            return least;
+        }
+    }
+
+    private Comparator<? super T> order;
+    private Run                   run;
+
+    /**
+     * Starts loading every partition at once.
+     * @param provider the cloud whose listing pool loads the partitions
+     * @param partitions the page loaders of the partitions
+     * @param order the order in which each partition is sorted and the items are to be delivered, or <code>null</code> to deliver items as they arrive
+     */
+    public PartitionedListing(@Nonnull AWSCloud provider, @Nonnull Collection<? extends LazyListing.PageLoader<T>> partitions, @Nullable Comparator<? super T> order) {
+        this(provider, partitions, order, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Starts loading every partition at once.
+     * @param provider the cloud whose listing pool loads the partitions
+     * @param partitions the page loaders of the partitions
+     * @param order the order in which each partition is sorted and the items are to be delivered, or <code>null</code> to deliver items as they arrive
+     * @param window the number of unconsumed items at which a partition stops loading further pages
+     */
+    public PartitionedListing(@Nonnull AWSCloud provider, @Nonnull Collection<? extends LazyListing.PageLoader<T>> partitions, @Nullable Comparator<? super T> order, @Nonnegative int window) {
+        this(PageRunner.getListingExecutor(provider), partitions, order, window);
+    }
+
+    PartitionedListing(@Nonnull Executor executor, @Nonnull Collection<? extends LazyListing.PageLoader<T>> partitions, @Nullable Comparator<? super T> order, @Nonnegative int window) {
+        this.order = order;
+        this.run = new Run(executor, partitions, window);
+        run.start();
+    }
+
+    /**
+     * Every iterator draws on the same run of the partitions, so items taken by one are not seen by another.
+     * @return an iterator over the items not yet consumed
+     */
+    public @Nonnull Iterator<T> iterator() {
+        return run;
+    }
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.compute.Snapshot;
+import org.dasein.cloud.compute.VirtualMachine;
+import org.dasein.cloud.compute.Volume;
+import org.dasein.cloud.dc.Region;
+import org.dasein.cloud.network.IPVersion;
+import org.dasein.cloud.network.IpAddress;
+
+/**
+ * Runs the same listing against many regions at once and merges the results into a single stream in which each
+ * resource is tagged with its region. Each region is listed on its own worker thread with EC2 calls directed at that
+ * region's endpoint, region starts are paced by a {@link RequestThrottle}, and a region that fails is recorded
+ * without affecting the others. A global inventory therefore takes about as long as the slowest region.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class RegionFanOut {
+    static private final Logger logger = AWSCloud.getLogger(RegionFanOut.class);
+
+    static public final int DEFAULT_CONCURRENCY = 8;
+    static public final int DEFAULT_RATE        = 10;
+
+    static private final Object END = new Object();
+
+    /**
+     * A listing to be run against a single region. It is called on a worker thread whose EC2 calls already target
+     * the region, so existing support methods may simply be invoked.
+     * @param <T> the type of resource listed
+     */
+    static public interface RegionalListing<T> {
+        /**
+         * @param regionId the region being listed
+         * @return the resources in the region
+         * @throws CloudException an error occurred with the cloud provider while listing the region
+         * @throws InternalException an error occurred within Dasein Cloud while listing the region
+         */
+        public @Nonnull Iterable<T> list(@Nonnull String regionId) throws CloudException, InternalException;
+    }
+
+    /**
+     * A resource together with the region in which it was found.
+     * @param <T> the type of resource
+     */
+    static public class Regional<T> {
+        private String regionId;
+        private T      resource;
+
+        Regional(@Nonnull String regionId, @Nonnull T resource) {
+            this.regionId = regionId;
+            this.resource = resource;
+        }
+
+        public @Nonnull String getRegionId() {
+            return regionId;
+        }
+
+        public @Nonnull T getResource() {
+            return resource;
+        }
+
+        public @Nonnull String toString() {
+            return regionId + ": " + resource;
+        }
+    }
+
+    /**
+     * The merged stream of a fan-out listing. Failures are complete once the stream has been fully consumed.
+     * @param <T> the type of resource listed
+     */
+    static public class Results<T> implements Iterable<Regional<T>> {
+        private ConcurrentHashMap<String,Throwable> failures = new ConcurrentHashMap<String,Throwable>();
+        private Regional<T>                         next     = null;
+        private LinkedBlockingQueue<Object>         queue    = new LinkedBlockingQueue<Object>();
+        private int                                 remaining;
+
+        Results(@Nonnegative int regions) {
+            this.remaining = regions;
+        }
+
+        /**
+         * @return the errors of regions whose listing failed, keyed by region ID
+         */
+        public @Nonnull Map<String,Throwable> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * The stream is drained by the consumer as it arrives, so it can be iterated only once.
+         * @return the merged stream
+         */
+        public @Nonnull Iterator<Regional<T>> iterator() {
+            return new Iterator<Regional<T>>() {
+                public boolean hasNext() {
+                    return take();
+                }
+
+                public Regional<T> next() {
+                    return poll();
+                }
+
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized boolean take() {
+            while( next == null ) {
+                if( remaining < 1 ) {
+                    return false;
+                }
+                Object item;
+
+                try {
+                    item = queue.take();
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new LazyListing.ListingException(e);
+                }
+                if( item == END ) {
+                    remaining--;
+                }
+                else {
+                    next = (Regional<T>)item;
+                }
+            }
+            return true;
+        }
+
+        private synchronized @Nonnull Regional<T> poll() {
+            if( !take() ) {
+                throw new NoSuchElementException();
+            }
+            Regional<T> item = next;
+
+            next = null;
+            return item;
+        }
+    }
+
+    private AWSCloud        provider;
+    private RequestThrottle throttle;
+
+    /**
+     * @param provider the cloud whose regions are listed
+     * @param maxConcurrent the maximum number of regions listed at once
+     * @param maxPerSecond the maximum number of region listings started per second
+     */
+    RegionFanOut(@Nonnull AWSCloud provider, @Nonnegative int maxConcurrent, @Nonnegative int maxPerSecond) {
+        if( maxConcurrent < 1 ) {
+            maxConcurrent = 1;
+        }
+        this.provider = provider;
+        this.throttle = new RequestThrottle(maxConcurrent, maxPerSecond);
+    }
+
+    /**
+     * Runs the specified listing against the specified regions concurrently.
+     * @param regionIds the regions to list, or <code>null</code> for every region in the cloud
+     * @param listing the listing to run in each region
+     * @param <T> the type of resource listed
+     * @return the merged stream of results, delivered as they arrive from each region and iterable only once
+     * @throws CloudException an error occurred listing the regions of the cloud
+     * @throws InternalException an error occurred within Dasein Cloud listing the regions of the cloud
+     */
+    public @Nonnull <T> Results<T> list(@Nullable Collection<String> regionIds, final @Nonnull RegionalListing<T> listing) throws CloudException, InternalException {
+        final ArrayList<String> regions = new ArrayList<String>();
+
+        if( regionIds == null ) {
+            for( Region region : provider.getDataCenterServices().listRegions() ) {
+                regions.add(region.getProviderRegionId());
+            }
+        }
+        else {
+            regions.addAll(regionIds);
+        }
+        final Results<T> results = new Results<T>(regions.size());
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.FAN_OUT);
+
+        for( final String regionId : regions ) {
+            provider.hold();
+            executor.execute(new Runnable() {
+                public void run() {
+                    // the caller runs the task itself when the pool is saturated, so keep its region
+                    String previous = AWSCloud.getRegionOverride();
+                    boolean acquired = false;
+
+                    try {
+                        throttle.acquire();
+                        acquired = true;
+                        AWSCloud.setRegionOverride(regionId);
+                        for( T item : listing.list(regionId) ) {
+                            if( item != null ) {
+                                results.queue.add(new Regional<T>(regionId, item));
+                            }
+                        }
+                    }
+                    catch( Throwable t ) {
+                        logger.warn("Listing of " + regionId + " failed: " + t.getMessage());
+                        results.failures.put(regionId, t);
+                    }
+                    finally {
+                        AWSCloud.setRegionOverride(previous);
+                        if( acquired ) {
+                            throttle.release();
+                        }
+                        results.queue.add(END);
+                        provider.release();
+                    }
+                }
+            });
+        }
+        return results;
+    }
+
+    /**
+     * Lists the virtual machines in the specified regions concurrently.
+     * @param regionIds the regions to list, or <code>null</code> for every region
+     * @return the merged stream of virtual machines
+     * @throws CloudException an error occurred listing the regions of the cloud
+     * @throws InternalException an error occurred within Dasein Cloud listing the regions of the cloud
+     */
+    public @Nonnull Results<VirtualMachine> listVirtualMachines(@Nullable Collection<String> regionIds) throws CloudException, InternalException {
+        return list(regionIds, new RegionalListing<VirtualMachine>() {
+            public @Nonnull Iterable<VirtualMachine> list(@Nonnull String regionId) throws CloudException, InternalException {
+                ArrayList<VirtualMachine> vms = new ArrayList<VirtualMachine>();
+
+                for( VirtualMachine vm : provider.getComputeServices().getVirtualMachineSupport().listVirtualMachines() ) {
+                    vm.setProviderRegionId(regionId);
+                    vms.add(vm);
+                }
+                return vms;
+            }
+        });
+    }
+
+    /**
+     * Lists the volumes in the specified regions concurrently.
+     * @param regionIds the regions to list, or <code>null</code> for every region
+     * @return the merged stream of volumes
+     * @throws CloudException an error occurred listing the regions of the cloud
+     * @throws InternalException an error occurred within Dasein Cloud listing the regions of the cloud
+     */
+    public @Nonnull Results<Volume> listVolumes(@Nullable Collection<String> regionIds) throws CloudException, InternalException {
+        return list(regionIds, new RegionalListing<Volume>() {
+            public @Nonnull Iterable<Volume> list(@Nonnull String regionId) throws CloudException, InternalException {
+                ArrayList<Volume> volumes = new ArrayList<Volume>();
+
+                for( Volume volume : provider.getComputeServices().getVolumeSupport().listVolumes() ) {
+                    volume.setProviderRegionId(regionId);
+                    volumes.add(volume);
+                }
+                return volumes;
+            }
+        });
+    }
+
+    /**
+     * Lists the snapshots available to this account in the specified regions concurrently.
+     * @param regionIds the regions to list, or <code>null</code> for every region
+     * @return the merged stream of snapshots
+     * @throws CloudException an error occurred listing the regions of the cloud
+     * @throws InternalException an error occurred within Dasein Cloud listing the regions of the cloud
+     */
+    public @Nonnull Results<Snapshot> listSnapshots(@Nullable Collection<String> regionIds) throws CloudException, InternalException {
+        return list(regionIds, new RegionalListing<Snapshot>() {
+            public @Nonnull Iterable<Snapshot> list(@Nonnull String regionId) throws CloudException, InternalException {
+                ArrayList<Snapshot> snapshots = new ArrayList<Snapshot>();
+
+                for( Snapshot snapshot : provider.getComputeServices().getSnapshotSupport().listSnapshots() ) {
+                    snapshot.setRegionId(regionId);
+                    snapshots.add(snapshot);
+                }
+                return snapshots;
+            }
+        });
+    }
+
+    /**
+     * Lists the IPv4 address pool in the specified regions concurrently.
+     * @param regionIds the regions to list, or <code>null</code> for every region
+     * @return the merged stream of addresses
+     * @throws CloudException an error occurred listing the regions of the cloud
+     * @throws InternalException an error occurred within Dasein Cloud listing the regions of the cloud
+     */
+    public @Nonnull Results<IpAddress> listIpPool(@Nullable Collection<String> regionIds) throws CloudException, InternalException {
+        return list(regionIds, new RegionalListing<IpAddress>() {
+            public @Nonnull Iterable<IpAddress> list(@Nonnull String regionId) throws CloudException, InternalException {
+                ArrayList<IpAddress> addresses = new ArrayList<IpAddress>();
+
+                for( IpAddress address : provider.getNetworkServices().getIpAddressSupport().listIpPool(IPVersion.IPV4, false) ) {
+                    address.setRegionId(regionId);
+                    addresses.add(address);
+                }
+                return addresses;
+            }
+        });
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+
+/**
+ * Coalesces concurrent lookups of single resources by ID. Distinct IDs requested within a short window are loaded
+ * together with one batched describe call. The first caller in a window waits out the window and performs the load
+ * on its own thread, so no background threads are involved. Every caller receives an instance of its own, which it
+ * may modify freely, so a second request for an ID already in the window closes the window and opens the next.
+ * @param <T> the type of resource being loaded
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class RequestCoalescer<T> {
+    static public final long DEFAULT_WINDOW = 5L;
+
+    /**
+     * Loads a batch of resources in one call.
+     * @param <T> the type of resource being loaded
+     */
+    static public interface BatchLoader<T> {
+        /**
+         * @param ids the IDs of the resources to load
+         * @return the resources found, keyed by ID; resources that do not exist are omitted
+         * @throws CloudException an error occurred with the cloud provider while loading the resources
+         * @throws InternalException an error occurred within Dasein Cloud while loading the resources
+         */
+        public @Nonnull Map<String,T> load(@Nonnull Collection<String> ids) throws CloudException, InternalException;
+    }
+
+    static private class Call<T> extends FutureTask<T> {
+        Call() {
+            super(new Callable<T>() {
+                public T call() {
+                    return null;
+                }
+            });
+        }
+
+        void succeed(@Nullable T result) {
+            set(result);
+        }
+
+        void fail(@Nonnull Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    private class Batch {
+        LinkedHashMap<String,Call<T>> calls = new LinkedHashMap<String,Call<T>>();
+    }
+
+    private Batch          current  = null;
+    private BatchLoader<T> loader;
+    private int            maxBatch;
+    private long           window;
+
+    /**
+     * @param loader the loader that describes a batch of resources
+     * @param window the time in milliseconds to wait for further requests before loading
+     * @param maxBatch the maximum number of IDs to load in one call
+     */
+    public RequestCoalescer(@Nonnull BatchLoader<T> loader, @Nonnegative long window, @Nonnegative int maxBatch) {
+        this.loader = loader;
+        this.window = window;
+        this.maxBatch = (maxBatch < 1 ? 1 : maxBatch);
+    }
+
+    /**
+     * Loads the specified resource, batching the call with any concurrent requests for other resources.
+     * @param id the ID of the resource to load
+     * @return the resource, or <code>null</code> if it does not exist
+     * @throws CloudException an error occurred with the cloud provider while loading the resource
+     * @throws InternalException an error occurred within Dasein Cloud while loading the resource
+     */
+    public @Nullable T get(@Nonnull String id) throws CloudException, InternalException {
+        Batch lead = null;
+        Call<T> call;
+
+        synchronized( this ) {
+            call = new Call<T>();
+            // one instance is parsed per ID in a batch, so a caller sharing an ID would share that instance
+            if( current == null || current.calls.containsKey(id) ) {
+                current = new Batch();
+                lead = current;
+            }
+            current.calls.put(id, call);
+            if( current.calls.size() >= maxBatch ) {
+                current = null;
+            }
+        }
+        if( lead != null ) {
+            load(lead);
+        }
+        try {
+            return call.get();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            Throwable cause = e.getCause();
+
+            if( cause instanceof CloudException ) {
+                throw (CloudException)cause;
+            }
+            if( cause instanceof InternalException ) {
+                throw (InternalException)cause;
+            }
+            throw new InternalException(cause);
+        }
+    }
+
+    private void load(@Nonnull Batch batch) {
+        if( window > 0L ) {
+            // the other callers in the batch depend on this load, so an interrupt only cuts the window short
+            try { Thread.sleep(window); }
+            catch( InterruptedException e ) { Thread.currentThread().interrupt(); }
+        }
+        LinkedHashMap<String,Call<T>> calls;
+
+        synchronized( this ) {
+            if( current == batch ) {
+                current = null;
+            }
+            calls = new LinkedHashMap<String,Call<T>>(batch.calls);
+        }
+        try {
+            Map<String,T> results = loader.load(calls.keySet());
+
+            for( Map.Entry<String,Call<T>> entry : calls.entrySet() ) {
+                entry.getValue().succeed(results.get(entry.getKey()));
+            }
+        }
+        catch( Throwable t ) {
+            for( Call<T> call : calls.values() ) {
+                call.fail(t);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nonnegative;
+
+/**
+ * Caps the number of in-flight AWS API calls and spaces them out so that no more than a fixed number of calls
+ * start in any one second. Callers must pair every successful {@link #acquire()} with a {@link #release()}.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class RequestThrottle {
+    private final Semaphore permits;
+    private final long      interval;
+    private long            nextStart = 0L;
+
+    /**
+     * Constructs a throttle with the specified budget.
+     * @param maxConcurrent the maximum number of calls that may be in progress at once
+     * @param maxPerSecond the maximum number of calls that may start in any one second, 0 for no rate limit
+     */
+    public RequestThrottle(@Nonnegative int maxConcurrent, @Nonnegative int maxPerSecond) {
+        if( maxConcurrent < 1 ) {
+            maxConcurrent = 1;
+        }
+        permits = new Semaphore(maxConcurrent, true);
+        interval = (maxPerSecond < 1 ? 0L : (1000000000L / maxPerSecond));
+    }
+
+    /**
+     * Blocks until both a concurrency permit and a rate slot are available.
+     * @throws InterruptedException the calling thread was interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        permits.acquire();
+        if( interval < 1L ) {
+            return;
+        }
+        long wait;
+
+        synchronized( this ) {
+            long now = System.nanoTime();
+
+            if( nextStart < now ) {
+                nextStart = now;
+            }
+            wait = nextStart - now;
+            nextStart += interval;
+        }
+        if( wait > 0L ) {
+            try {
+                Thread.sleep(wait / 1000000L, (int)(wait % 1000000L));
+            }
+            catch( InterruptedException e ) {
+                permits.release();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns a concurrency permit obtained through {@link #acquire()}.
+     */
+    public void release() {
+        permits.release();
+    }
+}
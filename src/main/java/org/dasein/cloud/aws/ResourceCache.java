@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A short-lived, name-indexed cache of the resources of one type in one region. Entries are stored as they are
+ * described or listed and expire after a fixed time to live. Once a complete listing has been stored, the cache can
+ * also answer listings, and lookups of names absent from that listing, until the listing expires. Any change made
+ * through Dasein Cloud should invalidate the affected name so that the next read goes back to the cloud.
+ * @param <T> the type of resource cached
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class ResourceCache<T> {
+    static public final long DEFAULT_TTL = 30000L;
+
+    static private class Entry<T> {
+        T    item;
+        long stored;
+
+        Entry(T item, long stored) {
+            this.item = item;
+            this.stored = stored;
+        }
+    }
+
+    private final HashMap<String,Entry<T>> entries    = new HashMap<String,Entry<T>>();
+    private long                           generation = 0L;
+    private long                           listedAt   = -1L;
+    private long                           ttl;
+
+    /**
+     * @param ttl the number of milliseconds for which an entry is served
+     */
+    public ResourceCache(@Nonnegative long ttl) {
+        this.ttl = ttl;
+    }
+
+    private boolean isFresh(long timestamp) {
+        return (timestamp >= 0 && System.currentTimeMillis() - timestamp < ttl);
+    }
+
+    private boolean isListed() {
+        return isFresh(listedAt);
+    }
+
+    /**
+     * Removes every entry along with any complete listing.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        listedAt = -1L;
+        generation++;
+    }
+
+    /**
+     * @param name the name of the resource
+     * @return the cached resource, or <code>null</code> if it is not cached or has expired
+     */
+    public synchronized @Nullable T get(@Nonnull String name) {
+        Entry<T> entry = entries.get(name);
+
+        if( entry == null || !isFresh(entry.stored) ) {
+            return null;
+        }
+        return entry.item;
+    }
+
+    /**
+     * @return the number of times the cache has been invalidated or cleared; a listing captures it when it starts so
+     * that a listing overtaken by a change is not recorded as complete
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the number of milliseconds for which an entry is served
+     */
+    public synchronized long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Removes the named resource and discards any complete listing, since the listing no longer reflects the cloud.
+     * @param name the name of the resource that changed
+     */
+    public synchronized void invalidate(@Nonnull String name) {
+        entries.remove(name);
+        listedAt = -1L;
+        generation++;
+    }
+
+    /**
+     * Indicates whether the named resource is known not to exist because a complete listing that did not include it
+     * is still fresh.
+     * @param name the name of the resource
+     * @return true if the resource is known not to exist
+     */
+    public synchronized boolean isKnownMissing(@Nonnull String name) {
+        if( !isListed() ) {
+            return false;
+        }
+        Entry<T> entry = entries.get(name);
+
+        return (entry == null || entry.stored < listedAt);
+    }
+
+    /**
+     * @return the resources of the last complete listing, or <code>null</code> if there is none or it has expired
+     */
+    public synchronized @Nullable List<T> list() {
+        if( !isListed() ) {
+            return null;
+        }
+        ArrayList<T> list = new ArrayList<T>();
+
+        for( Entry<T> entry : entries.values() ) {
+            if( entry.stored >= listedAt ) {
+                list.add(entry.item);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Records that a listing started at the specified time has been stored in full. Entries stored before that
+     * time are treated as no longer existing until they are stored again. A listing during which the cache was
+     * invalidated is ignored, since it may have missed the change.
+     * @param started the time at which the listing was started
+     * @param generation the generation of the cache when the listing was started, as returned by {@link #getGeneration()}
+     */
+    public synchronized void markListed(long started, long generation) {
+        if( generation != this.generation ) {
+            return;
+        }
+        listedAt = started;
+        for( Map.Entry<String,Entry<T>> entry : new ArrayList<Map.Entry<String,Entry<T>>>(entries.entrySet()) ) {
+            if( entry.getValue().stored < started ) {
+                entries.remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @param name the name of the resource
+     * @param item the current state of the resource
+     */
+    public synchronized void put(@Nonnull String name, @Nonnull T item) {
+        entries.put(name, new Entry<T>(item, System.currentTimeMillis()));
+    }
+
+    /**
+     * @param ttl the number of milliseconds for which an entry is served; 0 disables the cache
+     */
+    public synchronized void setTtl(@Nonnegative long ttl) {
+        this.ttl = ttl;
+    }
+}
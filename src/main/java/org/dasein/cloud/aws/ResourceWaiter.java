@@ -0,0 +1,496 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.compute.EC2Exception;
+import org.dasein.cloud.aws.compute.EC2Method;
+import org.dasein.util.CalendarWrapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Waits on the state of many cloud resources at once. Outstanding waits are grouped by resource type and each
+ * group is polled with a single batched describe call per tick, so a hundred callers waiting on a hundred instances
+ * cost one <code>DescribeInstances</code> call per tick rather than a hundred. The polling interval starts short,
+ * backs off while nothing changes and drops back whenever a state changes or a new wait is registered.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class ResourceWaiter {
+    static private final Logger logger = AWSCloud.getLogger(ResourceWaiter.class);
+
+    static public final long DEFAULT_TIMEOUT  = 30L * CalendarWrapper.MINUTE;
+    static public final long NO_TIMEOUT       = Long.MAX_VALUE;
+    static public final long MINIMUM_INTERVAL = 2000L;
+    static public final long MAXIMUM_INTERVAL = 30000L;
+
+    static public final String BUNDLE       = "bundle";
+    static public final String DATABASE     = "database";
+    static public final String DISTRIBUTION = "distribution";
+    static public final String INSTANCE     = "instance";
+    static public final String SNAPSHOT     = "snapshot";
+    static public final String VOLUME       = "volume";
+
+    static private final int BATCH_SIZE = 100;
+
+    /**
+     * Loads the current state of a batch of resources of one type.
+     * @param <T> the type used to describe a resource's state
+     */
+    static public interface StatePoller<T> {
+        /**
+         * Describes the current state of each of the specified resources.
+         * @param resourceIds the resources to describe
+         * @return the state of each resource found, keyed by resource ID; resources that do not exist are omitted
+         * @throws CloudException an error occurred with the cloud provider while describing the resources
+         * @throws InternalException an error occurred within Dasein Cloud while describing the resources
+         */
+        public @Nonnull Map<String,T> poll(@Nonnull Collection<String> resourceIds) throws CloudException, InternalException;
+    }
+
+    /**
+     * Decides whether a wait is over and is told how it ended.
+     * @param <T> the type used to describe a resource's state
+     */
+    static public abstract class WaitCondition<T> {
+        /**
+         * Examines the latest state of the resource.
+         * @param resourceId the resource being waited on
+         * @param current the current state, or <code>null</code> if the resource was not found
+         * @return true if the wait is over
+         * @throws CloudException the resource reached a state from which the target cannot be reached
+         * @throws InternalException an error occurred within Dasein Cloud while examining the state
+         */
+        public abstract boolean isSatisfied(@Nonnull String resourceId, @Nullable T current) throws CloudException, InternalException;
+
+        /**
+         * Called on the waiter thread once {@link #isSatisfied(String, Object)} returns true.
+         * @param resourceId the resource that was waited on
+         * @param result the final state
+         */
+        public void completed(@Nonnull String resourceId, @Nullable T result) { }
+
+        /**
+         * Called on the waiter thread if the wait fails or times out.
+         * @param resourceId the resource that was waited on
+         * @param cause the reason for the failure
+         */
+        public void failed(@Nonnull String resourceId, @Nonnull Throwable cause) { }
+    }
+
+    /**
+     * A wait condition satisfied when a resource's state is one of a set of target states and failed when it is one
+     * of a set of failure states.
+     */
+    static public class StateCondition extends WaitCondition<String> {
+        private Set<String> failures;
+        private boolean     missingSatisfies;
+        private Set<String> targets;
+
+        /**
+         * @param targets the states that end the wait
+         * @param failures the states from which none of the targets can be reached
+         * @param missingSatisfies true if the resource disappearing also ends the wait (for example, when waiting for
+         * a deletion)
+         */
+        public StateCondition(@Nonnull String[] targets, @Nonnull String[] failures, boolean missingSatisfies) {
+            this.targets = new HashSet<String>(Arrays.asList(targets));
+            this.failures = new HashSet<String>(Arrays.asList(failures));
+            this.missingSatisfies = missingSatisfies;
+        }
+
+        public boolean isSatisfied(@Nonnull String resourceId, @Nullable String current) throws CloudException {
+            if( current == null ) {
+                return missingSatisfies;
+            }
+            if( targets.contains(current) ) {
+                return true;
+            }
+            if( failures.contains(current) ) {
+                throw new CloudException(resourceId + " entered the state " + current + " while waiting for " + targets);
+            }
+            return false;
+        }
+    }
+
+    static private class Waiting<T> extends FutureTask<T> {
+        WaitCondition<T> condition;
+        T                last;
+        String           resourceId;
+        long             timeout;
+
+        Waiting(@Nonnull String resourceId, @Nonnull WaitCondition<T> condition, long timeout) {
+            super(new Callable<T>() {
+                public T call() {
+                    return null;
+                }
+            });
+            this.resourceId = resourceId;
+            this.condition = condition;
+            this.timeout = timeout;
+        }
+
+        void succeed(@Nullable T result) {
+            set(result);
+            condition.completed(resourceId, result);
+        }
+
+        void fail(@Nonnull Throwable cause) {
+            setException(cause);
+            condition.failed(resourceId, cause);
+        }
+    }
+
+    private class Group implements Runnable {
+        long                 interval  = MINIMUM_INTERVAL;
+        StatePoller<Object>  poller;
+        String               regionId;
+        boolean              scheduled = false;
+        String               type;
+        List<Waiting<Object>> waits    = new ArrayList<Waiting<Object>>();
+
+        Group(@Nonnull String type, @Nullable String regionId, @Nonnull StatePoller<Object> poller) {
+            this.type = type;
+            this.regionId = regionId;
+            this.poller = poller;
+        }
+
+        public void run() {
+            String previous = AWSCloud.getRegionOverride();
+
+            try {
+                // the waiter thread does not inherit the region of the waits
+                AWSCloud.setRegionOverride(regionId);
+                poll();
+            }
+            finally {
+                AWSCloud.setRegionOverride(previous);
+            }
+        }
+
+        private void poll() {
+            ArrayList<Waiting<Object>> current;
+
+            synchronized( this ) {
+                current = new ArrayList<Waiting<Object>>(waits);
+            }
+            HashSet<String> ids = new HashSet<String>();
+
+            for( Waiting<Object> w : current ) {
+                ids.add(w.resourceId);
+            }
+            HashMap<String,Object> states = new HashMap<String,Object>();
+            Throwable error = null;
+            ArrayList<String> batch = new ArrayList<String>();
+            Iterator<String> it = ids.iterator();
+
+            while( it.hasNext() ) {
+                batch.add(it.next());
+                if( batch.size() >= BATCH_SIZE || !it.hasNext() ) {
+                    try {
+                        states.putAll(poller.poll(batch));
+                    }
+                    catch( Throwable t ) {
+                        logger.warn("Unable to poll " + type + " state: " + t.getMessage());
+                        error = t;
+                    }
+                    batch = new ArrayList<String>();
+                }
+            }
+            boolean changed = false;
+            long now = System.currentTimeMillis();
+
+            for( Waiting<Object> w : current ) {
+                boolean done = false;
+
+                if( error == null || states.containsKey(w.resourceId) ) {
+                    Object state = states.get(w.resourceId);
+
+                    if( state == null ? w.last != null : !state.equals(w.last) ) {
+                        changed = true;
+                    }
+                    w.last = state;
+                    try {
+                        if( w.condition.isSatisfied(w.resourceId, state) ) {
+                            w.succeed(state);
+                            done = true;
+                        }
+                    }
+                    catch( Throwable t ) {
+                        w.fail(t);
+                        done = true;
+                    }
+                }
+                if( !done && (w.isCancelled() || now > w.timeout) ) {
+                    if( !w.isCancelled() ) {
+                        w.fail(new CloudException("Timed out waiting on " + type + " " + w.resourceId));
+                    }
+                    done = true;
+                }
+                if( done ) {
+                    synchronized( this ) {
+                        waits.remove(w);
+                    }
+                }
+            }
+            synchronized( this ) {
+                if( changed ) {
+                    interval = MINIMUM_INTERVAL;
+                }
+                else {
+                    interval = Math.min((interval * 3L) / 2L, MAXIMUM_INTERVAL);
+                }
+                if( waits.isEmpty() ) {
+                    scheduled = false;
+                    provider.release();
+                }
+                else {
+                    getScheduler().schedule(this, interval, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        synchronized void add(@Nonnull Waiting<Object> w) {
+            waits.add(w);
+            interval = MINIMUM_INTERVAL;
+            if( !scheduled ) {
+                scheduled = true;
+                provider.hold();
+                getScheduler().schedule(this, MINIMUM_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private HashMap<String,Group> groups = new HashMap<String,Group>();
+    private AWSCloud              provider;
+
+    ResourceWaiter(@Nonnull AWSCloud provider) {
+        this.provider = provider;
+    }
+
+    private @Nonnull ScheduledExecutorService getScheduler() {
+        return provider.getExecutors().getScheduler(ManagedExecutors.WAITER);
+    }
+
+    /**
+     * Waits for a resource using a caller-supplied poller. All waits registered under the same type from the same
+     * region share the poller first registered for them and are polled together in that region.
+     * @param type a name identifying the resource type, such as {@link #INSTANCE}
+     * @param poller the poller for resources of this type
+     * @param resourceId the resource to wait on
+     * @param condition the condition that ends the wait
+     * @param timeout the maximum time to wait in milliseconds, or {@link #NO_TIMEOUT} to wait until the condition is met
+     * @param <T> the type used to describe a resource's state
+     * @return a future that completes with the final state, or with an exception if the wait failed or timed out
+     */
+    @SuppressWarnings("unchecked")
+    public @Nonnull <T> Future<T> waitFor(@Nonnull String type, @Nonnull StatePoller<T> poller, @Nonnull String resourceId, @Nonnull WaitCondition<T> condition, @Nonnegative long timeout) {
+        long now = System.currentTimeMillis();
+        Waiting<T> w = new Waiting<T>(resourceId, condition, (timeout > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeout));
+        String regionId = AWSCloud.getRegionOverride();
+        String key = type + "@" + regionId;
+        Group group;
+
+        synchronized( groups ) {
+            group = groups.get(key);
+            if( group == null ) {
+                group = new Group(type, regionId, (StatePoller<Object>)poller);
+                groups.put(key, group);
+            }
+        }
+        group.add((Waiting<Object>)w);
+        return w;
+    }
+
+    /**
+     * Waits for an EC2 instance to reach one of the specified states (pending, running, shutting-down, terminated,
+     * stopping, stopped).
+     * @param instanceId the instance to wait on
+     * @param targetStates the states that end the wait
+     * @return a future that completes with the state reached
+     */
+    public @Nonnull Future<String> waitForInstance(@Nonnull String instanceId, @Nonnull String ... targetStates) {
+        boolean deleting = Arrays.asList(targetStates).contains("terminated");
+
+        return waitFor(INSTANCE, new DescribePoller(EC2Method.DESCRIBE_INSTANCES, "InstanceId", "instance-id", "instancesSet", "instanceId"), instanceId, new StateCondition(targetStates, deleting ? new String[0] : new String[] { "terminated" }, deleting), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Waits for an EBS snapshot to reach one of the specified states (pending, completed, error).
+     * @param snapshotId the snapshot to wait on
+     * @param targetStates the states that end the wait
+     * @return a future that completes with the state reached
+     */
+    public @Nonnull Future<String> waitForSnapshot(@Nonnull String snapshotId, @Nonnull String ... targetStates) {
+        return waitForSnapshot(snapshotId, new StateCondition(targetStates, new String[] { "error" }, false), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Waits for an EBS snapshot using a caller-supplied condition, for callers that need to be told when the wait
+     * ends rather than block on the future.
+     * @param snapshotId the snapshot to wait on
+     * @param condition the condition that ends the wait
+     * @param timeout the maximum time to wait in milliseconds
+     * @return a future that completes with the state reached
+     */
+    public @Nonnull Future<String> waitForSnapshot(@Nonnull String snapshotId, @Nonnull WaitCondition<String> condition, @Nonnegative long timeout) {
+        return waitFor(SNAPSHOT, new DescribePoller(EC2Method.DESCRIBE_SNAPSHOTS, "SnapshotId", "snapshot-id", "snapshotSet", "snapshotId"), snapshotId, condition, timeout);
+    }
+
+    /**
+     * Waits for an EBS volume to reach one of the specified states (creating, available, in-use, deleting, deleted,
+     * error).
+     * @param volumeId the volume to wait on
+     * @param targetStates the states that end the wait
+     * @return a future that completes with the state reached
+     */
+    public @Nonnull Future<String> waitForVolume(@Nonnull String volumeId, @Nonnull String ... targetStates) {
+        boolean deleting = Arrays.asList(targetStates).contains("deleted");
+
+        return waitFor(VOLUME, new DescribePoller(EC2Method.DESCRIBE_VOLUMES, "VolumeId", "volume-id", "volumeSet", "volumeId"), volumeId, new StateCondition(targetStates, new String[] { "error" }, deleting), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Polls the state of EC2 instances, volumes or snapshots with a single describe call. Against AWS the IDs are
+     * passed as a filter so that one missing resource does not fail the whole batch with a <code>NotFound</code>
+     * error.
+     */
+    private class DescribePoller implements StatePoller<String> {
+        private String action;
+        private String filterName;
+        private String idElement;
+        private String idParameter;
+        private String setElement;
+
+        DescribePoller(@Nonnull String action, @Nonnull String idParameter, @Nonnull String filterName, @Nonnull String setElement, @Nonnull String idElement) {
+            this.action = action;
+            this.setElement = setElement;
+            this.idParameter = idParameter;
+            this.filterName = filterName;
+            this.idElement = idElement;
+        }
+
+        public @Nonnull Map<String,String> poll(@Nonnull Collection<String> resourceIds) throws CloudException, InternalException {
+            Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), action);
+            HashMap<String,String> states = new HashMap<String,String>();
+            EC2Method method;
+            Document doc;
+            int i = 1;
+
+            if( provider.getEC2Provider().isAWS() ) {
+                parameters.put("Filter.1.Name", filterName);
+                for( String id : resourceIds ) {
+                    parameters.put("Filter.1.Value." + (i++), id);
+                }
+            }
+            else {
+                for( String id : resourceIds ) {
+                    parameters.put(idParameter + "." + (i++), id);
+                }
+            }
+            method = new EC2Method(provider, provider.getEc2Url(), parameters);
+            try {
+                doc = method.invoke();
+            }
+            catch( EC2Exception e ) {
+                String code = e.getCode();
+
+                if( code != null && code.endsWith(".NotFound") ) {
+                    // one missing ID fails the whole batch, so only a lone ID may be taken as missing
+                    if( resourceIds.size() > 1 ) {
+                        for( String id : resourceIds ) {
+                            states.putAll(poll(Collections.singletonList(id)));
+                        }
+                    }
+                    return states;
+                }
+                logger.error(e.getSummary());
+                throw new CloudException(e);
+            }
+            NodeList blocks = doc.getElementsByTagName(idElement);
+
+            for( int j=0; j<blocks.getLength(); j++ ) {
+                Node idNode = blocks.item(j);
+                Node item = idNode.getParentNode();
+
+                if( !idNode.hasChildNodes() || item == null || !item.getNodeName().equals("item") ) {
+                    continue;
+                }
+                if( item.getParentNode() == null || !item.getParentNode().getNodeName().equals(setElement) ) {
+                    continue;
+                }
+                String id = idNode.getFirstChild().getNodeValue().trim();
+                String state = toState(item);
+
+                if( state != null ) {
+                    states.put(id, state);
+                }
+            }
+            return states;
+        }
+
+        private @Nullable String toState(@Nonnull Node item) {
+            NodeList attributes = item.getChildNodes();
+
+            for( int k=0; k<attributes.getLength(); k++ ) {
+                Node attr = attributes.item(k);
+
+                if( attr.getNodeName().equals("status") && attr.hasChildNodes() ) {
+                    return attr.getFirstChild().getNodeValue().trim();
+                }
+                else if( attr.getNodeName().equals("instanceState") ) {
+                    NodeList parts = attr.getChildNodes();
+
+                    for( int l=0; l<parts.getLength(); l++ ) {
+                        Node part = parts.item(l);
+
+                        if( part.getNodeName().equals("name") && part.hasChildNodes() ) {
+                            return part.getFirstChild().getNodeValue().trim();
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
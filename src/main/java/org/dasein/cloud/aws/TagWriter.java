@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.Tag;
+import org.dasein.cloud.aws.compute.EC2Exception;
+import org.dasein.cloud.aws.compute.EC2Method;
+
+/**
+ * Queues tag writes and coalesces them into <code>CreateTags</code> calls. Writes with identical tags that arrive
+ * within a short window are sent together with many <code>ResourceId.N</code> entries. Because EC2 rejects the whole
+ * call when any one resource is not yet visible, a batch that fails with a <code>NotFound</code> error is split and
+ * each resource is retried on its own with exponential backoff. Writes are sent to the region their callers were
+ * directed at.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class TagWriter {
+    static private final Logger logger = AWSCloud.getLogger(TagWriter.class);
+
+    static public final int  BATCH_SIZE      = 100;
+    static public final long WINDOW          = 50L;
+
+    static private final long INITIAL_BACKOFF = 1000L;
+    static private final long MAXIMUM_BACKOFF = 30000L;
+    static private final int  MAXIMUM_TRIES   = 8;
+
+    private class PendingWrite extends FutureTask<Boolean> {
+        int     attempts = 0;
+        long    backoff  = INITIAL_BACKOFF;
+        String  key;
+        String  regionId;
+        String  resourceId;
+        boolean solo     = false;
+        Tag[]   tags;
+
+        PendingWrite(@Nonnull String resourceId, @Nonnull Tag[] tags) {
+            super(new Callable<Boolean>() {
+                public Boolean call() {
+                    return Boolean.TRUE;
+                }
+            });
+            StringBuilder str = new StringBuilder();
+
+            // the writer's thread has no region of its own, so each write remembers its caller's
+            this.regionId = AWSCloud.getRegionOverride();
+            str.append(regionId);
+            str.append('\u0000');
+            for( Tag t : tags ) {
+                str.append(t.getKey());
+                str.append('\u0000');
+                str.append(t.getValue());
+                str.append('\u0000');
+            }
+            this.key = str.toString();
+            this.resourceId = resourceId;
+            this.tags = tags;
+        }
+
+        void succeed() {
+            set(Boolean.TRUE);
+            provider.release();
+        }
+
+        void fail(@Nonnull Throwable cause) {
+            logger.error("Unable to set tags for " + resourceId + ": " + cause.getMessage());
+            setException(cause);
+            provider.release();
+        }
+    }
+
+    private boolean                                  flushScheduled = false;
+    private LinkedHashMap<String,List<PendingWrite>> pending        = new LinkedHashMap<String,List<PendingWrite>>();
+    private AWSCloud                                 provider;
+
+    TagWriter(@Nonnull AWSCloud provider) {
+        this.provider = provider;
+    }
+
+    private @Nonnull ScheduledExecutorService getScheduler() {
+        return provider.getExecutors().getScheduler(ManagedExecutors.TAGS);
+    }
+
+    /**
+     * Queues the specified tags for writing to the specified resource.
+     * @param resourceId the resource to tag
+     * @param tags the tags to write
+     * @return a future that yields true once the tags are written, or fails with a {@link CloudException}
+     */
+    public @Nonnull Future<Boolean> write(@Nonnull String resourceId, @Nonnull Tag ... tags) {
+        PendingWrite w = new PendingWrite(resourceId, tags);
+
+        provider.hold();
+        if( tags.length < 1 ) {
+            w.succeed();
+        }
+        else {
+            enqueue(w);
+        }
+        return w;
+    }
+
+    private void enqueue(@Nonnull PendingWrite w) {
+        synchronized( pending ) {
+            List<PendingWrite> writes = pending.get(w.key);
+
+            if( writes == null ) {
+                writes = new ArrayList<PendingWrite>();
+                pending.put(w.key, writes);
+            }
+            writes.add(w);
+            if( !flushScheduled ) {
+                flushScheduled = true;
+                getScheduler().schedule(new Runnable() {
+                    public void run() {
+                        flush();
+                    }
+                }, WINDOW, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        ArrayList<List<PendingWrite>> groups;
+
+        synchronized( pending ) {
+            groups = new ArrayList<List<PendingWrite>>(pending.values());
+            pending.clear();
+            flushScheduled = false;
+        }
+        for( List<PendingWrite> writes : groups ) {
+            ArrayList<PendingWrite> batch = new ArrayList<PendingWrite>();
+
+            for( PendingWrite w : writes ) {
+                if( w.solo ) {
+                    ArrayList<PendingWrite> single = new ArrayList<PendingWrite>();
+
+                    single.add(w);
+                    send(single);
+                    continue;
+                }
+                batch.add(w);
+                if( batch.size() >= BATCH_SIZE ) {
+                    send(batch);
+                    batch = new ArrayList<PendingWrite>();
+                }
+            }
+            if( !batch.isEmpty() ) {
+                send(batch);
+            }
+        }
+    }
+
+    private void send(@Nonnull List<PendingWrite> batch) {
+        String previous = AWSCloud.getRegionOverride();
+
+        try {
+            // every write in a batch shares the region, which is part of the key
+            AWSCloud.setRegionOverride(batch.get(0).regionId);
+            sendInRegion(batch);
+        }
+        finally {
+            AWSCloud.setRegionOverride(previous);
+        }
+    }
+
+    private void sendInRegion(@Nonnull List<PendingWrite> batch) {
+        Tag[] tags = batch.get(0).tags;
+        EC2Method method;
+
+        try {
+            Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), "CreateTags");
+
+            for( int i=0; i<batch.size(); i++ ) {
+                parameters.put("ResourceId." + (i+1), batch.get(i).resourceId);
+            }
+            for( int i=0; i<tags.length; i++ ) {
+                String value = tags[i].getValue();
+
+                parameters.put("Tag." + (i+1) + ".Key", tags[i].getKey());
+                parameters.put("Tag." + (i+1) + ".Value", value == null ? "" : value);
+            }
+            method = new EC2Method(provider, provider.getEc2Url(), parameters);
+            method.invoke();
+        }
+        catch( EC2Exception e ) {
+            String code = e.getCode();
+
+            if( code != null && code.endsWith(".NotFound") ) {
+                for( PendingWrite w : batch ) {
+                    if( batch.size() > 1 ) {
+                        // not knowing which resource is missing, try each on its own right away
+                        w.solo = true;
+                        enqueue(w);
+                    }
+                    else {
+                        retry(w, e);
+                    }
+                }
+                return;
+            }
+            for( PendingWrite w : batch ) {
+                w.fail(new CloudException(e));
+            }
+            return;
+        }
+        catch( Throwable t ) {
+            for( PendingWrite w : batch ) {
+                w.fail(t);
+            }
+            return;
+        }
+        for( PendingWrite w : batch ) {
+            w.succeed();
+        }
+    }
+
+    private void retry(final @Nonnull PendingWrite w, @Nonnull EC2Exception cause) {
+        if( ++w.attempts >= MAXIMUM_TRIES ) {
+            w.fail(new CloudException(cause));
+            return;
+        }
+        if( logger.isDebugEnabled() ) {
+            logger.debug(w.resourceId + " not yet visible, retrying tags in " + w.backoff + "ms");
+        }
+        getScheduler().schedule(new Runnable() {
+            public void run() {
+                enqueue(w);
+            }
+        }, w.backoff, TimeUnit.MILLISECONDS);
+        w.backoff = Math.min(w.backoff * 2L, MAXIMUM_BACKOFF);
+    }
+}
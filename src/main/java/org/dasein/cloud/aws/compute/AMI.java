@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 
@@ -35,6 +37,12 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.CloudProvider;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.ConcurrentListing;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.RequestCoalescer;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.aws.storage.S3Method;
 import org.dasein.cloud.compute.Architecture;
 import org.dasein.cloud.compute.MachineImage;
@@ -46,18 +54,20 @@ import org.dasein.cloud.compute.Platform;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.storage.Blob;
 import org.dasein.util.CalendarWrapper;
-import org.dasein.util.Jiterator;
-import org.dasein.util.JiteratorPopulator;
-import org.dasein.util.PopulatorThread;
 import org.dasein.util.uom.storage.Storage;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class AMI implements MachineImageSupport {
 	static private final Logger logger = Logger.getLogger(AMI.class);
+
+    static private final int PAGE_SIZE = 1000;
+
+    static private volatile boolean pagingSupported = true;
 	
 	private AWSCloud provider = null;
 	
@@ -191,6 +201,84 @@ public class AMI implements MachineImageSupport {
         }
     }
     
+    /**
+     * Looks up a known set of machine images. The IDs are split into chunks that are described concurrently.
+     * @param imageIds the images to look up
+     * @return the images found, together with the IDs that are missing or whose lookup failed
+     * @throws InternalException an error occurred within Dasein Cloud while waiting on the lookups
+     * @throws CloudException an error occurred listing images in a cloud without filter support
+     */
+    public @Nonnull BulkLookup<MachineImage> getMachineImages(@Nonnull Collection<String> imageIds) throws InternalException, CloudException {
+        if( !provider.getEC2Provider().isAWS() ) {
+            final HashMap<String,MachineImage> all = new HashMap<String,MachineImage>();
+
+            for( MachineImage image : listMachineImages() ) {
+                all.put(image.getProviderMachineImageId(), image);
+            }
+            return BulkLookup.lookup(provider, imageIds, imageIds.size(), new RequestCoalescer.BatchLoader<MachineImage>() {
+                public @Nonnull Map<String,MachineImage> load(@Nonnull Collection<String> ids) {
+                    return all;
+                }
+            });
+        }
+        return BulkLookup.lookup(provider, imageIds, BulkLookup.DEFAULT_CHUNK_SIZE, new RequestCoalescer.BatchLoader<MachineImage>() {
+            public @Nonnull Map<String,MachineImage> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadMachineImages(ids);
+            }
+        });
+    }
+
+    /**
+     * Describes the specified images with a single <code>DescribeImages</code> call filtered on the image IDs, so
+     * IDs that do not exist are simply absent from the results.
+     * @param imageIds the images to describe
+     * @return the images found, keyed by image ID
+     * @throws InternalException an error occurred within Dasein Cloud while describing the images
+     * @throws CloudException an error occurred with the cloud provider while describing the images
+     */
+    @Nonnull Map<String,MachineImage> loadMachineImages(@Nonnull Collection<String> imageIds) throws InternalException, CloudException {
+        HashMap<String,MachineImage> images = new HashMap<String,MachineImage>();
+
+        if( imageIds.isEmpty() ) {
+            return images;
+        }
+        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_IMAGES);
+        NodeList blocks;
+        EC2Method method;
+        Document doc;
+        int i = 1;
+
+        parameters.put("Filter.1.Name", "image-id");
+        for( String id : imageIds ) {
+            parameters.put("Filter.1.Value." + (i++), id);
+        }
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        blocks = doc.getElementsByTagName("imagesSet");
+        for( int j=0; j<blocks.getLength(); j++ ) {
+            NodeList items = blocks.item(j).getChildNodes();
+
+            for( int k=0; k<items.getLength(); k++ ) {
+                Node item = items.item(k);
+
+                if( item.getNodeName().equals("item") ) {
+                    MachineImage image = toMachineImage(item);
+
+                    if( image != null ) {
+                        images.put(image.getProviderMachineImageId(), image);
+                    }
+                }
+            }
+        }
+        return images;
+    }
+
 	private Blob getManifest(String imageId) throws CloudException, InternalException {
         String location = getImageLocation(imageId);
         
@@ -219,7 +307,7 @@ public class AMI implements MachineImageSupport {
         final String fname = name;
         final String fdesc = description;
 
-        Thread t = new Thread() { 
+        provider.getExecutors().getPool(ManagedExecutors.IMAGING).execute(new Runnable() {
             public void run() {
                 try {
                     task.completeWithResult(imageVirtualMachine(fvmId, fname, fdesc, task));
@@ -228,11 +316,7 @@ public class AMI implements MachineImageSupport {
                     task.complete(t);
                 }
             }
-        };
-        
-        t.setName("Imaging " + vmId + " as " + name);
-        t.setDaemon(true);
-        t.start();
+        });
         return task;
     }
     
@@ -319,20 +403,10 @@ public class AMI implements MachineImageSupport {
         if( blocks.getLength() < 1 ) { 
             throw new CloudException("Unable to identify the bundle task ID.");
         }
-        final String bundleId = blocks.item(0).getFirstChild().getNodeValue();
-        final AsynchronousTask<String> task = new AsynchronousTask<String>();
-        final String manifest = (directory + "/" + name + ".manifest.xml");
-        
-        Thread t = new Thread() {   
-            public void run() {
-                waitForBundle(bundleId, manifest, task);
-                
-            }
-        };
-        
-        t.setName("Bundle Task: " + manifest);
-        t.setDaemon(true);
-        t.start();
+        String bundleId = blocks.item(0).getFirstChild().getNodeValue();
+        AsynchronousTask<String> task = new AsynchronousTask<String>();
+
+        waitForBundle(bundleId, directory + "/" + name + ".manifest.xml", task);
         return task;
     }
     
@@ -383,41 +457,67 @@ public class AMI implements MachineImageSupport {
     
 	@Override
     public Collection<MachineImage> listMachineImages() throws InternalException, CloudException {
-        PopulatorThread<MachineImage> populator;
-        
-        provider.hold();
-        populator = new PopulatorThread<MachineImage>(new JiteratorPopulator<MachineImage>() {
-            public void populate(Jiterator<MachineImage> iterator) throws CloudException, InternalException {
-                try {
-                    populateImages(null, iterator);
-                }
-                finally {
-                    provider.release();
-                }
+        return new LazyListing<MachineImage>(provider, new LazyListing.PageLoader<MachineImage>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<MachineImage> page) throws CloudException, InternalException {
+                return populateImages(null, marker, page);
             }
         });
-        populator.populate();
-        return populator.getResult();
     }
 	
 	@Override
     public Collection<MachineImage> listMachineImagesOwnedBy(String owner) throws InternalException, CloudException {
-        PopulatorThread<MachineImage> populator;
         final String acct = owner;
         
-        provider.hold();
-        populator = new PopulatorThread<MachineImage>(new JiteratorPopulator<MachineImage>() {
-            public void populate(Jiterator<MachineImage> iterator) throws CloudException, InternalException {
-                try {
-                    populateImages(acct, iterator);
-                }
-                finally {
-                    provider.release();
-                }
+        return new LazyListing<MachineImage>(provider, new LazyListing.PageLoader<MachineImage>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<MachineImage> page) throws CloudException, InternalException {
+                return populateImages(acct, marker, page);
             }
         });
-        populator.populate();
-        return populator.getResult();
+    }
+
+    /**
+     * Lists the images visible under any of the specified scopes, for example "mine, plus these vendor accounts,
+     * plus those shared with me". Every scope is described at the same time, each image is handed to the caller as
+     * soon as it has been parsed, and an image that appears under more than one scope is delivered only once.
+     * Clouds other than AWS do not support scopes and are asked for every image they describe.
+     * @param owners the owners whose images are listed, such as <code>self</code>, <code>amazon</code> or an
+     * account number
+     * @param executableBy the principals whose launchable images are listed, such as <code>self</code>,
+     * <code>all</code> or an account number
+     * @return the merged stream of images, which can be iterated only once
+     * @throws CloudException an error occurred with the cloud provider while starting the listing
+     * @throws InternalException an error occurred within Dasein Cloud while starting the listing
+     */
+    public @Nonnull Iterable<MachineImage> listMachineImages(@Nonnull Collection<String> owners, @Nonnull Collection<String> executableBy) throws CloudException, InternalException {
+        ArrayList<LazyListing.PageLoader<MachineImage>> sources = new ArrayList<LazyListing.PageLoader<MachineImage>>();
+
+        if( provider.getContext() == null ) {
+            throw new CloudException("No context was set for this request");
+        }
+        if( !provider.getEC2Provider().isAWS() ) {
+            sources.add(getScopeLoader(null, null));
+        }
+        else {
+            for( String owner : new LinkedHashSet<String>(owners) ) {
+                sources.add(getScopeLoader("Owner", owner));
+            }
+            for( String principal : new LinkedHashSet<String>(executableBy) ) {
+                sources.add(getScopeLoader("ExecutableBy", principal));
+            }
+        }
+        return new ConcurrentListing<MachineImage>(provider, sources, new ConcurrentListing.Identifier<MachineImage>() {
+            public @Nonnull String getId(@Nonnull MachineImage image) {
+                return image.getProviderMachineImageId();
+            }
+        });
+    }
+
+    private @Nonnull LazyListing.PageLoader<MachineImage> getScopeLoader(final @Nullable String scope, final @Nullable String value) {
+        return new LazyListing.PageLoader<MachineImage>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<MachineImage> page) throws CloudException, InternalException {
+                return populateImages(scope, value, marker, page);
+            }
+        };
     }
 
     @Override
@@ -551,72 +651,96 @@ public class AMI implements MachineImageSupport {
         return true;
     }
     
-	private void populateImages(String accountNumber, Jiterator<MachineImage> iterator) throws CloudException, InternalException {
-        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_IMAGES);
-        EC2Method method;
-        NodeList blocks;
-		Document doc;
+    /**
+     * Loads one page of images: the images owned by the account, then (in AWS) those it may launch. Markers take
+     * the form "scope:nextToken".
+     */
+	private @Nullable String populateImages(@Nullable String accountNumber, @Nullable String marker, @Nonnull Collection<MachineImage> page) throws CloudException, InternalException {
+        boolean executable = (marker != null && marker.startsWith("ExecutableBy:"));
+        String nextToken = null;
 
 		if( accountNumber == null ) {
 			accountNumber = provider.getContext().getAccountNumber();
 		}
-		if( provider.getEC2Provider().isAWS() ) {
-		    parameters.put("Owner", accountNumber);
+		if( marker != null ) {
+		    nextToken = marker.substring(marker.indexOf(':') + 1);
+		    if( nextToken.length() < 1 ) {
+		        nextToken = null;
+		    }
 		}
-		method = new EC2Method(provider, provider.getEc2Url(), parameters);
-        try {
-        	doc = method.invoke();
-        }
-        catch( EC2Exception e ) {
-        	logger.error(e.getSummary());
-        	throw new CloudException(e);
-        }
-        blocks = doc.getElementsByTagName("imagesSet");
-        for( int i=0; i<blocks.getLength(); i++ ) {
-        	NodeList instances = blocks.item(i).getChildNodes();
-        	
-            for( int j=0; j<instances.getLength(); j++ ) {
-            	Node instance = instances.item(j);
-            	
-            	if( instance.getNodeName().equals("item") ) {
-            		MachineImage image = toMachineImage(instance);
-            		
-            		if( image != null ) {
-            		    iterator.push(image);
-            		}
-            	}
+		if( !provider.getEC2Provider().isAWS() ) {
+		    populateImages(null, null, null, page);
+		    return null;
+		}
+		nextToken = populateImages(executable ? "ExecutableBy" : "Owner", accountNumber, nextToken, page);
+		if( nextToken != null ) {
+		    return (executable ? "ExecutableBy:" : "Owner:") + nextToken;
+		}
+        return (executable ? null : "ExecutableBy:");
+	}
+
+    /**
+     * Loads one page of the images visible under a single scope, handing each image to the page as soon as it has
+     * been parsed.
+     * @param scope the scope parameter, <code>Owner</code> or <code>ExecutableBy</code>, or <code>null</code> for
+     * every image the cloud describes by default
+     * @param value the owner or principal of the scope
+     * @param nextToken the token for the page to load, or <code>null</code> for the first page
+     * @param page the collection to which the images are added
+     * @return the token for the next page, or <code>null</code> if this was the last page
+     * @throws CloudException an error occurred with the cloud provider while describing the images
+     * @throws InternalException an error occurred within Dasein Cloud while describing the images
+     */
+    private @Nullable String populateImages(@Nullable String scope, @Nullable String value, @Nullable String nextToken, final @Nonnull Collection<MachineImage> page) throws CloudException, InternalException {
+        while( true ) {
+            Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_IMAGES);
+            boolean paged = (pagingSupported && provider.getEC2Provider().isAWS());
+            EC2Method method;
+            NodeList blocks;
+            Document doc;
+
+            if( scope != null && value != null ) {
+                parameters.put(scope, value);
+            }
+            if( paged ) {
+                parameters.put("MaxResults", String.valueOf(PAGE_SIZE));
+                if( nextToken != null ) {
+                    parameters.put("NextToken", nextToken);
+                }
             }
-        }
-        if( provider.getEC2Provider().isAWS() ) {
-            parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_IMAGES);
-            parameters.put("ExecutableBy", accountNumber);
             method = new EC2Method(provider, provider.getEc2Url(), parameters);
             try {
-                doc = method.invoke();
-            }
-            catch( EC2Exception e ) {
-                logger.error(e.getSummary());
-                throw new CloudException(e);
-            };
-            blocks = doc.getElementsByTagName("imagesSet");
-            for( int i=0; i<blocks.getLength(); i++ ) {
-                NodeList instances = blocks.item(i).getChildNodes();
-                
-                for( int j=0; j<instances.getLength(); j++ ) {
-                    Node instance = instances.item(j);
-                    
-                    if( instance.getNodeName().equals("item") ) {
-                        MachineImage image = toMachineImage(instance);
-                        
+                doc = method.invoke("imagesSet", new EC2Method.ItemHandler() {
+                    public void handle(@Nonnull Node item) throws CloudException, InternalException {
+                        MachineImage image = toMachineImage(item);
+
                         if( image != null ) {
-                            iterator.push(image);
+                            page.add(image);
                         }
                     }
+                });
+            }
+            catch( EC2Exception e ) {
+                String code = e.getCode();
+
+                if( paged && nextToken == null && code != null && (code.equals("UnknownParameter") || code.equals("InvalidParameterCombination")) ) {
+                    // the API version in use predates paged image listings
+                    pagingSupported = false;
+                    continue;
                 }
+                logger.error(e.getSummary());
+                throw new CloudException(e);
+            }
+            blocks = doc.getElementsByTagName("nextToken");
+            if( paged && blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+                String token = blocks.item(0).getFirstChild().getNodeValue().trim();
+
+                return (token.length() < 1 ? null : token);
             }
+            return null;
         }
-	}
-    
+    }
+
     @Override
     public String registerMachineImage(String atStorageLocation) throws CloudException, InternalException {
         Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.REGISTER_IMAGE);
@@ -983,95 +1107,128 @@ public class AMI implements MachineImageSupport {
         return null;
     }
     
-	private void waitForBundle(String bundleId, String manifest, AsynchronousTask<String> task) {
-		try {
-			long failurePoint = -1L;
-			
-			while( !task.isComplete() ) {
-				Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_BUNDLE_TASKS);
-		        NodeList blocks;
-				EC2Method method;
-				Document doc;
-		        
-				parameters.put("BundleId", bundleId);
-		        method = new EC2Method(provider, provider.getEc2Url(), parameters);
-		        try {
-		        	doc = method.invoke();
-		        }
-		        catch( EC2Exception e ) {
-		        	throw new CloudException(e);
-		        };
-		        blocks = doc.getElementsByTagName("bundleInstanceTasksSet");
-		        for( int i=0; i<blocks.getLength(); i++ ) {
-		        	NodeList instances = blocks.item(i).getChildNodes();
-		        	
-		            for( int j=0; j<instances.getLength(); j++ ) {
-		            	Node node = instances.item(j);
-		            	
-		            	if( node.getNodeName().equals("item") ) {
-		            		BundleTask bt = toBundleTask(node);
-		            		
-		            		if( bt.bundleId.equals(bundleId) ) {
-		            			// pending | waiting-for-shutdown | storing | canceling | complete | failed
-		            			if( bt.state.equals("complete") ) {
-		            			    String imageId;
-		            			    
-		            				task.setPercentComplete(99.0);
-		            				imageId = registerMachineImage(manifest);
-		            				task.setPercentComplete(100.00);
-		            				task.completeWithResult(imageId);
-		            			}
-		            			else if( bt.state.equals("failed") ) {
-		            				String message = bt.message;
-		            				
-		            				if( message == null ) {
-		            					if( failurePoint == -1L ) {
-		            						failurePoint = System.currentTimeMillis();
-		            					}
-		            					if( (System.currentTimeMillis() - failurePoint) > (CalendarWrapper.MINUTE * 2) ) {
-		            						message = "Bundle failed without further information.";
-		            					}
-		            				}
-		            				if( message != null ) {
-		            					task.complete(new CloudException(message));
-		            				}
-		            			}
-		            			else if( bt.state.equals("pending") || bt.state.equals("waiting-for-shutdown") ) {
-		            				task.setPercentComplete(0.0);
-		            			}
-		            			else if( bt.state.equals("bundling") ) {
-		            				double p = bt.progress/2;
+	private void waitForBundle(@Nonnull String bundleId, final @Nonnull String manifest, final @Nonnull AsynchronousTask<String> task) {
+	    ResourceWaiter.StatePoller<BundleTask> poller = new ResourceWaiter.StatePoller<BundleTask>() {
+	        public @Nonnull Map<String,BundleTask> poll(@Nonnull Collection<String> bundleIds) throws CloudException, InternalException {
+	            Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_BUNDLE_TASKS);
+	            HashMap<String,BundleTask> tasks = new HashMap<String,BundleTask>();
+	            NodeList blocks;
+	            EC2Method method;
+	            Document doc;
+	            int i = 1;
 
-		            				if( p > 50.00 ) {
-		            					p = 50.00;
-		            				}
-		            				task.setPercentComplete(p);
-		            			}
-		            			else if( bt.state.equals("storing") ) {
-		            				double p = 50.0 + bt.progress/2;
+	            for( String id : bundleIds ) {
+	                parameters.put("BundleId." + (i++), id);
+	            }
+	            method = new EC2Method(provider, provider.getEc2Url(), parameters);
+	            try {
+	                doc = method.invoke();
+	            }
+	            catch( EC2Exception e ) {
+	                logger.error(e.getSummary());
+	                throw new CloudException(e);
+	            }
+	            blocks = doc.getElementsByTagName("bundleInstanceTasksSet");
+	            for( i=0; i<blocks.getLength(); i++ ) {
+	                NodeList items = blocks.item(i).getChildNodes();
 
-		            				if( p > 100.0 ) {
-		            					p = 100.0;
-		            				}
-		            				task.setPercentComplete(p);
-		            			}
-		            			else {
-		            				task.setPercentComplete(0.0);
-		            			}
-		            		}
-		            	}
-		            }
-		        }
-		        if( !task.isComplete() ) {
-		        	try { Thread.sleep(20000L); }
-		        	catch( InterruptedException e ) { }
-		        }
-			}
-		}
-		catch( Throwable t ) {
-			logger.error(t);
-			t.printStackTrace();
-			task.complete(t);
-		}
+	                for( int j=0; j<items.getLength(); j++ ) {
+	                    Node node = items.item(j);
+
+	                    if( node.getNodeName().equals("item") ) {
+	                        BundleTask bt = toBundleTask(node);
+
+	                        if( bt.bundleId != null ) {
+	                            tasks.put(bt.bundleId, bt);
+	                        }
+	                    }
+	                }
+	            }
+	            return tasks;
+	        }
+	    };
+	    provider.getResourceWaiter().waitFor(ResourceWaiter.BUNDLE, poller, bundleId, new ResourceWaiter.WaitCondition<BundleTask>() {
+	        private long failurePoint = -1L;
+
+	        public boolean isSatisfied(@Nonnull String id, @Nullable BundleTask bt) throws CloudException, InternalException {
+	            if( bt == null ) {
+	                return false;
+	            }
+	            // pending | waiting-for-shutdown | storing | canceling | complete | failed
+	            if( bt.state.equals("complete") ) {
+	                task.setPercentComplete(99.0);
+	                return true;
+	            }
+	            else if( bt.state.equals("failed") ) {
+	                String message = bt.message;
+
+	                if( message == null ) {
+	                    if( failurePoint == -1L ) {
+	                        failurePoint = System.currentTimeMillis();
+	                    }
+	                    if( (System.currentTimeMillis() - failurePoint) > (CalendarWrapper.MINUTE * 2) ) {
+	                        message = "Bundle failed without further information.";
+	                    }
+	                }
+	                if( message != null ) {
+	                    throw new CloudException(message);
+	                }
+	            }
+	            else if( bt.state.equals("pending") || bt.state.equals("waiting-for-shutdown") ) {
+	                task.setPercentComplete(0.0);
+	            }
+	            else if( bt.state.equals("bundling") ) {
+	                double p = bt.progress/2;
+
+	                if( p > 50.00 ) {
+	                    p = 50.00;
+	                }
+	                task.setPercentComplete(p);
+	            }
+	            else if( bt.state.equals("storing") ) {
+	                double p = 50.0 + bt.progress/2;
+
+	                if( p > 100.0 ) {
+	                    p = 100.0;
+	                }
+	                task.setPercentComplete(p);
+	            }
+	            else {
+	                task.setPercentComplete(0.0);
+	            }
+	            return false;
+	        }
+
+	        public void completed(@Nonnull String id, @Nullable BundleTask bt) {
+	            final String regionId = AWSCloud.getRegionOverride();
+
+	            // registration is a remote call and must not hold up the single waiter thread
+	            provider.getExecutors().getPool(ManagedExecutors.IMAGING).execute(new Runnable() {
+	                public void run() {
+	                    String previous = AWSCloud.getRegionOverride();
+
+	                    try {
+	                        AWSCloud.setRegionOverride(regionId);
+	                        String imageId = registerMachineImage(manifest);
+
+	                        task.setPercentComplete(100.00);
+	                        task.completeWithResult(imageId);
+	                    }
+	                    catch( Throwable t ) {
+	                        logger.error(t);
+	                        task.complete(t);
+	                    }
+	                    finally {
+	                        AWSCloud.setRegionOverride(previous);
+	                    }
+	                }
+	            });
+	        }
+
+	        public void failed(@Nonnull String id, @Nonnull Throwable cause) {
+	            logger.error(cause);
+	            task.complete(cause);
+	        }
+	    }, CalendarWrapper.DAY);
 	}
 }
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -32,9 +33,14 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.RequestCoalescer;
+import org.dasein.cloud.aws.ResourceCache;
 import org.dasein.cloud.compute.AutoScalingSupport;
 import org.dasein.cloud.compute.LaunchConfiguration;
 import org.dasein.cloud.compute.ScalingGroup;
+import org.dasein.cloud.compute.VirtualMachine;
 import org.dasein.cloud.compute.VirtualMachineProduct;
 import org.dasein.cloud.identity.ServiceAction;
 import org.w3c.dom.Document;
@@ -48,6 +54,42 @@ import javax.annotation.Nullable;
 public class AutoScaling implements AutoScalingSupport {
     static private final Logger logger = Logger.getLogger(AutoScaling.class);
 
+    static private final String LAUNCH_CONFIGURATIONS = "launchConfiguration";
+    static private final String SCALING_GROUPS        = "scalingGroup";
+
+    /**
+     * The maximum number of records AutoScaling returns per describe call.
+     */
+    static private final int PAGE_SIZE = 100;
+
+    /**
+     * A scaling group together with the virtual machines that are members of it.
+     */
+    static public class ScalingGroupMembers {
+        private ScalingGroup              group;
+        private ArrayList<String>         unavailableInstanceIds = new ArrayList<String>();
+        private ArrayList<VirtualMachine> virtualMachines        = new ArrayList<VirtualMachine>();
+
+        ScalingGroupMembers(@Nonnull ScalingGroup group) {
+            this.group = group;
+        }
+
+        public @Nonnull ScalingGroup getScalingGroup() {
+            return group;
+        }
+
+        /**
+         * @return the IDs of member instances that could not be described, typically because they were just terminated
+         */
+        public @Nonnull Collection<String> getUnavailableInstanceIds() {
+            return Collections.unmodifiableList(unavailableInstanceIds);
+        }
+
+        public @Nonnull Collection<VirtualMachine> getVirtualMachines() {
+            return Collections.unmodifiableList(virtualMachines);
+        }
+    }
+
     private AWSCloud provider = null;
 
     AutoScaling(AWSCloud provider) {
@@ -82,6 +124,7 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(SCALING_GROUPS).invalidate(name);
         return name;
     }
 
@@ -105,6 +148,7 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(LAUNCH_CONFIGURATIONS).invalidate(name);
         return name;
     }
 
@@ -122,6 +166,7 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(SCALING_GROUPS).invalidate(providerAutoScalingGroupId);
     }
 
     @Override
@@ -138,6 +183,7 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(LAUNCH_CONFIGURATIONS).invalidate(providerLaunchConfigurationId);
     }
 
     @Override
@@ -194,42 +240,23 @@ public class AutoScaling implements AutoScalingSupport {
         if( ctx == null ) {
             throw new CloudException("No context has been set for this request");
         }
-        return "https://autoscaling." + ctx.getRegionId() + ".amazonaws.com";
+        return "https://autoscaling." + provider.getTargetRegionId() + ".amazonaws.com";
     }
 
     @Override
     public LaunchConfiguration getLaunchConfiguration(String providerLaunchConfigurationId) throws CloudException, InternalException {
-        Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_LAUNCH_CONFIGURATIONS);
-        EC2Method method;
-        NodeList blocks;
-        Document doc;
+        ResourceCache<LaunchConfiguration> cache = provider.getResourceCache(LAUNCH_CONFIGURATIONS);
+        LaunchConfiguration cfg = cache.get(providerLaunchConfigurationId);
 
-        parameters.put("LaunchConfigurationNames.member.1", providerLaunchConfigurationId);
-        method = new EC2Method(provider, getAutoScalingUrl(), parameters);
-        try {
-            doc = method.invoke();
-        }
-        catch( EC2Exception e ) {
-            logger.error(e.getSummary());
-            throw new CloudException(e);
+        if( cfg != null || cache.isKnownMissing(providerLaunchConfigurationId) ) {
+            return (cfg == null ? null : copyOf(cfg));
         }
-        blocks = doc.getElementsByTagName("LaunchConfigurations");
-        for( int i=0; i<blocks.getLength(); i++ ) {
-            NodeList items = blocks.item(i).getChildNodes();
-
-            for( int j=0; j<items.getLength(); j++ ) {
-                Node item = items.item(j);
-
-                if( item.getNodeName().equals("member") ) {
-                    LaunchConfiguration cfg = toLaunchConfiguration(item);
+        Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_LAUNCH_CONFIGURATIONS);
+        ArrayList<LaunchConfiguration> list = new ArrayList<LaunchConfiguration>();
 
-                    if( cfg != null ) {
-                        return cfg;
-                    }
-                }
-            }
-        }
-        return null;
+        parameters.put("LaunchConfigurationNames.member.1", providerLaunchConfigurationId);
+        populateLaunchConfigurations(parameters, null, list);
+        return (list.isEmpty() ? null : list.get(0));
     }
 
     @Override
@@ -239,34 +266,33 @@ public class AutoScaling implements AutoScalingSupport {
         if( ctx == null ) {
             throw new CloudException("No context has been set for this request");
         }
-        Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_AUTO_SCALING_GROUPS);
-        EC2Method method;
-        NodeList blocks;
-        Document doc;
+        ResourceCache<ScalingGroup> cache = provider.getResourceCache(SCALING_GROUPS);
+        ScalingGroup group = cache.get(providerScalingGroupId);
 
-        parameters.put("AutoScalingGroupNames.member.1", providerScalingGroupId);
-        method = new EC2Method(provider, getAutoScalingUrl(), parameters);
-        try {
-            doc = method.invoke();
-        }
-        catch( EC2Exception e ) {
-            logger.error(e.getSummary());
-            throw new CloudException(e);
+        if( group != null || cache.isKnownMissing(providerScalingGroupId) ) {
+            return (group == null ? null : copyOf(group));
         }
-        blocks = doc.getElementsByTagName("AutoScalingGroups");
-        for( int i=0; i<blocks.getLength(); i++ ) {
-            NodeList members = blocks.item(i).getChildNodes();
+        Map<String,String> parameters = getAutoScalingParameters(ctx, EC2Method.DESCRIBE_AUTO_SCALING_GROUPS);
+        ArrayList<ScalingGroup> list = new ArrayList<ScalingGroup>();
 
-            for( int j=0; j<members.getLength(); j++ ) {
-                Node item = members.item(j);
+        parameters.put("AutoScalingGroupNames.member.1", providerScalingGroupId);
+        populateScalingGroups(ctx, parameters, null, list);
+        return (list.isEmpty() ? null : list.get(0));
+    }
 
-                if( item.getNodeName().equals("member") ) {
-                    ScalingGroup group = toScalingGroup(ctx, item);
+    /**
+     * Extracts the token for the next page from an AutoScaling describe response.
+     * @param doc the response
+     * @return the token for the next page, or <code>null</code> if this was the last page
+     */
+    private @Nullable String getNextToken(@Nonnull Document doc) {
+        NodeList blocks = doc.getElementsByTagName("NextToken");
 
-                    if( group != null ) {
-                        return group;
-                    }
-                }
+        if( blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+            String token = blocks.item(0).getFirstChild().getNodeValue();
+
+            if( token != null && token.trim().length() > 0 ) {
+                return token.trim();
             }
         }
         return null;
@@ -298,12 +324,143 @@ public class AutoScaling implements AutoScalingSupport {
 
     @Override
     public Collection<LaunchConfiguration> listLaunchConfigurations() throws CloudException, InternalException {
-        Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_LAUNCH_CONFIGURATIONS);
-        ArrayList<LaunchConfiguration> list = new ArrayList<LaunchConfiguration>();
+        final ResourceCache<LaunchConfiguration> cache = provider.getResourceCache(LAUNCH_CONFIGURATIONS);
+        List<LaunchConfiguration> cached = cache.list();
+
+        if( cached != null ) {
+            ArrayList<LaunchConfiguration> list = new ArrayList<LaunchConfiguration>();
+
+            for( LaunchConfiguration cfg : cached ) {
+                list.add(copyOf(cfg));
+            }
+            return list;
+        }
+        // the start time and cache generation of the listing
+        final long[] started = new long[2];
+
+        return new LazyListing<LaunchConfiguration>(provider, new LazyListing.PageLoader<LaunchConfiguration>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<LaunchConfiguration> page) throws CloudException, InternalException {
+                Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_LAUNCH_CONFIGURATIONS);
+
+                if( marker == null ) {
+                    started[0] = System.currentTimeMillis();
+                    started[1] = cache.getGeneration();
+                }
+                parameters.put("MaxRecords", String.valueOf(PAGE_SIZE));
+                marker = populateLaunchConfigurations(parameters, marker, page);
+                if( marker == null ) {
+                    cache.markListed(started[0], started[1]);
+                }
+                return marker;
+            }
+        });
+    }
+
+    @Override
+    public Collection<ScalingGroup> listScalingGroups() throws CloudException, InternalException {
+        final ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context has been set for this request");
+        }
+        final ResourceCache<ScalingGroup> cache = provider.getResourceCache(SCALING_GROUPS);
+        List<ScalingGroup> cached = cache.list();
+
+        if( cached != null ) {
+            ArrayList<ScalingGroup> list = new ArrayList<ScalingGroup>();
+
+            for( ScalingGroup group : cached ) {
+                list.add(copyOf(group));
+            }
+            return list;
+        }
+        // the start time and cache generation of the listing
+        final long[] started = new long[2];
+
+        return new LazyListing<ScalingGroup>(provider, new LazyListing.PageLoader<ScalingGroup>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<ScalingGroup> page) throws CloudException, InternalException {
+                Map<String,String> parameters = getAutoScalingParameters(ctx, EC2Method.DESCRIBE_AUTO_SCALING_GROUPS);
+
+                if( marker == null ) {
+                    started[0] = System.currentTimeMillis();
+                    started[1] = cache.getGeneration();
+                }
+                parameters.put("MaxRecords", String.valueOf(PAGE_SIZE));
+                marker = populateScalingGroups(ctx, parameters, marker, page);
+                if( marker == null ) {
+                    cache.markListed(started[0], started[1]);
+                }
+                return marker;
+            }
+        });
+    }
+
+    /**
+     * Lists every scaling group together with the virtual machines that are currently members of it. The member
+     * instances of all groups are described with as few calls as possible instead of one call per group.
+     * @return the scaling groups and their members
+     * @throws CloudException an error occurred with the cloud provider while listing the groups
+     * @throws InternalException an error occurred within Dasein Cloud while listing the groups
+     */
+    public @Nonnull Collection<ScalingGroupMembers> listScalingGroupsWithInstances() throws CloudException, InternalException {
+        ArrayList<ScalingGroup> groups = new ArrayList<ScalingGroup>();
+        ArrayList<String> instanceIds = new ArrayList<String>();
+
+        for( ScalingGroup group : listScalingGroups() ) {
+            String[] ids = group.getProviderServerIds();
+
+            groups.add(group);
+            if( ids != null ) {
+                Collections.addAll(instanceIds, ids);
+            }
+        }
+        final EC2Instance support = new EC2Instance(provider);
+        BulkLookup<VirtualMachine> lookup = BulkLookup.lookup(provider, instanceIds, BulkLookup.DEFAULT_CHUNK_SIZE, new RequestCoalescer.BatchLoader<VirtualMachine>() {
+            public @Nonnull Map<String,VirtualMachine> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return support.loadVirtualMachines(ids);
+            }
+        });
+        ArrayList<ScalingGroupMembers> list = new ArrayList<ScalingGroupMembers>();
+
+        for( ScalingGroup group : groups ) {
+            ScalingGroupMembers members = new ScalingGroupMembers(group);
+            String[] ids = group.getProviderServerIds();
+
+            if( ids != null ) {
+                for( String id : ids ) {
+                    VirtualMachine vm = lookup.getFound().get(id);
+
+                    if( vm != null ) {
+                        members.virtualMachines.add(vm);
+                    }
+                    else {
+                        members.unavailableInstanceIds.add(id);
+                    }
+                }
+            }
+            list.add(members);
+        }
+        return list;
+    }
+
+    /**
+     * Loads one page of launch configurations into the cache and the specified page.
+     * @param parameters the describe parameters
+     * @param nextToken the token for the page to load, or <code>null</code> for the first page
+     * @param page the collection to which the launch configurations are added
+     * @return the token for the next page, or <code>null</code> if this was the last page
+     * @throws CloudException an error occurred with the cloud provider while describing the launch configurations
+     * @throws InternalException an error occurred within Dasein Cloud while describing the launch configurations
+     */
+    private @Nullable String populateLaunchConfigurations(@Nonnull Map<String,String> parameters, @Nullable String nextToken, @Nonnull Collection<LaunchConfiguration> page) throws CloudException, InternalException {
+        ResourceCache<LaunchConfiguration> cache = provider.getResourceCache(LAUNCH_CONFIGURATIONS);
         EC2Method method;
         NodeList blocks;
         Document doc;
 
+        if( nextToken != null ) {
+            parameters.put("NextToken", nextToken);
+        }
         method = new EC2Method(provider, getAutoScalingUrl(), parameters);
         try {
             doc = method.invoke();
@@ -323,28 +480,34 @@ public class AutoScaling implements AutoScalingSupport {
                     LaunchConfiguration cfg = toLaunchConfiguration(item);
 
                     if( cfg != null ) {
-                        list.add(cfg);
+                        cache.put(cfg.getProviderLaunchConfigurationId(), copyOf(cfg));
+                        page.add(cfg);
                     }
                 }
             }
         }
-        return list;
+        return getNextToken(doc);
     }
 
-    @Override
-    public Collection<ScalingGroup> listScalingGroups() throws CloudException, InternalException {
-        ProviderContext ctx = provider.getContext();
-
-        if( ctx == null ) {
-            throw new CloudException("No context has been set for this request");
-        }
-        ArrayList<ScalingGroup> list = new ArrayList<ScalingGroup>();
-
-        Map<String,String> parameters = getAutoScalingParameters(provider.getContext(), EC2Method.DESCRIBE_AUTO_SCALING_GROUPS);
+    /**
+     * Loads one page of scaling groups into the cache and the specified page.
+     * @param ctx the context of the request
+     * @param parameters the describe parameters
+     * @param nextToken the token for the page to load, or <code>null</code> for the first page
+     * @param page the collection to which the scaling groups are added
+     * @return the token for the next page, or <code>null</code> if this was the last page
+     * @throws CloudException an error occurred with the cloud provider while describing the scaling groups
+     * @throws InternalException an error occurred within Dasein Cloud while describing the scaling groups
+     */
+    private @Nullable String populateScalingGroups(@Nonnull ProviderContext ctx, @Nonnull Map<String,String> parameters, @Nullable String nextToken, @Nonnull Collection<ScalingGroup> page) throws CloudException, InternalException {
+        ResourceCache<ScalingGroup> cache = provider.getResourceCache(SCALING_GROUPS);
         EC2Method method;
         NodeList blocks;
         Document doc;
 
+        if( nextToken != null ) {
+            parameters.put("NextToken", nextToken);
+        }
         method = new EC2Method(provider, getAutoScalingUrl(), parameters);
         try {
             doc = method.invoke();
@@ -364,12 +527,13 @@ public class AutoScaling implements AutoScalingSupport {
                     ScalingGroup group = toScalingGroup(ctx, item);
 
                     if( group != null ) {
-                        list.add(group);
+                        cache.put(group.getProviderScalingGroupId(), copyOf(group));
+                        page.add(group);
                     }
                 }
             }
         }
-        return list;
+        return getNextToken(doc);
     }
 
     @Override
@@ -428,6 +592,42 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(SCALING_GROUPS).invalidate(scalingGroupId);
+    }
+
+    // the cache keeps its own instances and hands out copies, so that no caller sees changes made by another
+    static private @Nonnull LaunchConfiguration copyOf(@Nonnull LaunchConfiguration cfg) {
+        LaunchConfiguration copy = new LaunchConfiguration();
+        String[] ids = cfg.getProviderFirewallIds();
+
+        copy.setProviderImageId(cfg.getProviderImageId());
+        copy.setServerSizeId(cfg.getServerSizeId());
+        copy.setProviderLaunchConfigurationId(cfg.getProviderLaunchConfigurationId());
+        copy.setName(cfg.getName());
+        copy.setCreationTimestamp(cfg.getCreationTimestamp());
+        copy.setProviderFirewallIds(ids == null ? null : ids.clone());
+        return copy;
+    }
+
+    static private @Nonnull ScalingGroup copyOf(@Nonnull ScalingGroup group) {
+        ScalingGroup copy = new ScalingGroup();
+        String[] serverIds = group.getProviderServerIds();
+        String[] dataCenterIds = group.getProviderDataCenterIds();
+
+        copy.setProviderOwnerId(group.getProviderOwnerId());
+        copy.setProviderRegionId(group.getProviderRegionId());
+        copy.setMinServers(group.getMinServers());
+        copy.setMaxServers(group.getMaxServers());
+        copy.setCooldown(group.getCooldown());
+        copy.setCreationTimestamp(group.getCreationTimestamp());
+        copy.setTargetCapacity(group.getTargetCapacity());
+        copy.setProviderLaunchConfigurationId(group.getProviderLaunchConfigurationId());
+        copy.setProviderScalingGroupId(group.getProviderScalingGroupId());
+        copy.setName(group.getName());
+        copy.setDescription(group.getDescription());
+        copy.setProviderServerIds(serverIds == null ? null : serverIds.clone());
+        copy.setProviderDataCenterIds(dataCenterIds == null ? null : dataCenterIds.clone());
+        return copy;
     }
 
     private @Nullable LaunchConfiguration toLaunchConfiguration(@Nullable Node item) {
@@ -511,7 +711,7 @@ public class AutoScaling implements AutoScalingSupport {
         NodeList attrs = item.getChildNodes();
         ScalingGroup group = new ScalingGroup();
         group.setProviderOwnerId(ctx.getAccountNumber());
-        group.setProviderRegionId(ctx.getRegionId());
+        group.setProviderRegionId(provider.getTargetRegionId());
         for( int i=0; i<attrs.getLength(); i++ ) {
             Node attr = attrs.item(i);
             String name;
@@ -642,5 +842,6 @@ public class AutoScaling implements AutoScalingSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
+        provider.getResourceCache(SCALING_GROUPS).invalidate(scalingGroupId);
     }
 }
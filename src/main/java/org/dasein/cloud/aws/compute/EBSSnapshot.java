@@ -21,6 +21,9 @@ package org.dasein.cloud.aws.compute;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
@@ -29,6 +32,10 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.RequestCoalescer;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.compute.Snapshot;
 import org.dasein.cloud.compute.SnapshotState;
 import org.dasein.cloud.compute.SnapshotSupport;
@@ -38,12 +45,17 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 public class EBSSnapshot implements SnapshotSupport {
 	static private final Logger logger = AWSCloud.getLogger(EBSSnapshot.class);
 	
+	static private final int PAGE_SIZE = 1000;
+
+	static private volatile boolean pagingSupported = true;
+
 	private AWSCloud provider = null;
 	
 	EBSSnapshot(AWSCloud provider) {
@@ -74,6 +86,18 @@ public class EBSSnapshot implements SnapshotSupport {
         return null;
 	}
 
+    /**
+     * Snapshots many volumes through the shared {@link SnapshotScheduler}, which keeps the number of pending
+     * snapshots within the account's limits.
+     * @param volumeIds the volumes to snapshot
+     * @param description the description of each snapshot, or <code>null</code> for the default description
+     * @param retain the number of completed snapshots to keep per volume afterwards, or 0 to keep every snapshot
+     * @return the job tracking the snapshots
+     */
+    public @Nonnull SnapshotScheduler.Job createSnapshots(@Nonnull Collection<String> volumeIds, @Nullable String description, @Nonnegative int retain) {
+        return provider.getSnapshotScheduler().submit(volumeIds, description, retain);
+    }
+
 	@Override
 	public void remove(String snapshotId) throws InternalException, CloudException {
 		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DELETE_SNAPSHOT);
@@ -174,42 +198,13 @@ public class EBSSnapshot implements SnapshotSupport {
             throw new CloudException("No context exists for this request.");
         }
 	    if( provider.getEC2Provider().isAWS() ) {
-    		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_SNAPSHOTS);
-    		EC2Method method;
-            NodeList blocks;
-    		Document doc;
-    
-    		parameters.put("SnapshotId.1", snapshotId);
-    		method = new EC2Method(provider, provider.getEc2Url(), parameters);
-            try {
-            	doc = method.invoke();
-            }
-            catch( EC2Exception e ) {
-            	String code = e.getCode();
-            	
-            	if( code != null && (code.startsWith("InvalidSnapshot.NotFound") || code.equals("InvalidParameterValue")) ) {
-            		return null;
-            	}
-            	logger.error(e.getSummary());
-            	throw new CloudException(e);
-            }
-            blocks = doc.getElementsByTagName("snapshotSet");
-            for( int i=0; i<blocks.getLength(); i++ ) {
-            	NodeList items = blocks.item(i).getChildNodes();
-            	
-                for( int j=0; j<items.getLength(); j++ ) {
-                	Node item = items.item(j);
-                	
-                	if( item.getNodeName().equals("item") ) {
-                		Snapshot snapshot = toSnapshot(ctx, item);
-                		
-                		if( snapshot != null && snapshot.getProviderSnapshotId().equals(snapshotId) ) {
-                			return snapshot;
-                		}
-                	}
-                }
-            }
-            return null;
+	        RequestCoalescer<Snapshot> coalescer = provider.getCoalescer(ResourceWaiter.SNAPSHOT, new RequestCoalescer.BatchLoader<Snapshot>() {
+	            public @Nonnull Map<String,Snapshot> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+	                return loadSnapshots(ids);
+	            }
+	        });
+
+	        return coalescer.get(snapshotId);
 	    }
 	    else {
 	        for( Snapshot snapshot : listSnapshots() ) {
@@ -221,6 +216,97 @@ public class EBSSnapshot implements SnapshotSupport {
 	    }
 	}
 
+    /**
+     * Looks up a known set of snapshots. The IDs are split into chunks that are described concurrently.
+     * @param snapshotIds the snapshots to look up
+     * @return the snapshots found, together with the IDs that are missing or whose lookup failed
+     * @throws InternalException an error occurred within Dasein Cloud while waiting on the lookups
+     * @throws CloudException an error occurred listing snapshots in a cloud without filter support
+     */
+    public @Nonnull BulkLookup<Snapshot> getSnapshots(@Nonnull Collection<String> snapshotIds) throws InternalException, CloudException {
+        if( provider.getContext() == null ) {
+            throw new CloudException("No context exists for this request.");
+        }
+        if( !provider.getEC2Provider().isAWS() ) {
+            // no filter support, so a single listing covers every chunk
+            final HashMap<String,Snapshot> all = new HashMap<String,Snapshot>();
+
+            for( Snapshot snapshot : listSnapshots() ) {
+                all.put(snapshot.getProviderSnapshotId(), snapshot);
+            }
+            return BulkLookup.lookup(provider, snapshotIds, snapshotIds.size(), new RequestCoalescer.BatchLoader<Snapshot>() {
+                public @Nonnull Map<String,Snapshot> load(@Nonnull Collection<String> ids) {
+                    return all;
+                }
+            });
+        }
+        return BulkLookup.lookup(provider, snapshotIds, BulkLookup.DEFAULT_CHUNK_SIZE, new RequestCoalescer.BatchLoader<Snapshot>() {
+            public @Nonnull Map<String,Snapshot> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadSnapshots(ids);
+            }
+        });
+    }
+
+    /**
+     * Describes the specified snapshots with a single <code>DescribeSnapshots</code> call. The IDs are passed as a
+     * filter so that missing snapshots are simply absent from the result.
+     * @param snapshotIds the snapshots to describe
+     * @return the snapshots found, keyed by snapshot ID
+     * @throws InternalException an error occurred within Dasein Cloud while loading the snapshots
+     * @throws CloudException an error occurred with the cloud provider while loading the snapshots
+     */
+    @Nonnull Map<String,Snapshot> loadSnapshots(@Nonnull Collection<String> snapshotIds) throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+        
+        if( ctx == null ) {
+            throw new CloudException("No context exists for this request.");
+        }
+		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_SNAPSHOTS);
+        HashMap<String,Snapshot> snapshots = new HashMap<String,Snapshot>();
+		EC2Method method;
+        NodeList blocks;
+		Document doc;
+        int i = 1;
+
+        if( snapshotIds.isEmpty() ) {
+            return snapshots;
+        }
+        parameters.put("Filter.1.Name", "snapshot-id");
+        for( String id : snapshotIds ) {
+            parameters.put("Filter.1.Value." + (i++), id);
+        }
+		method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+        	doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+        	String code = e.getCode();
+        	
+        	if( code != null && (code.startsWith("InvalidSnapshot.NotFound") || code.equals("InvalidParameterValue")) ) {
+        		return snapshots;
+        	}
+        	logger.error(e.getSummary());
+        	throw new CloudException(e);
+        }
+        blocks = doc.getElementsByTagName("snapshotSet");
+        for( i=0; i<blocks.getLength(); i++ ) {
+        	NodeList items = blocks.item(i).getChildNodes();
+        	
+            for( int j=0; j<items.getLength(); j++ ) {
+            	Node item = items.item(j);
+            	
+            	if( item.getNodeName().equals("item") ) {
+            		Snapshot snapshot = toSnapshot(ctx, item);
+            		
+            		if( snapshot != null && snapshotIds.contains(snapshot.getProviderSnapshotId()) ) {
+            			snapshots.put(snapshot.getProviderSnapshotId(), snapshot);
+            		}
+            	}
+            }
+        }
+        return snapshots;
+    }
+
 	@Override
 	public boolean isPublic(String snapshotId) throws InternalException, CloudException {
 	    if( !provider.getEC2Provider().isAWS()) {
@@ -289,45 +375,189 @@ public class EBSSnapshot implements SnapshotSupport {
         return provider.getEC2Provider().isAWS();
     }
     
+	/**
+	 * Lists the snapshots this account can use. In AWS that means the snapshots it owns plus those explicitly
+	 * shared with it, rather than the whole public catalog; other clouds are asked for everything they describe.
+	 * Results are streamed as each page arrives.
+	 * @return the snapshots available to this account
+	 * @throws InternalException an error occurred within Dasein Cloud while listing the snapshots
+	 * @throws CloudException an error occurred with the cloud provider while listing the snapshots
+	 */
 	@Override
 	public Iterable<Snapshot> listSnapshots() throws InternalException, CloudException {
-        ProviderContext ctx = provider.getContext();
+	    if( !provider.getEC2Provider().isAWS() ) {
+	        return stream(new String[0][]);
+	    }
+	    return stream(new String[][] { { "Owner.1", "self" }, { "RestorableBy.1", "self" } });
+	}
 
-        if( ctx == null ) {
-            throw new CloudException("No context exists for this request.");
+    /**
+     * Lists the snapshots owned by the specified accounts, streaming them as each page arrives.
+     * @param accountIds the owning account numbers, or <code>self</code>, <code>amazon</code>; none means this account
+     * @return the snapshots owned by the specified accounts that this account may see
+     * @throws InternalException an error occurred within Dasein Cloud while listing the snapshots
+     * @throws CloudException an error occurred with the cloud provider while listing the snapshots
+     */
+    public @Nonnull Iterable<Snapshot> listSnapshotsOwnedBy(@Nonnull String ... accountIds) throws InternalException, CloudException {
+        String[] scope;
+
+        if( accountIds.length < 1 ) {
+            scope = new String[] { "Owner.1", "self" };
         }
-		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_SNAPSHOTS);
-		ArrayList<Snapshot> list = new ArrayList<Snapshot>();
-		EC2Method method;
-        NodeList blocks;
-		Document doc;
+        else {
+            scope = new String[accountIds.length * 2];
+            for( int i=0; i<accountIds.length; i++ ) {
+                scope[i*2] = "Owner." + (i+1);
+                scope[i*2 + 1] = accountIds[i];
+            }
+        }
+        return stream(new String[][] { scope });
+    }
 
-		method = new EC2Method(provider, provider.getEc2Url(), parameters);
-        try {
-        	doc = method.invoke();
+    /**
+     * Lists the snapshots that this account has explicitly been granted permission to create volumes from,
+     * streaming them as each page arrives.
+     * @return the snapshots restorable by this account
+     * @throws InternalException an error occurred within Dasein Cloud while listing the snapshots
+     * @throws CloudException an error occurred with the cloud provider while listing the snapshots
+     */
+    public @Nonnull Iterable<Snapshot> listRestorableSnapshots() throws InternalException, CloudException {
+        return stream(new String[][] { { "RestorableBy.1", "self" } });
+    }
+
+    /**
+     * Lists the snapshots owned by this account that were taken of any of the specified volumes. Against AWS the
+     * volume IDs are passed as a filter; elsewhere the account's snapshots are listed and filtered here.
+     * @param volumeIds the volumes whose snapshots are sought (at most {@link BulkLookup#DEFAULT_CHUNK_SIZE})
+     * @return the matching snapshots
+     * @throws InternalException an error occurred within Dasein Cloud while listing the snapshots
+     * @throws CloudException an error occurred with the cloud provider while listing the snapshots
+     */
+    @Nonnull Iterable<Snapshot> listSnapshotsOfVolumes(@Nonnull Collection<String> volumeIds) throws InternalException, CloudException {
+        ArrayList<Snapshot> list = new ArrayList<Snapshot>();
+
+        if( volumeIds.isEmpty() ) {
+            return list;
         }
-        catch( EC2Exception e ) {
-        	logger.error(e.getSummary());
-        	throw new CloudException(e);
+        if( provider.getEC2Provider().isAWS() ) {
+            String[] scope = new String[4 + (volumeIds.size() * 2)];
+            int i = 0;
+
+            scope[i++] = "Owner.1";
+            scope[i++] = "self";
+            scope[i++] = "Filter.1.Name";
+            scope[i++] = "volume-id";
+            for( String id : volumeIds ) {
+                scope[i] = "Filter.1.Value." + ((i / 2) - 1);
+                scope[i+1] = id;
+                i += 2;
+            }
+            return stream(new String[][] { scope });
         }
-        blocks = doc.getElementsByTagName("snapshotSet");
-        for( int i=0; i<blocks.getLength(); i++ ) {
-        	NodeList items = blocks.item(i).getChildNodes();
-        	
-            for( int j=0; j<items.getLength(); j++ ) {
-            	Node item = items.item(j);
-            	
-            	if( item.getNodeName().equals("item") ) {
-            		Snapshot snapshot = toSnapshot(ctx, item);
-            		
-            		if( snapshot != null ) {
-            			list.add(snapshot);
-            		}
-            	}
+        for( Snapshot snapshot : listSnapshots() ) {
+            if( snapshot.getVolumeId() != null && volumeIds.contains(snapshot.getVolumeId()) ) {
+                list.add(snapshot);
             }
         }
         return list;
-	}
+    }
+
+    private @Nonnull Iterable<Snapshot> stream(@Nonnull String[][] scopes) throws InternalException, CloudException {
+        final ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context exists for this request.");
+        }
+        final String[][] all = (scopes.length < 1 ? new String[][] { new String[0] } : scopes);
+
+        // markers take the form "scope:nextToken"
+        return new LazyListing<Snapshot>(provider, new LazyListing.PageLoader<Snapshot>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<Snapshot> page) throws CloudException, InternalException {
+                String nextToken = null;
+                int index = 0;
+
+                if( marker != null ) {
+                    int idx = marker.indexOf(':');
+
+                    index = Integer.parseInt(marker.substring(0, idx));
+                    nextToken = marker.substring(idx + 1);
+                    if( nextToken.length() < 1 ) {
+                        nextToken = null;
+                    }
+                }
+                nextToken = populateSnapshots(ctx, all[index], index > 0 && isOwnScope(all[0]), nextToken, page);
+                if( nextToken != null ) {
+                    return index + ":" + nextToken;
+                }
+                return ((index + 1) < all.length ? (index + 1) + ":" : null);
+            }
+        });
+    }
+
+    static private boolean isOwnScope(@Nonnull String[] scope) {
+        return (scope.length == 2 && scope[0].equals("Owner.1") && scope[1].equals("self"));
+    }
+
+    private @Nullable String populateSnapshots(@Nonnull ProviderContext ctx, @Nonnull String[] scope, boolean skipOwn, @Nullable String nextToken, @Nonnull Collection<Snapshot> page) throws InternalException, CloudException {
+        while( true ) {
+            Map<String,String> parameters = provider.getStandardParameters(ctx, EC2Method.DESCRIBE_SNAPSHOTS);
+            boolean paged = (pagingSupported && provider.getEC2Provider().isAWS());
+            EC2Method method;
+            NodeList blocks;
+            Document doc;
+
+            for( int i=0; i<scope.length; i += 2 ) {
+                parameters.put(scope[i], scope[i+1]);
+            }
+            if( paged ) {
+                parameters.put("MaxResults", String.valueOf(PAGE_SIZE));
+                if( nextToken != null ) {
+                    parameters.put("NextToken", nextToken);
+                }
+            }
+            method = new EC2Method(provider, provider.getEc2Url(), parameters);
+            try {
+                doc = method.invoke();
+            }
+            catch( EC2Exception e ) {
+                String code = e.getCode();
+
+                if( paged && nextToken == null && code != null && (code.equals("UnknownParameter") || code.equals("InvalidParameterCombination")) ) {
+                    // the API version in use predates paged snapshot listings
+                    pagingSupported = false;
+                    continue;
+                }
+                logger.error(e.getSummary());
+                throw new CloudException(e);
+            }
+            nextToken = null;
+            blocks = doc.getElementsByTagName("nextToken");
+            if( paged && blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+                nextToken = blocks.item(0).getFirstChild().getNodeValue().trim();
+                if( nextToken.length() < 1 ) {
+                    nextToken = null;
+                }
+            }
+            blocks = doc.getElementsByTagName("snapshotSet");
+            for( int i=0; i<blocks.getLength(); i++ ) {
+                NodeList items = blocks.item(i).getChildNodes();
+
+                for( int j=0; j<items.getLength(); j++ ) {
+                    Node item = items.item(j);
+
+                    if( item.getNodeName().equals("item") ) {
+                        Snapshot snapshot = toSnapshot(ctx, item);
+
+                        // an own snapshot shared with this account was already listed under the owner scope
+                        if( snapshot != null && !(skipOwn && ctx.getAccountNumber().equals(snapshot.getOwner())) ) {
+                            page.add(snapshot);
+                        }
+                    }
+                }
+            }
+            return nextToken;
+        }
+    }
 
     @Override
     public @Nonnull String[] mapServiceAction(@Nonnull ServiceAction action) {
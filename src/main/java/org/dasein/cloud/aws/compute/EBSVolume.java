@@ -21,7 +21,11 @@ package org.dasein.cloud.aws.compute;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -30,6 +34,9 @@ import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.Requirement;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.RequestCoalescer;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.compute.Platform;
 import org.dasein.cloud.compute.Volume;
 import org.dasein.cloud.compute.VolumeCreateOptions;
@@ -251,15 +258,72 @@ public class EBSVolume implements VolumeSupport {
 	public @Nullable Volume getVolume(@Nonnull String volumeId) throws InternalException, CloudException {
         ProviderContext ctx = provider.getContext();
 
+        if( ctx == null ) {
+            throw new CloudException("No context exists for this request.");
+        }
+        RequestCoalescer<Volume> coalescer = provider.getCoalescer(ResourceWaiter.VOLUME, new RequestCoalescer.BatchLoader<Volume>() {
+            public @Nonnull Map<String,Volume> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadVolumes(ids);
+            }
+        });
+
+        return coalescer.get(volumeId);
+	}
+
+    /**
+     * Looks up a known set of volumes. The IDs are split into chunks that are described concurrently.
+     * @param volumeIds the volumes to look up
+     * @return the volumes found, together with the IDs that are missing or whose lookup failed
+     * @throws InternalException an error occurred within Dasein Cloud while waiting on the lookups
+     * @throws CloudException no context was established for this request
+     */
+    public @Nonnull BulkLookup<Volume> getVolumes(@Nonnull Collection<String> volumeIds) throws InternalException, CloudException {
+        if( provider.getContext() == null ) {
+            throw new CloudException("No context exists for this request.");
+        }
+        return BulkLookup.lookup(provider, volumeIds, BulkLookup.DEFAULT_CHUNK_SIZE, new RequestCoalescer.BatchLoader<Volume>() {
+            public @Nonnull Map<String,Volume> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadVolumes(ids);
+            }
+        });
+    }
+
+    /**
+     * Describes the specified volumes with a single <code>DescribeVolumes</code> call. Against AWS the IDs are passed
+     * as a filter so that missing volumes are simply absent; elsewhere a <code>NotFound</code> error for a batch
+     * causes each volume to be described individually.
+     * @param volumeIds the volumes to describe
+     * @return the volumes found, keyed by volume ID
+     * @throws InternalException an error occurred within Dasein Cloud while loading the volumes
+     * @throws CloudException an error occurred with the cloud provider while loading the volumes
+     */
+    @Nonnull Map<String,Volume> loadVolumes(@Nonnull Collection<String> volumeIds) throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+
         if( ctx == null ) {
             throw new CloudException("No context exists for this request.");
         }
 		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_VOLUMES);
+        HashMap<String,Volume> volumes = new HashMap<String,Volume>();
 		EC2Method method;
         NodeList blocks;
 		Document doc;
+        int i = 1;
 
-		parameters.put("VolumeId.1", volumeId);
+        if( volumeIds.isEmpty() ) {
+            return volumes;
+        }
+        if( provider.getEC2Provider().isAWS() ) {
+            parameters.put("Filter.1.Name", "volume-id");
+            for( String id : volumeIds ) {
+                parameters.put("Filter.1.Value." + (i++), id);
+            }
+        }
+        else {
+            for( String id : volumeIds ) {
+                parameters.put("VolumeId." + (i++), id);
+            }
+        }
 		method = new EC2Method(provider, provider.getEc2Url(), parameters);
         try {
         	doc = method.invoke();
@@ -268,13 +332,18 @@ public class EBSVolume implements VolumeSupport {
         	String code = e.getCode();
         	
         	if( code != null && (code.startsWith("InvalidVolume.NotFound") || code.equals("InvalidParameterValue")) ) {
-        		return null;
+        	    if( volumeIds.size() > 1 ) {
+        	        for( String id : volumeIds ) {
+        	            volumes.putAll(loadVolumes(Collections.singletonList(id)));
+        	        }
+        	    }
+        		return volumes;
         	}
         	logger.error(e.getSummary());
         	throw new CloudException(e);
         }
         blocks = doc.getElementsByTagName("volumeSet");
-        for( int i=0; i<blocks.getLength(); i++ ) {
+        for( i=0; i<blocks.getLength(); i++ ) {
         	NodeList items = blocks.item(i).getChildNodes();
         	
             for( int j=0; j<items.getLength(); j++ ) {
@@ -283,13 +352,13 @@ public class EBSVolume implements VolumeSupport {
             	if( item.getNodeName().equals("item") ) {
             		Volume volume = toVolume(ctx, item);
             		
-            		if( volume != null && volume.getProviderVolumeId().equals(volumeId) ) {
-            			return volume;
+            		if( volume != null && volumeIds.contains(volume.getProviderVolumeId()) ) {
+            			volumes.put(volume.getProviderVolumeId(), volume);
             		}
             	}
             }
         }
-        return null;
+        return volumes;
 	}
 
     @Override
@@ -302,6 +371,52 @@ public class EBSVolume implements VolumeSupport {
         return false;
     }
 
+    /**
+     * Describes volumes, parsing only the named fields of each one. The parser skips every other element, which makes
+     * this far cheaper than building full objects when only a few fields are needed, for example
+     * <code>listVolumeFields(ids, "volumeId", "status")</code> for a health check.
+     * @param ids the volumes to describe, or <code>null</code> for every volume
+     * @param fields the element paths of the fields needed, relative to each <code>volumeSet</code> item
+     * @return the fields of each volume found, keyed by field path
+     * @throws InternalException an error occurred within Dasein Cloud while describing the volumes
+     * @throws CloudException an error occurred with the cloud provider while describing the volumes
+     */
+    public @Nonnull List<Map<String,String>> listVolumeFields(@Nullable Collection<String> ids, @Nonnull String ... fields) throws InternalException, CloudException {
+        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_VOLUMES);
+        EC2Method method;
+        int i = 1;
+
+        if( ids != null ) {
+            if( ids.isEmpty() ) {
+                return new ArrayList<Map<String,String>>();
+            }
+            if( provider.getEC2Provider().isAWS() ) {
+                parameters.put("Filter.1.Name", "volume-id");
+                for( String id : ids ) {
+                    parameters.put("Filter.1.Value." + (i++), id);
+                }
+            }
+            else {
+                for( String id : ids ) {
+                    parameters.put("VolumeId." + (i++), id);
+                }
+            }
+        }
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            return method.invoke("volumeSet", new Projection(fields));
+        }
+        catch( EC2Exception e ) {
+            String code = e.getCode();
+
+            if( code != null && code.startsWith("InvalidVolume") ) {
+                return new ArrayList<Map<String,String>>();
+            }
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
     @Override
 	public @Nonnull Iterable<Volume> listVolumes() throws InternalException, CloudException {
         ProviderContext ctx = provider.getContext();
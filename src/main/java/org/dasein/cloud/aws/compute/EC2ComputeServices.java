@@ -21,6 +21,7 @@ package org.dasein.cloud.aws.compute;
 import org.dasein.cloud.aws.AWSCloud;
 import org.dasein.cloud.compute.AbstractComputeServices;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -37,6 +38,14 @@ public class EC2ComputeServices extends AbstractComputeServices {
         return new AutoScaling(cloud);
     }
     
+    public @Nonnull FleetStatistics getFleetStatistics() {
+        return new FleetStatistics(cloud);
+    }
+
+    public @Nonnull FleetStatistics getFleetStatistics(@Nonnegative int maxConcurrent, @Nonnegative int maxPerSecond) {
+        return new FleetStatistics(cloud, maxConcurrent, maxPerSecond);
+    }
+
     @Override
     public @Nonnull AMI getImageSupport() {
         return new AMI(cloud);
@@ -33,11 +33,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
@@ -54,6 +54,8 @@ import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.Requirement;
 import org.dasein.cloud.Tag;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.RequestCoalescer;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.compute.Architecture;
 import org.dasein.cloud.compute.MachineImage;
 import org.dasein.cloud.compute.Platform;
@@ -246,6 +248,16 @@ public class EC2Instance implements VirtualMachineSupport {
         sixtyFours = Collections.unmodifiableList(sixtyFourSizes);
     }
     
+    /**
+     * The CloudWatch metrics that make up a {@link VmStatistics} object.
+     */
+    static final String[] METRICS = { "CPUUtilization", "DiskReadBytes", "DiskReadOps", "DiskWriteBytes", "DiskWriteOps", "NetworkIn", "NetworkOut" };
+
+    /**
+     * The CloudWatch units for each of the {@link #METRICS}, in the same order as {@link VmStatisticsSeries}.
+     */
+    static final String[] UNITS = { "Percent", "Bytes", "Count", "Bytes", "Count", "Bytes", "Bytes" };
+
 	private AWSCloud provider = null;
 	
 	EC2Instance(AWSCloud provider) {
@@ -276,25 +288,18 @@ public class EC2Instance implements VirtualMachineSupport {
         }
 	}
 
-    static private class Metric implements Comparable<Metric> {
-        int samples = 0;
-        long timestamp = -1L;
-        double minimum = -1.0;
-        double maximum = 0.0;
-        double average = 0.0;
-        
-        public int compareTo(Metric other) {
-            if( other == this ) {
-                return 0;
-            }
-            return (new Long(timestamp)).compareTo(other.timestamp);
+    private interface Datapoints {
+        public void record(long timestamp, int samples, double average, double minimum, double maximum);
+    }
+
+    /**
+     * Loads a single CloudWatch metric at one minute resolution, handing each returned data point to the specified
+     * sink as it is parsed.
+     */
+    private void loadMetric(int metric, String instanceId, long startTimestamp, long endTimestamp, Datapoints sink) throws CloudException, InternalException {
+        if( !provider.getEC2Provider().isAWS() ) {
+            return;
         }
-	}
-	
-	private Set<Metric> calculate(String metric, String unit, String instanceId, long startTimestamp, long endTimestamp) throws CloudException, InternalException {
-	    if( !provider.getEC2Provider().isAWS() ) {
-	        return new TreeSet<Metric>();
-	    }
         Map<String,String> parameters = provider.getStandardCloudWatchParameters(provider.getContext(), EC2Method.GET_METRIC_STATISTICS);
         SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
         EC2Method method;
@@ -303,9 +308,9 @@ public class EC2Instance implements VirtualMachineSupport {
         
         parameters.put("EndTime", fmt.format(new Date(endTimestamp)));
         parameters.put("StartTime", fmt.format(new Date(startTimestamp)));
-        parameters.put("MeasureName", metric);
+        parameters.put("MeasureName", METRICS[metric]);
         parameters.put("Namespace", "AWS/EC2");
-        parameters.put("Unit", unit);
+        parameters.put("Unit", UNITS[metric]);
         parameters.put("Dimensions.member.Name.1", "InstanceId");
         parameters.put("Dimensions.member.Value.1", instanceId);
         parameters.put("Statistics.member.1", "Average");
@@ -320,12 +325,13 @@ public class EC2Instance implements VirtualMachineSupport {
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
-        TreeSet<Metric> metrics = new TreeSet<Metric>();
         fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
         blocks = doc.getElementsByTagName("member");
         for( int i=0; i<blocks.getLength(); i++ ) {
             NodeList items = blocks.item(i).getChildNodes();
-            Metric m = new Metric();
+            double minimum = -1.0, maximum = 0.0, average = 0.0;
+            long timestamp = -1L;
+            int samples = 0;
             
             for( int j=0; j<items.getLength(); j++ ) {
                 Node item = items.item(j);
@@ -334,7 +340,7 @@ public class EC2Instance implements VirtualMachineSupport {
                     String dateString = item.getFirstChild().getNodeValue();
                     
                     try {
-                        m.timestamp = fmt.parse(dateString).getTime();
+                        timestamp = fmt.parse(dateString).getTime();
                     }
                     catch( ParseException e ) {
                         logger.error(e);
@@ -343,59 +349,115 @@ public class EC2Instance implements VirtualMachineSupport {
                     }
                 }
                 else if( item.getNodeName().equals("Average") ) {
-                    m.average = Double.parseDouble(item.getFirstChild().getNodeValue());
+                    average = Double.parseDouble(item.getFirstChild().getNodeValue());
                 }
                 else if( item.getNodeName().equals("Minimum") ) {
-                    m.minimum = Double.parseDouble(item.getFirstChild().getNodeValue());
+                    minimum = Double.parseDouble(item.getFirstChild().getNodeValue());
                 }
                 else if( item.getNodeName().equals("Maximum") ) {
-                    m.maximum = Double.parseDouble(item.getFirstChild().getNodeValue());
+                    maximum = Double.parseDouble(item.getFirstChild().getNodeValue());
                 }
                 else if( item.getNodeName().equals("Samples") ) {
-                    m.samples = (int)Double.parseDouble(item.getFirstChild().getNodeValue());
+                    samples = (int)Double.parseDouble(item.getFirstChild().getNodeValue());
                 }
             }
-            metrics.add(m);
+            sink.record(timestamp, samples, average, minimum, maximum);
         }
-        return metrics;
     }
     
 	private interface ApplyCalcs {
 	    public void apply(VmStatistics stats, long start, long end, int samples, double average, double minimum, double maximum);
 	}
 	
-    private void calculate(VmStatistics stats, String metricName, String unit, String instanceId, long startTimestamp, long endTimestamp, ApplyCalcs apply) throws CloudException, InternalException {
-        Set<Metric> metrics = calculate(metricName, unit, instanceId, startTimestamp, endTimestamp);
+    /**
+     * Reduces the data points of a single metric into the summary values applied by {@link ApplyCalcs}.
+     */
+    static private class Summary implements Datapoints {
         double minimum = -1.0, maximum = 0.0, sum = 0.0;
         long start = -1L, end = 0L;
         int samples = 0;
-        
-        for( Metric metric : metrics ) {
-            if( start < 0L ) {
-                start = metric.timestamp;
+
+        public void record(long timestamp, int sampleCount, double average, double minimum, double maximum) {
+            if( start < 0L || timestamp < start ) {
+                start = timestamp;
             }
-            if( metric.timestamp > end ) {
-                end = metric.timestamp;
+            if( timestamp > end ) {
+                end = timestamp;
             }
             samples++;
-            if( metric.minimum < minimum || minimum < 0.0 ) {
-                minimum = metric.minimum;
+            if( minimum < this.minimum || this.minimum < 0.0 ) {
+                this.minimum = minimum;
             }
-            if( metric.maximum > maximum ) {
-                maximum = metric.maximum;
+            if( maximum > this.maximum ) {
+                this.maximum = maximum;
             }
-            sum += metric.average;
+            sum += average;
         }
-        if( start < 0L ) {
-            start = startTimestamp;
+    }
+
+    private void calculate(VmStatistics stats, String metricName, String unit, String instanceId, long startTimestamp, long endTimestamp, ApplyCalcs apply) throws CloudException, InternalException {
+        Summary summary = new Summary();
+
+        loadMetric(indexOf(metricName), instanceId, startTimestamp, endTimestamp, summary);
+        if( summary.start < 0L ) {
+            summary.start = startTimestamp;
         }
-        if( end < 0L ) {
-            end = endTimestamp;
+        if( summary.end < 0L ) {
+            summary.end = endTimestamp;
         }
-        if( minimum < 0.0 ) {
-            minimum = 0.0;
+        if( summary.minimum < 0.0 ) {
+            summary.minimum = 0.0;
+        }
+        synchronized( stats ) {
+            apply.apply(stats, summary.start, summary.end, summary.samples, summary.sum/summary.samples, summary.minimum, summary.maximum);
+        }
+    }
+
+    static private int indexOf(String metricName) throws InternalException {
+        for( int i=0; i<METRICS.length; i++ ) {
+            if( METRICS[i].equals(metricName) ) {
+                return i;
+            }
+        }
+        throw new InternalException("Unknown metric: " + metricName);
+    }
+
+    /**
+     * Loads a single CloudWatch metric for the specified instance into the specified statistics object. This allows
+     * callers such as {@link FleetStatistics} to schedule each <code>GetMetricStatistics</code> call individually.
+     * @param statistics the statistics object to populate
+     * @param metricName one of {@link #METRICS}
+     * @param instanceId the instance whose metric is being loaded
+     * @param startTimestamp the start of the statistics period
+     * @param endTimestamp the end of the statistics period
+     * @throws CloudException an error occurred with the cloud provider while loading the metric
+     * @throws InternalException an error occurred within Dasein Cloud while loading the metric
+     */
+    void calculateMetric(@Nonnull VmStatistics statistics, @Nonnull String metricName, @Nonnull String instanceId, long startTimestamp, long endTimestamp) throws CloudException, InternalException {
+        if( metricName.equals("CPUUtilization") ) {
+            calculateCpuUtilization(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("DiskReadBytes") ) {
+            calculateDiskReadBytes(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("DiskReadOps") ) {
+            calculateDiskReadOps(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("DiskWriteBytes") ) {
+            calculateDiskWriteBytes(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("DiskWriteOps") ) {
+            calculateDiskWriteOps(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("NetworkIn") ) {
+            calculateNetworkIn(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else if( metricName.equals("NetworkOut") ) {
+            calculateNetworkOut(statistics, instanceId, startTimestamp, endTimestamp);
+        }
+        else {
+            throw new InternalException("Unknown metric: " + metricName);
         }
-        apply.apply(stats, start, end, samples, sum/samples, minimum, maximum);
     }
     
 	private void calculateCpuUtilization(VmStatistics statistics, String instanceId, long startTimestamp, long endTimestamp) throws CloudException, InternalException {
@@ -673,15 +735,54 @@ public class EC2Instance implements VirtualMachineSupport {
 	public @Nullable VirtualMachine getVirtualMachine(@Nonnull String instanceId) throws InternalException, CloudException {
         ProviderContext ctx = provider.getContext();
         
+        if( ctx == null ) {
+            throw new CloudException("No context was established for this request");
+        }
+        RequestCoalescer<VirtualMachine> coalescer = provider.getCoalescer(ResourceWaiter.INSTANCE, new RequestCoalescer.BatchLoader<VirtualMachine>() {
+            public @Nonnull Map<String,VirtualMachine> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadVirtualMachines(ids);
+            }
+        });
+
+        return coalescer.get(instanceId);
+	}
+
+    /**
+     * Describes the specified instances with a single <code>DescribeInstances</code> call. Against AWS the IDs are
+     * passed as a filter so that missing instances are simply absent; elsewhere a <code>NotFound</code> error for a
+     * batch causes each instance to be described individually.
+     * @param instanceIds the instances to describe
+     * @return the instances found, keyed by instance ID
+     * @throws InternalException an error occurred within Dasein Cloud while loading the instances
+     * @throws CloudException an error occurred with the cloud provider while loading the instances
+     */
+    @Nonnull Map<String,VirtualMachine> loadVirtualMachines(@Nonnull Collection<String> instanceIds) throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+        
         if( ctx == null ) {
             throw new CloudException("No context was established for this request");
         }
 		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_INSTANCES);
+        HashMap<String,VirtualMachine> servers = new HashMap<String,VirtualMachine>();
 		EC2Method method;
         NodeList blocks;
 		Document doc;
-        
-        parameters.put("InstanceId.1", instanceId);
+        int i = 1;
+
+        if( instanceIds.isEmpty() ) {
+            return servers;
+        }
+        if( provider.getEC2Provider().isAWS() ) {
+            parameters.put("Filter.1.Name", "instance-id");
+            for( String id : instanceIds ) {
+                parameters.put("Filter.1.Value." + (i++), id);
+            }
+        }
+        else {
+            for( String id : instanceIds ) {
+                parameters.put("InstanceId." + (i++), id);
+            }
+        }
         method = new EC2Method(provider, provider.getEc2Url(), parameters);
         try {
         	doc = method.invoke();
@@ -690,42 +791,49 @@ public class EC2Instance implements VirtualMachineSupport {
         	String code = e.getCode();
         	
         	if( code != null && code.startsWith("InvalidInstanceID") ) {
-        		return null;
+        	    if( instanceIds.size() > 1 ) {
+        	        for( String id : instanceIds ) {
+        	            servers.putAll(loadVirtualMachines(Collections.singletonList(id)));
+        	        }
+        	    }
+        		return servers;
         	}
         	logger.error(e.getSummary());
         	throw new CloudException(e);
         }
+        Iterable<IpAddress> addresses = null;
+
         blocks = doc.getElementsByTagName("instancesSet");
-        for( int i=0; i<blocks.getLength(); i++ ) {
+        for( i=0; i<blocks.getLength(); i++ ) {
         	NodeList instances = blocks.item(i).getChildNodes();
         	
             for( int j=0; j<instances.getLength(); j++ ) {
             	Node instance = instances.item(j);
             	
             	if( instance.getNodeName().equals("item") ) {
-                    Iterable<IpAddress> addresses = Collections.emptyList();
-
-
-                    if( provider.hasNetworkServices() ) {
-                        NetworkServices services = provider.getNetworkServices();
+            	    if( addresses == null ) {
+                        addresses = Collections.emptyList();
+                        if( provider.hasNetworkServices() ) {
+                            NetworkServices services = provider.getNetworkServices();
 
-                        if( services != null ) {
-                            IpAddressSupport support = services.getIpAddressSupport();
+                            if( services != null ) {
+                                IpAddressSupport support = services.getIpAddressSupport();
 
-                            if( support != null ) {
-                                addresses = support.listIpPool(IPVersion.IPV4, false);
+                                if( support != null ) {
+                                    addresses = support.listIpPool(IPVersion.IPV4, false);
+                                }
                             }
                         }
-                    }
+            	    }
             		VirtualMachine server = toVirtualMachine(ctx, instance, addresses);
             		
-            		if( server != null && server.getProviderVirtualMachineId().equals(instanceId) ) {
-            			return server;
+            		if( server != null && instanceIds.contains(server.getProviderVirtualMachineId()) ) {
+            			servers.put(server.getProviderVirtualMachineId(), server);
             		}
             	}
             }
         }
-        return null;
+        return servers;
 	}
 	
 	@Override
@@ -776,12 +884,7 @@ public class EC2Instance implements VirtualMachineSupport {
         if( endTimestamp < 1L ) {
             endTimestamp = System.currentTimeMillis() + 1000L;
         }
-        if( startTimestamp > (endTimestamp - (2L * CalendarWrapper.MINUTE)) ) {
-            startTimestamp = endTimestamp - (2L * CalendarWrapper.MINUTE);
-        }
-        else if( startTimestamp < (System.currentTimeMillis() - (2L * CalendarWrapper.DAY)) ) {
-            startTimestamp = System.currentTimeMillis() - (2L * CalendarWrapper.DAY);
-        }
+        startTimestamp = normalizeStartTimestamp(startTimestamp, endTimestamp);
 
         calculateCpuUtilization(statistics, instanceId, startTimestamp, endTimestamp);
         calculateDiskReadBytes(statistics, instanceId, startTimestamp, endTimestamp);
@@ -793,6 +896,16 @@ public class EC2Instance implements VirtualMachineSupport {
         return statistics;
 	}
 
+    static long normalizeStartTimestamp(long startTimestamp, long endTimestamp) {
+        if( startTimestamp > (endTimestamp - (2L * CalendarWrapper.MINUTE)) ) {
+            return endTimestamp - (2L * CalendarWrapper.MINUTE);
+        }
+        else if( startTimestamp < (System.currentTimeMillis() - (2L * CalendarWrapper.DAY)) ) {
+            return System.currentTimeMillis() - (2L * CalendarWrapper.DAY);
+        }
+        return startTimestamp;
+    }
+
     @Override
     public @Nonnull Iterable<VmStatistics> getVMStatisticsForPeriod(@Nonnull String instanceId, long startTimestamp, long endTimestamp) throws InternalException, CloudException {
         if( endTimestamp < 1L ) {
@@ -804,133 +917,41 @@ public class EC2Instance implements VirtualMachineSupport {
         else if( startTimestamp < (System.currentTimeMillis() - CalendarWrapper.DAY) ) {
             startTimestamp = System.currentTimeMillis() - CalendarWrapper.DAY;
         }
-        TreeMap<Integer,VmStatistics> statMap = new TreeMap<Integer,VmStatistics>();
-        int minutes = (int)((endTimestamp-startTimestamp)/CalendarWrapper.MINUTE);
+        return getVMStatisticsSeries(instanceId, startTimestamp, endTimestamp).asStatistics();
+    }
 
-        for( int i =1; i<=minutes; i++ ) {
-            statMap.put(i, new VmStatistics());
-        }
-        Set<Metric> metrics = calculate("CPUUtilization", "Percent", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageCpuUtilization(m.average);
-            stats.setMaximumCpuUtilization(m.maximum);
-            stats.setMinimumCpuUtilization(m.minimum);
-            stats.setStartTimestamp(m.timestamp);
-            stats.setEndTimestamp(m.timestamp);
-            stats.setSamples(m.samples);
-        }
-        metrics = calculate("DiskReadBytes", "Bytes", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageDiskReadBytes(m.average);
-            stats.setMinimumDiskReadBytes(m.minimum);
-            stats.setMaximumDiskReadBytes(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }
-        }
-        metrics = calculate("DiskReadOps", "Count", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageDiskReadOperations(m.average);
-            stats.setMinimumDiskReadOperations(m.minimum);
-            stats.setMaximumDiskReadOperations(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }            
-        }
-        metrics = calculate("DiskWriteBytes", "Bytes", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageDiskWriteBytes(m.average);
-            stats.setMinimumDiskWriteBytes(m.minimum);
-            stats.setMaximumDiskWriteBytes(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }
-        }
-        metrics = calculate("DiskWriteOps", "Count", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageDiskWriteOperations(m.average);
-            stats.setMinimumDiskWriteOperations(m.minimum);
-            stats.setMaximumDiskWriteOperations(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }
+    /**
+     * Loads one minute resolution statistics for the specified instance into a compact {@link VmStatisticsSeries}.
+     * Callers interested in longer periods should use {@link VmStatisticsSeries#rollup(long)} on the result.
+     * @param instanceId the instance whose statistics are being loaded
+     * @param startTimestamp the start of the period, clamped to no more than one day ago
+     * @param endTimestamp the end of the period, or 0 for now
+     * @return the statistics for the period
+     * @throws InternalException an error occurred within Dasein Cloud while loading the statistics
+     * @throws CloudException an error occurred with the cloud provider while loading the statistics
+     */
+    public @Nonnull VmStatisticsSeries getVMStatisticsSeries(@Nonnull String instanceId, long startTimestamp, long endTimestamp) throws InternalException, CloudException {
+        if( endTimestamp < 1L ) {
+            endTimestamp = System.currentTimeMillis() + 1000L;
         }
-        metrics = calculate("NetworkIn", "Bytes", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageNetworkIn(m.average);
-            stats.setMinimumNetworkIn(m.minimum);
-            stats.setMaximumNetworkIn(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }
+        if( startTimestamp > (endTimestamp - (2L * CalendarWrapper.MINUTE)) ) {
+            startTimestamp = endTimestamp - (2L * CalendarWrapper.MINUTE);
         }
-        metrics = calculate("NetworkOut", "Bytes", instanceId, startTimestamp, endTimestamp);
-        for( Metric m : metrics ) {
-            int minute = 1 + (int)((m.timestamp - startTimestamp)/CalendarWrapper.MINUTE);
-            VmStatistics stats = statMap.get(minute);
-            
-            if( stats == null ) {
-                stats = new VmStatistics();
-                statMap.put(minute, stats);
-            }
-            stats.setAverageNetworkOut(m.average);
-            stats.setMinimumNetworkOut(m.minimum);
-            stats.setMaximumNetworkOut(m.maximum);
-            if( stats.getSamples() < 1 ) {
-                stats.setSamples(m.samples);
-            }
+        else if( startTimestamp < (System.currentTimeMillis() - CalendarWrapper.DAY) ) {
+            startTimestamp = System.currentTimeMillis() - CalendarWrapper.DAY;
         }
-        ArrayList<VmStatistics> list = new ArrayList<VmStatistics>();
-        for( Map.Entry<Integer,VmStatistics> entry : statMap.entrySet() ) {
-            VmStatistics stats = entry.getValue();
-            
-            if( stats != null && stats.getSamples() > 0 ) {
-                list.add(stats);
-            }
+        final VmStatisticsSeries series = new VmStatisticsSeries(startTimestamp, endTimestamp, VmStatisticsSeries.ONE_MINUTE);
+
+        for( int i=0; i<METRICS.length; i++ ) {
+            final int metric = i;
+
+            loadMetric(metric, instanceId, startTimestamp, endTimestamp, new Datapoints() {
+                public void record(long timestamp, int samples, double average, double minimum, double maximum) {
+                    series.record(metric, timestamp, samples, average, minimum, maximum);
+                }
+            });
         }
-        return list;
+        return series;
     }
 
     @Override
@@ -1048,6 +1069,36 @@ public class EC2Instance implements VirtualMachineSupport {
 	
     @Override
     public @Nonnull VirtualMachine launch(@Nonnull VMLaunchOptions cfg) throws CloudException, InternalException {
+        List<VirtualMachine> servers = launchMany(cfg, 1, 1, UUID.randomUUID().toString());
+
+        return (servers.isEmpty() ? null : servers.get(0));
+    }
+
+    /**
+     * Launches a batch of identical instances with a single <code>RunInstances</code> request. A random client
+     * token is generated so that retries of the request do not launch additional instances.
+     * @param cfg the launch configuration shared by every instance in the batch
+     * @param count the number of instances to launch
+     * @return the instances that were launched
+     * @throws CloudException an error occurred with the cloud provider while launching the instances
+     * @throws InternalException an error occurred within Dasein Cloud while launching the instances
+     */
+    public @Nonnull List<VirtualMachine> launchMany(@Nonnull VMLaunchOptions cfg, @Nonnegative int count) throws CloudException, InternalException {
+        return launchMany(cfg, count, count, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Launches a batch of identical instances with a single <code>RunInstances</code> request. Tagging, password
+     * retrieval and attachment of existing volumes happen in the background once EC2 has accepted the request.
+     * @param cfg the launch configuration shared by every instance in the batch
+     * @param minCount the minimum number of instances EC2 must be able to launch for the request to succeed
+     * @param maxCount the maximum number of instances to launch
+     * @param clientToken a unique token that makes the request idempotent, or <code>null</code> for none
+     * @return the instances that were launched, empty if EC2 had insufficient capacity
+     * @throws CloudException an error occurred with the cloud provider while launching the instances
+     * @throws InternalException an error occurred within Dasein Cloud while launching the instances
+     */
+    public @Nonnull List<VirtualMachine> launchMany(@Nonnull VMLaunchOptions cfg, @Nonnegative int minCount, @Nonnegative int maxCount, @Nullable String clientToken) throws CloudException, InternalException {
         ProviderContext ctx = provider.getContext();
 
         if( ctx == null ) {
@@ -1065,8 +1116,17 @@ public class EC2Instance implements VirtualMachineSupport {
         Document doc;
 
         parameters.put("ImageId", cfg.getMachineImageId());
-        parameters.put("MinCount", "1");
-        parameters.put("MaxCount", "1");
+        if( minCount < 1 ) {
+            minCount = 1;
+        }
+        if( maxCount < minCount ) {
+            maxCount = minCount;
+        }
+        parameters.put("MinCount", String.valueOf(minCount));
+        parameters.put("MaxCount", String.valueOf(maxCount));
+        if( clientToken != null ) {
+            parameters.put("ClientToken", clientToken);
+        }
         parameters.put("InstanceType", cfg.getStandardProductId());
         if( ramdiskImage != null ) {
             parameters.put("ramdiskId", ramdiskImage);
@@ -1121,7 +1181,7 @@ public class EC2Instance implements VirtualMachineSupport {
         if( provider.getEC2Provider().isAWS() ) {
             parameters.put("Monitoring.Enabled", String.valueOf(cfg.isExtendedAnalytics()));
         }
-        final ArrayList<VMLaunchOptions.VolumeAttachment> existingVolumes = new ArrayList<VMLaunchOptions.VolumeAttachment>();
+        ArrayList<VMLaunchOptions.VolumeAttachment> existingVolumes = new ArrayList<VMLaunchOptions.VolumeAttachment>();
         TreeSet<String> deviceIds = new TreeSet<String>();
         
         if( cfg.getVolumes().length > 0 ) {
@@ -1164,6 +1224,9 @@ public class EC2Instance implements VirtualMachineSupport {
                 }
             }
         }
+        if( !existingVolumes.isEmpty() && maxCount > 1 ) {
+            throw new InternalException("Existing volumes may only be attached when launching a single instance");
+        }
         VMLaunchOptions.NICConfig[] nics = cfg.getNetworkInterfaces();
 
         if( nics != null && nics.length > 0 ) {
@@ -1200,13 +1263,14 @@ public class EC2Instance implements VirtualMachineSupport {
             String code = e.getCode();
 
             if( code != null && code.equals("InsufficientInstanceCapacity") ) {
-                return null;
+                return Collections.emptyList();
             }
             logger.error(e.getSummary());
             throw new CloudException(e);
         }
         blocks = doc.getElementsByTagName("instancesSet");
-        VirtualMachine server = null;
+        ArrayList<VirtualMachine> servers = new ArrayList<VirtualMachine>();
+
         for( int i=0; i<blocks.getLength(); i++ ) {
             NodeList instances = blocks.item(i).getChildNodes();
 
@@ -1214,68 +1278,18 @@ public class EC2Instance implements VirtualMachineSupport {
                 Node instance = instances.item(j);
 
                 if( instance.getNodeName().equals("item") ) {
-                    server = toVirtualMachine(ctx, instance, new ArrayList<IpAddress>() /* can't be an elastic IP */);
+                    VirtualMachine server = toVirtualMachine(ctx, instance, new ArrayList<IpAddress>() /* can't be an elastic IP */);
+
                     if( server != null ) {
-                        break;
+                        server.setName(cfg.getFriendlyName());
+                        server.setDescription(cfg.getDescription());
+                        servers.add(server);
                     }
                 }
             }
         }
-        if( server != null && cfg.getBootstrapKey() != null ) {
-            try {
-                final String sid = server.getProviderVirtualMachineId();
-
-                Callable<String> pwMethod = new Callable<String>() {
-                    public String call() throws CloudException {
-                        try {
-                            Map<String,String> params = provider.getStandardParameters(provider.getContext(), EC2Method.GET_PASSWORD_DATA);
-                            EC2Method m;
-
-                            params.put("InstanceId", sid);
-                            m = new EC2Method(provider, provider.getEc2Url(), params);
-
-                            Document doc = m.invoke();
-                            NodeList blocks = doc.getElementsByTagName("passwordData");
-
-                            if( blocks.getLength() > 0 ) {
-                                Node pw = blocks.item(0);
-
-                                if( pw.hasChildNodes() ) {
-                                    String password = pw.getFirstChild().getNodeValue();
-
-                                    provider.release();
-                                    return password;
-                                }
-                                return null;
-                            }
-                            return null;
-                        }
-                        catch( Throwable t ) {
-                            throw new CloudException("Unable to retrieve password for " + sid + ", Let's hope it's Unix: " + t.getMessage());
-                        }
-                    }
-                };
-
-                provider.hold();
-                try {
-                    String password = pwMethod.call();
-
-                    if( password == null ) {
-                        server.setRootPassword(null);
-                        server.setPasswordCallback(pwMethod);
-                    }
-                    else {
-                        server.setRootPassword(password);
-                    }
-                    server.setPlatform(Platform.WINDOWS);
-                }
-                catch( CloudException e ) {
-                    logger.warn(e.getMessage());
-                }
-            }
-            catch( Throwable t ) {
-                logger.warn("Unable to retrieve password for " + server.getProviderVirtualMachineId() + ", Let's hope it's Unix: " + t.getMessage());
-            }
+        if( servers.isEmpty() ) {
+            return servers;
         }
         Map<String,Object> meta = cfg.getMetaData();
         Tag[] toCreate;
@@ -1310,33 +1324,8 @@ public class EC2Instance implements VirtualMachineSupport {
         t.setKey("Description");
         t.setValue(cfg.getDescription());
         toCreate[i] = t;
-        provider.createTags(server.getProviderVirtualMachineId(), toCreate);
-        if( !existingVolumes.isEmpty() ) {
-            final VirtualMachine vm = server;
-
-            provider.hold();
-            Thread thread = new Thread() {
-                public void run() {
-                    try {
-                        for( VMLaunchOptions.VolumeAttachment a : existingVolumes ) {
-                            try {
-                                provider.getComputeServices().getVolumeSupport().attach(a.existingVolumeId, vm.getProviderMachineImageId(), a.deviceId);
-                            }
-                            catch( Throwable t ) {
-                                t.printStackTrace();
-                            }
-                        }
-                    }
-                    finally {
-                        provider.release();
-                    }
-                }
-            };
-            
-            thread.setName("Volume Mounter for " + server);
-            thread.start();
-        }
-        return server;        
+        new LaunchPipeline(provider).submit(servers, toCreate, existingVolumes, cfg.getBootstrapKey() != null, img.getPlatform().isWindows());
+        return servers;
     }
     
 	@Override
@@ -1430,6 +1419,52 @@ public class EC2Instance implements VirtualMachineSupport {
         return launch(cfg);
 	}
 
+    /**
+     * Describes instances, parsing only the named fields of each one. The parser skips every other element, which makes
+     * this far cheaper than building full objects when only a few fields are needed, for example
+     * <code>listVirtualMachineFields(null, "instanceId", "instanceState/name")</code> for a health check.
+     * @param ids the instances to describe, or <code>null</code> for every instance
+     * @param fields the element paths of the fields needed, relative to each <code>instancesSet</code> item
+     * @return the fields of each instance found, keyed by field path
+     * @throws InternalException an error occurred within Dasein Cloud while describing the instances
+     * @throws CloudException an error occurred with the cloud provider while describing the instances
+     */
+    public @Nonnull List<Map<String,String>> listVirtualMachineFields(@Nullable Collection<String> ids, @Nonnull String ... fields) throws InternalException, CloudException {
+        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.DESCRIBE_INSTANCES);
+        EC2Method method;
+        int i = 1;
+
+        if( ids != null ) {
+            if( ids.isEmpty() ) {
+                return new ArrayList<Map<String,String>>();
+            }
+            if( provider.getEC2Provider().isAWS() ) {
+                parameters.put("Filter.1.Name", "instance-id");
+                for( String id : ids ) {
+                    parameters.put("Filter.1.Value." + (i++), id);
+                }
+            }
+            else {
+                for( String id : ids ) {
+                    parameters.put("InstanceId." + (i++), id);
+                }
+            }
+        }
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            return method.invoke("instancesSet", new Projection(fields));
+        }
+        catch( EC2Exception e ) {
+            String code = e.getCode();
+
+            if( code != null && code.startsWith("InvalidInstanceID") ) {
+                return new ArrayList<Map<String,String>>();
+            }
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
 	@Override
 	public @Nonnull Iterable<VirtualMachine> listVirtualMachines() throws InternalException, CloudException {
         ProviderContext ctx = provider.getContext();
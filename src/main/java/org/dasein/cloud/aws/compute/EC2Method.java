@@ -25,15 +25,21 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -71,6 +77,7 @@ import org.dasein.cloud.network.IpAddressSupport;
 import org.dasein.cloud.network.VLANSupport;
 import org.dasein.cloud.network.VPNSupport;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
@@ -494,8 +501,23 @@ public class EC2Method {
         return new ServiceAction[0];
     }
 
+    /**
+     * Receives the items of a describe response one at a time as they are parsed.
+     */
+    static public interface ItemHandler {
+        /**
+         * @param item an <code>item</code> element, detached from the response document
+         * @throws CloudException the item describes an invalid resource
+         * @throws InternalException an error occurred within Dasein Cloud while handling the item
+         */
+        public void handle(@Nonnull Node item) throws CloudException, InternalException;
+    }
+
 	private int                attempts    = 0;
+	private ItemHandler        itemHandler = null;
+	private String             itemSet     = null;
 	private Map<String,String> parameters  = null;
+	private Projection         projection  = null;
 	private AWSCloud           provider    = null;
 	private String             url         = null;
 	
@@ -523,6 +545,67 @@ public class EC2Method {
 	    return invoke(false);
 	}
 
+    /**
+     * Invokes the method and hands each <code>item</code> of the named set to the handler as soon as it has been
+     * parsed instead of after the whole response has been read. Streamed items are not kept in the returned
+     * document, so memory use no longer grows with the size of the response.
+     * @param setElement the name of the element whose items are streamed, such as <code>imagesSet</code>
+     * @param handler the handler that receives each item
+     * @return the rest of the response, such as any <code>nextToken</code>
+     * @throws EC2Exception the cloud returned an error
+     * @throws CloudException an error occurred communicating with the cloud or in the handler
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Document invoke(@Nonnull String setElement, @Nonnull ItemHandler handler) throws EC2Exception, CloudException, InternalException {
+        return invoke(setElement, null, handler);
+    }
+
+    /**
+     * Invokes the method and streams each <code>item</code> (or, for query APIs such as ELB, each
+     * <code>member</code>) of the named set to the handler, keeping only the projected fields of each item.
+     * Everything else within an item is skipped by the parser without being built.
+     * @param setElement the name of the element whose items are streamed, such as <code>instancesSet</code>
+     * @param projection the fields to keep, or <code>null</code> to keep whole items
+     * @param handler the handler that receives each item
+     * @return the rest of the response, such as any <code>nextToken</code>
+     * @throws EC2Exception the cloud returned an error
+     * @throws CloudException an error occurred communicating with the cloud or in the handler
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Document invoke(@Nonnull String setElement, @Nullable Projection projection, @Nonnull ItemHandler handler) throws EC2Exception, CloudException, InternalException {
+        itemSet = setElement;
+        itemHandler = handler;
+        this.projection = projection;
+        try {
+            return invoke(false);
+        }
+        finally {
+            itemSet = null;
+            itemHandler = null;
+            this.projection = null;
+        }
+    }
+
+    /**
+     * Invokes the method and extracts only the projected fields of each item of the named set as text.
+     * @param setElement the name of the element whose items are read, such as <code>instancesSet</code>
+     * @param projection the fields to extract
+     * @return the fields of each item in the order the items appear, keyed by field path
+     * @throws EC2Exception the cloud returned an error
+     * @throws CloudException an error occurred communicating with the cloud
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull List<Map<String,String>> invoke(@Nonnull String setElement, final @Nonnull Projection projection) throws EC2Exception, CloudException, InternalException {
+        final ArrayList<Map<String,String>> items = new ArrayList<Map<String,String>>();
+
+        invoke(setElement, projection, new ItemHandler() {
+            public void handle(@Nonnull Node item) {
+                items.add(projection.values(item));
+            }
+        });
+        return items;
+    }
+
     protected @Nonnull HttpClient getClient() throws InternalException {
         ProviderContext ctx = provider.getContext();
 
@@ -619,7 +702,7 @@ public class EC2Method {
                     InputStream input = entity.getContent();
 
                     try {
-                        return parseResponse(input);
+                        return (itemHandler == null ? parseResponse(input) : streamResponse(input));
                     }
                     finally {
                         input.close();
@@ -854,6 +937,124 @@ public class EC2Method {
         }   
 	}
 	
+    static private boolean isItem(@Nonnull String name) {
+        return (name.equals("item") || name.equals("member"));
+    }
+
+    private @Nonnull Document streamResponse(@Nonnull InputStream input) throws CloudException, InternalException {
+        if( wire.isDebugEnabled() ) {
+            // the wire log needs the whole body, so parse it as usual and hand the items over afterwards
+            Document doc = parseResponse(input);
+            NodeList sets = doc.getElementsByTagName(itemSet);
+            ArrayList<Node> items = new ArrayList<Node>();
+
+            for( int i=0; i<sets.getLength(); i++ ) {
+                NodeList children = sets.item(i).getChildNodes();
+
+                for( int j=0; j<children.getLength(); j++ ) {
+                    if( isItem(children.item(j).getNodeName()) ) {
+                        items.add(children.item(j));
+                    }
+                }
+            }
+            for( Node item : items ) {
+                item.getParentNode().removeChild(item);
+                if( projection != null ) {
+                    projection.prune(item);
+                }
+                itemHandler.handle(item);
+            }
+            return doc;
+        }
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            XMLStreamReader reader = factory.createXMLStreamReader(input);
+            // projection positions of the open elements within the current item; empty outside items
+            LinkedList<Object> positions = new LinkedList<Object>();
+            Node current = doc;
+            int skipping = 0;
+
+            try {
+                while( reader.hasNext() ) {
+                    int event = reader.next();
+
+                    if( skipping > 0 ) {
+                        if( event == XMLStreamConstants.START_ELEMENT ) {
+                            skipping++;
+                        }
+                        else if( event == XMLStreamConstants.END_ELEMENT ) {
+                            skipping--;
+                        }
+                        continue;
+                    }
+                    switch( event ) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            String name = reader.getLocalName();
+
+                            if( projection != null ) {
+                                if( positions.isEmpty() ) {
+                                    if( isItem(name) && current.getNodeName().equals(itemSet) ) {
+                                        positions.push(projection.getRoot());
+                                    }
+                                }
+                                else {
+                                    Object position = projection.descend(positions.peek(), name);
+
+                                    if( position == null ) {
+                                        skipping = 1;
+                                        break;
+                                    }
+                                    positions.push(position);
+                                }
+                            }
+                            Element element = doc.createElement(name);
+
+                            for( int i=0; i<reader.getAttributeCount(); i++ ) {
+                                element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                            }
+                            current.appendChild(element);
+                            current = element;
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.CDATA:
+                        case XMLStreamConstants.SPACE:
+                            if( current != doc ) {
+                                current.appendChild(doc.createTextNode(reader.getText()));
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            Node parent = current.getParentNode();
+
+                            if( !positions.isEmpty() ) {
+                                positions.pop();
+                            }
+                            if( parent != null && isItem(current.getNodeName()) && parent.getNodeName().equals(itemSet) ) {
+                                parent.removeChild(current);
+                                itemHandler.handle(current);
+                            }
+                            current = parent;
+                            break;
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+            return doc;
+        }
+        catch( ParserConfigurationException e ) {
+            throw new CloudException(e);
+        }
+        catch( XMLStreamException e ) {
+            throw new CloudException(e);
+        }
+    }
+
 	private Document parseResponse(InputStream responseBodyAsStream) throws CloudException, InternalException {
 		try {
 			BufferedReader in = new BufferedReader(new InputStreamReader(responseBodyAsStream));
@@ -0,0 +1,270 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.RequestThrottle;
+import org.dasein.cloud.compute.ScalingGroup;
+import org.dasein.cloud.compute.VmStatistics;
+
+/**
+ * Loads CloudWatch statistics for many instances at once. Each instance requires one
+ * <code>GetMetricStatistics</code> call per metric, so the calls are scheduled across a bounded set of workers
+ * under a {@link RequestThrottle} and each instance's statistics are pushed to the caller as soon as all of its
+ * metrics have arrived.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class FleetStatistics {
+    static private final Logger logger = AWSCloud.getLogger(FleetStatistics.class);
+
+    static public final int DEFAULT_MAX_CONCURRENT = 10;
+    static public final int DEFAULT_MAX_PER_SECOND = 20;
+
+    /**
+     * The statistics for a single member of the fleet. If any of the metrics for the instance failed to load,
+     * {@link #getError()} describes the first failure and the statistics are partial.
+     */
+    static public class InstanceStatistics {
+        private Throwable    error;
+        private String       instanceId;
+        private VmStatistics statistics;
+
+        InstanceStatistics(@Nonnull String instanceId) {
+            this.instanceId = instanceId;
+            this.statistics = new VmStatistics();
+        }
+
+        public @Nullable Throwable getError() {
+            return error;
+        }
+
+        public @Nonnull String getInstanceId() {
+            return instanceId;
+        }
+
+        public @Nonnull VmStatistics getStatistics() {
+            return statistics;
+        }
+
+        synchronized void fail(@Nonnull Throwable t) {
+            if( error == null ) {
+                error = t;
+            }
+        }
+
+        @Override
+        public @Nonnull String toString() {
+            return (instanceId + (error == null ? "" : (" [" + error.getMessage() + "]")));
+        }
+    }
+
+    /**
+     * Hands each instance's statistics to the consumer as they complete. The statistics can be iterated only once.
+     */
+    static private class Arrivals implements Iterable<InstanceStatistics>, Iterator<InstanceStatistics> {
+        private LinkedBlockingQueue<InstanceStatistics> queue = new LinkedBlockingQueue<InstanceStatistics>();
+        private int                                     remaining;
+
+        Arrivals(@Nonnegative int remaining) {
+            this.remaining = remaining;
+        }
+
+        public synchronized boolean hasNext() {
+            return (remaining > 0);
+        }
+
+        public @Nonnull Iterator<InstanceStatistics> iterator() {
+            return this;
+        }
+
+        public synchronized @Nonnull InstanceStatistics next() {
+            if( remaining < 1 ) {
+                throw new NoSuchElementException();
+            }
+            try {
+                InstanceStatistics result = queue.take();
+
+                remaining--;
+                return result;
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new LazyListing.ListingException(e);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private int      maxConcurrent;
+    private int      maxPerSecond;
+    private AWSCloud provider;
+
+    FleetStatistics(@Nonnull AWSCloud provider) {
+        this(provider, DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_PER_SECOND);
+    }
+
+    /**
+     * @param provider the cloud whose instances are examined
+     * @param maxConcurrent the maximum number of statistics pool threads working on any one call, and so of requests in flight
+     * @param maxPerSecond the maximum number of requests started per second
+     */
+    FleetStatistics(@Nonnull AWSCloud provider, @Nonnegative int maxConcurrent, @Nonnegative int maxPerSecond) {
+        this.provider = provider;
+        this.maxConcurrent = (maxConcurrent < 1 ? 1 : maxConcurrent);
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * Loads statistics for every instance in the specified list. The returned iterable yields each instance's
+     * statistics as they complete, in no particular order, and may be iterated only once.
+     * @param instanceIds the instances for which statistics are being loaded
+     * @param startTimestamp the start of the statistics period
+     * @param endTimestamp the end of the statistics period, or 0 for now
+     * @return the statistics for each instance as they arrive
+     * @throws CloudException an error occurred with the cloud provider while scheduling the requests
+     * @throws InternalException an error occurred within Dasein Cloud while scheduling the requests
+     */
+    public @Nonnull Iterable<InstanceStatistics> getStatistics(@Nonnull Collection<String> instanceIds, long startTimestamp, long endTimestamp) throws CloudException, InternalException {
+        TreeSet<String> ids = new TreeSet<String>(instanceIds);
+
+        if( ids.isEmpty() ) {
+            return Collections.emptyList();
+        }
+        if( endTimestamp < 1L ) {
+            endTimestamp = System.currentTimeMillis() + 1000L;
+        }
+        final long start = EC2Instance.normalizeStartTimestamp(startTimestamp, endTimestamp);
+        final long end = endTimestamp;
+        final Arrivals arrivals = new Arrivals(ids.size());
+        final ConcurrentLinkedQueue<Runnable> work = new ConcurrentLinkedQueue<Runnable>();
+        final EC2Instance support = new EC2Instance(provider);
+        final RequestThrottle throttle = new RequestThrottle(maxConcurrent, maxPerSecond);
+
+        for( String instanceId : ids ) {
+            final InstanceStatistics result = new InstanceStatistics(instanceId);
+            final AtomicInteger remaining = new AtomicInteger(EC2Instance.METRICS.length);
+
+            for( final String metric : EC2Instance.METRICS ) {
+                work.add(new Runnable() {
+                    public void run() {
+                        try {
+                            throttle.acquire();
+                            try {
+                                support.calculateMetric(result.getStatistics(), metric, result.getInstanceId(), start, end);
+                            }
+                            finally {
+                                throttle.release();
+                            }
+                        }
+                        catch( InterruptedException e ) {
+                            Thread.currentThread().interrupt();
+                            result.fail(e);
+                        }
+                        catch( Throwable t ) {
+                            logger.warn("Unable to load " + metric + " for " + result.getInstanceId() + ": " + t.getMessage());
+                            result.fail(t);
+                        }
+                        finally {
+                            if( remaining.decrementAndGet() == 0 ) {
+                                arrivals.queue.add(result);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        ExecutorService workers = provider.getExecutors().getPool(ManagedExecutors.STATISTICS);
+        int count = Math.min(maxConcurrent, work.size());
+
+        // no more than maxConcurrent pool threads work through the requests, however large the fleet
+        for( int i=0; i<count; i++ ) {
+            provider.hold();
+            workers.execute(new Runnable() {
+                public void run() {
+                    try {
+                        Runnable next;
+
+                        while( (next = work.poll()) != null ) {
+                            next.run();
+                        }
+                    }
+                    finally {
+                        provider.release();
+                    }
+                }
+            });
+        }
+        return arrivals;
+    }
+
+    /**
+     * Loads statistics for every instance currently in the specified auto-scaling group.
+     * @param scalingGroupId the auto-scaling group whose members are being examined
+     * @param startTimestamp the start of the statistics period
+     * @param endTimestamp the end of the statistics period, or 0 for now
+     * @return the statistics for each member instance as they arrive
+     * @throws CloudException the scaling group does not exist or an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud while scheduling the requests
+     */
+    public @Nonnull Iterable<InstanceStatistics> getStatisticsForScalingGroup(@Nonnull String scalingGroupId, long startTimestamp, long endTimestamp) throws CloudException, InternalException {
+        EC2ComputeServices services = provider.getComputeServices();
+        AutoScaling support = (services == null ? null : services.getAutoScalingSupport());
+
+        if( support == null ) {
+            throw new CloudException("Auto-scaling is not supported in this cloud");
+        }
+        ScalingGroup group = support.getScalingGroup(scalingGroupId);
+
+        if( group == null ) {
+            throw new CloudException("No such scaling group: " + scalingGroupId);
+        }
+        String[] ids = group.getProviderServerIds();
+
+        if( ids == null || ids.length < 1 ) {
+            return Collections.emptyList();
+        }
+        TreeSet<String> instanceIds = new TreeSet<String>();
+
+        Collections.addAll(instanceIds, ids);
+        return getStatistics(instanceIds, startTimestamp, endTimestamp);
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.Tag;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.compute.Platform;
+import org.dasein.cloud.compute.VMLaunchOptions;
+import org.dasein.cloud.compute.VirtualMachine;
+import org.dasein.util.CalendarWrapper;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Carries out the work that follows a <code>RunInstances</code> call (tagging, retrieving Windows passwords and
+ * attaching existing volumes) in the background. Tags go through the shared {@link org.dasein.cloud.aws.TagWriter};
+ * the other steps are retried with exponential backoff while EC2 reports that the new instance is not yet visible
+ * or not yet in a state that allows the operation, so the launch call itself returns as soon as EC2 has accepted
+ * the request.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+class LaunchPipeline {
+    static private final Logger logger = AWSCloud.getLogger(LaunchPipeline.class);
+
+    static private final long INITIAL_DELAY = 2000L;
+    static private final long MAXIMUM_DELAY = 30000L;
+    static private final long TIMEOUT       = 20L * CalendarWrapper.MINUTE;
+
+    /**
+     * A single post-launch operation that is retried with backoff until it succeeds, fails outright or times out.
+     */
+    private abstract class Step implements Runnable {
+        private long   delay   = INITIAL_DELAY;
+        private long   timeout = System.currentTimeMillis() + TIMEOUT;
+        private String name;
+        private String regionId;
+
+        Step(@Nonnull String name) {
+            this.name = name;
+            // steps run on the launch scheduler, which does not inherit the region of the launch
+            this.regionId = AWSCloud.getRegionOverride();
+        }
+
+        /**
+         * @return true if the step is finished, false if it should be retried later
+         * @throws CloudException the step failed and should not be retried
+         * @throws InternalException the step failed and should not be retried
+         */
+        abstract boolean attempt() throws CloudException, InternalException;
+
+        public void run() {
+            String previous = AWSCloud.getRegionOverride();
+            boolean done = true;
+
+            try {
+                AWSCloud.setRegionOverride(regionId);
+                done = attempt();
+            }
+            catch( Throwable t ) {
+                logger.warn(name + " failed: " + t.getMessage());
+            }
+            finally {
+                AWSCloud.setRegionOverride(previous);
+            }
+            if( !done ) {
+                if( System.currentTimeMillis() + delay > timeout ) {
+                    logger.warn(name + " timed out");
+                }
+                else {
+                    if( logger.isDebugEnabled() ) {
+                        logger.debug(name + " not yet possible, retrying in " + delay + "ms");
+                    }
+                    getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+                    delay = Math.min(delay * 2L, MAXIMUM_DELAY);
+                    return;
+                }
+            }
+            provider.release();
+        }
+
+        void start() {
+            provider.hold();
+            getScheduler().execute(this);
+        }
+    }
+
+    private AWSCloud provider;
+
+    LaunchPipeline(@Nonnull AWSCloud provider) {
+        this.provider = provider;
+    }
+
+    private @Nonnull ScheduledExecutorService getScheduler() {
+        return provider.getExecutors().getScheduler(ManagedExecutors.LAUNCH);
+    }
+
+    /**
+     * Schedules the post-launch work for a batch of instances launched from a single request.
+     * @param servers the newly launched instances
+     * @param tags the tags to place on every instance
+     * @param existingVolumes volumes to attach to the instance, only valid for a batch of one
+     * @param fetchPassword true if the Windows administrator password should be retrieved
+     * @param windows true if the image is known to be Windows and the password should be waited for
+     */
+    void submit(@Nonnull Collection<VirtualMachine> servers, @Nonnull Tag[] tags, @Nonnull Collection<VMLaunchOptions.VolumeAttachment> existingVolumes, boolean fetchPassword, boolean windows) {
+        for( VirtualMachine vm : servers ) {
+            provider.createTagsAsync(vm.getProviderVirtualMachineId(), tags);
+            if( fetchPassword ) {
+                fetchPassword(vm, windows);
+            }
+            for( VMLaunchOptions.VolumeAttachment a : existingVolumes ) {
+                attach(vm.getProviderVirtualMachineId(), a.existingVolumeId, a.deviceId);
+            }
+        }
+    }
+
+    private void fetchPassword(final @Nonnull VirtualMachine vm, final boolean windows) {
+        final Callable<String> callback = getPasswordCallback(vm.getProviderVirtualMachineId());
+
+        vm.setPasswordCallback(callback);
+        new Step("Password retrieval for " + vm.getProviderVirtualMachineId()) {
+            boolean attempt() throws CloudException, InternalException {
+                String password;
+
+                try {
+                    password = callback.call();
+                }
+                catch( CloudException e ) {
+                    throw e;
+                }
+                catch( Exception e ) {
+                    throw new InternalException(e);
+                }
+                if( password == null ) {
+                    return !windows;
+                }
+                vm.setRootPassword(password);
+                vm.setPlatform(Platform.WINDOWS);
+                return true;
+            }
+        }.start();
+    }
+
+    private void attach(final @Nonnull String instanceId, final @Nonnull String volumeId, final @Nonnull String deviceId) {
+        new Step("Attaching " + volumeId + " to " + instanceId) {
+            boolean attempt() throws CloudException, InternalException {
+                Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.ATTACH_VOLUME);
+                EC2Method method;
+
+                parameters.put("VolumeId", volumeId);
+                parameters.put("InstanceId", instanceId);
+                parameters.put("Device", deviceId);
+                method = new EC2Method(provider, provider.getEc2Url(), parameters);
+                try {
+                    method.invoke();
+                    return true;
+                }
+                catch( EC2Exception e ) {
+                    String code = e.getCode();
+
+                    if( code != null && (code.equals("InvalidInstanceID.NotFound") || code.startsWith("IncorrectState") || code.equals("IncorrectInstanceState")) ) {
+                        return false;
+                    }
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Provides a callback that retrieves the Windows administrator password for an instance on demand, from the
+     * region in effect when the callback was created.
+     * @param instanceId the instance whose password is sought
+     * @return a callback that yields the password, or <code>null</code> if it is not (yet) available
+     */
+    @Nonnull Callable<String> getPasswordCallback(final @Nonnull String instanceId) {
+        final String regionId = AWSCloud.getRegionOverride();
+
+        return new Callable<String>() {
+            public String call() throws CloudException {
+                String previous = AWSCloud.getRegionOverride();
+
+                try {
+                    AWSCloud.setRegionOverride(regionId);
+                    Map<String,String> params = provider.getStandardParameters(provider.getContext(), EC2Method.GET_PASSWORD_DATA);
+                    EC2Method m;
+
+                    params.put("InstanceId", instanceId);
+                    m = new EC2Method(provider, provider.getEc2Url(), params);
+
+                    Document doc = m.invoke();
+                    NodeList blocks = doc.getElementsByTagName("passwordData");
+
+                    if( blocks.getLength() > 0 ) {
+                        Node pw = blocks.item(0);
+
+                        if( pw.hasChildNodes() ) {
+                            return pw.getFirstChild().getNodeValue();
+                        }
+                    }
+                    return null;
+                }
+                catch( Throwable t ) {
+                    throw new CloudException("Unable to retrieve password for " + instanceId + ", Let's hope it's Unix: " + t.getMessage());
+                }
+                finally {
+                    AWSCloud.setRegionOverride(previous);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * The fields of a describe response that a caller actually needs. Fields are named by their element path relative
+ * to each item of the response, with path segments separated by slashes, for example <code>instanceId</code> or
+ * <code>instanceState/name</code>. When a response is streamed with a projection, elements that lie on none of the
+ * paths are skipped by the parser and never built, and a field whose path ends at an element with children keeps
+ * that whole element.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class Projection {
+    static private class Segment {
+        HashMap<String,Segment> children = new HashMap<String,Segment>();
+        boolean                 whole    = false;
+    }
+
+    static private final Segment WHOLE = new Segment();
+
+    static {
+        WHOLE.whole = true;
+    }
+
+    private String[] fields;
+    private Segment  root = new Segment();
+
+    /**
+     * @param fields the paths of the fields to keep, relative to each item
+     */
+    public Projection(@Nonnull String ... fields) {
+        this.fields = fields;
+        for( String field : fields ) {
+            Segment current = root;
+
+            for( String name : field.split("/") ) {
+                if( name.length() < 1 ) {
+                    continue;
+                }
+                Segment next = current.children.get(name);
+
+                if( next == null ) {
+                    next = new Segment();
+                    current.children.put(name, next);
+                }
+                current = next;
+            }
+            current.whole = true;
+        }
+    }
+
+    /**
+     * @return the paths of the fields kept
+     */
+    public @Nonnull String[] getFields() {
+        return fields.clone();
+    }
+
+    /**
+     * @return a position from which the children of an item are matched against the projection
+     */
+    @Nonnull Object getRoot() {
+        return root;
+    }
+
+    /**
+     * Moves one element down from a position within an item.
+     * @param position the position of the parent element, as returned by {@link #getRoot()} or this method
+     * @param name the name of the child element
+     * @return the position of the child element, or <code>null</code> if the child and everything below it is skipped
+     */
+    @Nullable Object descend(@Nonnull Object position, @Nonnull String name) {
+        Segment segment = (Segment)position;
+
+        if( segment.whole ) {
+            return WHOLE;
+        }
+        return segment.children.get(name);
+    }
+
+    /**
+     * Removes from an item every element that lies on none of the projected paths.
+     * @param item the item to prune
+     */
+    void prune(@Nonnull Node item) {
+        prune(item, root);
+    }
+
+    private void prune(@Nonnull Node node, @Nonnull Segment segment) {
+        if( segment.whole ) {
+            return;
+        }
+        NodeList children = node.getChildNodes();
+        ArrayList<Node> skipped = new ArrayList<Node>();
+
+        for( int i=0; i<children.getLength(); i++ ) {
+            Node child = children.item(i);
+
+            if( child.getNodeType() != Node.ELEMENT_NODE ) {
+                continue;
+            }
+            Segment next = segment.children.get(child.getNodeName());
+
+            if( next == null ) {
+                skipped.add(child);
+            }
+            else {
+                prune(child, next);
+            }
+        }
+        for( Node child : skipped ) {
+            node.removeChild(child);
+        }
+    }
+
+    /**
+     * Extracts the projected fields of an item as text. Where an element repeats, the first occurrence is used; a
+     * field that is missing from the item is absent from the map.
+     * @param item the item
+     * @return the text of each field found, keyed by field path
+     */
+    public @Nonnull Map<String,String> values(@Nonnull Node item) {
+        LinkedHashMap<String,String> values = new LinkedHashMap<String,String>();
+
+        for( String field : fields ) {
+            Node current = item;
+
+            for( String name : field.split("/") ) {
+                if( name.length() < 1 ) {
+                    continue;
+                }
+                Node match = null;
+                NodeList children = current.getChildNodes();
+
+                for( int i=0; i<children.getLength(); i++ ) {
+                    if( children.item(i).getNodeName().equals(name) ) {
+                        match = children.item(i);
+                        break;
+                    }
+                }
+                current = match;
+                if( current == null ) {
+                    break;
+                }
+            }
+            if( current != null && current != item ) {
+                String text = current.getTextContent();
+
+                if( text != null ) {
+                    values.put(field, text.trim());
+                }
+            }
+        }
+        return values;
+    }
+}
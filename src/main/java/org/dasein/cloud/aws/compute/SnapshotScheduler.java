@@ -0,0 +1,580 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.RequestThrottle;
+import org.dasein.cloud.aws.ResourceWaiter;
+import org.dasein.cloud.compute.Snapshot;
+import org.dasein.cloud.compute.SnapshotState;
+import org.dasein.util.CalendarWrapper;
+
+/**
+ * Snapshots large numbers of EBS volumes without running into the limits EC2 places on snapshot creation. Volumes
+ * are queued and <code>CreateSnapshot</code> calls are issued at a fixed rate while keeping the number of pending
+ * snapshots below a per-account and a per-volume limit. Progress is tracked through the shared
+ * {@link ResourceWaiter}, which polls all pending snapshots with batched describe calls, and a slot is handed to the
+ * next queued volume as soon as a snapshot completes. When EC2 reports that a limit has been reached anyway (because
+ * of snapshots started outside this scheduler), the volume is requeued and the account limit lowered until
+ * snapshots start completing again. Snapshots are created in the context region.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class SnapshotScheduler {
+    static private final Logger logger = AWSCloud.getLogger(SnapshotScheduler.class);
+
+    static public final int  DEFAULT_ACCOUNT_CONCURRENCY = 10;
+    static public final int  DEFAULT_VOLUME_CONCURRENCY  = 1;
+    static public final int  DEFAULT_RATE                = 5;
+    static public final long SNAPSHOT_TIMEOUT            = CalendarWrapper.DAY;
+
+    static private final long RETRY_DELAY = 15000L;
+
+    /**
+     * Completes a job's future. It is kept private so that only the scheduler can complete a job.
+     */
+    static private class Outcome extends FutureTask<Map<String,String>> {
+        Outcome() {
+            super(new Callable<Map<String,String>>() {
+                public Map<String,String> call() {
+                    return null;
+                }
+            });
+        }
+
+        void succeed(@Nonnull Map<String,String> snapshotIds) {
+            set(snapshotIds);
+        }
+
+        void fail(@Nonnull Throwable cause) {
+            setException(cause);
+        }
+    }
+
+    /**
+     * The progress and outcome of one batch of snapshots. The future completes once every volume has either been
+     * snapshotted or has failed and any retention clean-up has run; its result maps each volume to its new snapshot.
+     */
+    public class Job implements Future<Map<String,String>> {
+        private LinkedHashMap<String,Throwable> failures  = new LinkedHashMap<String,Throwable>();
+        private Outcome                         outcome   = new Outcome();
+        private ArrayList<String>               removed   = new ArrayList<String>();
+        private int                             retain;
+        private LinkedHashMap<String,String>    snapshots = new LinkedHashMap<String,String>();
+        private LinkedHashSet<String>           succeeded = new LinkedHashSet<String>();
+        private int                             total;
+
+        Job(int total, int retain) {
+            this.total = total;
+            this.retain = retain;
+        }
+
+        /**
+         * Withdraws the volumes that have not yet been started. Snapshots already started are left to complete.
+         * @param mayInterruptIfRunning ignored
+         * @return true if the job was cancelled
+         */
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            withdraw(this);
+            return outcome.cancel(false);
+        }
+
+        public Map<String,String> get() throws InterruptedException, ExecutionException {
+            return outcome.get();
+        }
+
+        public Map<String,String> get(long timeout, @Nonnull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return outcome.get(timeout, unit);
+        }
+
+        /**
+         * @return the number of volumes whose snapshot has completed or failed
+         */
+        public synchronized int getCompletedCount() {
+            return succeeded.size() + failures.size();
+        }
+
+        /**
+         * @return the errors of volumes whose snapshot could not be created or failed, keyed by volume ID
+         */
+        public synchronized @Nonnull Map<String,Throwable> getFailures() {
+            return new LinkedHashMap<String,Throwable>(failures);
+        }
+
+        /**
+         * @return the old snapshots removed by retention clean-up
+         */
+        public synchronized @Nonnull Collection<String> getRemovedSnapshotIds() {
+            return new ArrayList<String>(removed);
+        }
+
+        /**
+         * @return the snapshots created so far, including those still pending, keyed by volume ID
+         */
+        public synchronized @Nonnull Map<String,String> getSnapshotIds() {
+            return new LinkedHashMap<String,String>(snapshots);
+        }
+
+        /**
+         * @return the number of volumes in the job
+         */
+        public int getTotalCount() {
+            return total;
+        }
+
+        public boolean isCancelled() {
+            return outcome.isCancelled();
+        }
+
+        public boolean isDone() {
+            return outcome.isDone();
+        }
+
+        synchronized void started(@Nonnull String volumeId, @Nonnull String snapshotId) {
+            snapshots.put(volumeId, snapshotId);
+        }
+
+        void finished(@Nonnull String volumeId, @Nullable Throwable error) {
+            boolean done;
+
+            synchronized( this ) {
+                if( error == null ) {
+                    succeeded.add(volumeId);
+                }
+                else {
+                    failures.put(volumeId, error);
+                }
+                done = (succeeded.size() + failures.size() >= total);
+            }
+            if( done ) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if( retain < 1 || isCancelled() ) {
+                outcome.succeed(getSnapshotIds());
+                return;
+            }
+            provider.hold();
+            getScheduler().execute(new Runnable() {
+                public void run() {
+                    try {
+                        ArrayList<String> volumeIds;
+
+                        synchronized( Job.this ) {
+                            volumeIds = new ArrayList<String>(succeeded);
+                        }
+                        Collection<String> ids = applyRetention(volumeIds, retain);
+
+                        synchronized( Job.this ) {
+                            removed.addAll(ids);
+                        }
+                        outcome.succeed(getSnapshotIds());
+                    }
+                    catch( Throwable t ) {
+                        logger.warn("Retention clean-up failed: " + t.getMessage());
+                        outcome.fail(t);
+                    }
+                    finally {
+                        provider.release();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * The outcome of removing a set of snapshots.
+     */
+    static public class Removal {
+        private HashMap<String,Throwable> failures = new HashMap<String,Throwable>();
+        private ArrayList<String>         removed  = new ArrayList<String>();
+
+        /**
+         * @return the errors of snapshots that could not be removed, keyed by snapshot ID
+         */
+        public @Nonnull Map<String,Throwable> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        public @Nonnull Collection<String> getRemovedSnapshotIds() {
+            return Collections.unmodifiableList(removed);
+        }
+    }
+
+    static private class Request {
+        String description;
+        Job    job;
+        String volumeId;
+
+        Request(@Nonnull Job job, @Nonnull String volumeId, @Nullable String description) {
+            this.job = job;
+            this.volumeId = volumeId;
+            this.description = description;
+        }
+    }
+
+    private int                          accountLimit;
+    private int                          active       = 0;
+    private int                          currentLimit;
+    private HashMap<String,Integer>      perVolume    = new HashMap<String,Integer>();
+    private AWSCloud                     provider;
+    private LinkedList<Request>          queue        = new LinkedList<Request>();
+    private RequestThrottle              throttle;
+    private int                          volumeLimit;
+
+    /**
+     * @param provider the cloud in which snapshots are created
+     * @param maxPendingPerAccount the maximum number of snapshots pending at once in the account
+     * @param maxPendingPerVolume the maximum number of snapshots pending at once for a single volume
+     * @param maxCallsPerSecond the maximum number of create and delete calls started per second
+     */
+    public SnapshotScheduler(@Nonnull AWSCloud provider, @Nonnegative int maxPendingPerAccount, @Nonnegative int maxPendingPerVolume, @Nonnegative int maxCallsPerSecond) {
+        this.provider = provider;
+        this.accountLimit = Math.max(1, maxPendingPerAccount);
+        this.currentLimit = accountLimit;
+        this.volumeLimit = Math.max(1, maxPendingPerVolume);
+        this.throttle = new RequestThrottle(accountLimit, maxCallsPerSecond);
+    }
+
+    private @Nonnull ScheduledExecutorService getScheduler() {
+        return provider.getExecutors().getScheduler(ManagedExecutors.SNAPSHOTS);
+    }
+
+    /**
+     * Queues a snapshot of each of the specified volumes.
+     * @param volumeIds the volumes to snapshot
+     * @param description the description of each snapshot, or <code>null</code> for the default description
+     * @return the job tracking the snapshots
+     */
+    public @Nonnull Job submit(@Nonnull Collection<String> volumeIds, @Nullable String description) {
+        return submit(volumeIds, description, 0);
+    }
+
+    /**
+     * Queues a snapshot of each of the specified volumes and, once they have all completed, removes the oldest
+     * snapshots of each successfully snapshotted volume so that only the newest <code>retain</code> remain.
+     * @param volumeIds the volumes to snapshot
+     * @param description the description of each snapshot, or <code>null</code> for the default description
+     * @param retain the number of completed snapshots to keep per volume, or 0 to keep every snapshot
+     * @return the job tracking the snapshots
+     */
+    public @Nonnull Job submit(@Nonnull Collection<String> volumeIds, @Nullable String description, @Nonnegative int retain) {
+        LinkedHashSet<String> ids = new LinkedHashSet<String>(volumeIds);
+        Job job = new Job(ids.size(), retain);
+
+        if( ids.isEmpty() ) {
+            job.complete();
+            return job;
+        }
+        synchronized( this ) {
+            for( String volumeId : ids ) {
+                queue.add(new Request(job, volumeId, description));
+            }
+        }
+        dispatch();
+        return job;
+    }
+
+    /**
+     * @return the number of volumes waiting for a free slot
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of snapshots being created or pending
+     */
+    public synchronized int getPendingCount() {
+        return active;
+    }
+
+    private synchronized void withdraw(@Nonnull Job job) {
+        Iterator<Request> it = queue.iterator();
+        int count = 0;
+
+        while( it.hasNext() ) {
+            if( it.next().job == job ) {
+                it.remove();
+                count++;
+            }
+        }
+        if( logger.isDebugEnabled() && count > 0 ) {
+            logger.debug("Withdrew " + count + " queued snapshots");
+        }
+    }
+
+    private void dispatch() {
+        ArrayList<Request> ready = new ArrayList<Request>();
+
+        synchronized( this ) {
+            Iterator<Request> it = queue.iterator();
+
+            while( active < currentLimit && it.hasNext() ) {
+                Request r = it.next();
+                Integer count = perVolume.get(r.volumeId);
+
+                if( count == null || count < volumeLimit ) {
+                    it.remove();
+                    perVolume.put(r.volumeId, count == null ? 1 : count + 1);
+                    active++;
+                    ready.add(r);
+                }
+            }
+        }
+        for( final Request r : ready ) {
+            provider.hold();
+            getScheduler().execute(new Runnable() {
+                public void run() {
+                    start(r);
+                }
+            });
+        }
+    }
+
+    private synchronized void free(@Nonnull Request r, boolean succeeded) {
+        Integer count = perVolume.get(r.volumeId);
+
+        if( count == null || count <= 1 ) {
+            perVolume.remove(r.volumeId);
+        }
+        else {
+            perVolume.put(r.volumeId, count - 1);
+        }
+        active--;
+        if( succeeded && currentLimit < accountLimit ) {
+            currentLimit++;
+        }
+    }
+
+    private void start(final @Nonnull Request r) {
+        try {
+            String snapshotId;
+
+            try {
+                throttle.acquire();
+            }
+            catch( InterruptedException e ) {
+                finish(r, new InternalException(e));
+                return;
+            }
+            try {
+                snapshotId = new EBSSnapshot(provider).create(r.volumeId, r.description);
+            }
+            catch( CloudException e ) {
+                if( isLimitExceeded(e) ) {
+                    requeue(r);
+                }
+                else {
+                    finish(r, e);
+                }
+                return;
+            }
+            catch( Throwable t ) {
+                finish(r, t);
+                return;
+            }
+            finally {
+                throttle.release();
+            }
+            if( snapshotId == null ) {
+                finish(r, new CloudException("No snapshot was created for " + r.volumeId));
+                return;
+            }
+            r.job.started(r.volumeId, snapshotId);
+            provider.getResourceWaiter().waitForSnapshot(snapshotId, new ResourceWaiter.StateCondition(new String[] { "completed" }, new String[] { "error" }, false) {
+                public void completed(@Nonnull String resourceId, @Nullable String result) {
+                    finish(r, null);
+                }
+
+                public void failed(@Nonnull String resourceId, @Nonnull Throwable cause) {
+                    finish(r, cause);
+                }
+            }, SNAPSHOT_TIMEOUT);
+        }
+        finally {
+            provider.release();
+        }
+    }
+
+    private void finish(@Nonnull Request r, @Nullable Throwable error) {
+        if( error != null ) {
+            logger.warn("Snapshot of " + r.volumeId + " failed: " + error.getMessage());
+        }
+        free(r, error == null);
+        r.job.finished(r.volumeId, error);
+        dispatch();
+    }
+
+    private void requeue(@Nonnull Request r) {
+        synchronized( this ) {
+            free(r, false);
+            // snapshots started elsewhere count against the same limit
+            currentLimit = Math.max(1, Math.min(currentLimit, active));
+            if( r.job.isCancelled() ) {
+                return;
+            }
+            queue.addFirst(r);
+        }
+        if( logger.isDebugEnabled() ) {
+            logger.debug("Snapshot limit reached for " + r.volumeId + ", retrying in " + RETRY_DELAY + "ms with a limit of " + currentLimit);
+        }
+        getScheduler().schedule(new Runnable() {
+            public void run() {
+                dispatch();
+            }
+        }, RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isLimitExceeded(@Nonnull CloudException e) {
+        if( !(e.getCause() instanceof EC2Exception) ) {
+            return false;
+        }
+        String code = ((EC2Exception)e.getCause()).getCode();
+
+        return (code != null && (code.equals("SnapshotCreationPerVolumeRateExceeded") || code.equals("ConcurrentSnapshotLimitExceeded") || code.equals("ResourceLimitExceeded") || code.equals("RequestLimitExceeded")));
+    }
+
+    /**
+     * Removes the oldest completed snapshots of each of the specified volumes so that only the newest
+     * <code>retain</code> remain. Pending snapshots are never removed and do not count towards those retained.
+     * @param volumeIds the volumes whose snapshots are cleaned up
+     * @param retain the number of completed snapshots to keep per volume
+     * @return the snapshots that were removed
+     * @throws CloudException an error occurred with the cloud provider while listing the snapshots
+     * @throws InternalException an error occurred within Dasein Cloud while listing or removing the snapshots
+     */
+    public @Nonnull Collection<String> applyRetention(@Nonnull Collection<String> volumeIds, @Nonnegative int retain) throws CloudException, InternalException {
+        HashMap<String,List<Snapshot>> byVolume = new HashMap<String,List<Snapshot>>();
+        ArrayList<String> all = new ArrayList<String>(new LinkedHashSet<String>(volumeIds));
+        EBSSnapshot support = new EBSSnapshot(provider);
+
+        for( int i=0; i<all.size(); i += BulkLookup.DEFAULT_CHUNK_SIZE ) {
+            List<String> chunk = all.subList(i, Math.min(all.size(), i + BulkLookup.DEFAULT_CHUNK_SIZE));
+
+            for( Snapshot snapshot : support.listSnapshotsOfVolumes(chunk) ) {
+                if( !SnapshotState.AVAILABLE.equals(snapshot.getCurrentState()) ) {
+                    continue;
+                }
+                List<Snapshot> list = byVolume.get(snapshot.getVolumeId());
+
+                if( list == null ) {
+                    list = new ArrayList<Snapshot>();
+                    byVolume.put(snapshot.getVolumeId(), list);
+                }
+                list.add(snapshot);
+            }
+        }
+        ArrayList<String> expired = new ArrayList<String>();
+
+        for( List<Snapshot> list : byVolume.values() ) {
+            Collections.sort(list, new Comparator<Snapshot>() {
+                public int compare(Snapshot a, Snapshot b) {
+                    long ta = a.getSnapshotTimestamp(), tb = b.getSnapshotTimestamp();
+
+                    return (ta > tb ? -1 : (ta < tb ? 1 : 0));
+                }
+            });
+            for( int i=Math.max(0, retain); i<list.size(); i++ ) {
+                expired.add(list.get(i).getProviderSnapshotId());
+            }
+        }
+        Removal removal = remove(expired);
+
+        for( Map.Entry<String,Throwable> failure : removal.getFailures().entrySet() ) {
+            logger.warn("Unable to remove expired snapshot " + failure.getKey() + ": " + failure.getValue().getMessage());
+        }
+        return removal.getRemovedSnapshotIds();
+    }
+
+    /**
+     * Removes the specified snapshots concurrently, sharing the scheduler's call rate.
+     * @param snapshotIds the snapshots to remove
+     * @return the snapshots removed and the errors of those that could not be
+     * @throws InternalException the calling thread was interrupted while waiting on the removals
+     */
+    public @Nonnull Removal remove(@Nonnull Collection<String> snapshotIds) throws InternalException {
+        ArrayList<String> ids = new ArrayList<String>(new LinkedHashSet<String>(snapshotIds));
+        ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.BULK_LOOKUP);
+        Removal removal = new Removal();
+
+        for( final String id : ids ) {
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    throttle.acquire();
+                    try {
+                        new EBSSnapshot(provider).remove(id);
+                    }
+                    finally {
+                        throttle.release();
+                    }
+                    return null;
+                }
+            }));
+        }
+        for( int i=0; i<futures.size(); i++ ) {
+            try {
+                futures.get(i).get();
+                removal.removed.add(ids.get(i));
+            }
+            catch( InterruptedException e ) {
+                for( Future<Void> f : futures ) {
+                    f.cancel(true);
+                }
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                removal.failures.put(ids.get(i), e.getCause());
+            }
+        }
+        return removal;
+    }
+}
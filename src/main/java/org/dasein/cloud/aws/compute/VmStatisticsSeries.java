@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.dasein.cloud.compute.VmStatistics;
+import org.dasein.util.CalendarWrapper;
+
+/**
+ * A compact, columnar time series of the CloudWatch metrics that make up {@link VmStatistics}. Each period in the
+ * series is a bucket index into primitive arrays of timestamps, sample counts and average/minimum/maximum values
+ * for each metric, so a day of per-minute data for one instance is a handful of arrays rather than thousands of
+ * objects. Use {@link #rollup(long)} to aggregate into coarser periods and {@link #asStatistics()} to view the
+ * populated periods as {@link VmStatistics} objects.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class VmStatisticsSeries {
+    static public final long ONE_MINUTE   = CalendarWrapper.MINUTE;
+    static public final long FIVE_MINUTES = 5L * CalendarWrapper.MINUTE;
+    static public final long ONE_HOUR     = CalendarWrapper.HOUR;
+
+    static public final int CPU_UTILIZATION  = 0;
+    static public final int DISK_READ_BYTES  = 1;
+    static public final int DISK_READ_OPS    = 2;
+    static public final int DISK_WRITE_BYTES = 3;
+    static public final int DISK_WRITE_OPS   = 4;
+    static public final int NETWORK_IN       = 5;
+    static public final int NETWORK_OUT      = 6;
+
+    static public final int METRIC_COUNT     = 7;
+
+    private long       period;
+    private long       startTimestamp;
+    private long[]     timestamps;
+    private int[][]    samples;
+    private int[][]    weights;
+    private double[][] averages;
+    private double[][] minimums;
+    private double[][] maximums;
+
+    /**
+     * Constructs an empty series covering the specified time range with buckets of the specified period.
+     * @param startTimestamp the start of the series
+     * @param endTimestamp the end of the series
+     * @param period the length of each bucket in milliseconds
+     */
+    public VmStatisticsSeries(long startTimestamp, long endTimestamp, @Nonnegative long period) {
+        if( period < ONE_MINUTE ) {
+            period = ONE_MINUTE;
+        }
+        int size = (int)((endTimestamp - startTimestamp + period - 1L) / period);
+
+        if( size < 1 ) {
+            size = 1;
+        }
+        this.period = period;
+        this.startTimestamp = startTimestamp;
+        timestamps = new long[size];
+        Arrays.fill(timestamps, -1L);
+        samples = new int[METRIC_COUNT][size];
+        weights = new int[METRIC_COUNT][size];
+        averages = new double[METRIC_COUNT][size];
+        minimums = new double[METRIC_COUNT][size];
+        maximums = new double[METRIC_COUNT][size];
+        for( int m=0; m<METRIC_COUNT; m++ ) {
+            Arrays.fill(averages[m], Double.NaN);
+            Arrays.fill(minimums[m], Double.NaN);
+            Arrays.fill(maximums[m], Double.NaN);
+        }
+    }
+
+    /**
+     * Records a single CloudWatch data point. Data points falling outside the series are ignored. If the bucket
+     * already holds data for the metric, the values are merged, weighting each data point's average by its sample
+     * count. Data points reporting no samples count as a single sample so they are not dropped from the average.
+     * @param metric the index of the metric (for example, {@link #CPU_UTILIZATION})
+     * @param timestamp the timestamp of the data point
+     * @param sampleCount the number of samples behind the data point
+     * @param average the average value
+     * @param minimum the minimum value
+     * @param maximum the maximum value
+     */
+    public void record(int metric, long timestamp, int sampleCount, double average, double minimum, double maximum) {
+        if( timestamp < startTimestamp ) {
+            return;
+        }
+        int idx = (int)((timestamp - startTimestamp) / period);
+
+        if( idx >= timestamps.length ) {
+            return;
+        }
+        if( timestamps[idx] < 0L || timestamp < timestamps[idx] ) {
+            timestamps[idx] = timestamp;
+        }
+        merge(metric, idx, sampleCount, Math.max(sampleCount, 1), average, minimum, maximum);
+    }
+
+    private void merge(int metric, int idx, int sampleCount, int weight, double average, double minimum, double maximum) {
+        if( Double.isNaN(averages[metric][idx]) ) {
+            samples[metric][idx] = sampleCount;
+            weights[metric][idx] = weight;
+            averages[metric][idx] = average;
+            minimums[metric][idx] = minimum;
+            maximums[metric][idx] = maximum;
+            return;
+        }
+        int existing = weights[metric][idx];
+        int total = existing + weight;
+
+        averages[metric][idx] = ((averages[metric][idx] * existing) + (average * weight)) / total;
+        samples[metric][idx] += sampleCount;
+        weights[metric][idx] = total;
+        if( Double.isNaN(minimums[metric][idx]) || minimum < minimums[metric][idx] ) {
+            minimums[metric][idx] = minimum;
+        }
+        if( Double.isNaN(maximums[metric][idx]) || maximum > maximums[metric][idx] ) {
+            maximums[metric][idx] = maximum;
+        }
+    }
+
+    /**
+     * Aggregates this series into a coarser one, for example from one minute to five minute or one hour periods.
+     * Averages are weighted by sample count, minimums and maximums are the extremes of the contributing periods.
+     * @param targetPeriod the bucket length of the new series, which must be at least the current period
+     * @return the aggregated series
+     */
+    public @Nonnull VmStatisticsSeries rollup(@Nonnegative long targetPeriod) {
+        if( targetPeriod <= period ) {
+            return this;
+        }
+        VmStatisticsSeries target = new VmStatisticsSeries(startTimestamp, startTimestamp + (period * timestamps.length), targetPeriod);
+
+        for( int i=0; i<timestamps.length; i++ ) {
+            if( timestamps[i] < 0L ) {
+                continue;
+            }
+            int idx = (int)((timestamps[i] - startTimestamp) / targetPeriod);
+
+            if( idx >= target.timestamps.length ) {
+                continue;
+            }
+            if( target.timestamps[idx] < 0L || timestamps[i] < target.timestamps[idx] ) {
+                target.timestamps[idx] = timestamps[i];
+            }
+            for( int m=0; m<METRIC_COUNT; m++ ) {
+                if( !Double.isNaN(averages[m][i]) ) {
+                    target.merge(m, idx, samples[m][i], weights[m][i], averages[m][i], minimums[m][i], maximums[m][i]);
+                }
+            }
+        }
+        return target;
+    }
+
+    public double getAverage(int metric, int idx) {
+        return averages[metric][idx];
+    }
+
+    public double getMaximum(int metric, int idx) {
+        return maximums[metric][idx];
+    }
+
+    public double getMinimum(int metric, int idx) {
+        return minimums[metric][idx];
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    public int getSamples(int metric, int idx) {
+        return samples[metric][idx];
+    }
+
+    /**
+     * @param idx the bucket index
+     * @return the timestamp of the earliest data point in the bucket, or -1 if the bucket is empty
+     */
+    public long getTimestamp(int idx) {
+        return timestamps[idx];
+    }
+
+    /**
+     * @return the number of buckets in the series, including empty ones
+     */
+    public int size() {
+        return timestamps.length;
+    }
+
+    private int getBucketSamples(int idx) {
+        if( samples[CPU_UTILIZATION][idx] > 0 ) {
+            return samples[CPU_UTILIZATION][idx];
+        }
+        for( int m=0; m<METRIC_COUNT; m++ ) {
+            if( samples[m][idx] > 0 ) {
+                return samples[m][idx];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Provides a read-only view of the populated buckets in this series as {@link VmStatistics} objects. The
+     * objects are created on demand as the view is read and are not retained by the series.
+     * @return a list of statistics, one per populated bucket
+     */
+    public @Nonnull List<VmStatistics> asStatistics() {
+        int count = 0;
+
+        for( int i=0; i<timestamps.length; i++ ) {
+            if( timestamps[i] > -1L && getBucketSamples(i) > 0 ) {
+                count++;
+            }
+        }
+        final int[] populated = new int[count];
+
+        count = 0;
+        for( int i=0; i<timestamps.length; i++ ) {
+            if( timestamps[i] > -1L && getBucketSamples(i) > 0 ) {
+                populated[count++] = i;
+            }
+        }
+        return new AbstractList<VmStatistics>() {
+            @Override
+            public VmStatistics get(int index) {
+                return toStatistics(populated[index]);
+            }
+
+            @Override
+            public int size() {
+                return populated.length;
+            }
+        };
+    }
+
+    private @Nonnull VmStatistics toStatistics(int idx) {
+        VmStatistics stats = new VmStatistics();
+        long end = timestamps[idx];
+
+        if( period > ONE_MINUTE ) {
+            end = startTimestamp + ((idx + 1) * period) - ONE_MINUTE;
+            if( end < timestamps[idx] ) {
+                end = timestamps[idx];
+            }
+        }
+        stats.setStartTimestamp(timestamps[idx]);
+        stats.setEndTimestamp(end);
+        stats.setSamples(getBucketSamples(idx));
+        for( int m=0; m<METRIC_COUNT; m++ ) {
+            double average = averages[m][idx], minimum = minimums[m][idx], maximum = maximums[m][idx];
+
+            if( Double.isNaN(average) ) {
+                continue;
+            }
+            switch( m ) {
+                case CPU_UTILIZATION:
+                    stats.setAverageCpuUtilization(average);
+                    stats.setMinimumCpuUtilization(minimum);
+                    stats.setMaximumCpuUtilization(maximum);
+                    break;
+                case DISK_READ_BYTES:
+                    stats.setAverageDiskReadBytes(average);
+                    stats.setMinimumDiskReadBytes(minimum);
+                    stats.setMaximumDiskReadBytes(maximum);
+                    break;
+                case DISK_READ_OPS:
+                    stats.setAverageDiskReadOperations(average);
+                    stats.setMinimumDiskReadOperations(minimum);
+                    stats.setMaximumDiskReadOperations(maximum);
+                    break;
+                case DISK_WRITE_BYTES:
+                    stats.setAverageDiskWriteBytes(average);
+                    stats.setMinimumDiskWriteBytes(minimum);
+                    stats.setMaximumDiskWriteBytes(maximum);
+                    break;
+                case DISK_WRITE_OPS:
+                    stats.setAverageDiskWriteOperations(average);
+                    stats.setMinimumDiskWriteOperations(minimum);
+                    stats.setMaximumDiskWriteOperations(maximum);
+                    break;
+                case NETWORK_IN:
+                    stats.setAverageNetworkIn(average);
+                    stats.setMinimumNetworkIn(minimum);
+                    stats.setMaximumNetworkIn(maximum);
+                    break;
+                case NETWORK_OUT:
+                    stats.setAverageNetworkOut(average);
+                    stats.setMinimumNetworkOut(minimum);
+                    stats.setMaximumNetworkOut(maximum);
+                    break;
+            }
+        }
+        return stats;
+    }
+}
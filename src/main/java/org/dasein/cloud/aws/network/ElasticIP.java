@@ -21,8 +21,13 @@ package org.dasein.cloud.aws.network;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 import org.dasein.cloud.CloudException;
@@ -30,6 +35,8 @@ import org.dasein.cloud.InternalException;
 import org.dasein.cloud.OperationNotSupportedException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.BulkLookup;
+import org.dasein.cloud.aws.RequestCoalescer;
 import org.dasein.cloud.aws.compute.EC2Exception;
 import org.dasein.cloud.aws.compute.EC2Method;
 import org.dasein.cloud.compute.ComputeServices;
@@ -43,7 +50,6 @@ import org.dasein.cloud.network.IpAddress;
 import org.dasein.cloud.network.IpAddressSupport;
 import org.dasein.cloud.network.IpForwardingRule;
 import org.dasein.cloud.network.Protocol;
-import org.dasein.util.CalendarWrapper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -75,22 +81,29 @@ public class ElasticIP implements IpAddressSupport {
 
 	@Override
 	public void assign(@Nonnull String addressId, @Nonnull String instanceId) throws InternalException,	CloudException {
-        long timeout = System.currentTimeMillis() + (CalendarWrapper.MINUTE * 20L);
         VirtualMachine vm = getInstance(instanceId);
 
-        while( System.currentTimeMillis() < timeout ) {
-            if( vm == null || VmState.TERMINATED.equals(vm.getCurrentState()) ) {
-                throw new CloudException("No such virtual machine " + instanceId);
-            }
-            VmState s = vm.getCurrentState();
+        if( vm == null || VmState.TERMINATED.equals(vm.getCurrentState()) ) {
+            throw new CloudException("No such virtual machine " + instanceId);
+        }
+        VmState s = vm.getCurrentState();
+
+        if( !VmState.RUNNING.equals(s) && !VmState.STOPPED.equals(s) && !VmState.PAUSED.equals(s) && !VmState.SUSPENDED.equals(s) ) {
+            Future<String> ready = provider.getResourceWaiter().waitForInstance(instanceId, "running", "stopped");
 
-            if( VmState.RUNNING.equals(s) || VmState.STOPPED.equals(s) || VmState.PAUSED.equals(s) || VmState.SUSPENDED.equals(s) ) {
-                break;
+            try {
+                ready.get(20L, TimeUnit.MINUTES);
+            }
+            catch( TimeoutException e ) {
+                ready.cancel(false);
+            }
+            catch( InterruptedException e ) {
+                ready.cancel(false);
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                throw new CloudException("No such virtual machine " + instanceId);
             }
-            try { Thread.sleep(20000L); }
-            catch( InterruptedException ignore ) { }
-            try { vm = getInstance(instanceId); }
-            catch( Throwable ignore ) { }
         }
 		Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), EC2Method.ASSOCIATE_ADDRESS);
 		EC2Method method;
@@ -240,6 +253,130 @@ public class ElasticIP implements IpAddressSupport {
         return address;
     }
     
+    /**
+     * Looks up a known set of addresses by public IP or, for VPC addresses, allocation ID. The IDs are split into
+     * chunks that are described concurrently.
+     * @param addressIds the addresses to look up
+     * @return the addresses found, together with the IDs that are missing or whose lookup failed
+     * @throws InternalException an error occurred within Dasein Cloud while waiting on the lookups
+     * @throws CloudException no context was established for this request
+     */
+    public @Nonnull BulkLookup<IpAddress> getIpAddresses(@Nonnull Collection<String> addressIds) throws InternalException, CloudException {
+        if( provider.getContext() == null ) {
+            throw new CloudException("No context was set for this request");
+        }
+        return BulkLookup.lookup(provider, addressIds, BulkLookup.DEFAULT_CHUNK_SIZE, new RequestCoalescer.BatchLoader<IpAddress>() {
+            public @Nonnull Map<String,IpAddress> load(@Nonnull Collection<String> ids) throws CloudException, InternalException {
+                return loadIpAddresses(ids);
+            }
+        });
+    }
+
+    /**
+     * Describes the specified addresses. In AWS, allocation IDs and public IPs are looked up with one filtered
+     * <code>DescribeAddresses</code> call each; other clouds are asked for the public IPs directly and fall back to
+     * one call per address if any of them is unknown.
+     * @param addressIds the public IPs or allocation IDs to describe
+     * @return the addresses found, keyed by the ID used to look them up
+     * @throws InternalException an error occurred within Dasein Cloud while describing the addresses
+     * @throws CloudException an error occurred with the cloud provider while describing the addresses
+     */
+    @Nonnull Map<String,IpAddress> loadIpAddresses(@Nonnull Collection<String> addressIds) throws InternalException, CloudException {
+        HashMap<String,IpAddress> addresses = new HashMap<String,IpAddress>();
+
+        if( provider.getEC2Provider().isAWS() ) {
+            ArrayList<String> allocations = new ArrayList<String>();
+            ArrayList<String> ips = new ArrayList<String>();
+
+            for( String id : addressIds ) {
+                if( id.startsWith("eipalloc-") ) {
+                    allocations.add(id);
+                }
+                else {
+                    ips.add(id);
+                }
+            }
+            describeAddresses("allocation-id", allocations, addresses);
+            describeAddresses("public-ip", ips, addresses);
+        }
+        else {
+            try {
+                describeAddresses(null, addressIds, addresses);
+            }
+            catch( CloudException e ) {
+                if( addressIds.size() < 2 ) {
+                    throw e;
+                }
+                for( String id : addressIds ) {
+                    IpAddress address = getEC2Address(id);
+
+                    if( address != null ) {
+                        addresses.put(id, address);
+                    }
+                }
+            }
+        }
+        return addresses;
+    }
+
+    private void describeAddresses(@Nullable String filterName, @Nonnull Collection<String> ids, @Nonnull Map<String,IpAddress> addresses) throws InternalException, CloudException {
+        if( ids.isEmpty() ) {
+            return;
+        }
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context was set for this request");
+        }
+        Map<String,String> parameters = provider.getStandardParameters(ctx, EC2Method.DESCRIBE_ADDRESSES);
+        EC2Method method;
+        NodeList blocks;
+        Document doc;
+        int i = 1;
+
+        if( filterName != null ) {
+            parameters.put("Filter.1.Name", filterName);
+        }
+        for( String id : ids ) {
+            parameters.put((filterName == null ? "PublicIp." : "Filter.1.Value.") + (i++), id);
+        }
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+            String code = e.getCode();
+
+            if( filterName == null && ids.size() == 1 && (code != null && code.equals("InvalidAddress.NotFound") || e.getMessage().contains("Invalid value")) ) {
+                return;
+            }
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        blocks = doc.getElementsByTagName("addressesSet");
+        for( int j=0; j<blocks.getLength(); j++ ) {
+            NodeList items = blocks.item(j).getChildNodes();
+
+            for( int k=0; k<items.getLength(); k++ ) {
+                Node item = items.item(k);
+
+                if( item.getNodeName().equals("item") ) {
+                    IpAddress address = toAddress(ctx, item);
+
+                    if( address != null ) {
+                        // a VPC address is identified by its allocation ID but may have been asked for by IP
+                        if( ids.contains(address.getProviderIpAddressId()) ) {
+                            addresses.put(address.getProviderIpAddressId(), address);
+                        }
+                        if( ids.contains(address.getAddress()) ) {
+                            addresses.put(address.getAddress(), address);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
 	@Override
 	public @Nonnull String getProviderTermForIpAddress(@Nonnull Locale locale) {
 		return "elastic IP";
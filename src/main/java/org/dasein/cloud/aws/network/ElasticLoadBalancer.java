@@ -36,6 +36,7 @@ import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
 import org.dasein.cloud.aws.compute.EC2Exception;
+import org.dasein.cloud.aws.compute.Projection;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.network.IPVersion;
 import org.dasein.cloud.network.LbAlgorithm;
@@ -360,6 +361,37 @@ public class ElasticLoadBalancer implements LoadBalancerSupport {
         return true;
     }
 
+    /**
+     * Describes every load balancer, parsing only the named fields of each one. The parser skips every other element, which
+     * makes this far cheaper than building full objects when only a few fields are needed, for example
+     * <code>listLoadBalancerFields("LoadBalancerName", "DNSName")</code>.
+     * @param fields the element paths of the fields needed, relative to each <code>LoadBalancerDescriptions</code> item
+     * @return the fields of each load balancer, keyed by field path
+     * @throws InternalException an error occurred within Dasein Cloud while describing the load balancers
+     * @throws CloudException an error occurred with the cloud provider while describing the load balancers
+     */
+    public @Nonnull List<Map<String,String>> listLoadBalancerFields(@Nonnull String ... fields) throws InternalException, CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No valid context is established for this request");
+        }
+        if( !provider.getEC2Provider().isAWS() ) {
+            return new ArrayList<Map<String,String>>();
+        }
+        Map<String,String> parameters = getELBParameters(ctx, ELBMethod.DESCRIBE_LOAD_BALANCERS);
+        EC2Method method;
+
+        method = new ELBMethod(provider, ctx, parameters);
+        try {
+            return method.invoke("LoadBalancerDescriptions", new Projection(fields));
+        }
+        catch( EC2Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
     @Override
     public Iterable<LoadBalancer> listLoadBalancers() throws CloudException, InternalException {
         ProviderContext ctx = provider.getContext();
@@ -19,6 +19,7 @@
 package org.dasein.cloud.aws.network;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Locale;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -32,15 +33,13 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.LazyListing;
 import org.dasein.cloud.aws.compute.EC2Exception;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.network.DNSRecord;
 import org.dasein.cloud.network.DNSRecordType;
 import org.dasein.cloud.network.DNSSupport;
 import org.dasein.cloud.network.DNSZone;
-import org.dasein.util.Jiterator;
-import org.dasein.util.JiteratorPopulator;
-import org.dasein.util.PopulatorThread;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -317,23 +316,24 @@ public class Route53 implements DNSSupport {
         if( ctx == null ) {
             throw new CloudException("No context was configured for this request");
         }
-        PopulatorThread<DNSRecord> populator;
         final String zoneId = providerDnsZoneId;
         final DNSRecordType type = forType;
         final String nom = name;
         
-        provider.hold();
-        populator = new PopulatorThread<DNSRecord>(new JiteratorPopulator<DNSRecord>() {
-            public void populate(Jiterator<DNSRecord> iterator) throws CloudException, InternalException {
-                populateRecords(iterator, zoneId, type, nom);
-                provider.release();
+        // markers take the form "type name"
+        return new LazyListing<DNSRecord>(provider, new LazyListing.PageLoader<DNSRecord>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<DNSRecord> page) throws CloudException, InternalException {
+                if( marker == null ) {
+                    return populateRecords(page, zoneId, type, nom);
+                }
+                int idx = marker.indexOf(' ');
+
+                return populateRecords(page, zoneId, DNSRecordType.valueOf(marker.substring(0, idx)), marker.substring(idx + 1));
             }
-        });        
-        populator.populate();
-        return populator.getResult();
+        });
     }
     
-    private void populateRecords(@Nonnull Jiterator<DNSRecord> iterator, @Nonnull String providerDnsZoneId, @Nullable DNSRecordType forType, @Nullable String name) throws CloudException, InternalException {
+    private @Nullable String populateRecords(@Nonnull Collection<DNSRecord> page, @Nonnull String providerDnsZoneId, @Nullable DNSRecordType forType, @Nullable String name) throws CloudException, InternalException {
         String url = getResourceUrl(providerDnsZoneId);
         Route53Method method;
         NodeList blocks;
@@ -363,7 +363,7 @@ public class Route53 implements DNSSupport {
             DNSRecord record = toDnsRecord(providerDnsZoneId, item);
             
             if( record != null ) {
-                iterator.push(record);
+                page.add(record);
             }
         }
         blocks = doc.getElementsByTagName("IsTruncated");
@@ -380,9 +380,10 @@ public class Route53 implements DNSSupport {
                 nextType = DNSRecordType.valueOf(blocks.item(0).getFirstChild().getNodeValue().trim()); 
             }
             if( nextName != null && nextType != null ) {
-                populateRecords(iterator, providerDnsZoneId, nextType, nextName);
+                return nextType.name() + " " + nextName;
             }
         }
+        return null;
     }
 
     @Override
@@ -392,17 +393,11 @@ public class Route53 implements DNSSupport {
         if( ctx == null ) {
             throw new CloudException("No context was configured for this request");
         }
-        PopulatorThread<DNSZone> populator;
-        
-        provider.hold();
-        populator = new PopulatorThread<DNSZone>(new JiteratorPopulator<DNSZone>() {
-            public void populate(Jiterator<DNSZone> iterator) throws CloudException, InternalException {
-                populateZones(ctx, iterator, null);
-                provider.release();
+        return new LazyListing<DNSZone>(provider, new LazyListing.PageLoader<DNSZone>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<DNSZone> page) throws CloudException, InternalException {
+                return populateZones(ctx, page, marker);
             }
-        });        
-        populator.populate();
-        return populator.getResult();        
+        });
     }
 
     @Override
@@ -434,7 +429,7 @@ public class Route53 implements DNSSupport {
         return new String[0];
     }
 
-    private void populateZones(@Nonnull ProviderContext ctx, @Nonnull Jiterator<DNSZone> iterator, @Nullable String marker) throws CloudException, InternalException {
+    private @Nullable String populateZones(@Nonnull ProviderContext ctx, @Nonnull Collection<DNSZone> page, @Nullable String marker) throws CloudException, InternalException {
         String url = getHostedZoneUrl(null);
         Route53Method method;
         NodeList blocks;
@@ -456,16 +451,17 @@ public class Route53 implements DNSSupport {
             DNSZone zone = toDnsZone(ctx, item, new String[0]);
             
             if( zone != null ) {
-                iterator.push(zone);
+                page.add(zone);
             }
         }
         blocks = doc.getElementsByTagName("IsTruncated");
         if( blocks != null && blocks.getLength() == 1 && blocks.item(0).hasChildNodes() && blocks.item(0).getFirstChild().getNodeValue().trim().equalsIgnoreCase("true") ) {
             blocks = doc.getElementsByTagName("NextMarker");
             if( blocks != null && blocks.getLength() == 1 && blocks.item(0).hasChildNodes() ) {
-                populateZones(ctx, iterator, blocks.item(0).getFirstChild().getNodeValue().trim());
+                return blocks.item(0).getFirstChild().getNodeValue().trim();
             }
         }
+        return null;
     }
 
     @Override
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TreeSet;
@@ -40,6 +41,7 @@ import org.dasein.cloud.Tag;
 import org.dasein.cloud.aws.AWSCloud;
 import org.dasein.cloud.aws.compute.EC2Exception;
 import org.dasein.cloud.aws.compute.EC2Method;
+import org.dasein.cloud.aws.compute.Projection;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.network.IPVersion;
 import org.dasein.cloud.network.NICCreateOptions;
@@ -297,7 +299,7 @@ public class VPC implements VLANSupport {
         t.setKey("Description");
         t.setValue(description);
         tags[1] = t;
-        provider.createTags(id, tags);
+        provider.createTagsAsync(id, tags);
         return id;
     }
 
@@ -350,7 +352,7 @@ public class VPC implements VLANSupport {
                 t.setKey("Description");
                 t.setValue(options.getDescription());
                 tags[1] = t;
-                provider.createTags(nic.getProviderNetworkInterfaceId(), tags);
+                provider.createTagsAsync(nic.getProviderNetworkInterfaceId(), tags);
                 nic.setName(options.getName());
                 nic.setDescription(options.getDescription());
                 return nic;
@@ -651,7 +653,7 @@ public class VPC implements VLANSupport {
                 t.setKey("Description");
                 t.setValue(description);
                 tags[1] = t;
-                provider.createTags(subnet.getProviderSubnetId(), tags);
+                provider.createTagsAsync(subnet.getProviderSubnetId(), tags);
                 subnet.setName(name);
                 subnet.setDescription(description);
                 return subnet;
@@ -705,7 +707,7 @@ public class VPC implements VLANSupport {
                 t.setKey("Description");
                 t.setValue(description);
                 tags[1] = t;
-                provider.createTags(vlan.getProviderVlanId(), tags);
+                provider.createTagsAsync(vlan.getProviderVlanId(), tags);
                 vlan.setName(name);
                 vlan.setDescription(description);
                 return vlan;
@@ -1149,6 +1151,29 @@ public class VPC implements VLANSupport {
         return firewallIds;
     }
 
+    /**
+     * Describes every network interface, parsing only the named fields of each one. The parser skips every other element, which
+     * makes this far cheaper than building full objects when only a few fields are needed, for example
+     * <code>listNetworkInterfaceFields("networkInterfaceId", "status")</code>.
+     * @param fields the element paths of the fields needed, relative to each <code>networkInterfaceSet</code> item
+     * @return the fields of each network interface, keyed by field path
+     * @throws InternalException an error occurred within Dasein Cloud while describing the network interfaces
+     * @throws CloudException an error occurred with the cloud provider while describing the network interfaces
+     */
+    public @Nonnull List<Map<String,String>> listNetworkInterfaceFields(@Nonnull String ... fields) throws InternalException, CloudException {
+        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), ELBMethod.DESCRIBE_NICS);
+        EC2Method method;
+
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            return method.invoke("networkInterfaceSet", new Projection(fields));
+        }
+        catch( EC2Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
     @Override
     public @Nonnull Iterable<NetworkInterface> listNetworkInterfaces() throws CloudException, InternalException {
         ProviderContext ctx = provider.getContext();
@@ -1390,6 +1415,29 @@ public class VPC implements VLANSupport {
         return Collections.singletonList(IPVersion.IPV4);
     }
 
+    /**
+     * Describes every VPC, parsing only the named fields of each one. The parser skips every other element, which
+     * makes this far cheaper than building full objects when only a few fields are needed, for example
+     * <code>listVlanFields("vpcId", "state")</code>.
+     * @param fields the element paths of the fields needed, relative to each <code>vpcSet</code> item
+     * @return the fields of each VPC, keyed by field path
+     * @throws InternalException an error occurred within Dasein Cloud while describing the VPCs
+     * @throws CloudException an error occurred with the cloud provider while describing the VPCs
+     */
+    public @Nonnull List<Map<String,String>> listVlanFields(@Nonnull String ... fields) throws InternalException, CloudException {
+        Map<String,String> parameters = provider.getStandardParameters(provider.getContext(), ELBMethod.DESCRIBE_VPCS);
+        EC2Method method;
+
+        method = new EC2Method(provider, provider.getEc2Url(), parameters);
+        try {
+            return method.invoke("vpcSet", new Projection(fields));
+        }
+        catch( EC2Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
     @Override
     public @Nonnull Iterable<VLAN> listVlans() throws CloudException, InternalException {
         ProviderContext ctx = provider.getContext();
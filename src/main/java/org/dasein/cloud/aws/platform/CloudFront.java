@@ -22,6 +22,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -32,6 +35,7 @@ import org.dasein.cloud.CloudException;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.aws.platform.CloudFrontMethod.CloudFrontResponse;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.platform.CDNSupport;
@@ -104,14 +108,7 @@ public class CloudFront implements CDNSupport {
             }
 	        update(distributionId, name, false, distribution.getAliases());
 		}
-		while( true ) {
-		    try { Thread.sleep(10000L); }
-		    catch( InterruptedException e ) { /* ignore */ }
-		    distribution = getDistribution(distributionId);
-		    if( distribution == null || !distribution.isActive() ) {
-		        break;
-		    }
-		}
+		waitForDisabled(distributionId);
 		while( true ) {
 	        HashMap<String,String> headers = new HashMap<String,String>();
 	        CloudFrontMethod method;
@@ -139,6 +136,46 @@ public class CloudFront implements CDNSupport {
 		}
 	}
 
+	/**
+	 * Blocks until the specified distribution is no longer active. CloudFront has no batch describe call, so the
+	 * shared waiter polls each distribution individually, but on an adaptive schedule. As before, there is no time
+	 * limit; disabling a distribution can take well over half an hour.
+	 */
+	private void waitForDisabled(@Nonnull String distributionId) throws InternalException, CloudException {
+	    ResourceWaiter.StatePoller<Boolean> poller = new ResourceWaiter.StatePoller<Boolean>() {
+	        public @Nonnull Map<String,Boolean> poll(@Nonnull Collection<String> distributionIds) throws CloudException, InternalException {
+	            HashMap<String,Boolean> states = new HashMap<String,Boolean>();
+
+	            for( String id : distributionIds ) {
+	                Distribution d = getDistribution(id);
+
+	                if( d != null ) {
+	                    states.put(id, d.isActive());
+	                }
+	            }
+	            return states;
+	        }
+	    };
+	    Future<Boolean> result = provider.getResourceWaiter().waitFor(ResourceWaiter.DISTRIBUTION, poller, distributionId, new ResourceWaiter.WaitCondition<Boolean>() {
+	        public boolean isSatisfied(@Nonnull String id, @Nullable Boolean active) {
+	            return (active == null || !active);
+	        }
+	    }, ResourceWaiter.NO_TIMEOUT);
+
+	    try {
+	        result.get();
+	    }
+	    catch( InterruptedException e ) {
+	        throw new InternalException(e);
+	    }
+	    catch( ExecutionException e ) {
+	        if( e.getCause() instanceof CloudException ) {
+	            throw (CloudException)e.getCause();
+	        }
+	        throw new InternalException(e.getCause());
+	    }
+	}
+
 	@Override
 	public @Nullable Distribution getDistribution(@Nonnull String distributionId) throws InternalException, CloudException {
 		Object[] parts = getDistributionWithEtag(distributionId);
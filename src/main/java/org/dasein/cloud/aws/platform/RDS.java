@@ -25,8 +25,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
@@ -35,6 +38,8 @@ import org.dasein.cloud.DayOfWeek;
 import org.dasein.cloud.InternalException;
 import org.dasein.cloud.TimeWindow;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.ResourceWaiter;
 import org.dasein.cloud.aws.compute.EC2Exception;
 import org.dasein.cloud.aws.compute.EC2Method;
 import org.dasein.cloud.identity.ServiceAction;
@@ -47,9 +52,7 @@ import org.dasein.cloud.platform.DatabaseSnapshot;
 import org.dasein.cloud.platform.DatabaseSnapshotState;
 import org.dasein.cloud.platform.DatabaseState;
 import org.dasein.cloud.platform.RelationalDatabaseSupport;
-import org.dasein.util.Jiterator;
-import org.dasein.util.JiteratorPopulator;
-import org.dasein.util.PopulatorThread;
+import org.dasein.util.CalendarWrapper;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -371,16 +374,7 @@ public class RDS implements RelationalDatabaseSupport {
         if( providerConfigurationId == null ) {
             return null;
         }
-        PopulatorThread<DatabaseConfiguration> populator;
-        final String id = providerConfigurationId;
-        
-        populator = new PopulatorThread<DatabaseConfiguration>(new JiteratorPopulator<DatabaseConfiguration>() {
-            public void populate(Jiterator<DatabaseConfiguration> iterator) throws CloudException, InternalException {
-                populateConfigurationList(id, iterator);
-            }
-        });
-        populator.populate();
-        Iterator<DatabaseConfiguration> it = populator.getResult().iterator();
+        Iterator<DatabaseConfiguration> it = LazyListing.loadAll(getConfigurationLoader(providerConfigurationId)).iterator();
         
         if( it.hasNext() ) {
             return it.next();
@@ -897,36 +891,21 @@ public class RDS implements RelationalDatabaseSupport {
     
     
     private String getRDSUrl() throws InternalException, CloudException {
-        return ("https://rds." + provider.getContext().getRegionId() + ".amazonaws.com");
+        return ("https://rds." + provider.getTargetRegionId() + ".amazonaws.com");
     }
     
     private Iterable<String> getSecurityGroups(String databaseId) throws CloudException, InternalException {
-        PopulatorThread<String> populator;
-        final String dbId = databaseId;
+        ArrayList<String> list = new ArrayList<String>();
         
-        populator = new PopulatorThread<String>(new JiteratorPopulator<String>() {
-            public void populate(Jiterator<String> iterator) throws CloudException, InternalException {
-                populateSecurityGroupIds(dbId, iterator);
-            }
-        });
-        populator.populate();
-        return populator.getResult();
+        populateSecurityGroupIds(databaseId, list);
+        return list;
     }
     
     public DatabaseSnapshot getSnapshot(String providerDbSnapshotId) throws CloudException, InternalException {
         if( providerDbSnapshotId == null ) {
             return null;
         }
-        PopulatorThread<DatabaseSnapshot> populator;
-        final String id = providerDbSnapshotId;
-        
-        populator = new PopulatorThread<DatabaseSnapshot>(new JiteratorPopulator<DatabaseSnapshot>() {
-            public void populate(Jiterator<DatabaseSnapshot> iterator) throws CloudException, InternalException {
-                populateSnapshotList(id, null, iterator);
-            }
-        });
-        populator.populate();
-        Iterator<DatabaseSnapshot> it = populator.getResult().iterator();
+        Iterator<DatabaseSnapshot> it = LazyListing.loadAll(getSnapshotLoader(providerDbSnapshotId, null)).iterator();
         
         if( it.hasNext() ) {
             return it.next();
@@ -980,38 +959,25 @@ public class RDS implements RelationalDatabaseSupport {
     }
     
     public Iterable<String> listAccess(String toProviderDatabaseId) throws CloudException, InternalException {
-        PopulatorThread<String> idPopulator, accessPopulator;
-        final String dbId = toProviderDatabaseId;
-        
-        idPopulator = new PopulatorThread<String>(new JiteratorPopulator<String>() {
-            public void populate(Jiterator<String> iterator) throws CloudException, InternalException {
-                populateSecurityGroupIds(dbId, iterator);
-            }
-        });
-        idPopulator.populate();
+        final ArrayList<String> ids = new ArrayList<String>();
         
-        final Iterable<String> ids = idPopulator.getResult();
-        accessPopulator = new PopulatorThread<String>(new JiteratorPopulator<String>() {
-            public void populate(Jiterator<String> iterator) throws CloudException, InternalException {
-                for( String id : ids ) {
-                    populateAccess(id, iterator);
+        populateSecurityGroupIds(toProviderDatabaseId, ids);
+        // one page per security group
+        return new LazyListing<String>(provider, new LazyListing.PageLoader<String>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<String> page) throws CloudException, InternalException {
+                int index = (marker == null ? 0 : Integer.parseInt(marker));
+                
+                if( index >= ids.size() ) {
+                    return null;
                 }
+                populateAccess(ids.get(index), page);
+                return ((index + 1) < ids.size() ? String.valueOf(index + 1) : null);
             }
         });
-        accessPopulator.populate();
-        return accessPopulator.getResult();
     }
     
     public Iterable<DatabaseConfiguration> listConfigurations() throws CloudException, InternalException {
-        PopulatorThread<DatabaseConfiguration> populator;
-        
-        populator = new PopulatorThread<DatabaseConfiguration>(new JiteratorPopulator<DatabaseConfiguration>() {
-            public void populate(Jiterator<DatabaseConfiguration> iterator) throws CloudException, InternalException {
-                populateConfigurationList(null, iterator);
-            }
-        });
-        populator.populate();
-        return populator.getResult(); 
+        return new LazyListing<DatabaseConfiguration>(provider, getConfigurationLoader(null));
     }
     
     public Iterable<Database> listDatabases() throws CloudException, InternalException {
@@ -1083,48 +1049,39 @@ public class RDS implements RelationalDatabaseSupport {
     }
     
     public Collection<ConfigurationParameter> listParameters(String forProviderConfigurationId) throws CloudException, InternalException {
-        PopulatorThread<ConfigurationParameter> populator;
-        final String id = forProviderConfigurationId;
-        
-        provider.hold();
-        populator = new PopulatorThread<ConfigurationParameter>(new JiteratorPopulator<ConfigurationParameter>() {
-            public void populate(Jiterator<ConfigurationParameter> iterator) throws CloudException, InternalException {
-                populateParameterList(id, null, iterator);
-                provider.release();
-            }
-        });
-        populator.populate();
-        return populator.getResult();
+        return new LazyListing<ConfigurationParameter>(provider, getParameterLoader(forProviderConfigurationId, null));
     }
     
     public Collection<ConfigurationParameter> listDefaultParameters(DatabaseEngine engine) throws CloudException, InternalException {
-        PopulatorThread<ConfigurationParameter> populator;
-        final DatabaseEngine dbEngine = engine;
-        
-        provider.hold();
-        populator = new PopulatorThread<ConfigurationParameter>(new JiteratorPopulator<ConfigurationParameter>() {
-            public void populate(Jiterator<ConfigurationParameter> iterator) throws CloudException, InternalException {
-                populateParameterList(null, dbEngine, iterator);
-                provider.release();
-            }
-        });
-        populator.populate();
-        return populator.getResult();
+        return new LazyListing<ConfigurationParameter>(provider, getParameterLoader(null, engine));
     }
     
     public Iterable<DatabaseSnapshot> listSnapshots(String forOptionalProviderDatabaseId) throws CloudException, InternalException {
-        PopulatorThread<DatabaseSnapshot> populator;
-        
-        provider.hold();
-        final String id = (forOptionalProviderDatabaseId == null ? null : forOptionalProviderDatabaseId);
-        populator = new PopulatorThread<DatabaseSnapshot>(new JiteratorPopulator<DatabaseSnapshot>() {
-            public void populate(Jiterator<DatabaseSnapshot> iterator) throws CloudException, InternalException {
-                populateSnapshotList(null, id, iterator);
-                provider.release();
+        return new LazyListing<DatabaseSnapshot>(provider, getSnapshotLoader(null, forOptionalProviderDatabaseId));
+    }
+
+    private LazyListing.PageLoader<DatabaseConfiguration> getConfigurationLoader(final String targetId) {
+        return new LazyListing.PageLoader<DatabaseConfiguration>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<DatabaseConfiguration> page) throws CloudException, InternalException {
+                return populateConfigurationList(targetId, marker, page);
             }
-        });
-        populator.populate();
-        return populator.getResult();
+        };
+    }
+    
+    private LazyListing.PageLoader<ConfigurationParameter> getParameterLoader(final String cfgId, final DatabaseEngine engine) {
+        return new LazyListing.PageLoader<ConfigurationParameter>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<ConfigurationParameter> page) throws CloudException, InternalException {
+                return populateParameterList(cfgId, engine, marker, page);
+            }
+        };
+    }
+    
+    private LazyListing.PageLoader<DatabaseSnapshot> getSnapshotLoader(final String snapshotId, final String databaseId) {
+        return new LazyListing.PageLoader<DatabaseSnapshot>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<DatabaseSnapshot> page) throws CloudException, InternalException {
+                return populateSnapshotList(snapshotId, databaseId, marker, page);
+            }
+        };
     }
 
     @Override
@@ -1132,7 +1089,7 @@ public class RDS implements RelationalDatabaseSupport {
         return new String[0];     // TODO: implement me
     }
 
-    private void populateAccess(String securityGroupId, Jiterator<String> iterator) throws CloudException, InternalException {
+    private void populateAccess(String securityGroupId, Collection<String> list) throws CloudException, InternalException {
         Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_SECURITY_GROUPS);
         EC2Method method;
         NodeList blocks;
@@ -1184,7 +1141,7 @@ public class RDS implements RelationalDatabaseSupport {
                                             }
                                         }
                                         if( cidr != null && authorized ) {
-                                            iterator.push(cidr);
+                                            list.add(cidr);
                                         }
                                     }
                                 }
@@ -1196,122 +1153,106 @@ public class RDS implements RelationalDatabaseSupport {
         }        
     }
     
-    private void populateConfigurationList(String targetId, Jiterator<DatabaseConfiguration> iterator) throws CloudException, InternalException {
-        String marker = null;
-
-        do {
-            Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_PARAMETER_GROUPS);
-            EC2Method method;
-            NodeList blocks;
-            Document doc;
+    private String populateConfigurationList(String targetId, String marker, Collection<DatabaseConfiguration> list) throws CloudException, InternalException {
+        Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_PARAMETER_GROUPS);
+        EC2Method method;
+        NodeList blocks;
+        Document doc;
+        
+        if( marker != null ) {
+            parameters.put("Marker", marker);
+        }
+        if( targetId != null ) {
+            parameters.put("DBParameterGroupName", targetId);
+        }
+        method = new EC2Method(provider, getRDSUrl(), parameters);
+        try {
+            doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+            throw new CloudException(e);
+        };
+        marker = null;
+        blocks = doc.getElementsByTagName("Marker");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            Node item = blocks.item(i);
             
-            if( marker != null ) {
-                parameters.put("Marker", marker);
-            }
-            if( targetId != null ) {
-                parameters.put("DBParameterGroupName", targetId);
+            if( item.hasChildNodes() ) {
+                marker = item.getFirstChild().getNodeValue().trim();
             }
-            method = new EC2Method(provider, getRDSUrl(), parameters);
-            try {
-                doc = method.invoke();
-            }
-            catch( EC2Exception e ) {
-                throw new CloudException(e);
-            };
-            marker = null;
-            blocks = doc.getElementsByTagName("Marker");
-            if( blocks.getLength() > 0 ) {
-                for( int i=0; i<blocks.getLength(); i++ ) {
-                    Node item = blocks.item(i);
-                    
-                    if( item.hasChildNodes() ) {
-                        marker = item.getFirstChild().getNodeValue().trim();
-                    }
-                }
-                if( marker != null ) {
-                    break;
-                }
-            }
-            blocks = doc.getElementsByTagName("DBParameterGroups");
-            for( int i=0; i<blocks.getLength(); i++ ) {
-                NodeList items = blocks.item(i).getChildNodes();
+        }
+        blocks = doc.getElementsByTagName("DBParameterGroups");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            NodeList items = blocks.item(i).getChildNodes();
+            
+            for( int j=0; j<items.getLength(); j++ ) {
+                Node item = items.item(j);
                 
-                for( int j=0; j<items.getLength(); j++ ) {
-                    Node item = items.item(j);
+                if( item.getNodeName().equals("DBParameterGroup") ) {
+                    DatabaseConfiguration cfg = toConfiguration(item);
                     
-                    if( item.getNodeName().equals("DBParameterGroup") ) {
-                        DatabaseConfiguration cfg = toConfiguration(item);
-                        
-                        if( cfg != null ) {
-                            iterator.push(cfg);
-                        }
+                    if( cfg != null ) {
+                        list.add(cfg);
                     }
                 }
             }
-        } while( marker != null );
+        }
+        return marker;
     }
     
-    private void populateParameterList(String cfgId, DatabaseEngine engine, Jiterator<ConfigurationParameter> iterator) throws CloudException, InternalException {
-        String marker = null;
-
-        do {
-            Map<String,String> parameters;
-            EC2Method method;
-            NodeList blocks;
-            Document doc;
+    private String populateParameterList(String cfgId, DatabaseEngine engine, String marker, Collection<ConfigurationParameter> list) throws CloudException, InternalException {
+        Map<String,String> parameters;
+        EC2Method method;
+        NodeList blocks;
+        Document doc;
+        
+        if( cfgId != null ) {
+            parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_PARAMETERS);
+            parameters.put("DBParameterGroupName", cfgId);
+        }
+        else {
+            parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_ENGINE_DEFAULT_PARAMETERS);
+            parameters.put("Engine", getEngineString(engine));                
+        }
+        if( marker != null ) {
+            parameters.put("Marker", marker);
+        }
+        method = new EC2Method(provider, getRDSUrl(), parameters);
+        try {
+            doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+            throw new CloudException(e);
+        };
+        marker = null;
+        blocks = doc.getElementsByTagName("Marker");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            Node item = blocks.item(i);
             
-            if( cfgId != null ) {
-                parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_PARAMETERS);
-                parameters.put("DBParameterGroupName", cfgId);
-            }
-            else {
-                parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_ENGINE_DEFAULT_PARAMETERS);
-                parameters.put("Engine", getEngineString(engine));                
+            if( item.hasChildNodes() ) {
+                marker = item.getFirstChild().getNodeValue().trim();
             }
-            if( marker != null ) {
-                parameters.put("Marker", marker);
-            }
-            method = new EC2Method(provider, getRDSUrl(), parameters);
-            try {
-                doc = method.invoke();
-            }
-            catch( EC2Exception e ) {
-                throw new CloudException(e);
-            };
-            marker = null;
-            blocks = doc.getElementsByTagName("Marker");
-            if( blocks.getLength() > 0 ) {
-                for( int i=0; i<blocks.getLength(); i++ ) {
-                    Node item = blocks.item(i);
-                    
-                    if( item.hasChildNodes() ) {
-                        marker = item.getFirstChild().getNodeValue().trim();
-                    }
-                }
-                if( marker != null ) {
-                    break;
-                }
-            }
-            blocks = doc.getElementsByTagName("Parameters");
-            for( int i=0; i<blocks.getLength(); i++ ) {
-                NodeList items = blocks.item(i).getChildNodes();
+        }
+        blocks = doc.getElementsByTagName("Parameters");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            NodeList items = blocks.item(i).getChildNodes();
+            
+            for( int j=0; j<items.getLength(); j++ ) {
+                Node item = items.item(j);
                 
-                for( int j=0; j<items.getLength(); j++ ) {
-                    Node item = items.item(j);
+                if( item.getNodeName().equals("Parameter") ) {
+                    ConfigurationParameter param = toParameter(item);
                     
-                    if( item.getNodeName().equals("Parameter") ) {
-                        ConfigurationParameter param = toParameter(item);
-                        
-                        if( param != null ) {
-                            iterator.push(param);
-                        }
+                    if( param != null ) {
+                        list.add(param);
                     }
                 }
             }
-        } while( marker != null );
+        }
+        return marker;
     }
     
-    private void populateSecurityGroupIds(String providerDatabaseId, Jiterator<String> iterator) throws CloudException, InternalException {
+    private void populateSecurityGroupIds(String providerDatabaseId, Collection<String> list) throws CloudException, InternalException {
         Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_INSTANCES);
         EC2Method method;
         NodeList blocks;
@@ -1363,7 +1304,7 @@ public class RDS implements RelationalDatabaseSupport {
                                             }
                                         }
                                         if( groupName != null && active ) {
-                                            iterator.push(groupName);
+                                            list.add(groupName);
                                         }
                                     }
                                 }
@@ -1375,67 +1316,59 @@ public class RDS implements RelationalDatabaseSupport {
         }
     }
     
-    private void populateSnapshotList(String snapshotId, String databaseId, Jiterator<DatabaseSnapshot> iterator) throws CloudException, InternalException {
-        String marker = null;
-
-        do {
-            Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_SNAPSHOTS);
-            EC2Method method;
-            NodeList blocks;
-            Document doc;
+    private String populateSnapshotList(String snapshotId, String databaseId, String marker, Collection<DatabaseSnapshot> list) throws CloudException, InternalException {
+        Map<String,String> parameters = provider.getStandardRdsParameters(provider.getContext(), DESCRIBE_DB_SNAPSHOTS);
+        EC2Method method;
+        NodeList blocks;
+        Document doc;
+        
+        if( marker != null ) {
+            parameters.put("Marker", marker);
+        }
+        if( snapshotId != null ) {
+            parameters.put("DBSnapshotIdentifier", snapshotId);                
+        }
+        if( databaseId != null ) {
+            parameters.put("DBInstanceIdentifier", databaseId);
+        }
+        method = new EC2Method(provider, getRDSUrl(), parameters);
+        try {
+            doc = method.invoke();
+        }
+        catch( EC2Exception e ) {
+            String code = e.getCode();
             
-            if( marker != null ) {
-                parameters.put("Marker", marker);
-            }
-            if( snapshotId != null ) {
-                parameters.put("DBSnapshotIdentifier", snapshotId);                
-            }
-            if( databaseId != null ) {
-                parameters.put("DBInstanceIdentifier", databaseId);
-            }
-            method = new EC2Method(provider, getRDSUrl(), parameters);
-            try {
-                doc = method.invoke();
+            if( code != null && code.equals("DBSnapshotNotFound") ) {
+                return null;
             }
-            catch( EC2Exception e ) {
-                String code = e.getCode();
-                
-                if( code != null && code.equals("DBSnapshotNotFound") ) {
-                    return;
-                }
-                throw new CloudException(e);
-            };
-            marker = null;
-            blocks = doc.getElementsByTagName("Marker");
-            if( blocks.getLength() > 0 ) {
-                for( int i=0; i<blocks.getLength(); i++ ) {
-                    Node item = blocks.item(i);
-                    
-                    if( item.hasChildNodes() ) {
-                        marker = item.getFirstChild().getNodeValue().trim();
-                    }
-                }
-                if( marker != null ) {
-                    break;
-                }
+            throw new CloudException(e);
+        };
+        marker = null;
+        blocks = doc.getElementsByTagName("Marker");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            Node item = blocks.item(i);
+            
+            if( item.hasChildNodes() ) {
+                marker = item.getFirstChild().getNodeValue().trim();
             }
-            blocks = doc.getElementsByTagName("DBSnapshots");
-            for( int i=0; i<blocks.getLength(); i++ ) {
-                NodeList items = blocks.item(i).getChildNodes();
+        }
+        blocks = doc.getElementsByTagName("DBSnapshots");
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            NodeList items = blocks.item(i).getChildNodes();
+            
+            for( int j=0; j<items.getLength(); j++ ) {
+                Node item = items.item(j);
                 
-                for( int j=0; j<items.getLength(); j++ ) {
-                    Node item = items.item(j);
+                if( item.getNodeName().equals("DBSnapshot") ) {
+                    DatabaseSnapshot snapshot = toSnapshot(item);
                     
-                    if( item.getNodeName().equals("DBSnapshot") ) {
-                        DatabaseSnapshot snapshot = toSnapshot(item);
-                        
-                        if( snapshot != null ) {
-                            iterator.push(snapshot);
-                        }
+                    if( snapshot != null ) {
+                        list.add(snapshot);
                     }
                 }
             }
-        } while( marker != null );
+        }
+        return marker;
     }
     
     public void removeConfiguration(String providerConfigurationId) throws CloudException, InternalException {
@@ -1559,7 +1492,67 @@ public class RDS implements RelationalDatabaseSupport {
         }
         catch( EC2Exception e ) {
             throw new CloudException(e);
-        };               
+        };
+        if( blockUntilDone ) {
+            waitForRestart(providerDatabaseId);
+        }
+    }
+
+    /**
+     * Blocks until the specified database has gone through a restart and is available again. Waits across databases
+     * are shared: a single database is described directly, several are matched from one full listing.
+     */
+    private void waitForRestart(@Nonnull String providerDatabaseId) throws CloudException, InternalException {
+        ResourceWaiter.StatePoller<DatabaseState> poller = new ResourceWaiter.StatePoller<DatabaseState>() {
+            public @Nonnull Map<String,DatabaseState> poll(@Nonnull Collection<String> databaseIds) throws CloudException, InternalException {
+                HashMap<String,DatabaseState> states = new HashMap<String,DatabaseState>();
+
+                if( databaseIds.size() == 1 ) {
+                    Database db = getDatabase(databaseIds.iterator().next());
+
+                    if( db != null ) {
+                        states.put(db.getProviderDatabaseId(), db.getCurrentState());
+                    }
+                }
+                else {
+                    for( Database db : listDatabases(null) ) {
+                        if( databaseIds.contains(db.getProviderDatabaseId()) ) {
+                            states.put(db.getProviderDatabaseId(), db.getCurrentState());
+                        }
+                    }
+                }
+                return states;
+            }
+        };
+        final long start = System.currentTimeMillis();
+        Future<DatabaseState> result = provider.getResourceWaiter().waitFor(ResourceWaiter.DATABASE, poller, providerDatabaseId, new ResourceWaiter.WaitCondition<DatabaseState>() {
+            private boolean restarting = false;
+
+            public boolean isSatisfied(@Nonnull String id, @Nullable DatabaseState state) throws CloudException {
+                if( state == null ) {
+                    throw new CloudException("Database " + id + " disappeared during restart");
+                }
+                if( !state.equals(DatabaseState.AVAILABLE) ) {
+                    restarting = true;
+                    return false;
+                }
+                // the reboot may not be visible immediately, so give it a minute to leave the available state
+                return (restarting || (System.currentTimeMillis() - start) > CalendarWrapper.MINUTE);
+            }
+        }, ResourceWaiter.DEFAULT_TIMEOUT);
+
+        try {
+            result.get();
+        }
+        catch( InterruptedException e ) {
+            throw new InternalException(e);
+        }
+        catch( ExecutionException e ) {
+            if( e.getCause() instanceof CloudException ) {
+                throw (CloudException)e.getCause();
+            }
+            throw new InternalException(e.getCause());
+        }
     }
     
     public void revokeAccess(String providerDatabaseId, String sourceCidr) throws CloudException, InternalException {
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Spaces out the bytes sent or received by transfers so that together they move no more than a fixed number of bytes
+ * in any one second. Transfers call {@link #acquire(int)} for each buffer before moving it. A limiter may share the
+ * budget of a parent, so that one transfer can be both capped on its own and counted against a global cap, and it
+ * may be stopped, after which every transfer it meters fails at its next buffer.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class BandwidthLimiter {
+    /**
+     * Reads a stream at the pace allowed by a limiter.
+     */
+    static private class LimitedInputStream extends FilterInputStream {
+        private BandwidthLimiter limiter;
+
+        LimitedInputStream(@Nonnull InputStream input, @Nonnull BandwidthLimiter limiter) {
+            super(input);
+            this.limiter = limiter;
+        }
+
+        public int read() throws IOException {
+            int b = super.read();
+
+            if( b != -1 ) {
+                limiter.acquire(1);
+            }
+            return b;
+        }
+
+        public int read(@Nonnull byte[] buffer, int off, int len) throws IOException {
+            int count = super.read(buffer, off, len);
+
+            if( count > 0 ) {
+                limiter.acquire(count);
+            }
+            return count;
+        }
+    }
+
+    private long             bytesPerSecond;
+    private long             nextStart = 0L;
+    private BandwidthLimiter parent;
+    private volatile boolean stopped   = false;
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes moved per second, 0 for no limit
+     */
+    public BandwidthLimiter(@Nonnegative long bytesPerSecond) {
+        this(null, bytesPerSecond);
+    }
+
+    /**
+     * @param parent a limiter whose budget is shared in addition to this one, or <code>null</code> for none
+     * @param bytesPerSecond the maximum number of bytes moved per second, 0 for no limit of its own
+     */
+    public BandwidthLimiter(@Nullable BandwidthLimiter parent, @Nonnegative long bytesPerSecond) {
+        this.parent = parent;
+        this.bytesPerSecond = Math.max(0L, bytesPerSecond);
+    }
+
+    /**
+     * Blocks until the specified number of bytes may be moved.
+     * @param bytes the number of bytes about to be moved
+     * @throws InterruptedIOException the limiter was stopped or the calling thread was interrupted while waiting
+     */
+    public void acquire(@Nonnegative int bytes) throws InterruptedIOException {
+        if( stopped ) {
+            throw new InterruptedIOException("The transfer was cancelled");
+        }
+        long wait = 0L;
+
+        synchronized( this ) {
+            if( bytesPerSecond > 0L ) {
+                long now = System.nanoTime();
+
+                if( nextStart < now ) {
+                    nextStart = now;
+                }
+                wait = nextStart - now;
+                nextStart += (bytes * 1000000000L) / bytesPerSecond;
+            }
+        }
+        if( wait > 0L ) {
+            try {
+                Thread.sleep(wait / 1000000L, (int)(wait % 1000000L));
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            }
+            if( stopped ) {
+                throw new InterruptedIOException("The transfer was cancelled");
+            }
+        }
+        if( parent != null ) {
+            parent.acquire(bytes);
+        }
+    }
+
+    /**
+     * @return the maximum number of bytes moved per second, 0 for no limit of its own
+     */
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return true if the limiter has been stopped
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * @param input a stream
+     * @return a stream that reads the specified stream at the pace allowed by this limiter
+     */
+    public @Nonnull InputStream limit(@Nonnull InputStream input) {
+        return new LimitedInputStream(input, this);
+    }
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes moved per second, 0 for no limit of its own
+     */
+    public synchronized void setBytesPerSecond(@Nonnegative long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0L, bytesPerSecond);
+    }
+
+    /**
+     * Stops the limiter, failing every transfer it meters at its next buffer.
+     */
+    public void stop() {
+        stopped = true;
+    }
+}
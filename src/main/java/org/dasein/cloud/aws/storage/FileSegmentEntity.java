@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+/**
+ * A request body made of one contiguous segment of a file, such as a single part of a multipart upload. The segment
+ * is read from the file as it is sent, so it is never held in memory, and it can be sent again on a retry. The MD5
+ * digest of the segment, and optionally its SHA-256 digest, are computed from the same read as it is sent, so a
+ * caller can check the ETag that S3 returns without reading the file a second time.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class FileSegmentEntity extends AbstractHttpEntity {
+    static private final int BUFFER_SIZE = 65536;
+
+    /**
+     * Reads one segment of a file.
+     */
+    static public class SegmentInputStream extends InputStream {
+        private RandomAccessFile file;
+        private long             remaining;
+
+        /**
+         * @param file the file to read
+         * @param offset the position in the file at which the segment starts
+         * @param length the length of the segment in bytes
+         * @throws IOException the file could not be opened
+         */
+        public SegmentInputStream(@Nonnull File file, @Nonnegative long offset, @Nonnegative long length) throws IOException {
+            this.file = new RandomAccessFile(file, "r");
+            this.remaining = length;
+            this.file.seek(offset);
+        }
+
+        public int read() throws IOException {
+            if( remaining < 1 ) {
+                return -1;
+            }
+            int b = file.read();
+
+            if( b >= 0 ) {
+                remaining--;
+            }
+            return b;
+        }
+
+        public int read(@Nonnull byte[] buffer, int off, int len) throws IOException {
+            if( remaining < 1 ) {
+                return -1;
+            }
+            int count = file.read(buffer, off, (int)Math.min(len, remaining));
+
+            if( count > 0 ) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    static private @Nonnull MessageDigest getDigest(@Nonnull String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new IOException(e);
+        }
+    }
+
+    private boolean          computeSha256 = false;
+    private File             file;
+    private long             length;
+    private BandwidthLimiter limiter       = null;
+    private byte[]           md5           = null;
+    private long             offset;
+    private byte[]           sha256        = null;
+
+    /**
+     * @param file the file holding the segment
+     * @param offset the position in the file at which the segment starts
+     * @param length the length of the segment in bytes
+     * @param contentType the content type to send, or <code>null</code> for none
+     */
+    public FileSegmentEntity(@Nonnull File file, @Nonnegative long offset, @Nonnegative long length, @Nullable String contentType) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        setContentType(contentType);
+    }
+
+    /**
+     * @return the MD5 digest of the segment as last sent, or <code>null</code> if it has not been sent in full
+     */
+    public synchronized @Nullable byte[] getMD5() {
+        return (md5 == null ? null : md5.clone());
+    }
+
+    /**
+     * @return the SHA-256 digest of the segment as last sent, or <code>null</code> if it has not been sent in full or is not computed
+     */
+    public synchronized @Nullable byte[] getSha256() {
+        return (sha256 == null ? null : sha256.clone());
+    }
+
+    /**
+     * @param computeSha256 true to compute the SHA-256 digest of the segment in addition to its MD5 digest
+     */
+    public synchronized void setComputeSha256(boolean computeSha256) {
+        this.computeSha256 = computeSha256;
+    }
+
+    /**
+     * @param limiter the limiter that paces the segment as it is sent, or <code>null</code> to send it at full speed
+     */
+    public synchronized void setLimiter(@Nullable BandwidthLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    public @Nonnull InputStream getContent() throws IOException {
+        return new SegmentInputStream(file, offset, length);
+    }
+
+    public long getContentLength() {
+        return length;
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    public void writeTo(@Nonnull OutputStream output) throws IOException {
+        MessageDigest md5Digest = getDigest("MD5");
+        MessageDigest sha256Digest;
+        BandwidthLimiter pace;
+        InputStream input;
+
+        synchronized( this ) {
+            md5 = null;
+            sha256 = null;
+            sha256Digest = (computeSha256 ? getDigest("SHA-256") : null);
+            pace = limiter;
+        }
+        input = getContent();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while( (count = input.read(buffer)) != -1 ) {
+                if( pace != null ) {
+                    pace.acquire(count);
+                }
+                output.write(buffer, 0, count);
+                md5Digest.update(buffer, 0, count);
+                if( sha256Digest != null ) {
+                    sha256Digest.update(buffer, 0, count);
+                }
+            }
+            output.flush();
+            synchronized( this ) {
+                md5 = md5Digest.digest();
+                sha256 = (sha256Digest == null ? null : sha256Digest.digest());
+            }
+        }
+        finally {
+            input.close();
+        }
+    }
+}
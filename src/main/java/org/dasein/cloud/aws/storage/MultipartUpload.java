@@ -0,0 +1,977 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.Header;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.storage.S3Method.S3Response;
+import org.dasein.cloud.storage.FileTransfer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Uploads a large file to S3 as a multipart upload. The file is split into parts that are uploaded in parallel on
+ * the shared transfer pool, each with its own MD5 check and retries, so a failure costs one part rather than the
+ * whole file. Each part is sent with its <code>Content-MD5</code>, so S3 rejects a part damaged on the way, and is
+ * checked against the ETag S3 returns; parts too large to read twice cheaply are instead hashed as they are sent.
+ * The upload ID and every completed part are recorded in a local journal; if an upload is interrupted,
+ * uploading the same file to the same object again resumes from the parts already stored as long as the file has
+ * not changed and S3 still holds the upload. The journal is removed once the upload completes or is aborted.
+ * Streams of unknown length may also be uploaded, without a journal, and objects already in S3 may be copied as
+ * parts of ranges of the source.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class MultipartUpload {
+    static private final Logger logger = AWSCloud.getLogger(MultipartUpload.class);
+
+    static public final int  DEFAULT_CONCURRENCY = 4;
+    static public final long DEFAULT_PART_SIZE   = 16L * 1024L * 1024L;
+    static public final int  DEFAULT_RETRIES     = 3;
+    static public final int  MAX_PARTS           = 10000;
+    static public final long MIN_PART_SIZE       = 5L * 1024L * 1024L;
+    static public final long COPY_PART_SIZE      = 512L * 1024L * 1024L;
+
+    static private final long RETRY_DELAY = 2000L;
+
+    /**
+     * Finds an error that S3 reports in the body of a successful response, as it may for requests that take long
+     * enough that the status has already been sent, such as copies and completions of multipart uploads.
+     * @param response the response
+     * @return the code and message of the error, or <code>null</code> if the response reports no error
+     */
+    static @Nullable String getEmbeddedError(@Nullable S3Response response) {
+        if( response == null || response.document == null ) {
+            return null;
+        }
+        NodeList blocks = response.document.getElementsByTagName("Error");
+
+        if( blocks.getLength() < 1 ) {
+            return null;
+        }
+        String code = null, message = null;
+        NodeList attrs = blocks.item(0).getChildNodes();
+
+        for( int i=0; i<attrs.getLength(); i++ ) {
+            Node attr = attrs.item(i);
+
+            if( attr.getNodeName().equals("Code") && attr.hasChildNodes() ) {
+                code = attr.getFirstChild().getNodeValue().trim();
+            }
+            else if( attr.getNodeName().equals("Message") && attr.hasChildNodes() ) {
+                message = attr.getFirstChild().getNodeValue().trim();
+            }
+        }
+        return code + " - " + message;
+    }
+
+    static private @Nonnull String unquote(@Nonnull String etag) {
+        etag = etag.trim();
+        if( etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"") ) {
+            return etag.substring(1, etag.length() - 1);
+        }
+        return etag;
+    }
+
+    private String                        bucket;
+    private boolean                       computeSha256 = false;
+    private int                           concurrency = DEFAULT_CONCURRENCY;
+    private String                        contentType = "application/octet-stream";
+    private final TreeMap<Integer,String> etags       = new TreeMap<Integer,String>();
+    private File                          file;
+    private Map<String,String>            headers     = new HashMap<String,String>();
+    private File                          journal;
+    private BandwidthLimiter              limiter     = null;
+    private String                        object;
+    private long                          partSize    = DEFAULT_PART_SIZE;
+    private AWSCloud                      provider;
+    private int                           retries     = DEFAULT_RETRIES;
+    private final TreeMap<Integer,String> sha256Digests = new TreeMap<Integer,String>();
+    private volatile String               uploadId    = null;
+
+    MultipartUpload(@Nonnull AWSCloud provider, @Nonnull String bucket, @Nonnull String object, @Nonnull File file) throws InternalException {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.object = object;
+        this.file = file;
+        try {
+            String key = bucket + "/" + object + "|" + file.getAbsolutePath();
+
+            this.journal = new File(System.getProperty("java.io.tmpdir"), "s3-upload-" + S3.toHex(S3Method.computeMD5Hash(key)) + ".journal");
+        }
+        catch( NoSuchAlgorithmException e ) {
+            throw new InternalException(e);
+        }
+        catch( IOException e ) {
+            throw new InternalException(e);
+        }
+    }
+
+    MultipartUpload(@Nonnull AWSCloud provider, @Nonnull String bucket, @Nonnull String object) {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.object = object;
+        this.file = null;
+        this.journal = null;
+    }
+
+    /**
+     * Aborts the upload, discarding every part stored so far along with the journal. An upload that has not been
+     * started but has a journal from an earlier, interrupted attempt is aborted as well.
+     * @throws CloudException an error occurred with the cloud provider while aborting the upload
+     * @throws InternalException an error occurred within Dasein Cloud while aborting the upload
+     */
+    public void abort() throws CloudException, InternalException {
+        String id = uploadId;
+
+        if( id == null ) {
+            Properties p = loadJournal();
+
+            if( p != null ) {
+                id = p.getProperty("uploadId");
+            }
+        }
+        if( id != null ) {
+            abort(id);
+        }
+        deleteJournal();
+        uploadId = null;
+    }
+
+    private void abort(@Nonnull String id) throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.ABORT_MULTIPART_UPLOAD);
+
+        try {
+            method.invoke(bucket, object + "?uploadId=" + id);
+        }
+        catch( S3Exception e ) {
+            String code = e.getCode();
+
+            if( code == null || !code.equals("NoSuchUpload") ) {
+                logger.error(e.getSummary());
+                throw new CloudException(e);
+            }
+        }
+    }
+
+    private void complete() throws CloudException, InternalException {
+        StringBuilder xml = new StringBuilder();
+
+        xml.append("<CompleteMultipartUpload>");
+        synchronized( etags ) {
+            for( Map.Entry<Integer,String> part : etags.entrySet() ) {
+                xml.append("<Part><PartNumber>");
+                xml.append(part.getKey());
+                xml.append("</PartNumber><ETag>\"");
+                xml.append(part.getValue());
+                xml.append("\"</ETag></Part>");
+            }
+        }
+        xml.append("</CompleteMultipartUpload>");
+
+        S3Method method = new S3Method(provider, S3Action.COMPLETE_MULTIPART_UPLOAD, null, null, "application/xml", xml.toString());
+        S3Response response;
+
+        try {
+            response = method.invoke(bucket, object + "?uploadId=" + uploadId);
+        }
+        catch( S3Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        // S3 may report a failure to complete the upload in the body of a successful response
+        String error = getEmbeddedError(response);
+
+        if( error != null ) {
+            throw new CloudException("Unable to complete upload of " + bucket + "/" + object + ": " + error);
+        }
+    }
+
+    /**
+     * Copies an object within S3 as a multipart upload whose parts are byte ranges of the source, copied in
+     * parallel by S3 itself. This is required for objects over 5 GB, which cannot be copied in a single request.
+     * If the copy fails, the upload is aborted.
+     * @param sourceBucket the bucket holding the source object
+     * @param sourceObject the name of the source object
+     * @param length the length of the source object in bytes
+     * @throws CloudException an error occurred with the cloud provider while copying
+     * @throws InternalException an error occurred within Dasein Cloud while copying
+     */
+    public void copy(@Nonnull String sourceBucket, @Nonnull String sourceObject, @Nonnegative final long length) throws CloudException, InternalException {
+        final String source = "/" + sourceBucket + "/" + AWSCloud.encode(sourceObject, true);
+        final long size = Math.max(Math.max(partSize, COPY_PART_SIZE), (length + MAX_PARTS - 1) / MAX_PARTS);
+        final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+        int count = (int)Math.max(1L, (length + size - 1) / size);
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.TRANSFERS);
+        ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+        boolean completed = false;
+
+        for( int i=1; i<=count; i++ ) {
+            pending.add(i);
+        }
+        synchronized( etags ) {
+            etags.clear();
+        }
+        uploadId = initiate();
+        try {
+            for( int i=0; i<Math.min(concurrency, count); i++ ) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws CloudException, InternalException {
+                        Integer number;
+
+                        while( (number = pending.poll()) != null ) {
+                            long first = (number - 1) * size;
+                            String etag = copyPart(source, number, first, Math.min(length, first + size) - 1);
+
+                            synchronized( etags ) {
+                                etags.put(number, etag);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            S3.getResults(futures);
+            complete();
+            completed = true;
+        }
+        finally {
+            if( !completed ) {
+                for( Future<Void> f : futures ) {
+                    f.cancel(true);
+                }
+                try {
+                    abort();
+                }
+                catch( Throwable t ) {
+                    logger.warn("Unable to abort copy " + uploadId + " to " + bucket + "/" + object + ": " + t.getMessage());
+                }
+            }
+            uploadId = null;
+        }
+    }
+
+    private @Nonnull String copyPart(@Nonnull String source, int number, long first, long last) throws CloudException, InternalException {
+        Exception lastError = null;
+
+        for( int attempt=0; attempt<=retries; attempt++ ) {
+            if( attempt > 0 ) {
+                logger.warn("Retrying part " + number + " of the copy to " + bucket + "/" + object + " after: " + lastError.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY * attempt);
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+            }
+            HashMap<String,String> partHeaders = new HashMap<String,String>();
+
+            partHeaders.put("x-amz-copy-source", source);
+            if( last >= first ) {
+                partHeaders.put("x-amz-copy-source-range", "bytes=" + first + "-" + last);
+            }
+            S3Method method = new S3Method(provider, S3Action.UPLOAD_PART, null, partHeaders);
+            S3Response response;
+
+            try {
+                response = method.invoke(bucket, object + "?partNumber=" + number + "&uploadId=" + uploadId);
+            }
+            catch( S3Exception e ) {
+                String code = e.getCode();
+
+                if( code != null && (code.equals("NoSuchUpload") || code.equals("NoSuchBucket") || code.equals("NoSuchKey") || code.equals("AccessDenied")) ) {
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+                lastError = e;
+                continue;
+            }
+            catch( CloudException e ) {
+                lastError = e;
+                continue;
+            }
+            catch( InternalException e ) {
+                lastError = e;
+                continue;
+            }
+            String error = getEmbeddedError(response);
+
+            if( error != null ) {
+                lastError = new CloudException("Unable to copy part " + number + " to " + bucket + "/" + object + ": " + error);
+                continue;
+            }
+            if( response != null && response.document != null ) {
+                NodeList blocks = response.document.getElementsByTagName("ETag");
+
+                if( blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+                    return unquote(blocks.item(0).getFirstChild().getNodeValue());
+                }
+            }
+            lastError = new CloudException("No ETag was returned for part " + number + " of the copy to " + bucket + "/" + object);
+        }
+        if( lastError instanceof CloudException ) {
+            throw (CloudException)lastError;
+        }
+        if( lastError instanceof InternalException ) {
+            throw (InternalException)lastError;
+        }
+        throw new CloudException(lastError);
+    }
+
+    private void deleteJournal() {
+        if( journal != null && journal.exists() && !journal.delete() ) {
+            logger.warn("Unable to delete upload journal " + journal);
+        }
+    }
+
+    /**
+     * @return the number of parts uploaded at the same time
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the content type of the object
+     */
+    public @Nonnull String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the hex SHA-256 digest of each part uploaded from the file in this session, keyed by part number
+     */
+    public @Nonnull Map<Integer,String> getSha256Digests() {
+        synchronized( sha256Digests ) {
+            return new TreeMap<Integer,String>(sha256Digests);
+        }
+    }
+
+    /**
+     * @return the file recording the progress of the upload, or <code>null</code> if uploads are not journaled
+     */
+    public @Nullable File getJournal() {
+        return journal;
+    }
+
+    /**
+     * @return the limiter that paces the parts as they are sent, or <code>null</code> for none
+     */
+    public @Nullable BandwidthLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the requested part size in bytes
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    // the requested size, raised if needed to the S3 minimum and to fit the file in the maximum number of parts
+    private long getPartSize(long length) {
+        long size = Math.max(partSize, MIN_PART_SIZE);
+
+        return Math.max(size, (length + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    /**
+     * @return the number of times a failed part is retried
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the ID of the upload in progress, or <code>null</code> if no upload is in progress
+     */
+    public @Nullable String getUploadId() {
+        return uploadId;
+    }
+
+    private @Nonnull String initiate() throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.INITIATE_MULTIPART_UPLOAD, null, new HashMap<String,String>(headers), contentType, (String)null);
+        S3Response response;
+
+        try {
+            response = method.invoke(bucket, object + "?uploads");
+        }
+        catch( S3Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        if( response != null && response.document != null ) {
+            NodeList blocks = response.document.getElementsByTagName("UploadId");
+
+            if( blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+                return blocks.item(0).getFirstChild().getNodeValue().trim();
+            }
+        }
+        throw new CloudException("No upload ID was returned when starting the upload of " + bucket + "/" + object);
+    }
+
+    private boolean isAlive(@Nonnull String id) throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.LIST_PARTS);
+        S3Response response;
+
+        try {
+            response = method.invoke(bucket, object + "?uploadId=" + id);
+        }
+        catch( S3Exception e ) {
+            String code = e.getCode();
+
+            if( e.getStatus() == HttpServletResponse.SC_NOT_FOUND || (code != null && code.equals("NoSuchUpload")) ) {
+                return false;
+            }
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        if( response == null || response.document == null ) {
+            return false;
+        }
+        Document doc = response.document;
+        NodeList blocks = doc.getElementsByTagName("Part");
+
+        // drop any journaled part that S3 reports with a different checksum
+        for( int i=0; i<blocks.getLength(); i++ ) {
+            NodeList attrs = blocks.item(i).getChildNodes();
+            Integer number = null;
+            String etag = null;
+
+            for( int j=0; j<attrs.getLength(); j++ ) {
+                Node attr = attrs.item(j);
+
+                if( attr.getNodeName().equals("PartNumber") && attr.hasChildNodes() ) {
+                    number = Integer.parseInt(attr.getFirstChild().getNodeValue().trim());
+                }
+                else if( attr.getNodeName().equals("ETag") && attr.hasChildNodes() ) {
+                    etag = unquote(attr.getFirstChild().getNodeValue());
+                }
+            }
+            if( number != null && etag != null ) {
+                synchronized( etags ) {
+                    String journaled = etags.get(number);
+
+                    if( journaled != null && !journaled.equalsIgnoreCase(etag) ) {
+                        etags.remove(number);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private @Nullable Properties loadJournal() {
+        if( journal == null || !journal.exists() ) {
+            return null;
+        }
+        Properties p = new Properties();
+
+        try {
+            InputStream input = new FileInputStream(journal);
+
+            try {
+                p.load(input);
+            }
+            finally {
+                input.close();
+            }
+            return p;
+        }
+        catch( IOException e ) {
+            logger.warn("Unable to read upload journal " + journal + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // picks up an interrupted upload of the same file from the journal, if S3 still holds it
+    private void resume(long length, long size) throws CloudException, InternalException {
+        Properties p = loadJournal();
+
+        if( p == null ) {
+            return;
+        }
+        String id = p.getProperty("uploadId");
+        boolean matches = (id != null && bucket.equals(p.getProperty("bucket")) && object.equals(p.getProperty("object"))
+                && String.valueOf(length).equals(p.getProperty("length"))
+                && String.valueOf(file.lastModified()).equals(p.getProperty("lastModified"))
+                && String.valueOf(size).equals(p.getProperty("partSize")));
+
+        if( !matches ) {
+            if( id != null ) {
+                logger.info("Discarding upload " + id + " of " + bucket + "/" + object + " because the file has changed");
+                abort(id);
+            }
+            deleteJournal();
+            return;
+        }
+        synchronized( etags ) {
+            etags.clear();
+            for( String name : p.stringPropertyNames() ) {
+                if( name.startsWith("part.") ) {
+                    etags.put(Integer.parseInt(name.substring("part.".length())), p.getProperty(name));
+                }
+            }
+        }
+        if( isAlive(id) ) {
+            uploadId = id;
+            logger.info("Resuming upload " + id + " of " + bucket + "/" + object + " with " + etags.size() + " parts already stored");
+        }
+        else {
+            synchronized( etags ) {
+                etags.clear();
+            }
+            deleteJournal();
+        }
+    }
+
+    private void saveJournal(long length, long size) {
+        if( journal == null ) {
+            return;
+        }
+        Properties p = new Properties();
+
+        p.setProperty("bucket", bucket);
+        p.setProperty("object", object);
+        p.setProperty("file", file.getAbsolutePath());
+        p.setProperty("length", String.valueOf(length));
+        p.setProperty("lastModified", String.valueOf(file.lastModified()));
+        p.setProperty("partSize", String.valueOf(size));
+        p.setProperty("uploadId", uploadId);
+        synchronized( etags ) {
+            for( Map.Entry<Integer,String> part : etags.entrySet() ) {
+                p.setProperty("part." + part.getKey(), part.getValue());
+            }
+            // written aside and moved into place so that an interruption never leaves a partial journal
+            File tmp = new File(journal.getPath() + ".tmp");
+
+            try {
+                OutputStream output = new FileOutputStream(tmp);
+
+                try {
+                    p.store(output, "S3 multipart upload journal");
+                }
+                finally {
+                    output.close();
+                }
+                if( !tmp.renameTo(journal) ) {
+                    //noinspection ResultOfMethodCallIgnored
+                    journal.delete();
+                    if( !tmp.renameTo(journal) ) {
+                        logger.warn("Unable to update upload journal " + journal);
+                    }
+                }
+            }
+            catch( IOException e ) {
+                logger.warn("Unable to write upload journal " + journal + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param computeSha256 true to compute the SHA-256 digest of each part uploaded from the file as it is sent
+     */
+    public void setComputeSha256(boolean computeSha256) {
+        this.computeSha256 = computeSha256;
+    }
+
+    /**
+     * @param concurrency the number of parts uploaded at the same time
+     */
+    public void setConcurrency(@Nonnegative int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @param contentType the content type of the object
+     */
+    public void setContentType(@Nonnull String contentType) {
+        this.contentType = contentType;
+    }
+
+    /**
+     * @param headers headers such as <code>x-amz-acl</code> applied to the object when the upload is started
+     */
+    public void setHeaders(@Nullable Map<String,String> headers) {
+        this.headers = (headers == null ? new HashMap<String,String>() : new HashMap<String,String>(headers));
+    }
+
+    /**
+     * @param journal the file recording the progress of the upload, or <code>null</code> to upload without a journal
+     */
+    public void setJournal(@Nullable File journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * @param limiter the limiter that paces the parts as they are sent and through which the upload may be cancelled, or <code>null</code> for none
+     */
+    public void setLimiter(@Nullable BandwidthLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * @param partSize the size of each part in bytes; it is raised if needed to the S3 minimum of 5 MB and so that the file fits in 10,000 parts
+     */
+    public void setPartSize(@Nonnegative long partSize) {
+        this.partSize = partSize;
+    }
+
+    /**
+     * @param retries the number of times a failed part is retried
+     */
+    public void setRetries(@Nonnegative int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * Uploads the file, resuming an interrupted upload of the same file if one is journaled. If the upload fails,
+     * the parts stored so far are kept along with the journal so that it can be resumed; call {@link #abort()} to
+     * discard them instead.
+     * @param transfer the transfer to which progress is reported, or <code>null</code> to report no progress
+     * @throws CloudException an error occurred with the cloud provider while uploading
+     * @throws InternalException an error occurred within Dasein Cloud while uploading
+     */
+    public void upload(@Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        if( file == null ) {
+            throw new InternalException("This upload was prepared for a stream rather than a file");
+        }
+        final long length = file.length();
+        final long size = getPartSize(length);
+        int count = (int)Math.max(1L, (length + size - 1) / size);
+        final ConcurrentLinkedQueue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+        final AtomicLong transferred = new AtomicLong(0L);
+
+        resume(length, size);
+        if( uploadId == null ) {
+            synchronized( etags ) {
+                etags.clear();
+            }
+            uploadId = initiate();
+            saveJournal(length, size);
+        }
+        synchronized( etags ) {
+            for( int i=1; i<=count; i++ ) {
+                if( etags.containsKey(i) ) {
+                    transferred.addAndGet(Math.min(size, length - (i - 1) * size));
+                }
+                else {
+                    pending.add(i);
+                }
+            }
+        }
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(length);
+            transfer.setBytesTransferred(transferred.get());
+        }
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.TRANSFERS);
+        ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+        int workers = Math.min(concurrency, pending.size());
+
+        for( int i=0; i<workers; i++ ) {
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws CloudException, InternalException {
+                    Integer number;
+
+                    while( (number = pending.poll()) != null ) {
+                        long offset = (number - 1) * size;
+                        long partLength = Math.min(size, length - offset);
+                        String etag = uploadPart(number, offset, partLength);
+
+                        synchronized( etags ) {
+                            etags.put(number, etag);
+                        }
+                        saveJournal(length, size);
+                        if( transfer != null ) {
+                            transfer.setBytesTransferred(transferred.addAndGet(partLength));
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        try {
+            S3.getResults(futures);
+        }
+        catch( CloudException e ) {
+            logger.error("Upload " + uploadId + " of " + bucket + "/" + object + " failed; it may be resumed from " + journal);
+            throw e;
+        }
+        catch( InternalException e ) {
+            logger.error("Upload " + uploadId + " of " + bucket + "/" + object + " failed; it may be resumed from " + journal);
+            throw e;
+        }
+        complete();
+        deleteJournal();
+        uploadId = null;
+    }
+
+    /**
+     * Uploads a stream of unknown length. Parts are read from the stream one after another and uploaded in parallel,
+     * with at most one buffered part per concurrent upload held in memory. A stream cannot be resumed, so if the
+     * upload fails it is aborted. With the default part size, streams of up to 160 GB may be uploaded.
+     * @param input the stream to upload, which is read to its end but not closed
+     * @param transfer the transfer to which progress is reported, or <code>null</code> to report no progress
+     * @throws CloudException an error occurred with the cloud provider while uploading
+     * @throws InternalException an error occurred within Dasein Cloud or while reading the stream
+     */
+    public void upload(@Nonnull InputStream input, @Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.TRANSFERS);
+        ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+        final Semaphore buffers = new Semaphore(concurrency);
+        final AtomicLong transferred = new AtomicLong(0L);
+        int size = (int)Math.min(Integer.MAX_VALUE, Math.max(partSize, MIN_PART_SIZE));
+        boolean completed = false;
+
+        synchronized( etags ) {
+            etags.clear();
+        }
+        uploadId = initiate();
+        try {
+            for( int number=1; number<=MAX_PARTS; number++ ) {
+                byte[] buffer;
+                int count = 0;
+
+                try {
+                    buffers.acquire();
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+                buffer = new byte[size];
+                try {
+                    int read;
+
+                    while( count < size && (read = input.read(buffer, count, size - count)) != -1 ) {
+                        if( limiter != null ) {
+                            limiter.acquire(read);
+                        }
+                        count += read;
+                    }
+                }
+                catch( IOException e ) {
+                    buffers.release();
+                    throw new InternalException(e);
+                }
+                if( count < 1 && number > 1 ) {
+                    buffers.release();
+                    break;
+                }
+                final int partNumber = number;
+                final ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws CloudException, InternalException {
+                        try {
+                            String etag = uploadPart(partNumber, data, 0L, data.remaining());
+
+                            synchronized( etags ) {
+                                etags.put(partNumber, etag);
+                            }
+                            if( transfer != null ) {
+                                transfer.setBytesTransferred(transferred.addAndGet(data.remaining()));
+                            }
+                            return null;
+                        }
+                        finally {
+                            buffers.release();
+                        }
+                    }
+                }));
+                if( count < size ) {
+                    break;
+                }
+                if( number == MAX_PARTS ) {
+                    throw new CloudException("The stream for " + bucket + "/" + object + " exceeds " + MAX_PARTS + " parts of " + size + " bytes");
+                }
+            }
+            S3.getResults(futures);
+            complete();
+            completed = true;
+        }
+        finally {
+            if( !completed ) {
+                for( Future<Void> f : futures ) {
+                    f.cancel(true);
+                }
+                try {
+                    abort();
+                }
+                catch( Throwable t ) {
+                    logger.warn("Unable to abort upload " + uploadId + " of " + bucket + "/" + object + ": " + t.getMessage());
+                }
+            }
+            uploadId = null;
+        }
+    }
+
+    private @Nonnull String uploadPart(int number, long offset, long partLength) throws CloudException, InternalException {
+        return uploadPart(number, null, offset, partLength);
+    }
+
+    // uploads one part held either in memory or, when data is null, in the file
+    private @Nonnull String uploadPart(int number, @Nullable ByteBuffer data, long offset, long partLength) throws CloudException, InternalException {
+        String md5 = null, hex = null;
+
+        // S3 checks a part against its Content-MD5; a larger file part is only read as it is sent and checked against the ETag afterwards
+        if( data != null || partLength <= S3Method.CONTENT_MD5_LIMIT ) {
+            try {
+                byte[] digest;
+
+                if( data == null ) {
+                    digest = S3Method.computeMD5Hash(file, offset, partLength);
+                }
+                else {
+                    digest = S3Method.computeMD5Hash(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.remaining()));
+                }
+                md5 = S3Method.toBase64(digest);
+                hex = S3.toHex(digest);
+            }
+            catch( NoSuchAlgorithmException e ) {
+                throw new InternalException(e);
+            }
+            catch( IOException e ) {
+                throw new InternalException(e);
+            }
+        }
+        Exception lastError = null;
+
+        for( int attempt=0; attempt<=retries; attempt++ ) {
+            if( limiter != null && limiter.isStopped() ) {
+                throw new CloudException("The upload of " + bucket + "/" + object + " was cancelled");
+            }
+            if( attempt > 0 ) {
+                logger.warn("Retrying part " + number + " of " + bucket + "/" + object + " after: " + lastError.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY * attempt);
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+            }
+            HashMap<String,String> partHeaders = new HashMap<String,String>();
+            S3Method method;
+
+            if( md5 != null ) {
+                partHeaders.put("Content-MD5", md5);
+            }
+            if( data == null ) {
+                method = new S3Method(provider, S3Action.UPLOAD_PART, null, partHeaders, null, file, offset, partLength);
+                method.setComputeSha256(computeSha256);
+                method.setLimiter(limiter);
+            }
+            else {
+                method = new S3Method(provider, S3Action.UPLOAD_PART, null, partHeaders, null, data);
+            }
+            S3Response response;
+
+            try {
+                response = method.invoke(bucket, object + "?partNumber=" + number + "&uploadId=" + uploadId);
+            }
+            catch( S3Exception e ) {
+                String code = e.getCode();
+
+                if( code != null && (code.equals("NoSuchUpload") || code.equals("NoSuchBucket") || code.equals("AccessDenied")) ) {
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+                lastError = e;
+                continue;
+            }
+            catch( CloudException e ) {
+                lastError = e;
+                continue;
+            }
+            catch( InternalException e ) {
+                lastError = e;
+                continue;
+            }
+            String etag = null;
+
+            if( response != null && response.headers != null ) {
+                for( Header header : response.headers ) {
+                    if( header.getName().equalsIgnoreCase("ETag") ) {
+                        etag = unquote(header.getValue());
+                    }
+                }
+            }
+            FileSegmentEntity sent = method.getUploadEntity();
+            String expected = hex;
+
+            if( sent != null ) {
+                byte[] digest = sent.getMD5();
+
+                if( expected == null ) {
+                    expected = (digest == null ? null : S3.toHex(digest));
+                }
+                digest = sent.getSha256();
+                if( digest != null ) {
+                    synchronized( sha256Digests ) {
+                        sha256Digests.put(number, S3.toHex(digest));
+                    }
+                }
+            }
+            if( etag != null && expected != null && etag.equalsIgnoreCase(expected) ) {
+                return etag;
+            }
+            lastError = new CloudException("Checksum mismatch on part " + number + " of " + bucket + "/" + object + ": expected " + expected + ", got " + etag);
+        }
+        if( lastError instanceof CloudException ) {
+            throw (CloudException)lastError;
+        }
+        if( lastError instanceof InternalException ) {
+            throw (InternalException)lastError;
+        }
+        throw new CloudException(lastError);
+    }
+}
@@ -18,17 +18,39 @@
 
 package org.dasein.cloud.aws.storage;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.http.Header;
 import org.apache.log4j.Logger;
@@ -37,20 +59,21 @@ import org.dasein.cloud.InternalException;
 import org.dasein.cloud.NameRules;
 import org.dasein.cloud.ProviderContext;
 import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.LazyListing;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.PartitionedListing;
 import org.dasein.cloud.aws.storage.S3Method.S3Response;
 import org.dasein.cloud.identity.ServiceAction;
 import org.dasein.cloud.storage.AbstractBlobStoreSupport;
 import org.dasein.cloud.storage.Blob;
 import org.dasein.cloud.storage.BlobStoreSupport;
 import org.dasein.cloud.storage.FileTransfer;
-import org.dasein.util.Jiterator;
-import org.dasein.util.JiteratorPopulator;
-import org.dasein.util.PopulatorThread;
 import org.dasein.util.uom.storage.Storage;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletResponse;
@@ -61,6 +84,89 @@ public class S3 extends AbstractBlobStoreSupport {
     static public final int                                       MAX_BUCKETS     = 100;
     static public final int                                       MAX_OBJECTS     = -1;
     static public final Storage<org.dasein.util.uom.storage.Byte> MAX_OBJECT_SIZE = new Storage<org.dasein.util.uom.storage.Byte>(5000000000L, Storage.BYTE);
+    static public final int                                       PAGE_SIZE       = 1000;
+    static public final int                                       MAX_PARTITIONS  = 32;
+    static public final long                                      MULTIPART_THRESHOLD = 64L * 1024L * 1024L;
+    static public final long                                      MAX_COPY_SIZE   = 5L * 1024L * 1024L * 1024L;
+    static public final int                                       MAX_CONCURRENT_COPIES = 32;
+    static public final int                                       MAX_CONCURRENT_DELETES = 16;
+    static public final int                                       MAX_DELETE_KEYS = 1000;
+
+    // objects removed by each task on clouds without multi-object delete
+    static private final int SINGLE_DELETE_BATCH = 50;
+
+    // leading characters probed when sampling the key space of a bucket for a partitioned listing
+    static private final String PARTITION_CHARACTERS = "!-./0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz~";
+
+    static private final Comparator<Blob> KEY_ORDER = new Comparator<Blob>() {
+        public int compare(Blob a, Blob b) {
+            return compareKeys(a.getObjectName(), b.getObjectName());
+        }
+    };
+
+    // SimpleDateFormat is not thread safe, so each listing thread keeps its own
+    static private final ThreadLocal<SimpleDateFormat> LAST_MODIFIED = new ThreadLocal<SimpleDateFormat>() {
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        }
+    };
+
+    static private final ThreadLocal<SimpleDateFormat> HTTP_DATE = new ThreadLocal<SimpleDateFormat>() {
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        }
+    };
+
+    /**
+     * The objects found by a prefix listing, together with the common prefixes (virtual directories) found so far.
+     * The common prefixes are complete once the objects have been iterated in full.
+     */
+    static public class ObjectListing implements Iterable<Blob> {
+        private Collection<String> commonPrefixes;
+        private LazyListing<Blob>  objects;
+
+        ObjectListing(@Nonnull LazyListing<Blob> objects, @Nonnull Collection<String> commonPrefixes) {
+            this.objects = objects;
+            this.commonPrefixes = commonPrefixes;
+        }
+
+        /**
+         * @return the common prefixes of the pages loaded so far, in key order
+         */
+        public @Nonnull List<String> getCommonPrefixes() {
+            synchronized( commonPrefixes ) {
+                return new ArrayList<String>(commonPrefixes);
+            }
+        }
+
+        /**
+         * @return the objects as a collection that loads pages as it is iterated
+         */
+        public @Nonnull Collection<Blob> getObjects() {
+            return objects;
+        }
+
+        public @Nonnull Iterator<Blob> iterator() {
+            return objects.iterator();
+        }
+    }
+
+    // S3 orders keys by their UTF-8 bytes, which is code point order rather than the UTF-16 order of String
+    static private int compareKeys(@Nonnull String a, @Nonnull String b) {
+        int i = 0, j = 0;
+
+        while( i < a.length() && j < b.length() ) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+
+            if( x != y ) {
+                return (x < y ? -1 : 1);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return (a.length() - i) - (b.length() - j);
+    }
 
     private AWSCloud provider = null;
     
@@ -213,14 +319,77 @@ public class S3 extends AbstractBlobStoreSupport {
         if( bucketName == null ) {
             throw new CloudException("No bucket was specified for this request");
         }
-        for( Blob blob : list(bucketName) ) {
-            String name = blob.getObjectName();
+        return headObject(getRegionId(), bucketName, objectName);
+    }
 
-            if( name != null && name.equals(objectName) ) {
-                return blob;
+    /**
+     * Looks up many objects in a bucket at once with one concurrent metadata request per object.
+     * @param bucket the bucket holding the objects
+     * @param objectNames the names of the objects to look up
+     * @return the objects found, keyed by name; objects that do not exist are absent
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Map<String,Blob> getObjects(final @Nonnull String bucket, @Nonnull Collection<String> objectNames) throws CloudException, InternalException {
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.BULK_LOOKUP);
+        ArrayList<Future<Blob>> futures = new ArrayList<Future<Blob>>();
+        LinkedHashMap<String,Blob> objects = new LinkedHashMap<String,Blob>();
+        final String regionId = getRegionId();
+
+        for( final String name : new LinkedHashSet<String>(objectNames) ) {
+            futures.add(executor.submit(new Callable<Blob>() {
+                public Blob call() throws CloudException, InternalException {
+                    return headObject(regionId, bucket, name);
+                }
+            }));
+        }
+        for( Blob object : getResults(futures) ) {
+            if( object != null ) {
+                objects.put(object.getObjectName(), object);
             }
         }
-        return null;
+        return objects;
+    }
+
+    private @Nullable Blob headObject(@Nonnull String regionId, @Nonnull String bucket, @Nonnull String object) throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.OBJECT_EXISTS);
+        Storage<org.dasein.util.uom.storage.Byte> size = new Storage<org.dasein.util.uom.storage.Byte>(0L, Storage.BYTE);
+        S3Response response;
+        long ts = -1L;
+
+        try {
+            response = method.invoke(bucket, object);
+        }
+        catch( S3Exception e ) {
+            if( e.getStatus() != HttpServletResponse.SC_NOT_FOUND ) {
+                String code = e.getCode();
+
+                if( code == null || (!code.equals("NoSuchBucket") && !code.equals("NoSuchKey")) ) {
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+            }
+            return null;
+        }
+        if( response == null ) {
+            return null;
+        }
+        if( response.headers != null ) {
+            for( Header header : response.headers ) {
+                if( header.getName().equalsIgnoreCase("Content-Length") ) {
+                    size = new Storage<org.dasein.util.uom.storage.Byte>(Long.parseLong(header.getValue().trim()), Storage.BYTE);
+                }
+                else if( header.getName().equalsIgnoreCase("Last-Modified") ) {
+                    try {
+                        ts = HTTP_DATE.get().parse(header.getValue().trim()).getTime();
+                    }
+                    catch( ParseException e ) {
+                        logger.warn("Unable to parse Last-Modified of " + bucket + "/" + object + ": " + header.getValue());
+                    }
+                }
+            }
+        }
+        return Blob.getInstance(regionId, getLocation(bucket, object), bucket, object, ts, size);
     }
 
     private boolean belongsToAnother(@Nonnull String bucketName) throws InternalException, CloudException {
@@ -346,9 +515,22 @@ public class S3 extends AbstractBlobStoreSupport {
 
     @Override
     protected void get(@Nullable String bucket, @Nonnull String object, @Nonnull File toFile, @Nullable FileTransfer transfer) throws InternalException, CloudException {
+        get(bucket, object, toFile, transfer, null, SegmentedDownload.DEFAULT_CONCURRENCY);
+    }
+
+    // downloads with the pace and number of connections set by the transfer manager
+    void get(@Nullable String bucket, @Nonnull String object, @Nonnull File toFile, @Nullable FileTransfer transfer, @Nullable BandwidthLimiter limiter, @Nonnegative int connections) throws InternalException, CloudException {
         if( bucket == null ) {
             throw new CloudException("No bucket was specified");
         }
+        if( provider.getEC2Provider().isAWS() ) {
+            SegmentedDownload download = newSegmentedDownload(bucket, object, toFile);
+
+            download.setConcurrency(connections);
+            download.setLimiter(limiter);
+            download.download(transfer);
+            return;
+        }
     	IOException lastError = null;
     	int attempts = 0;
     	
@@ -359,7 +541,9 @@ public class S3 extends AbstractBlobStoreSupport {
     		try {
     		    response = method.invoke(bucket, object);
         		try {
-        			copy(response.input, new FileOutputStream(toFile), transfer);
+        		    InputStream input = (limiter == null ? response.input : limiter.limit(response.input));
+
+        			copy(input, new FileOutputStream(toFile), transfer);
         			return;
         		} 
         		catch( FileNotFoundException e ) {
@@ -394,6 +578,18 @@ public class S3 extends AbstractBlobStoreSupport {
         }
     }
 
+    /**
+     * Prepares a segmented download of an object, which may be configured before it is started. Downloads from AWS
+     * are made this way automatically with the default settings.
+     * @param bucket the bucket holding the object
+     * @param object the name of the object to download
+     * @param toFile the file to download to
+     * @return the download, ready to start
+     */
+    public @Nonnull SegmentedDownload newSegmentedDownload(@Nonnull String bucket, @Nonnull String object, @Nonnull File toFile) {
+        return new SegmentedDownload(provider, bucket, object, toFile);
+    }
+
     private @Nullable Document getAcl(@Nonnull String bucket, @Nullable String object) throws CloudException, InternalException {
 		S3Method method;
 	
@@ -573,7 +769,6 @@ public class S3 extends AbstractBlobStoreSupport {
     @Override
     public @Nonnull Collection<Blob> list(final @Nullable String bucket) throws CloudException, InternalException {
         final ProviderContext ctx = provider.getContext();
-        PopulatorThread <Blob> populator;
 
         if( ctx == null ) {
             throw new CloudException("No context was specified for this request");
@@ -586,31 +781,18 @@ public class S3 extends AbstractBlobStoreSupport {
     	if( bucket != null && !isLocation(bucket) ) {
     		throw new CloudException("No such bucket in target region: " + bucket + " in " + regionId);
     	}
-    	provider.hold();
-    	populator = new PopulatorThread<Blob>(new JiteratorPopulator<Blob>() {
-    		public void populate(@Nonnull Jiterator<Blob> iterator) throws CloudException, InternalException {
-                try {
-                    list(regionId, bucket, iterator);
+        return new LazyListing<Blob>(provider, new LazyListing.PageLoader<Blob>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<Blob> page) throws CloudException, InternalException {
+                if( bucket == null ) {
+                    loadBuckets(regionId, page);
+                    return null;
                 }
-                finally {
-                    provider.release();
-                }
-    		}
-    	});
-    	populator.populate();
-    	return populator.getResult();
-    }
-
-    private void list(@Nonnull String regionId, @Nullable String bucket, @Nonnull Jiterator<Blob> iterator) throws CloudException, InternalException {
-        if( bucket == null ) {
-            loadBuckets(regionId, iterator);
-        }
-        else {
-            loadObjects(regionId, bucket, iterator);
-        }
+                return loadObjects(regionId, bucket, null, null, marker, PAGE_SIZE, page, null);
+            }
+        });
     }
 
-    private void loadBuckets(@Nonnull String regionId, @Nonnull Jiterator<Blob> iterator) throws CloudException, InternalException {
+    private void loadBuckets(@Nonnull String regionId, @Nonnull Collection<Blob> page) throws CloudException, InternalException {
     	S3Method method = new S3Method(provider, S3Action.LIST_BUCKETS);
 		S3Response response;
 		NodeList blocks;		
@@ -685,85 +867,368 @@ public class S3 extends AbstractBlobStoreSupport {
                     continue;
                 }
             }
-            iterator.push(Blob.getInstance(regionId, getLocation(name, null), name, ts));
+            page.add(Blob.getInstance(regionId, getLocation(name, null), name, ts));
 		}
     }
     
-    private void loadObjects(@Nonnull String regionId, @Nonnull String bucket, @Nonnull Jiterator<Blob> iterator) throws CloudException, InternalException {
+    /**
+     * Lists the objects in a bucket a page of {@link #PAGE_SIZE} keys at a time, optionally restricted to the keys
+     * under a prefix and grouped into virtual directories by a delimiter. Keys that contain the delimiter after the
+     * prefix are not returned as objects; each distinct part of such keys up to and including the delimiter is
+     * reported once as a common prefix instead.
+     * @param bucket the bucket to list
+     * @param prefix only keys beginning with this prefix are listed, or <code>null</code> for all keys
+     * @param delimiter the character sequence that separates virtual directories, or <code>null</code> to list every key
+     * @param startAfter only keys that sort after this key are listed, or <code>null</code> to start at the beginning
+     * @return a listing of the matching objects that also collects the common prefixes as it is consumed
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull ObjectListing listObjects(final @Nonnull String bucket, final @Nullable String prefix, final @Nullable String delimiter, final @Nullable String startAfter) throws CloudException, InternalException {
+        final String regionId = getListingRegionId(bucket);
+        final Collection<String> commonPrefixes = Collections.synchronizedSet(new TreeSet<String>());
+        LazyListing<Blob> objects = new LazyListing<Blob>(provider, new LazyListing.PageLoader<Blob>() {
+            public @Nullable String load(@Nullable String marker, @Nonnull Collection<Blob> page) throws CloudException, InternalException {
+                return loadObjects(regionId, bucket, prefix, delimiter, (marker == null ? startAfter : marker), PAGE_SIZE, page, commonPrefixes);
+            }
+        });
+
+        return new ObjectListing(objects, commonPrefixes);
+    }
+
+    /**
+     * Lists the objects in a bucket by splitting the key space into consecutive ranges and listing the ranges in
+     * parallel, so that a listing of a very large bucket is limited by the number of connections rather than by the
+     * round trip of each page. The ranges start at the first key under evenly spaced common prefixes when a delimiter
+     * is given, and otherwise at the first key under each populated leading character after the prefix, refined by
+     * one more character when the keys are concentrated under a few leading characters. A bucket whose matching keys
+     * fit on one page is listed with a single request.
+     * @param bucket the bucket to list
+     * @param prefix only keys beginning with this prefix are listed, or <code>null</code> for all keys
+     * @param delimiter the delimiter whose common prefixes are used to split the key space, or <code>null</code> to sample the key space instead; every key is listed either way
+     * @param ordered true to deliver the objects in key order, false to deliver them as the ranges load
+     * @return the matching objects, which can be iterated once
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Iterable<Blob> listObjectsInParallel(@Nonnull String bucket, @Nullable String prefix, @Nullable String delimiter, boolean ordered) throws CloudException, InternalException {
+        String regionId = getListingRegionId(bucket);
+        ArrayList<Blob> firstPage = new ArrayList<Blob>();
+
+        if( loadObjects(regionId, bucket, prefix, null, null, PAGE_SIZE, firstPage, null) == null ) {
+            return firstPage;
+        }
+        List<Blob> starts = findPartitionStarts(regionId, bucket, (prefix == null ? "" : prefix), delimiter);
+        ArrayList<KeyRange> partitions = new ArrayList<KeyRange>();
+
+        partitions.add(new KeyRange(regionId, bucket, prefix, firstPage, (starts.isEmpty() ? null : starts.get(0).getObjectName())));
+        for( int i=0; i<starts.size(); i++ ) {
+            String end = (i + 1 < starts.size() ? starts.get(i + 1).getObjectName() : null);
+
+            partitions.add(new KeyRange(regionId, bucket, prefix, Collections.singletonList(starts.get(i)), end));
+        }
+        return new PartitionedListing<Blob>(provider, partitions, (ordered ? KEY_ORDER : null));
+    }
+
+    /**
+     * One range of a partitioned listing: the keys from the first preloaded key up to, but not including, the first
+     * key of the next range.
+     */
+    private class KeyRange implements LazyListing.PageLoader<Blob> {
+        private String     bucket;
+        private String     end;
+        private List<Blob> preloaded;
+        private String     prefix;
+        private String     regionId;
+
+        KeyRange(@Nonnull String regionId, @Nonnull String bucket, @Nullable String prefix, @Nonnull List<Blob> preloaded, @Nullable String end) {
+            this.regionId = regionId;
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.preloaded = preloaded;
+            this.end = end;
+        }
+
+        // adds the objects before the end of the range and indicates whether the end was reached
+        private boolean add(@Nonnull Collection<Blob> objects, @Nonnull Collection<Blob> page) {
+            for( Blob object : objects ) {
+                if( end != null && compareKeys(object.getObjectName(), end) >= 0 ) {
+                    return true;
+                }
+                page.add(object);
+            }
+            return false;
+        }
+
+        public @Nullable String load(@Nullable String marker, @Nonnull Collection<Blob> page) throws CloudException, InternalException {
+            if( marker == null && !preloaded.isEmpty() ) {
+                if( add(preloaded, page) ) {
+                    return null;
+                }
+                return preloaded.get(preloaded.size() - 1).getObjectName();
+            }
+            ArrayList<Blob> objects = new ArrayList<Blob>();
+
+            marker = loadObjects(regionId, bucket, prefix, null, marker, PAGE_SIZE, objects, null);
+            if( add(objects, page) ) {
+                return null;
+            }
+            return marker;
+        }
+    }
+
+    private @Nonnull List<Blob> findPartitionStarts(@Nonnull String regionId, @Nonnull String bucket, @Nonnull String prefix, @Nullable String delimiter) throws CloudException, InternalException {
+        ArrayList<String> candidates = new ArrayList<String>();
+        List<Blob> starts;
+
+        if( delimiter != null && delimiter.length() > 0 ) {
+            TreeSet<String> commonPrefixes = new TreeSet<String>();
+            String marker = null;
+
+            do {
+                marker = loadObjects(regionId, bucket, prefix, delimiter, marker, PAGE_SIZE, new ArrayList<Blob>(), commonPrefixes);
+            } while( marker != null );
+            candidates.addAll(commonPrefixes);
+            starts = thin(probe(regionId, bucket, thin(candidates)));
+            if( starts.size() > 1 ) {
+                return starts;
+            }
+            candidates.clear();
+        }
+        for( int i=0; i<PARTITION_CHARACTERS.length(); i++ ) {
+            candidates.add(prefix + PARTITION_CHARACTERS.charAt(i));
+        }
+        starts = probe(regionId, bucket, candidates);
+        if( starts.size() < MAX_PARTITIONS/2 ) {
+            // the keys are concentrated under a few leading characters, so split each of those one character deeper
+            TreeSet<Blob> deeper = new TreeSet<Blob>(KEY_ORDER);
+
+            candidates.clear();
+            for( Blob start : starts ) {
+                String name = start.getObjectName();
+
+                if( name.length() > prefix.length() ) {
+                    String lead = name.substring(0, prefix.length() + 1);
+
+                    for( int i=0; i<PARTITION_CHARACTERS.length(); i++ ) {
+                        candidates.add(lead + PARTITION_CHARACTERS.charAt(i));
+                    }
+                }
+            }
+            deeper.addAll(starts);
+            deeper.addAll(probe(regionId, bucket, candidates));
+            starts = new ArrayList<Blob>(deeper);
+        }
+        return thin(starts);
+    }
+
+    // keeps at most MAX_PARTITIONS evenly spaced items
+    static private @Nonnull <T> List<T> thin(@Nonnull List<T> items) {
+        if( items.size() <= MAX_PARTITIONS ) {
+            return items;
+        }
+        ArrayList<T> kept = new ArrayList<T>();
+
+        for( int i=0; i<MAX_PARTITIONS; i++ ) {
+            kept.add(items.get((int)((long)i * items.size() / MAX_PARTITIONS)));
+        }
+        return kept;
+    }
+
+    /**
+     * Finds the first key under each of a number of prefixes with one request per prefix, run concurrently.
+     * @param regionId the region of the bucket
+     * @param bucket the bucket to probe
+     * @param prefixes the prefixes to probe
+     * @return the first object under each populated prefix, in key order
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    private @Nonnull List<Blob> probe(final @Nonnull String regionId, final @Nonnull String bucket, @Nonnull Collection<String> prefixes) throws CloudException, InternalException {
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.BULK_LOOKUP);
+        ArrayList<Future<List<Blob>>> futures = new ArrayList<Future<List<Blob>>>();
+        TreeSet<Blob> starts = new TreeSet<Blob>(KEY_ORDER);
+
+        for( final String prefix : prefixes ) {
+            futures.add(executor.submit(new Callable<List<Blob>>() {
+                public List<Blob> call() throws CloudException, InternalException {
+                    ArrayList<Blob> first = new ArrayList<Blob>();
+
+                    loadObjects(regionId, bucket, prefix, null, null, 1, first, null);
+                    return first;
+                }
+            }));
+        }
+        for( List<Blob> first : getResults(futures) ) {
+            starts.addAll(first);
+        }
+        return new ArrayList<Blob>(starts);
+    }
+
+    /**
+     * Waits for concurrent requests to finish. If any request fails, the others are cancelled and its error is raised.
+     * @param futures the pending requests
+     * @param <V> the type of result
+     * @return the results in the order of the requests
+     * @throws CloudException a request failed with an error from the cloud provider
+     * @throws InternalException a request failed within Dasein Cloud or the calling thread was interrupted
+     */
+    static @Nonnull <V> List<V> getResults(@Nonnull List<Future<V>> futures) throws CloudException, InternalException {
+        ArrayList<V> results = new ArrayList<V>();
+
+        for( Future<V> future : futures ) {
+            try {
+                results.add(future.get());
+            }
+            catch( InterruptedException e ) {
+                for( Future<V> f : futures ) {
+                    f.cancel(true);
+                }
+                throw new InternalException(e);
+            }
+            catch( ExecutionException e ) {
+                for( Future<V> f : futures ) {
+                    f.cancel(true);
+                }
+                if( e.getCause() instanceof CloudException ) {
+                    throw (CloudException)e.getCause();
+                }
+                if( e.getCause() instanceof InternalException ) {
+                    throw (InternalException)e.getCause();
+                }
+                throw new InternalException(e.getCause());
+            }
+        }
+        return results;
+    }
+
+    private @Nonnull String getRegionId() throws CloudException {
+        ProviderContext ctx = provider.getContext();
+
+        if( ctx == null ) {
+            throw new CloudException("No context was specified for this request");
+        }
+        String regionId = ctx.getRegionId();
+
+        if( regionId == null ) {
+            throw new CloudException("No region ID was specified");
+        }
+        return regionId;
+    }
+
+    private @Nonnull String getListingRegionId(@Nonnull String bucket) throws CloudException, InternalException {
+        String regionId = getRegionId();
+
+        if( !isLocation(bucket) ) {
+            throw new CloudException("No such bucket in target region: " + bucket + " in " + regionId);
+        }
+        return regionId;
+    }
+
+    private @Nullable String loadObjects(@Nonnull String regionId, @Nonnull String bucket, @Nullable String prefix, @Nullable String delimiter, @Nullable String marker, @Nonnegative int maxKeys, @Nonnull Collection<Blob> page, @Nullable Collection<String> commonPrefixes) throws CloudException, InternalException {
 		HashMap<String,String> parameters = new HashMap<String,String>();
+		String nextMarker = null;
 		S3Response response;
-		String marker = null;
 		boolean done = false;
 		S3Method method;
-		
-		while( !done ) {
-			NodeList blocks;
-			
-			parameters.clear();
-			if( marker != null ) {
-				parameters.put("marker", marker);
-			}
-			parameters.put("max-keys", String.valueOf(30));
-			method = new S3Method(provider, S3Action.LIST_CONTENTS, parameters, null);
-			try {
-				response = method.invoke(bucket, null);
-			}
-			catch( S3Exception e ) {
-			    String code = e.getCode();
-
-			    if( code == null || !code.equals("SignatureDoesNotMatch") ) {
-			        throw new CloudException(e);
-			    }
-				logger.error(e.getSummary());
-				throw new CloudException(e);
-			}
-			blocks = response.document.getElementsByTagName("IsTruncated");
-			if( blocks.getLength() > 0 ) {
-				done = blocks.item(0).getFirstChild().getNodeValue().trim().equalsIgnoreCase("false");
-			}
-			blocks = response.document.getElementsByTagName("Contents");
-			for( int i=0; i<blocks.getLength(); i++ ) {
-				Node object = blocks.item(i);
-                Storage<org.dasein.util.uom.storage.Byte> size = null;
-                String name = null;
-                long ts = -1L;
+		NodeList blocks;
 
-                if( object.hasChildNodes() ) {
-                    NodeList attrs = object.getChildNodes();
+		if( marker != null ) {
+			parameters.put("marker", marker);
+		}
+		if( prefix != null && prefix.length() > 0 ) {
+		    parameters.put("prefix", prefix);
+		}
+		if( delimiter != null && delimiter.length() > 0 ) {
+		    parameters.put("delimiter", delimiter);
+		}
+		parameters.put("max-keys", String.valueOf(maxKeys));
+		method = new S3Method(provider, S3Action.LIST_CONTENTS, parameters, null);
+		try {
+			response = method.invoke(bucket, null);
+		}
+		catch( S3Exception e ) {
+		    String code = e.getCode();
 
-                    for( int j=0; j<attrs.getLength(); j++ ) {
-                        Node attr = attrs.item(j);
+		    if( code == null || !code.equals("SignatureDoesNotMatch") ) {
+		        throw new CloudException(e);
+		    }
+			logger.error(e.getSummary());
+			throw new CloudException(e);
+		}
+		blocks = response.document.getElementsByTagName("IsTruncated");
+		if( blocks.getLength() > 0 ) {
+			done = blocks.item(0).getFirstChild().getNodeValue().trim().equalsIgnoreCase("false");
+		}
+		blocks = response.document.getElementsByTagName("NextMarker");
+		if( blocks.getLength() > 0 && blocks.item(0).hasChildNodes() ) {
+		    nextMarker = blocks.item(0).getFirstChild().getNodeValue().trim();
+		}
+		blocks = response.document.getElementsByTagName("Contents");
+		for( int i=0; i<blocks.getLength(); i++ ) {
+			Node object = blocks.item(i);
+            Storage<org.dasein.util.uom.storage.Byte> size = null;
+            String name = null;
+            long ts = -1L;
 
-                        if( attr.getNodeName().equalsIgnoreCase("Key") ) {
-                            String key = attr.getFirstChild().getNodeValue().trim();
+            if( object.hasChildNodes() ) {
+                NodeList attrs = object.getChildNodes();
 
-                            name = key;
-                            marker = key;
-                        }
-                        else if( attr.getNodeName().equalsIgnoreCase("Size") ) {
-                            size = new Storage<org.dasein.util.uom.storage.Byte>(Long.parseLong(attr.getFirstChild().getNodeValue().trim()), Storage.BYTE);
-                        }
-                        else if( attr.getNodeName().equalsIgnoreCase("LastModified") ) {
-                            SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-                            String dateString = attr.getFirstChild().getNodeValue().trim();
+                for( int j=0; j<attrs.getLength(); j++ ) {
+                    Node attr = attrs.item(j);
 
-                            try {
-                                ts = fmt.parse(dateString).getTime();
-                            }
-                            catch( ParseException e ) {
-                                logger.error(e);
-                                e.printStackTrace();
-                                throw new CloudException(e);
-                            }
+                    if( attr.getNodeName().equalsIgnoreCase("Key") ) {
+                        String key = attr.getFirstChild().getNodeValue().trim();
+
+                        name = key;
+                        marker = key;
+                    }
+                    else if( attr.getNodeName().equalsIgnoreCase("Size") ) {
+                        size = new Storage<org.dasein.util.uom.storage.Byte>(Long.parseLong(attr.getFirstChild().getNodeValue().trim()), Storage.BYTE);
+                    }
+                    else if( attr.getNodeName().equalsIgnoreCase("LastModified") ) {
+                        String dateString = attr.getFirstChild().getNodeValue().trim();
+
+                        try {
+                            ts = LAST_MODIFIED.get().parse(dateString).getTime();
+                        }
+                        catch( ParseException e ) {
+                            logger.error(e);
+                            e.printStackTrace();
+                            throw new CloudException(e);
                         }
                     }
                 }
-                if( name == null || size == null ) {
-                    continue;
-                }
-                iterator.push(Blob.getInstance(regionId, getLocation(bucket, name), bucket, name, ts, size));
-			}
-		}    	
+            }
+            if( name == null || size == null ) {
+                continue;
+            }
+            page.add(Blob.getInstance(regionId, getLocation(bucket, name), bucket, name, ts, size));
+		}
+		blocks = response.document.getElementsByTagName("CommonPrefixes");
+		for( int i=0; i<blocks.getLength(); i++ ) {
+		    NodeList attrs = blocks.item(i).getChildNodes();
+
+		    for( int j=0; j<attrs.getLength(); j++ ) {
+		        Node attr = attrs.item(j);
+
+		        if( attr.getNodeName().equals("Prefix") && attr.hasChildNodes() ) {
+		            String common = attr.getFirstChild().getNodeValue().trim();
+
+		            if( commonPrefixes != null ) {
+		                commonPrefixes.add(common);
+		            }
+		            // with a delimiter, the page may end on a common prefix rather than a key
+		            if( marker == null || compareKeys(common, marker) > 0 ) {
+		                marker = common;
+		            }
+		        }
+		    }
+		}
+		if( nextMarker != null ) {
+		    marker = nextMarker;
+		}
+		return ((done || marker == null) ? null : marker);
     }
 
     @Override
@@ -938,8 +1403,179 @@ public class S3 extends AbstractBlobStoreSupport {
     	removeObject(sourceBucket, object);
     }
 
+    /**
+     * Copies an object. On AWS the copy is made by S3 itself without passing the content through the client, in a
+     * single request for objects of up to 5 GB and as a parallel multipart copy for larger ones. Other clouds copy
+     * by downloading and uploading the object.
+     * @param sourceBucket the bucket holding the object to copy
+     * @param sourceObject the name of the object to copy
+     * @param targetBucket the bucket to copy the object to
+     * @param targetObject the name of the copy
+     * @throws CloudException an error occurred with the cloud provider, including the source not existing
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public void copy(@Nonnull String sourceBucket, @Nonnull String sourceObject, @Nonnull String targetBucket, @Nonnull String targetObject) throws CloudException, InternalException {
+        if( !provider.getEC2Provider().isAWS() ) {
+            File file = null;
+
+            try {
+                try {
+                    file = File.createTempFile("s3", ".copy");
+                }
+                catch( IOException e ) {
+                    logger.error(e);
+                    throw new InternalException(e);
+                }
+                get(sourceBucket, sourceObject, file, null);
+                put(targetBucket, targetObject, file);
+            }
+            finally {
+                if( file != null ) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+            return;
+        }
+        Blob source = headObject(getRegionId(), sourceBucket, sourceObject);
+
+        if( source == null ) {
+            throw new CloudException("No such object: " + sourceBucket + "/" + sourceObject);
+        }
+        HashMap<String,String> headers = getPutHeaders(targetBucket);
+        long length = source.getSize().longValue();
+
+        if( length > MAX_COPY_SIZE ) {
+            MultipartUpload upload = new MultipartUpload(provider, targetBucket, targetObject);
+
+            upload.setHeaders(headers);
+            upload.copy(sourceBucket, sourceObject, length);
+            return;
+        }
+        if( headers == null ) {
+            headers = new HashMap<String,String>();
+        }
+        headers.put("x-amz-copy-source", "/" + sourceBucket + "/" + AWSCloud.encode(sourceObject, true));
+        S3Method method = new S3Method(provider, S3Action.COPY_OBJECT, null, headers);
+        S3Response response;
+
+        try {
+            response = method.invoke(targetBucket, targetObject);
+        }
+        catch( S3Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        // a copy that fails after it has started is reported in the body of a successful response
+        String error = MultipartUpload.getEmbeddedError(response);
+
+        if( error != null ) {
+            throw new CloudException("Unable to copy " + sourceBucket + "/" + sourceObject + " to " + targetBucket + "/" + targetObject + ": " + error);
+        }
+    }
+
+    /**
+     * Copies or moves every object under a prefix from one bucket to another. The source is listed in parallel key
+     * ranges and the objects are copied concurrently on the object copy pool as they are listed, each with a few
+     * retries. A moved object is removed from the source only once its copy has succeeded.
+     * @param sourceBucket the bucket to copy from
+     * @param prefix only objects whose names begin with this prefix are copied, or <code>null</code> for all objects
+     * @param targetBucket the bucket to copy to; objects keep their names
+     * @param move true to remove each object from the source once it has been copied
+     * @return the objects that could not be copied or moved, with the reason each failed
+     * @throws CloudException an error occurred with the cloud provider while listing the source
+     * @throws InternalException an error occurred within Dasein Cloud while listing the source
+     */
+    public @Nonnull Map<String,Throwable> copyObjects(final @Nonnull String sourceBucket, @Nullable String prefix, final @Nonnull String targetBucket, final boolean move) throws CloudException, InternalException {
+        final Map<String,Throwable> failures = Collections.synchronizedMap(new TreeMap<String,Throwable>());
+        // copies of large objects wait on their parts in the transfer pool, so they must not hold its threads
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.COPIES);
+        final Semaphore inFlight = new Semaphore(MAX_CONCURRENT_COPIES);
+
+        try {
+            for( Blob object : listObjectsInParallel(sourceBucket, prefix, null, false) ) {
+                final String name = object.getObjectName();
+
+                inFlight.acquire();
+                provider.hold();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            copyWithRetries(sourceBucket, name, targetBucket, move);
+                        }
+                        catch( Throwable t ) {
+                            failures.put(name, t);
+                        }
+                        finally {
+                            inFlight.release();
+                            provider.release();
+                        }
+                    }
+                });
+            }
+            // wait for the copies still running
+            inFlight.acquire(MAX_CONCURRENT_COPIES);
+            inFlight.release(MAX_CONCURRENT_COPIES);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( LazyListing.ListingException e ) {
+            if( e.getCause() instanceof CloudException ) {
+                throw (CloudException)e.getCause();
+            }
+            throw new InternalException(e.getCause());
+        }
+        return new TreeMap<String,Throwable>(failures);
+    }
+
+    private void copyWithRetries(@Nonnull String sourceBucket, @Nonnull String object, @Nonnull String targetBucket, boolean move) throws CloudException, InternalException {
+        for( int attempt=1; ; attempt++ ) {
+            try {
+                copy(sourceBucket, object, targetBucket, object);
+                break;
+            }
+            catch( CloudException e ) {
+                if( attempt > MultipartUpload.DEFAULT_RETRIES ) {
+                    throw e;
+                }
+                logger.warn("Retrying copy of " + sourceBucket + "/" + object + " after: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(1000L * attempt);
+            }
+            catch( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new InternalException(e);
+            }
+        }
+        if( move ) {
+            removeObject(sourceBucket, object);
+        }
+    }
+
+    /**
+     * Prepares a multipart upload of a file, which may be configured before it is started. Files larger than
+     * {@link #MULTIPART_THRESHOLD} are uploaded this way automatically with the default settings, but are aborted
+     * if they fail; an upload prepared here is instead left to be resumed.
+     * @param bucket the bucket to upload to
+     * @param object the name of the object to create
+     * @param file the file to upload
+     * @return the upload, ready to start
+     * @throws InternalException the upload journal could not be named
+     */
+    public @Nonnull MultipartUpload newMultipartUpload(@Nonnull String bucket, @Nonnull String object, @Nonnull File file) throws InternalException {
+        return new MultipartUpload(provider, bucket, object, file);
+    }
+
     @Override
     protected void put(@Nullable String bucket, @Nonnull String object, @Nonnull File file) throws CloudException, InternalException {
+        put(bucket, object, file, null, null, MultipartUpload.DEFAULT_CONCURRENCY);
+    }
+
+    // uploads with the pace and number of connections set by the transfer manager
+    void put(@Nullable String bucket, @Nonnull String object, @Nonnull File file, @Nullable FileTransfer transfer, @Nullable BandwidthLimiter limiter, @Nonnegative int connections) throws CloudException, InternalException {
 		boolean bucketIsPublic = isPublic(bucket, null);
 		HashMap<String,String> headers = null;
     	S3Method method;
@@ -948,48 +1584,262 @@ public class S3 extends AbstractBlobStoreSupport {
     		headers = new HashMap<String,String>();
     		headers.put("x-amz-acl", "public-read");
     	}
-    	method = new S3Method(provider, S3Action.PUT_OBJECT, null, headers, "application/octet-stream", file);
-		try {			
-			method.invoke(bucket, object);
-		}
-		catch( S3Exception e ) {
-			throw new CloudException(e);
-		}
+    	if( bucket != null && file.length() > MULTIPART_THRESHOLD && provider.getEC2Provider().isAWS() ) {
+    	    MultipartUpload upload = newMultipartUpload(bucket, object, file);
+
+    	    upload.setHeaders(headers);
+    	    upload.setConcurrency(connections);
+    	    upload.setLimiter(limiter);
+    	    // a plain put is not resumed, so a failed upload must not leave its parts to be billed in S3
+    	    boolean completed = false;
+
+    	    try {
+    	        upload.upload(transfer);
+    	        completed = true;
+    	    }
+    	    finally {
+    	        if( !completed ) {
+    	            try {
+    	                upload.abort();
+    	            }
+    	            catch( Throwable t ) {
+    	                logger.warn("Unable to abort the upload of " + bucket + "/" + object + ": " + t.getMessage());
+    	            }
+    	        }
+    	    }
+    	    return;
+    	}
+    	if( transfer != null ) {
+    	    transfer.setBytesToTransfer(file.length());
+    	    transfer.setBytesTransferred(0L);
+    	}
+    	if( !provider.getEC2Provider().isAWS() ) {
+    	    method = new S3Method(provider, S3Action.PUT_OBJECT, null, headers, "application/octet-stream", file);
+    	    method.setLimiter(limiter);
+    	    try {
+    	        method.invoke(bucket, object);
+    	    }
+    	    catch( S3Exception e ) {
+    	        throw new CloudException(e);
+    	    }
+    	    if( transfer != null ) {
+    	        transfer.setBytesTransferred(file.length());
+    	    }
+    	    return;
+    	}
+    	// S3 checks the upload against its Content-MD5 where that is cheap to compute, and the ETag confirms what was
+    	// stored; a missing digest or ETag means the upload could not be verified, which is treated like a mismatch
+    	String md5 = null, expected = null;
+
+    	if( file.length() <= S3Method.CONTENT_MD5_LIMIT ) {
+    	    try {
+    	        byte[] digest = S3Method.computeMD5Hash(file, 0L, file.length());
+
+    	        md5 = S3Method.toBase64(digest);
+    	        expected = toHex(digest);
+    	    }
+    	    catch( NoSuchAlgorithmException e ) {
+    	        throw new InternalException(e);
+    	    }
+    	    catch( IOException e ) {
+    	        throw new InternalException(e);
+    	    }
+    	}
+    	String mismatch = null;
+
+    	for( int attempt=0; attempt<=MultipartUpload.DEFAULT_RETRIES; attempt++ ) {
+    	    HashMap<String,String> putHeaders = (headers == null ? new HashMap<String,String>() : new HashMap<String,String>(headers));
+    	    S3Response response;
+
+    	    if( limiter != null && limiter.isStopped() ) {
+    	        throw new CloudException("The upload of " + bucket + "/" + object + " was cancelled");
+    	    }
+    	    if( md5 != null ) {
+    	        putHeaders.put("Content-MD5", md5);
+    	    }
+    	    method = new S3Method(provider, S3Action.PUT_OBJECT, null, putHeaders, "application/octet-stream", file, 0L, file.length());
+    	    method.setLimiter(limiter);
+    	    try {
+    	        response = method.invoke(bucket, object);
+    	    }
+    	    catch( S3Exception e ) {
+    	        throw new CloudException(e);
+    	    }
+    	    FileSegmentEntity sent = method.getUploadEntity();
+    	    String hex = expected;
+    	    String etag = null;
+
+    	    if( hex == null && sent != null ) {
+    	        byte[] digest = sent.getMD5();
+
+    	        hex = (digest == null ? null : toHex(digest));
+    	    }
+    	    if( response != null && response.headers != null ) {
+    	        for( Header header : response.headers ) {
+    	            if( header.getName().equalsIgnoreCase("ETag") ) {
+    	                etag = header.getValue().replaceAll("\"", "").trim();
+    	            }
+    	        }
+    	    }
+    	    if( hex != null && etag != null && etag.equalsIgnoreCase(hex) ) {
+    	        if( transfer != null ) {
+    	            transfer.setBytesTransferred(file.length());
+    	        }
+    	        return;
+    	    }
+    	    mismatch = "expected " + hex + ", got " + etag;
+    	    logger.warn("Checksum mismatch uploading " + bucket + "/" + object + " (" + mismatch + "); retrying");
+    	}
+    	throw new CloudException("Checksum mismatch uploading " + bucket + "/" + object + ": " + mismatch);
+    }
+
+    static @Nonnull String toHex(@Nonnull byte[] data) {
+        StringBuilder str = new StringBuilder();
+
+        for( byte b : data ) {
+            str.append(Character.forDigit((b >> 4) & 0xF, 16));
+            str.append(Character.forDigit(b & 0xF, 16));
+        }
+        return str.toString();
     }
 
     @Override
     protected void put(@Nullable String bucket, @Nonnull String object, @Nonnull String content) throws CloudException, InternalException {
-		boolean bucketIsPublic = isPublic(bucket, null);
-		HashMap<String,String> headers = null;
-    	S3Method method;
+        try {
+            put(bucket, object, ByteBuffer.wrap(content.getBytes("utf-8")), "text/plain");
+        }
+        catch( UnsupportedEncodingException e ) {
+            logger.error(e);
+            throw new InternalException(e);
+        }
+    }
 
-    	if( bucketIsPublic ) {
-    		headers = new HashMap<String,String>();
-    		headers.put("x-amz-acl", "public-read");
-    	}
-    	File file = null;
-    	try {
-        	try {
-        	    file = File.createTempFile(object, ".txt");
-        	    PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file)));
-        	    writer.print(content);
-        	    writer.flush();
-        	    writer.close();
-        	}
-        	catch( IOException e ) {
-        	    logger.error(e);
-        	    e.printStackTrace();
-        	    throw new InternalException(e);
-        	}
-        	method = new S3Method(provider, S3Action.PUT_OBJECT, null, headers, "text/plain", file);
-        	try {
-    			method.invoke(bucket, object);
-    		}
-    		catch( S3Exception e ) {
-    			logger.error(e.getSummary());
-    			throw new CloudException(e);
-    		}
-    	}
+    /**
+     * Stores content held in memory as an object in a single request, without staging it on disk.
+     * @param bucket the bucket to store the object in
+     * @param object the name of the object
+     * @param content the content of the object
+     * @param contentType the content type of the object, or <code>null</code> for binary content
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public void put(@Nullable String bucket, @Nonnull String object, @Nonnull byte[] content, @Nullable String contentType) throws CloudException, InternalException {
+        put(bucket, object, ByteBuffer.wrap(content), contentType);
+    }
+
+    /**
+     * Stores content held in memory as an object in a single request, without staging it on disk. The content is
+     * sent from the position of the buffer to its limit and the buffer itself is left unchanged.
+     * @param bucket the bucket to store the object in
+     * @param object the name of the object
+     * @param content the content of the object
+     * @param contentType the content type of the object, or <code>null</code> for binary content
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public void put(@Nullable String bucket, @Nonnull String object, @Nonnull ByteBuffer content, @Nullable String contentType) throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.PUT_OBJECT, null, getPutHeaders(bucket), (contentType == null ? "application/octet-stream" : contentType), content);
+
+        try {
+            method.invoke(bucket, object);
+        }
+        catch( S3Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+    }
+
+    /**
+     * Stores a stream of unknown length as an object. A stream that ends within one multipart part is sent in a
+     * single request from memory; a longer stream is sent to AWS as a multipart upload while it is being read, and
+     * to other clouds from a temporary file.
+     * @param bucket the bucket to store the object in
+     * @param object the name of the object
+     * @param content the content of the object, which is read to its end but not closed
+     * @param contentType the content type of the object, or <code>null</code> for binary content
+     * @throws CloudException an error occurred with the cloud provider
+     * @throws InternalException an error occurred within Dasein Cloud or while reading the stream
+     */
+    public void put(@Nullable String bucket, @Nonnull String object, @Nonnull InputStream content, @Nullable String contentType) throws CloudException, InternalException {
+        int limit = (int)MultipartUpload.DEFAULT_PART_SIZE;
+        byte[] buffer = new byte[65536];
+        int count = 0;
+        int read = 0;
+
+        try {
+            // the buffer grows with the content so that small payloads stay small
+            while( true ) {
+                if( count == buffer.length ) {
+                    if( buffer.length >= limit ) {
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, Math.min(limit, buffer.length * 2));
+                }
+                read = content.read(buffer, count, buffer.length - count);
+                if( read == -1 ) {
+                    break;
+                }
+                count += read;
+            }
+            int next = (read == -1 ? -1 : content.read());
+
+            if( next == -1 ) {
+                put(bucket, object, ByteBuffer.wrap(buffer, 0, count), contentType);
+                return;
+            }
+            // the byte read to test for the end of the stream goes back in front of the rest
+            buffer = Arrays.copyOf(buffer, count + 1);
+            buffer[count] = (byte)next;
+        }
+        catch( IOException e ) {
+            logger.error(e);
+            throw new InternalException(e);
+        }
+        InputStream input = new SequenceInputStream(new ByteArrayInputStream(buffer), content);
+
+        if( bucket != null && provider.getEC2Provider().isAWS() ) {
+            MultipartUpload upload = new MultipartUpload(provider, bucket, object);
+
+            upload.setHeaders(getPutHeaders(bucket));
+            if( contentType != null ) {
+                upload.setContentType(contentType);
+            }
+            upload.upload(input, null);
+            return;
+        }
+        File file = null;
+
+        try {
+            try {
+                file = File.createTempFile("s3", ".upload");
+                OutputStream output = new FileOutputStream(file);
+
+                try {
+                    byte[] chunk = new byte[65536];
+                    int len;
+
+                    while( (len = input.read(chunk)) != -1 ) {
+                        output.write(chunk, 0, len);
+                    }
+                }
+                finally {
+                    output.close();
+                }
+            }
+            catch( IOException e ) {
+                logger.error(e);
+                throw new InternalException(e);
+            }
+            S3Method method = new S3Method(provider, S3Action.PUT_OBJECT, null, getPutHeaders(bucket), (contentType == null ? "application/octet-stream" : contentType), file);
+
+            try {
+                method.invoke(bucket, object);
+            }
+            catch( S3Exception e ) {
+                logger.error(e.getSummary());
+                throw new CloudException(e);
+            }
+        }
         finally {
             if( file != null ) {
                 //noinspection ResultOfMethodCallIgnored
@@ -998,6 +1848,16 @@ public class S3 extends AbstractBlobStoreSupport {
         }
     }
 
+    private @Nullable HashMap<String,String> getPutHeaders(@Nullable String bucket) throws CloudException, InternalException {
+        if( !isPublic(bucket, null) ) {
+            return null;
+        }
+        HashMap<String,String> headers = new HashMap<String,String>();
+
+        headers.put("x-amz-acl", "public-read");
+        return headers;
+    }
+
     @Override
     public void removeBucket(@Nonnull String bucket) throws CloudException, InternalException {
     	S3Method method = new S3Method(provider, S3Action.DELETE_BUCKET);
@@ -1037,27 +1897,268 @@ public class S3 extends AbstractBlobStoreSupport {
 		}
     }
 
-    @Override
-    public @Nonnull String renameBucket(@Nonnull String oldName, @Nonnull String newName, boolean findFreeName) throws CloudException, InternalException {
-        Blob bucket = createBucket(newName, findFreeName);
+    /**
+     * Removes a set of objects from a bucket. On AWS the objects are removed with multi-object delete requests of up
+     * to {@link #MAX_DELETE_KEYS} keys each, sent concurrently on the shared transfer pool; other clouds remove the
+     * objects one request at a time, also concurrently. Objects that do not exist count as removed.
+     * @param bucket the bucket holding the objects
+     * @param names the names of the objects to remove
+     * @return the objects that could not be removed, with the reason each failed
+     * @throws InternalException an error occurred within Dasein Cloud
+     */
+    public @Nonnull Map<String,Throwable> removeObjects(@Nonnull String bucket, @Nonnull Collection<String> names) throws CloudException, InternalException {
+        return removeAll(bucket, names.iterator(), null);
+    }
 
-        for( Blob file : list(oldName) ) {
-            int retries = 10;
-            
-            while( true ) {
-                retries--;
+    /**
+     * Removes every object under a prefix. The bucket is listed in parallel key ranges and the objects are removed
+     * in batches as they are listed, as described for {@link #removeObjects(String, Collection)}.
+     * @param bucket the bucket holding the objects
+     * @param prefix only objects whose names begin with this prefix are removed, or <code>null</code> for all objects
+     * @param progress the transfer to which progress is reported, counted in objects rather than bytes, or <code>null</code> to report no progress; the number of objects to remove grows as the listing proceeds
+     * @return the objects that could not be removed, with the reason each failed
+     * @throws CloudException an error occurred with the cloud provider while listing the bucket
+     * @throws InternalException an error occurred within Dasein Cloud while listing the bucket
+     */
+    public @Nonnull Map<String,Throwable> removeObjects(@Nonnull String bucket, @Nullable String prefix, @Nullable FileTransfer progress) throws CloudException, InternalException {
+        final Iterator<Blob> objects = listObjectsInParallel(bucket, prefix, null, false).iterator();
+
+        return removeAll(bucket, new Iterator<String>() {
+            public boolean hasNext() {
+                return objects.hasNext();
+            }
+
+            public String next() {
+                return objects.next().getObjectName();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, progress);
+    }
+
+    /**
+     * Removes a bucket together with all of its objects in the background. The objects are removed as described for
+     * {@link #removeObjects(String, String, FileTransfer)} and the bucket itself once it is empty.
+     * @param bucket the bucket to remove
+     * @return the progress of the purge, counted in objects removed rather than bytes; it completes with an error, and the bucket is kept, if any object could not be removed
+     */
+    public @Nonnull FileTransfer purgeBucket(final @Nonnull String bucket) {
+        final FileTransfer transfer = new FileTransfer();
+
+        provider.getExecutors().getPool(ManagedExecutors.PURGE).execute(new Runnable() {
+            public void run() {
                 try {
-                    move(oldName, file.getObjectName(), bucket.getBucketName());
-                    break;
+                    Map<String,Throwable> failures = removeObjects(bucket, null, transfer);
+
+                    if( !failures.isEmpty() ) {
+                        Map.Entry<String,Throwable> first = failures.entrySet().iterator().next();
+
+                        throw new CloudException("Unable to remove " + failures.size() + " objects from " + bucket + ", including " + first.getKey() + ": " + first.getValue().getMessage());
+                    }
+                    removeBucket(bucket);
+                    transfer.complete(null);
+                }
+                catch( Throwable t ) {
+                    transfer.complete(t);
+                }
+            }
+        });
+        return transfer;
+    }
+
+    private @Nonnull Map<String,Throwable> removeAll(final @Nonnull String bucket, @Nonnull Iterator<String> names, final @Nullable FileTransfer progress) throws CloudException, InternalException {
+        final Map<String,Throwable> failures = Collections.synchronizedMap(new TreeMap<String,Throwable>());
+        final boolean multiple = provider.getEC2Provider().isAWS();
+        ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.TRANSFERS);
+        final Semaphore inFlight = new Semaphore(MAX_CONCURRENT_DELETES);
+        final AtomicLong removed = new AtomicLong(0L);
+        int batchSize = (multiple ? MAX_DELETE_KEYS : SINGLE_DELETE_BATCH);
+        long listed = 0L;
+
+        if( progress != null ) {
+            progress.setBytesToTransfer(0L);
+            progress.setBytesTransferred(0L);
+        }
+        try {
+            ArrayList<String> batch = new ArrayList<String>();
+
+            while( names.hasNext() || !batch.isEmpty() ) {
+                if( names.hasNext() ) {
+                    batch.add(names.next());
+                    listed++;
+                    if( progress != null ) {
+                        progress.setBytesToTransfer(listed);
+                    }
+                    if( batch.size() < batchSize ) {
+                        continue;
+                    }
+                }
+                final List<String> keys = batch;
+
+                batch = new ArrayList<String>();
+                inFlight.acquire();
+                provider.hold();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            Map<String,Throwable> errors = (multiple ? deleteBatch(bucket, keys) : deleteEach(bucket, keys));
+
+                            failures.putAll(errors);
+                            if( progress != null ) {
+                                progress.setBytesTransferred(removed.addAndGet(keys.size() - errors.size()));
+                            }
+                        }
+                        catch( Throwable t ) {
+                            for( String key : keys ) {
+                                failures.put(key, t);
+                            }
+                        }
+                        finally {
+                            inFlight.release();
+                            provider.release();
+                        }
+                    }
+                });
+            }
+            // wait for the batches still running
+            inFlight.acquire(MAX_CONCURRENT_DELETES);
+            inFlight.release(MAX_CONCURRENT_DELETES);
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        catch( LazyListing.ListingException e ) {
+            if( e.getCause() instanceof CloudException ) {
+                throw (CloudException)e.getCause();
+            }
+            throw new InternalException(e.getCause());
+        }
+        return new TreeMap<String,Throwable>(failures);
+    }
+
+    // removes up to MAX_DELETE_KEYS objects with one multi-object delete, retrying the keys S3 was too busy to remove
+    private @Nonnull Map<String,Throwable> deleteBatch(@Nonnull String bucket, @Nonnull List<String> keys) throws CloudException, InternalException {
+        HashMap<String,Throwable> failures = new HashMap<String,Throwable>();
+        List<String> pending = keys;
+
+        for( int attempt=1; !pending.isEmpty(); attempt++ ) {
+            if( attempt > 1 ) {
+                try {
+                    Thread.sleep(1000L * (attempt - 1));
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
                 }
-                catch( CloudException e ) {
-                    if( retries < 1 ) {
-                        throw e;
+            }
+            StringBuilder xml = new StringBuilder();
+
+            xml.append("<Delete><Quiet>true</Quiet>");
+            for( String key : pending ) {
+                xml.append("<Object><Key>");
+                xml.append(AWSCloud.escapeXml(key));
+                xml.append("</Key></Object>");
+            }
+            xml.append("</Delete>");
+            S3Method method;
+            S3Response response;
+
+            try {
+                // the Content-MD5 that multi-object delete requires is computed by the method
+                method = new S3Method(provider, S3Action.DELETE_OBJECTS, null, null, "application/xml", ByteBuffer.wrap(xml.toString().getBytes("utf-8")));
+            }
+            catch( UnsupportedEncodingException e ) {
+                logger.error(e);
+                throw new InternalException(e);
+            }
+            try {
+                response = method.invoke(bucket, "?delete");
+            }
+            catch( S3Exception e ) {
+                if( attempt > MultipartUpload.DEFAULT_RETRIES || e.getStatus() < HttpServletResponse.SC_INTERNAL_SERVER_ERROR ) {
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+                logger.warn("Retrying removal of " + pending.size() + " objects from " + bucket + " after: " + e.getSummary());
+                continue;
+            }
+            catch( CloudException e ) {
+                if( attempt > MultipartUpload.DEFAULT_RETRIES ) {
+                    throw e;
+                }
+                logger.warn("Retrying removal of " + pending.size() + " objects from " + bucket + " after: " + e.getMessage());
+                continue;
+            }
+            ArrayList<String> retry = new ArrayList<String>();
+
+            if( response != null && response.document != null ) {
+                // in quiet mode only the keys that could not be removed are reported
+                NodeList errors = response.document.getElementsByTagName("Error");
+
+                for( int i=0; i<errors.getLength(); i++ ) {
+                    NodeList attrs = errors.item(i).getChildNodes();
+                    String key = null, code = null, message = null;
+
+                    for( int j=0; j<attrs.getLength(); j++ ) {
+                        Node attr = attrs.item(j);
+
+                        if( !attr.hasChildNodes() ) {
+                            continue;
+                        }
+                        if( attr.getNodeName().equals("Key") ) {
+                            key = attr.getFirstChild().getNodeValue();
+                        }
+                        else if( attr.getNodeName().equals("Code") ) {
+                            code = attr.getFirstChild().getNodeValue().trim();
+                        }
+                        else if( attr.getNodeName().equals("Message") ) {
+                            message = attr.getFirstChild().getNodeValue().trim();
+                        }
+                    }
+                    if( key == null || "NoSuchKey".equals(code) ) {
+                        continue;
+                    }
+                    if( ("InternalError".equals(code) || "SlowDown".equals(code)) && attempt <= MultipartUpload.DEFAULT_RETRIES ) {
+                        retry.add(key);
+                    }
+                    else {
+                        failures.put(key, new CloudException(code + " - " + message));
                     }
                 }
-                try { Thread.sleep(retries * 10000L); } 
-                catch( InterruptedException ignore ) { }
             }
+            pending = retry;
+        }
+        return failures;
+    }
+
+    // removes objects one request at a time for clouds without multi-object delete
+    private @Nonnull Map<String,Throwable> deleteEach(@Nonnull String bucket, @Nonnull List<String> keys) {
+        HashMap<String,Throwable> failures = new HashMap<String,Throwable>();
+
+        for( String key : keys ) {
+            try {
+                removeObject(bucket, key);
+            }
+            catch( Throwable t ) {
+                failures.put(key, t);
+            }
+        }
+        return failures;
+    }
+
+    @Override
+    public @Nonnull String renameBucket(@Nonnull String oldName, @Nonnull String newName, boolean findFreeName) throws CloudException, InternalException {
+        Blob bucket = createBucket(newName, findFreeName);
+        // with findFreeName the bucket may have been created under a name other than the one requested
+        Map<String,Throwable> failures = copyObjects(oldName, null, bucket.getBucketName(), true);
+
+        if( !failures.isEmpty() ) {
+            Map.Entry<String,Throwable> first = failures.entrySet().iterator().next();
+
+            throw new CloudException("Unable to move " + failures.size() + " objects from " + oldName + " to " + bucket.getBucketName() + ", including " + first.getKey() + ": " + first.getValue().getMessage());
         }
         boolean ok = true;
         for( Blob file : list(oldName ) ) {
@@ -1068,7 +2169,7 @@ public class S3 extends AbstractBlobStoreSupport {
         if( ok ) {
             removeBucket(oldName);
         }
-        return newName;
+        return bucket.getBucketName();
     }
 
     @Override
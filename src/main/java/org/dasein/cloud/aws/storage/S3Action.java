@@ -21,21 +21,25 @@ package org.dasein.cloud.aws.storage;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 
 public enum S3Action {
-	CREATE_BUCKET, DELETE_BUCKET, LIST_BUCKETS, LIST_CONTENTS, LOCATE_BUCKET, COPY_OBJECT, OBJECT_EXISTS, GET_OBJECT, PUT_OBJECT, DELETE_OBJECT, GET_ACL, SET_ACL;
+	CREATE_BUCKET, DELETE_BUCKET, LIST_BUCKETS, LIST_CONTENTS, LOCATE_BUCKET, COPY_OBJECT, OBJECT_EXISTS, GET_OBJECT, PUT_OBJECT, DELETE_OBJECT, DELETE_OBJECTS, GET_ACL, SET_ACL,
+	INITIATE_MULTIPART_UPLOAD, UPLOAD_PART, COMPLETE_MULTIPART_UPLOAD, ABORT_MULTIPART_UPLOAD, LIST_PARTS;
 	
 	public HttpRequestBase getMethod(String url) {
 		switch( this ) {
 		case OBJECT_EXISTS:
 			return new HttpHead(url);
-		case DELETE_BUCKET: case DELETE_OBJECT:
+		case DELETE_BUCKET: case DELETE_OBJECT: case ABORT_MULTIPART_UPLOAD:
 			return new HttpDelete(url);
-		case LIST_BUCKETS: case LIST_CONTENTS: case LOCATE_BUCKET: case GET_OBJECT: case GET_ACL:
+		case LIST_BUCKETS: case LIST_CONTENTS: case LOCATE_BUCKET: case GET_OBJECT: case GET_ACL: case LIST_PARTS:
 			return new HttpGet(url);
-		case CREATE_BUCKET: case COPY_OBJECT: case PUT_OBJECT: case SET_ACL:
+		case DELETE_OBJECTS: case INITIATE_MULTIPART_UPLOAD: case COMPLETE_MULTIPART_UPLOAD:
+			return new HttpPost(url);
+		case CREATE_BUCKET: case COPY_OBJECT: case PUT_OBJECT: case SET_ACL: case UPLOAD_PART:
 			return new HttpPut(url);
 		}
 		return null;
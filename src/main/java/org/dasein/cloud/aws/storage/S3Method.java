@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
@@ -62,6 +63,7 @@ import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
@@ -88,6 +90,12 @@ public class S3Method {
 
     static public final String S3_PREFIX     = "s3:";
 
+    /**
+     * The largest file segment whose <code>Content-MD5</code> is computed before it is sent. Reading a segment of
+     * this size twice is cheap next to sending it, since the second read is served from the page cache.
+     */
+    static public final long   CONTENT_MD5_LIMIT = 64L * 1024L * 1024L;
+
     static public @Nonnull ServiceAction[] asS3ServiceAction(@Nonnull String action) {
         if( action.equals("CreateBucket") ) {
             return new ServiceAction[] { BlobStoreSupport.CREATE_BUCKET };
@@ -120,6 +128,7 @@ public class S3Method {
 		public Header[]    headers;
 		public InputStream input;
 		public HttpRequestBase method;
+		public int         status;
 		
 		public void close() {
 			try { input.close(); } catch( Throwable ignore ) { }
@@ -154,6 +163,10 @@ public class S3Method {
         }
     }
     
+    static public byte[] computeMD5Hash(File file, long offset, long length) throws NoSuchAlgorithmException, IOException {
+        return computeMD5Hash(new FileSegmentEntity.SegmentInputStream(file, offset, length));
+    }
+
     static public String getChecksum(File file) throws NoSuchAlgorithmException, FileNotFoundException, IOException {
         return toBase64(computeMD5Hash(new FileInputStream(file)));
     }
@@ -168,11 +181,17 @@ public class S3Method {
 	private S3Action           action      = null;
 	private int                attempts    = 0;
 	private String             body        = null;
+	private ByteBuffer         content     = null;
 	private String             contentType = null;
 	private Map<String,String> headers     = null;
 	private Map<String,String> parameters  = null;
 	private AWSCloud           provider    = null;
 	private File               uploadFile  = null;
+	private FileSegmentEntity  uploadEntity = null;
+	private BandwidthLimiter   uploadLimiter = null;
+	private boolean            uploadSha256 = false;
+	private long               uploadLength = -1L;
+	private long               uploadOffset = 0L;
 
 	public S3Method(AWSCloud provider, S3Action action) {
 		this.action = action;
@@ -205,6 +224,82 @@ public class S3Method {
 		this.parameters = parameters;
 	}
 	
+	public S3Method(AWSCloud provider, S3Action action, Map<String,String> parameters, Map<String,String> headers, String contentType, File uploadFile, long uploadOffset, long uploadLength) {
+		this(provider, action, parameters, headers, contentType, uploadFile);
+		this.uploadOffset = uploadOffset;
+		this.uploadLength = uploadLength;
+	}
+	
+	/**
+	 * Sends content held in memory as the request body. The <code>Content-MD5</code> of the content is computed up
+	 * front unless the headers already carry one; the content is not consumed and may be sent again on a retry.
+	 * @param provider the cloud to call
+	 * @param action the action to perform
+	 * @param parameters the query parameters, if any
+	 * @param headers the request headers, if any
+	 * @param contentType the content type of the body
+	 * @param content the body, from its position to its limit
+	 * @throws InternalException the MD5 digest is not available
+	 */
+	public S3Method(AWSCloud provider, S3Action action, Map<String,String> parameters, Map<String,String> headers, String contentType, ByteBuffer content) throws InternalException {
+		this(provider, action, parameters, headers, contentType, (String)null);
+		this.content = content.slice();
+		if( !this.headers.containsKey("Content-MD5") ) {
+			try {
+				MessageDigest digest = MessageDigest.getInstance("MD5");
+
+				digest.update(content.duplicate());
+				this.headers.put("Content-MD5", toBase64(digest.digest()));
+			}
+			catch( NoSuchAlgorithmException e ) {
+				throw new InternalException(e);
+			}
+		}
+	}
+
+	/**
+	 * @param computeSha256 true to compute the SHA-256 digest of a file segment upload as well as its MD5 digest
+	 */
+	void setComputeSha256(boolean computeSha256) {
+		this.uploadSha256 = computeSha256;
+	}
+
+	/**
+	 * @return the body of a file segment upload, whose digests are available once it has been sent, or <code>null</code> for other requests
+	 */
+	@Nullable FileSegmentEntity getUploadEntity() {
+		return uploadEntity;
+	}
+
+	/**
+	 * @param limiter the limiter that paces a file upload as it is sent, or <code>null</code> to send it at full speed
+	 */
+	void setLimiter(@Nullable BandwidthLimiter limiter) {
+		this.uploadLimiter = limiter;
+	}
+
+	/**
+	 * @param provider the cloud to call
+	 * @param bucket the bucket addressed, or <code>null</code> for none
+	 * @return the host to which requests for the bucket are sent, before any redirect
+	 */
+	static @Nonnull String getHost(@Nonnull AWSCloud provider, @Nullable String bucket) {
+		if( provider.getEC2Provider().isAWS() ) {
+			return (isValidDomainName(bucket) ? bucket + "." : "") + "s3.amazonaws.com";
+		}
+		if( provider.getEC2Provider().isStorage() && "google".equalsIgnoreCase(provider.getProviderName()) ) {
+			return (bucket != null ? bucket + "." : "") + "commondatastorage.googleapis.com";
+		}
+		String endpoint = provider.getContext().getEndpoint();
+		int idx = endpoint.indexOf("://");
+
+		if( idx != -1 ) {
+			endpoint = endpoint.substring(idx + 3);
+		}
+		idx = endpoint.indexOf('/');
+		return (idx == -1 ? endpoint : endpoint.substring(0, idx));
+	}
+
 	private String getDate() throws CloudException {
         if( provider.getEC2Provider().isStorage() && "google".equalsIgnoreCase(provider.getProviderName()) ) {
             SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ssz", new Locale("US"));
@@ -397,7 +492,7 @@ public class S3Method {
                 method.addHeader("Content-Type", contentType);
             }
             try {
-                String hash = null;
+                String hash = headers.get("Content-MD5");
                 String signature;
                 
                 signature = provider.signS3(new String(provider.getContext().getAccessPublic(), "utf-8"), provider.getContext().getAccessPrivate(), method.getMethod(), hash, contentType, headers, bucket, object);
@@ -416,11 +511,28 @@ public class S3Method {
                     throw new InternalException(e);
                 }
             }
+            else if( content != null ) {
+                ((HttpEntityEnclosingRequestBase)method).setEntity(toEntity(content, contentType));
+            }
+            else if( uploadFile != null && uploadLength >= 0L ) {
+                if( uploadEntity == null ) {
+                    uploadEntity = new FileSegmentEntity(uploadFile, uploadOffset, uploadLength, contentType);
+                    uploadEntity.setComputeSha256(uploadSha256);
+                    uploadEntity.setLimiter(uploadLimiter);
+                }
+                ((HttpEntityEnclosingRequestBase)method).setEntity(uploadEntity);
+            }
+            else if( uploadFile != null && uploadLimiter != null ) {
+                FileSegmentEntity entity = new FileSegmentEntity(uploadFile, 0L, uploadFile.length(), contentType);
+
+                entity.setLimiter(uploadLimiter);
+                ((HttpEntityEnclosingRequestBase)method).setEntity(entity);
+            }
             else if( uploadFile != null ) {
                 ((HttpEntityEnclosingRequestBase)method).setEntity(new FileEntity(uploadFile, contentType));
             }
             attempts++;
-            client = getClient(url.toString(), body == null && uploadFile == null);
+            client = getClient(url.toString(), body == null && uploadFile == null && content == null);
             
             if( wire.isDebugEnabled() ) {
                 wire.debug("[" + url.toString() + "]");
@@ -439,6 +551,10 @@ public class S3Method {
                     wire.debug("-- file upload --");
                     wire.debug("");
                 }
+                else if( content != null ) {
+                    wire.debug("-- " + content.remaining() + " bytes --");
+                    wire.debug("");
+                }
             }
             S3Response response = new S3Response();
             HttpResponse httpResponse;
@@ -460,6 +576,7 @@ public class S3Method {
                 throw new InternalException(e);
             }
             response.headers = httpResponse.getAllHeaders();
+            response.status = status;
     
             HttpEntity entity = httpResponse.getEntity();
             InputStream input = null;
@@ -473,7 +590,7 @@ public class S3Method {
                 }
             }
             try {
-                if( status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_CREATED || status == HttpServletResponse.SC_ACCEPTED ) {
+                if( status == HttpServletResponse.SC_OK || status == HttpServletResponse.SC_CREATED || status == HttpServletResponse.SC_ACCEPTED || status == HttpServletResponse.SC_PARTIAL_CONTENT ) {
                     Header clen = httpResponse.getFirstHeader("Content-Length");
                     long len = -1L;
                     
@@ -635,7 +752,23 @@ public class S3Method {
         }
     }
 	
-	private boolean isValidDomainName(String bucket) {
+	static private @Nonnull ByteArrayEntity toEntity(@Nonnull ByteBuffer content, @Nullable String contentType) {
+	    ByteArrayEntity entity;
+
+	    if( content.hasArray() ) {
+	        entity = new ByteArrayEntity(content.array(), content.arrayOffset() + content.position(), content.remaining());
+	    }
+	    else {
+	        byte[] data = new byte[content.remaining()];
+
+	        content.duplicate().get(data);
+	        entity = new ByteArrayEntity(data);
+	    }
+	    entity.setContentType(contentType);
+	    return entity;
+	}
+
+	static private boolean isValidDomainName(String bucket) {
         return (bucket != null && Pattern.matches("^[a-z0-9](-*[a-z0-9]){2,62}$", bucket));
     }
 
@@ -0,0 +1,354 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.Header;
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.aws.storage.S3Method.S3Response;
+import org.dasein.cloud.storage.FileTransfer;
+
+/**
+ * Downloads an S3 object in segments fetched in parallel with ranged requests on the shared transfer pool. Each
+ * segment is written straight to its place in the target file, and a segment whose connection fails resumes from
+ * the last byte written rather than starting over. Every request is made conditional on the ETag the object had
+ * when the download started, so an object that changes part way through fails the download instead of producing a
+ * file stitched together from two versions.
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class SegmentedDownload {
+    static private final Logger logger = AWSCloud.getLogger(SegmentedDownload.class);
+
+    static public final int  DEFAULT_CONCURRENCY  = 4;
+    static public final int  DEFAULT_RETRIES      = 5;
+    static public final long DEFAULT_SEGMENT_SIZE = 16L * 1024L * 1024L;
+
+    static private final int  BUFFER_SIZE = 65536;
+    static private final long RETRY_DELAY = 2000L;
+
+    private String   bucket;
+    private int              concurrency = DEFAULT_CONCURRENCY;
+    private BandwidthLimiter limiter     = null;
+    private String           object;
+    private AWSCloud         provider;
+    private int              retries     = DEFAULT_RETRIES;
+    private long             segmentSize = DEFAULT_SEGMENT_SIZE;
+    private File             target;
+
+    SegmentedDownload(@Nonnull AWSCloud provider, @Nonnull String bucket, @Nonnull String object, @Nonnull File target) {
+        this.provider = provider;
+        this.bucket = bucket;
+        this.object = object;
+        this.target = target;
+    }
+
+    /**
+     * Downloads the object into the target file, replacing any existing content.
+     * @param transfer the transfer to which progress is reported, or <code>null</code> to report no progress
+     * @throws CloudException an error occurred with the cloud provider, including the object changing during the download
+     * @throws InternalException an error occurred within Dasein Cloud or while writing the file
+     */
+    public void download(@Nullable final FileTransfer transfer) throws CloudException, InternalException {
+        String[] metadata = head();
+        final long length = Long.parseLong(metadata[0]);
+        final String etag = metadata[1];
+        final ConcurrentLinkedQueue<Long> pending = new ConcurrentLinkedQueue<Long>();
+        final AtomicLong transferred = new AtomicLong(0L);
+        RandomAccessFile file;
+
+        for( long start=0L; start<length; start += segmentSize ) {
+            pending.add(start);
+        }
+        if( transfer != null ) {
+            transfer.setBytesToTransfer(length);
+            transfer.setBytesTransferred(0L);
+        }
+        try {
+            file = new RandomAccessFile(target, "rw");
+            file.setLength(length);
+        }
+        catch( IOException e ) {
+            logger.error(e);
+            throw new InternalException(e);
+        }
+        final FileChannel channel = file.getChannel();
+        boolean downloaded = false;
+
+        try {
+            ExecutorService executor = provider.getExecutors().getPool(ManagedExecutors.TRANSFERS);
+            ArrayList<Future<Void>> futures = new ArrayList<Future<Void>>();
+            int workers = Math.min(concurrency, pending.size());
+
+            for( int i=0; i<workers; i++ ) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws CloudException, InternalException {
+                        Long start;
+
+                        while( (start = pending.poll()) != null ) {
+                            fetch(channel, etag, start, Math.min(length, start + segmentSize), transfer, transferred);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            S3.getResults(futures);
+            channel.force(false);
+            downloaded = true;
+        }
+        catch( IOException e ) {
+            logger.error(e);
+            throw new InternalException(e);
+        }
+        finally {
+            try { file.close(); }
+            catch( IOException ignore ) { }
+            // a failed download leaves a file of the full size with unwritten ranges, which must not pass for the object
+            if( !downloaded && !target.delete() ) {
+                logger.warn("Unable to delete incomplete download " + target);
+            }
+        }
+    }
+
+    // fetches bytes [start, end) of the object, resuming after the last byte written when a request fails
+    private void fetch(@Nonnull FileChannel channel, @Nullable String etag, long start, long end, @Nullable FileTransfer transfer, @Nonnull AtomicLong transferred) throws CloudException, InternalException {
+        long position = start;
+        int failures = 0;
+        Exception lastError = null;
+
+        while( position < end ) {
+            if( limiter != null && limiter.isStopped() ) {
+                throw new CloudException("The download of " + bucket + "/" + object + " was cancelled");
+            }
+            if( failures > retries ) {
+                if( lastError instanceof CloudException ) {
+                    throw (CloudException)lastError;
+                }
+                throw new InternalException(lastError);
+            }
+            if( failures > 0 ) {
+                logger.warn("Resuming " + bucket + "/" + object + " at byte " + position + " after: " + lastError.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY * failures);
+                }
+                catch( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException(e);
+                }
+            }
+            HashMap<String,String> headers = new HashMap<String,String>();
+
+            headers.put("Range", "bytes=" + position + "-" + (end - 1));
+            if( etag != null ) {
+                headers.put("If-Match", etag);
+            }
+            S3Method method = new S3Method(provider, S3Action.GET_OBJECT, null, headers);
+            S3Response response;
+
+            try {
+                response = method.invoke(bucket, object);
+            }
+            catch( S3Exception e ) {
+                if( e.getStatus() == HttpServletResponse.SC_PRECONDITION_FAILED ) {
+                    throw new CloudException("The object " + bucket + "/" + object + " changed during the download");
+                }
+                if( e.getStatus() == HttpServletResponse.SC_NOT_FOUND || e.getStatus() == HttpServletResponse.SC_FORBIDDEN ) {
+                    logger.error(e.getSummary());
+                    throw new CloudException(e);
+                }
+                lastError = e;
+                failures++;
+                continue;
+            }
+            catch( CloudException e ) {
+                lastError = e;
+                failures++;
+                continue;
+            }
+            catch( InternalException e ) {
+                lastError = e;
+                failures++;
+                continue;
+            }
+            if( response == null || response.input == null ) {
+                lastError = new CloudException("No content was returned for bytes " + position + "-" + (end - 1) + " of " + bucket + "/" + object);
+                failures++;
+                continue;
+            }
+            // a server or proxy that ignores the range returns the whole object, which must not be written at this offset
+            String range = getContentRange(response);
+
+            if( response.status != HttpServletResponse.SC_PARTIAL_CONTENT || range == null || !range.startsWith("bytes " + position + "-" + (end - 1) + "/") ) {
+                response.close();
+                throw new CloudException("Expected bytes " + position + "-" + (end - 1) + " of " + bucket + "/" + object + " but got status " + response.status + " with range " + range);
+            }
+            try {
+                InputStream input = response.input;
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+
+                while( position < end && (count = input.read(buffer, 0, (int)Math.min(buffer.length, end - position))) != -1 ) {
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+
+                    if( limiter != null ) {
+                        limiter.acquire(count);
+                    }
+
+                    while( data.hasRemaining() ) {
+                        position += channel.write(data, position);
+                    }
+                    // a request that makes progress starts the failure count over
+                    failures = 0;
+                    if( transfer != null ) {
+                        transfer.setBytesTransferred(transferred.addAndGet(count));
+                    }
+                }
+                if( position < end ) {
+                    lastError = new IOException("Connection closed at byte " + position + " of " + bucket + "/" + object);
+                    failures++;
+                }
+            }
+            catch( IOException e ) {
+                lastError = e;
+                failures++;
+            }
+            finally {
+                response.close();
+            }
+        }
+    }
+
+    static private @Nullable String getContentRange(@Nonnull S3Response response) {
+        if( response.headers != null ) {
+            for( Header header : response.headers ) {
+                if( header.getName().equalsIgnoreCase("Content-Range") ) {
+                    return header.getValue().trim();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of segments downloaded at the same time
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @return the limiter that paces the segments as they are received, or <code>null</code> for none
+     */
+    public @Nullable BandwidthLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the number of times in a row a segment may fail without progress before the download fails
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return the size of each segment in bytes
+     */
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    // the length and ETag of the object
+    private @Nonnull String[] head() throws CloudException, InternalException {
+        S3Method method = new S3Method(provider, S3Action.OBJECT_EXISTS);
+        String length = null, etag = null;
+        S3Response response;
+
+        try {
+            response = method.invoke(bucket, object);
+        }
+        catch( S3Exception e ) {
+            logger.error(e.getSummary());
+            throw new CloudException(e);
+        }
+        if( response != null && response.headers != null ) {
+            for( Header header : response.headers ) {
+                if( header.getName().equalsIgnoreCase("Content-Length") ) {
+                    length = header.getValue().trim();
+                }
+                else if( header.getName().equalsIgnoreCase("ETag") ) {
+                    etag = header.getValue().trim();
+                }
+            }
+        }
+        if( length == null ) {
+            throw new CloudException("Unable to determine the size of " + bucket + "/" + object);
+        }
+        return new String[] { length, etag };
+    }
+
+    /**
+     * @param concurrency the number of segments downloaded at the same time
+     */
+    public void setConcurrency(@Nonnegative int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @param limiter the limiter that paces the segments as they are received and through which the download may be cancelled, or <code>null</code> for none
+     */
+    public void setLimiter(@Nullable BandwidthLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * @param retries the number of times in a row a segment may fail without progress before the download fails
+     */
+    public void setRetries(@Nonnegative int retries) {
+        this.retries = retries;
+    }
+
+    /**
+     * @param segmentSize the size of each segment in bytes
+     */
+    public void setSegmentSize(@Nonnegative long segmentSize) {
+        this.segmentSize = Math.max(1L, segmentSize);
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.storage;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.apache.log4j.Logger;
+import org.dasein.cloud.CloudException;
+import org.dasein.cloud.InternalException;
+import org.dasein.cloud.aws.AWSCloud;
+import org.dasein.cloud.aws.ManagedExecutors;
+import org.dasein.cloud.storage.FileTransfer;
+
+/**
+ * Queues S3 uploads and downloads from across the application and runs them under shared limits, so that batch work
+ * neither starves the network nor overwhelms it. Transfers wait in a bounded queue, ordered by priority class and
+ * then by arrival, and start while fewer than a fixed number are running. Each transfer is given as many connections
+ * as its host has left in its budget, up to the number a multipart upload or segmented download uses by default, so
+ * that the transfers to one host together never hold more than a fixed number of connections; a transfer to a host
+ * whose budget is spent waits while transfers to other hosts go ahead. All transfers share an optional bandwidth cap.
+ * <p>
+ * Each transfer reports its own progress through the {@link FileTransfer} returned when it is queued, which may
+ * also be used to cancel it; {@link #getProgress()} sums the progress of every transfer since the manager was last
+ * idle. A cancelled multipart upload is aborted in the same way as a failed one.
+ * </p>
+ * @version 2012.09 initial version
+ * @since 2012.09
+ */
+public class TransferManager {
+    static private final Logger logger = AWSCloud.getLogger(TransferManager.class);
+
+    static public final int DEFAULT_CONCURRENT_TRANSFERS = 8;
+    static public final int DEFAULT_CONNECTIONS_PER_HOST = 16;
+    static public final int DEFAULT_QUEUE_CAPACITY       = 1000;
+
+    /**
+     * The classes in which transfers are queued. A waiting transfer starts before any waiting transfer of a lower
+     * class that could start at the same time.
+     */
+    static public enum Priority { HIGH, NORMAL, LOW }
+
+    private class Job {
+        String           bucket;
+        int              connections;
+        File             file;
+        String           host;
+        BandwidthLimiter limiter;
+        String           object;
+        Priority         priority;
+        boolean          running   = false;
+        Thread           thread    = null;
+        FileTransfer     transfer  = new FileTransfer();
+        boolean          upload;
+
+        Job(@Nonnull String bucket, @Nonnull String object, @Nonnull File file, boolean upload, @Nonnull Priority priority) {
+            this.bucket = bucket;
+            this.object = object;
+            this.file = file;
+            this.upload = upload;
+            this.priority = priority;
+            this.host = S3Method.getHost(provider, bucket);
+            this.limiter = new BandwidthLimiter(bandwidth, 0L);
+            this.connections = (upload ? MultipartUpload.DEFAULT_CONCURRENCY : SegmentedDownload.DEFAULT_CONCURRENCY);
+        }
+
+        void run() {
+            S3 s3 = new S3(provider);
+
+            synchronized( TransferManager.this ) {
+                thread = Thread.currentThread();
+            }
+            try {
+                if( limiter.isStopped() ) {
+                    throw new CloudException("The transfer of " + bucket + "/" + object + " was cancelled");
+                }
+                if( upload ) {
+                    s3.put(bucket, object, file, transfer, limiter, connections);
+                }
+                else {
+                    s3.get(bucket, object, file, transfer, limiter, connections);
+                }
+                transfer.complete(null);
+            }
+            catch( Throwable t ) {
+                if( limiter.isStopped() ) {
+                    t = new CloudException("The transfer of " + bucket + "/" + object + " was cancelled");
+                }
+                else {
+                    logger.warn("Transfer of " + bucket + "/" + object + " failed: " + t.getMessage());
+                }
+                transfer.complete(t);
+            }
+            finally {
+                finish(this);
+                // an interrupt from a cancellation must not reach the next task run by this thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    private BandwidthLimiter                        bandwidth;
+    private int                                     concurrentTransfers;
+    private int                                     connectionsPerHost;
+    private long                                    finishedBytes    = 0L;
+    private long                                    finishedTotal    = 0L;
+    private HashMap<String,Integer>                 hostConnections  = new HashMap<String,Integer>();
+    private IdentityHashMap<FileTransfer,Job>       jobs             = new IdentityHashMap<FileTransfer,Job>();
+    private AWSCloud                                provider;
+    private EnumMap<Priority,ArrayDeque<Job>>       queue            = new EnumMap<Priority,ArrayDeque<Job>>(Priority.class);
+    private Semaphore                               queueSlots;
+    private int                                     running          = 0;
+
+    // every running transfer must have a thread of its own, or the pool would run it on the thread that dispatched it
+    static private int clamp(int concurrentTransfers) {
+        return Math.max(1, Math.min(concurrentTransfers, ManagedExecutors.getThreadCount(ManagedExecutors.TRANSFER_QUEUE)));
+    }
+
+    /**
+     * @param provider the cloud to which transfers are made
+     * @param concurrentTransfers the maximum number of transfers running at once, up to the number of threads in the transfer queue pool
+     * @param connectionsPerHost the maximum number of connections held at once by the transfers to a single host
+     * @param queueCapacity the maximum number of transfers waiting to start; queuing another blocks until one starts
+     */
+    public TransferManager(@Nonnull AWSCloud provider, @Nonnegative int concurrentTransfers, @Nonnegative int connectionsPerHost, @Nonnegative int queueCapacity) {
+        this.provider = provider;
+        this.concurrentTransfers = clamp(concurrentTransfers);
+        this.connectionsPerHost = Math.max(1, connectionsPerHost);
+        this.queueSlots = new Semaphore(Math.max(1, queueCapacity), true);
+        this.bandwidth = new BandwidthLimiter(0L);
+        for( Priority p : Priority.values() ) {
+            queue.put(p, new ArrayDeque<Job>());
+        }
+    }
+
+    /**
+     * Cancels a transfer. A waiting transfer is withdrawn from the queue and a running one fails at its next buffer;
+     * either way it completes with an error.
+     * @param transfer the transfer returned when it was queued
+     * @return true if the transfer was waiting or running, false if it had already completed
+     */
+    public boolean cancel(@Nonnull FileTransfer transfer) {
+        Job job;
+
+        synchronized( this ) {
+            job = jobs.get(transfer);
+            if( job == null ) {
+                return false;
+            }
+            job.limiter.stop();
+            if( job.running ) {
+                // wakes a transfer waiting on its parts or between retries
+                if( job.thread != null ) {
+                    job.thread.interrupt();
+                }
+                return true;
+            }
+            queue.get(job.priority).remove(job);
+            queueSlots.release();
+            jobs.remove(transfer);
+            finishedTotal += transfer.getBytesToTransfer();
+        }
+        transfer.complete(new CloudException("The transfer of " + job.bucket + "/" + job.object + " was cancelled"));
+        return true;
+    }
+
+    private void dispatch() {
+        ArrayList<Job> ready = new ArrayList<Job>();
+
+        synchronized( this ) {
+            for( Priority p : Priority.values() ) {
+                Iterator<Job> it = queue.get(p).iterator();
+
+                while( running < concurrentTransfers && it.hasNext() ) {
+                    Job job = it.next();
+                    Integer used = hostConnections.get(job.host);
+                    int available = connectionsPerHost - (used == null ? 0 : used);
+
+                    if( available < 1 ) {
+                        continue;
+                    }
+                    it.remove();
+                    queueSlots.release();
+                    job.connections = Math.min(job.connections, available);
+                    job.running = true;
+                    hostConnections.put(job.host, (used == null ? 0 : used) + job.connections);
+                    running++;
+                    ready.add(job);
+                }
+            }
+        }
+        for( final Job job : ready ) {
+            provider.getExecutors().getPool(ManagedExecutors.TRANSFER_QUEUE).execute(new Runnable() {
+                public void run() {
+                    job.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues a download of an object to a file, blocking while the queue is full.
+     * @param bucket the bucket holding the object
+     * @param object the name of the object
+     * @param target the file to download to, whose content is replaced
+     * @param priority the class in which the download is queued
+     * @return the progress of the download, which completes with an error if the download fails or is cancelled
+     * @throws InternalException the calling thread was interrupted while waiting for room in the queue
+     */
+    public @Nonnull FileTransfer download(@Nonnull String bucket, @Nonnull String object, @Nonnull File target, @Nonnull Priority priority) throws InternalException {
+        return enqueue(new Job(bucket, object, target, false, priority));
+    }
+
+    private @Nonnull FileTransfer enqueue(@Nonnull Job job) throws InternalException {
+        try {
+            queueSlots.acquire();
+        }
+        catch( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new InternalException(e);
+        }
+        synchronized( this ) {
+            if( jobs.isEmpty() ) {
+                // the aggregate progress covers the transfers since the manager was last idle
+                finishedBytes = 0L;
+                finishedTotal = 0L;
+            }
+            jobs.put(job.transfer, job);
+            queue.get(job.priority).add(job);
+        }
+        dispatch();
+        return job.transfer;
+    }
+
+    private void finish(@Nonnull Job job) {
+        synchronized( this ) {
+            Integer used = hostConnections.get(job.host);
+
+            if( used == null || used <= job.connections ) {
+                hostConnections.remove(job.host);
+            }
+            else {
+                hostConnections.put(job.host, used - job.connections);
+            }
+            job.thread = null;
+            running--;
+            jobs.remove(job.transfer);
+            finishedBytes += job.transfer.getBytesTransferred();
+            finishedTotal += job.transfer.getBytesToTransfer();
+        }
+        dispatch();
+    }
+
+    /**
+     * @return the maximum number of bytes per second moved by all transfers together, 0 for no limit
+     */
+    public long getBandwidthLimit() {
+        return bandwidth.getBytesPerSecond();
+    }
+
+    /**
+     * @return the maximum number of transfers running at once
+     */
+    public synchronized int getConcurrentTransfers() {
+        return concurrentTransfers;
+    }
+
+    /**
+     * @return the maximum number of connections held at once by the transfers to a single host
+     */
+    public synchronized int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    /**
+     * @return a snapshot of the combined progress of the transfers queued since the manager was last idle, which is complete if no transfer is waiting or running
+     */
+    public @Nonnull FileTransfer getProgress() {
+        FileTransfer progress = new FileTransfer();
+        long transferred, total;
+        boolean idle;
+
+        synchronized( this ) {
+            transferred = finishedBytes;
+            total = finishedTotal;
+            for( Job job : jobs.values() ) {
+                transferred += job.transfer.getBytesTransferred();
+                total += job.transfer.getBytesToTransfer();
+            }
+            idle = jobs.isEmpty();
+        }
+        progress.setBytesToTransfer(total);
+        progress.setBytesTransferred(transferred);
+        if( idle ) {
+            progress.complete(null);
+        }
+        return progress;
+    }
+
+    /**
+     * @return the number of transfers waiting to start
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+
+        for( ArrayDeque<Job> waiting : queue.values() ) {
+            count += waiting.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of transfers running
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * @param bytesPerSecond the maximum number of bytes per second moved by all transfers together, 0 for no limit; it applies at once to running transfers
+     */
+    public void setBandwidthLimit(@Nonnegative long bytesPerSecond) {
+        bandwidth.setBytesPerSecond(bytesPerSecond);
+    }
+
+    /**
+     * @param concurrentTransfers the maximum number of transfers running at once, up to the number of threads in the transfer queue pool; running transfers are not stopped if it is lowered
+     */
+    public void setConcurrentTransfers(@Nonnegative int concurrentTransfers) {
+        synchronized( this ) {
+            this.concurrentTransfers = clamp(concurrentTransfers);
+        }
+        dispatch();
+    }
+
+    /**
+     * @param connectionsPerHost the maximum number of connections held at once by the transfers to a single host; it applies to transfers started from now on
+     */
+    public void setConnectionsPerHost(@Nonnegative int connectionsPerHost) {
+        synchronized( this ) {
+            this.connectionsPerHost = Math.max(1, connectionsPerHost);
+        }
+        dispatch();
+    }
+
+    /**
+     * Queues an upload of a file to an existing bucket, blocking while the queue is full. Large files are uploaded
+     * as multipart uploads on AWS, as with {@link S3#upload(File, String, String)}.
+     * @param source the file to upload
+     * @param bucket the bucket to upload to
+     * @param object the name of the object to create
+     * @param priority the class in which the upload is queued
+     * @return the progress of the upload, which completes with an error if the upload fails or is cancelled
+     * @throws InternalException the calling thread was interrupted while waiting for room in the queue
+     */
+    public @Nonnull FileTransfer upload(@Nonnull File source, @Nonnull String bucket, @Nonnull String object, @Nonnull Priority priority) throws InternalException {
+        Job job = new Job(bucket, object, source, true, priority);
+
+        job.transfer.setBytesToTransfer(source.length());
+        return enqueue(job);
+    }
+}
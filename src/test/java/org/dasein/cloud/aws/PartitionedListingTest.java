@@ -0,0 +1,203 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.dasein.cloud.CloudException;
+import org.junit.Test;
+
+public class PartitionedListingTest {
+    static private final Comparator<Integer> ORDER = new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+            return a.compareTo(b);
+        }
+    };
+
+    static private final Executor INLINE = new Executor() {
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    static private class Pages implements LazyListing.PageLoader<Integer> {
+        private List<Integer>  items;
+        private int            loads    = 0;
+        private int            pageSize;
+        private CountDownLatch release;
+
+        Pages(int pageSize, Integer ... items) {
+            this(pageSize, null, items);
+        }
+
+        Pages(int pageSize, CountDownLatch release, Integer ... items) {
+            this.pageSize = pageSize;
+            this.release = release;
+            this.items = Arrays.asList(items);
+        }
+
+        public String load(String marker, Collection<Integer> page) throws CloudException {
+            if( release != null ) {
+                try {
+                    release.await();
+                }
+                catch( InterruptedException e ) {
+                    throw new CloudException(e);
+                }
+            }
+            int start = (marker == null ? 0 : Integer.parseInt(marker));
+            int end = Math.min(items.size(), start + pageSize);
+
+            synchronized( this ) {
+                loads++;
+            }
+            page.addAll(items.subList(start, end));
+            return (end < items.size() ? String.valueOf(end) : null);
+        }
+
+        synchronized int getLoads() {
+            return loads;
+        }
+    }
+
+    static private List<Integer> drain(Iterable<Integer> listing) {
+        ArrayList<Integer> items = new ArrayList<Integer>();
+
+        for( Integer item : listing ) {
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    public void orderedMergeInterleavesSortedPartitions() {
+        List<Pages> partitions = Arrays.asList(new Pages(2, 1, 4, 7, 10), new Pages(2, 2, 5, 8), new Pages(2, 3, 6, 9, 11, 12));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12), drain(new PartitionedListing<Integer>(INLINE, partitions, ORDER, 3)));
+    }
+
+    @Test
+    public void orderedMergeDeliversConsecutiveRangesInOrder() {
+        List<Pages> partitions = Arrays.asList(new Pages(1, 7, 8, 9), new Pages(1, 1, 2, 3), new Pages(1, 4, 5, 6));
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), drain(new PartitionedListing<Integer>(INLINE, partitions, ORDER, 1)));
+    }
+
+    @Test
+    public void orderedMergeSkipsEmptyPartitions() {
+        List<Pages> partitions = Arrays.asList(new Pages(5), new Pages(5, 2, 3), new Pages(5), new Pages(5, 1));
+
+        assertEquals(Arrays.asList(1, 2, 3), drain(new PartitionedListing<Integer>(INLINE, partitions, ORDER, 5)));
+    }
+
+    @Test
+    public void orderedMergeWaitsForSlowPartition() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            List<Pages> partitions = Arrays.asList(new Pages(2, 2, 4, 6, 8), new Pages(2, release, 1, 3, 5, 7));
+            final PartitionedListing<Integer> listing = new PartitionedListing<Integer>(pool, partitions, ORDER, 4);
+            final ArrayList<Integer> items = new ArrayList<Integer>();
+            Thread consumer = new Thread() {
+                public void run() {
+                    items.addAll(drain(listing));
+                }
+            };
+
+            consumer.start();
+            consumer.join(200L);
+            // nothing can be delivered until the slow partition reports its first item
+            assertTrue(consumer.isAlive());
+            release.countDown();
+            consumer.join(5000L);
+            assertFalse(consumer.isAlive());
+            assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), items);
+        }
+        finally {
+            pool.shutdownNow();
+            pool.awaitTermination(5L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void unorderedListingDeliversEveryItem() {
+        List<Pages> partitions = Arrays.asList(new Pages(2, 5, 1, 9), new Pages(3, 4, 8), new Pages(1, 2, 7, 3, 6));
+        List<Integer> items = drain(new PartitionedListing<Integer>(INLINE, partitions, null, 2));
+
+        Collections.sort(items);
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), items);
+    }
+
+    @Test
+    public void windowLimitsPagesLoadedAhead() {
+        Pages partition = new Pages(1, 1, 2, 3, 4, 5, 6);
+        Iterator<Integer> it = new PartitionedListing<Integer>(INLINE, Collections.singletonList(partition), ORDER, 2).iterator();
+
+        assertEquals(2, partition.getLoads());
+        assertEquals(Integer.valueOf(1), it.next());
+        assertEquals(3, partition.getLoads());
+        assertEquals(Integer.valueOf(2), it.next());
+        assertEquals(Integer.valueOf(3), it.next());
+        assertEquals(5, partition.getLoads());
+    }
+
+    @Test
+    public void failedPartitionIsRaisedAfterRemainingItems() {
+        LazyListing.PageLoader<Integer> failing = new LazyListing.PageLoader<Integer>() {
+            public String load(String marker, Collection<Integer> page) throws CloudException {
+                throw new CloudException("failed");
+            }
+        };
+        List<LazyListing.PageLoader<Integer>> partitions = new ArrayList<LazyListing.PageLoader<Integer>>();
+
+        partitions.add(new Pages(1, 1, 2, 3));
+        partitions.add(failing);
+
+        Iterator<Integer> it = new PartitionedListing<Integer>(INLINE, partitions, ORDER, 1).iterator();
+        ArrayList<Integer> items = new ArrayList<Integer>();
+
+        try {
+            while( it.hasNext() ) {
+                items.add(it.next());
+            }
+            fail("The failure of a partition was not raised");
+        }
+        catch( LazyListing.ListingException e ) {
+            assertTrue(e.getCause() instanceof CloudException);
+        }
+        assertEquals(Arrays.asList(1, 2, 3), items);
+    }
+}
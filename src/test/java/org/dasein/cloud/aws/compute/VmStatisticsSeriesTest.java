@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2009-2012 enStratus Networks Inc
+ *
+ * ====================================================================
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * ====================================================================
+ */
+
+package org.dasein.cloud.aws.compute;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.dasein.cloud.compute.VmStatistics;
+import org.junit.Test;
+
+public class VmStatisticsSeriesTest {
+    static private final long START   = 1346457600000L;
+    static private final long MINUTE  = VmStatisticsSeries.ONE_MINUTE;
+    static private final double DELTA = 0.000001;
+
+    @Test
+    public void recordMergesBySampleCount() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (10 * MINUTE), MINUTE);
+
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + 10000L, 2, 10.0, 5.0, 15.0);
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + 5000L, 6, 20.0, 12.0, 40.0);
+        assertEquals(10, series.size());
+        assertEquals(START + 5000L, series.getTimestamp(0));
+        assertEquals(8, series.getSamples(VmStatisticsSeries.CPU_UTILIZATION, 0));
+        assertEquals(17.5, series.getAverage(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        assertEquals(5.0, series.getMinimum(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        assertEquals(40.0, series.getMaximum(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        assertTrue(Double.isNaN(series.getAverage(VmStatisticsSeries.NETWORK_IN, 0)));
+        assertEquals(-1L, series.getTimestamp(1));
+    }
+
+    @Test
+    public void recordAveragesZeroSampleDatapointsEvenly() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + MINUTE, MINUTE);
+
+        series.record(VmStatisticsSeries.NETWORK_OUT, START, 0, 1.0, 1.0, 1.0);
+        series.record(VmStatisticsSeries.NETWORK_OUT, START + 1000L, 0, 2.0, 2.0, 2.0);
+        series.record(VmStatisticsSeries.NETWORK_OUT, START + 2000L, 0, 6.0, 6.0, 6.0);
+        assertEquals(0, series.getSamples(VmStatisticsSeries.NETWORK_OUT, 0));
+        assertEquals(3.0, series.getAverage(VmStatisticsSeries.NETWORK_OUT, 0), DELTA);
+    }
+
+    @Test
+    public void recordIgnoresDatapointsOutsideSeries() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (2 * MINUTE), MINUTE);
+
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START - 1L, 1, 1.0, 1.0, 1.0);
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + (2 * MINUTE), 1, 1.0, 1.0, 1.0);
+        assertEquals(-1L, series.getTimestamp(0));
+        assertEquals(-1L, series.getTimestamp(1));
+        assertTrue(series.asStatistics().isEmpty());
+    }
+
+    @Test
+    public void rollupAggregatesIntoCoarserPeriods() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (10 * MINUTE), MINUTE);
+
+        for( int i=0; i<10; i++ ) {
+            series.record(VmStatisticsSeries.CPU_UTILIZATION, START + (i * MINUTE), 1 + (i % 2), i, i - 0.5, i + 0.5);
+        }
+        VmStatisticsSeries rolled = series.rollup(VmStatisticsSeries.FIVE_MINUTES);
+
+        assertEquals(VmStatisticsSeries.FIVE_MINUTES, rolled.getPeriod());
+        assertEquals(2, rolled.size());
+        assertEquals(START, rolled.getTimestamp(0));
+        assertEquals(START + (5 * MINUTE), rolled.getTimestamp(1));
+        // minutes 0-4 carry 1,2,1,2,1 samples with averages 0-4
+        assertEquals(7, rolled.getSamples(VmStatisticsSeries.CPU_UTILIZATION, 0));
+        assertEquals((0.0 + 2.0 + 2.0 + 6.0 + 4.0) / 7.0, rolled.getAverage(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        assertEquals(-0.5, rolled.getMinimum(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        assertEquals(4.5, rolled.getMaximum(VmStatisticsSeries.CPU_UTILIZATION, 0), DELTA);
+        // minutes 5-9 carry 2,1,2,1,2 samples with averages 5-9
+        assertEquals(8, rolled.getSamples(VmStatisticsSeries.CPU_UTILIZATION, 1));
+        assertEquals((10.0 + 6.0 + 14.0 + 8.0 + 18.0) / 8.0, rolled.getAverage(VmStatisticsSeries.CPU_UTILIZATION, 1), DELTA);
+        assertEquals(9.5, rolled.getMaximum(VmStatisticsSeries.CPU_UTILIZATION, 1), DELTA);
+    }
+
+    @Test
+    public void rollupKeepsZeroSampleWeights() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (3 * MINUTE), MINUTE);
+
+        series.record(VmStatisticsSeries.DISK_READ_OPS, START, 0, 1.0, 1.0, 1.0);
+        series.record(VmStatisticsSeries.DISK_READ_OPS, START + 1000L, 0, 2.0, 2.0, 2.0);
+        series.record(VmStatisticsSeries.DISK_READ_OPS, START + MINUTE, 0, 6.0, 6.0, 6.0);
+
+        VmStatisticsSeries rolled = series.rollup(VmStatisticsSeries.FIVE_MINUTES);
+
+        assertEquals(3.0, rolled.getAverage(VmStatisticsSeries.DISK_READ_OPS, 0), DELTA);
+    }
+
+    @Test
+    public void rollupToSameOrFinerPeriodReturnsSeries() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (5 * MINUTE), MINUTE);
+
+        assertSame(series, series.rollup(MINUTE));
+        assertSame(series, series.rollup(1000L));
+    }
+
+    @Test
+    public void asStatisticsListsPopulatedBuckets() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (10 * MINUTE), MINUTE);
+
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + (2 * MINUTE), 3, 25.0, 10.0, 50.0);
+        series.record(VmStatisticsSeries.NETWORK_IN, START + (2 * MINUTE), 3, 1024.0, 512.0, 2048.0);
+        series.record(VmStatisticsSeries.DISK_WRITE_BYTES, START + (7 * MINUTE), 1, 4096.0, 4096.0, 4096.0);
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + (9 * MINUTE), 0, 1.0, 1.0, 1.0);
+
+        List<VmStatistics> stats = series.asStatistics();
+
+        assertEquals(2, stats.size());
+
+        VmStatistics first = stats.get(0);
+
+        assertEquals(START + (2 * MINUTE), first.getStartTimestamp());
+        assertEquals(START + (2 * MINUTE), first.getEndTimestamp());
+        assertEquals(3, first.getSamples());
+        assertEquals(25.0, first.getAverageCpuUtilization(), DELTA);
+        assertEquals(10.0, first.getMinimumCpuUtilization(), DELTA);
+        assertEquals(50.0, first.getMaximumCpuUtilization(), DELTA);
+        assertEquals(1024.0, first.getAverageNetworkIn(), DELTA);
+        assertEquals(512.0, first.getMinimumNetworkIn(), DELTA);
+        assertEquals(2048.0, first.getMaximumNetworkIn(), DELTA);
+
+        VmStatistics second = stats.get(1);
+
+        assertEquals(START + (7 * MINUTE), second.getStartTimestamp());
+        assertEquals(1, second.getSamples());
+        assertEquals(4096.0, second.getAverageDiskWriteBytes(), DELTA);
+    }
+
+    @Test
+    public void asStatisticsSpansRolledUpPeriod() {
+        VmStatisticsSeries series = new VmStatisticsSeries(START, START + (10 * MINUTE), MINUTE);
+
+        series.record(VmStatisticsSeries.CPU_UTILIZATION, START + (6 * MINUTE), 1, 5.0, 5.0, 5.0);
+
+        List<VmStatistics> stats = series.rollup(VmStatisticsSeries.FIVE_MINUTES).asStatistics();
+
+        assertEquals(1, stats.size());
+        assertEquals(START + (6 * MINUTE), stats.get(0).getStartTimestamp());
+        assertEquals(START + (9 * MINUTE), stats.get(0).getEndTimestamp());
+    }
+}